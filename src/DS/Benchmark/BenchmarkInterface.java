@@ -0,0 +1,62 @@
+package DS.Benchmark;
+
+import java.net.Socket;
+
+import Network.NetworkInterface;
+import Network.Protocol.Event.HandeledNetworkEvent;
+import Network.Protocol.Exception.HandeledNetworkException;
+import Network.Protocol.Exception.ServerStartException;
+
+/**
+ * Implementation of NetworkInterface used by processes started within a benchmark.
+ *
+ * Messages and events are not logged, so that the cost of logging does not
+ * affect the measurements. Only failures to start a process are reported.
+ */
+public class BenchmarkInterface extends NetworkInterface{
+
+    /////////////
+    // LOGGING //
+    /////////////
+
+    /**
+     * Handles the logging of a message being sent.
+     *
+     * @param connection The socket between the sender and reciever.
+     * @param message The message to be logged.
+     */
+    public void logMessageSent(Socket connection, String message){
+        // nothing to log
+    }
+
+    /**
+     * Handles the logging of a message being recieved.
+     *
+     * @param connection The socket between the sender and reciever.
+     * @param message The message to be logged.
+     */
+    public void logMessageReceived(Socket connection, String message){
+        // nothing to log
+    }
+
+    /**
+     * Handles the logging of an event.
+     *
+     * @param event The event to be logged.
+     */
+    public void logEvent(HandeledNetworkEvent event){
+        // nothing to log
+    }
+
+    /**
+     * Handles the logging of an error.
+     *
+     * @param error The error to be logged.
+     */
+    public void logError(HandeledNetworkException error){
+        // reporting processes that could not be started
+        if(error.getException() instanceof ServerStartException){
+            System.out.println(error.toString());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package DS.Benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.CRC32C;
+
+import DS.Dstore.DstoreOptions;
+import DS.Dstore.Storage.DirectoryFileStore;
+import DS.Dstore.Storage.DirectoryLayout;
+import DS.Dstore.Storage.FileStore;
+import DS.Dstore.Storage.SegmentFileStore;
+import DS.Dstore.Storage.SyncPolicy;
+
+/**
+ * Benchmark that compares the rate at which a Dstore stores files under each fsync policy
+ * (none, per-file and group commit).
+ *
+ * For each storage engine and policy, a store is opened in a new folder and a set of
+ * writers store files into it at the same time (as concurrent STOREs would). A STORE_ACK
+ * is only sent once a store returns, so the time taken by each store is the time added to
+ * a STORE by the policy. The number of stores per second, and the median and 99th
+ * percentile store latencies are reported for each. The storage engines are used directly
+ * (no Dstore is run), so that the cost of the policy is measured without the cost of the
+ * network.
+ *
+ * Usage: DurabilityBenchmark [FILES] [FILESIZE] [WRITERS] [WINDOW]
+ */
+public class DurabilityBenchmark{
+
+    // constants
+    private final static long SEED = 2207;
+
+    // member variables
+    private int files;
+    private int filesize;
+    private int writers;
+    private long window;
+    private File workingFolder;
+
+    /**
+     * Class constructor.
+     *
+     * @param files The number of files stored by each writer.
+     * @param filesize The size of each file in bytes.
+     * @param writers The number of writers storing files at the same time.
+     * @param window The number of ms a group commit is held open for other stores to join.
+     */
+    public DurabilityBenchmark(int files, int filesize, int writers, long window){
+        // initializing
+        this.files = files;
+        this.filesize = filesize;
+        this.writers = writers;
+        this.window = window;
+    }
+
+    /////////
+    // RUN //
+    /////////
+
+    /**
+     * Runs the benchmark for each storage engine and policy and prints the results.
+     *
+     * @throws Exception If the benchmark could not be run.
+     */
+    public void run() throws Exception{
+        this.workingFolder = Files.createTempDirectory("ds-durability-benchmark").toFile();
+
+        // printing header
+        System.out.println("Durability : " + this.writers + " writers x " + this.files + " files of " + this.filesize + " bytes (" + this.window + " ms group window)");
+        System.out.println(String.format("%-10s %-8s %12s %12s %12s %10s", "Storage", "fsync", "stores/s", "p50 (ms)", "p99 (ms)", "batches"));
+
+        // running each storage engine and policy in it's own folder
+        String[] engines = {DstoreOptions.STORAGE_FILES, DstoreOptions.STORAGE_SEGMENTS};
+        String[] policies = {SyncPolicy.NONE, SyncPolicy.FILE, SyncPolicy.GROUP};
+        for(String engine : engines){
+            for(String policy : policies){
+                File folder = new File(this.workingFolder, engine + "-" + policy);
+                SyncPolicy syncPolicy = new SyncPolicy(policy, this.window);
+                double[] results = this.runPolicy(engine, syncPolicy, folder);
+
+                System.out.println(String.format("%-10s %-8s %12.0f %12.2f %12.2f %10d", engine, policy, results[0], results[1], results[2], syncPolicy.getBatches()));
+            }
+        }
+
+        // cleaning up
+        this.deleteFolder(this.workingFolder);
+    }
+
+    /**
+     * Runs the benchmark for a single storage engine and policy.
+     *
+     * @param engine The storage engine (DstoreOptions.STORAGE_FILES or DstoreOptions.STORAGE_SEGMENTS).
+     * @param syncPolicy The policy the store forces files to disk with.
+     * @param folder The folder the files are stored in.
+     * @return The stores made per second, and the median and 99th percentile store latencies (ms).
+     * @throws Exception If a file could not be stored.
+     */
+    private double[] runPolicy(String engine, SyncPolicy syncPolicy, File folder) throws Exception{
+        byte[] content = new byte[this.filesize];
+        new Random(SEED).nextBytes(content);
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        long checksum = crc.getValue();
+
+        FileStore fileStore = engine.equals(DstoreOptions.STORAGE_SEGMENTS) ? new SegmentFileStore(folder, 64 * 1024 * 1024, syncPolicy) : new DirectoryFileStore(folder, DirectoryLayout.FLAT, 0, syncPolicy);
+        fileStore.open();
+
+        // starting the writers together
+        ArrayList<Long> latencies = new ArrayList<Long>();
+        ArrayList<Exception> failures = new ArrayList<Exception>();
+        CountDownLatch start = new CountDownLatch(1);
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        for(int w = 0; w < this.writers; w++){
+            int writer = w;
+            Thread thread = new Thread(() -> {
+                ArrayList<Long> writerLatencies = new ArrayList<Long>();
+                try{
+                    start.await();
+                    for(int i = 0; i < this.files; i++){
+                        long storeStart = System.nanoTime();
+                        fileStore.store("file" + writer + "-" + i, content, checksum);
+                        writerLatencies.add(System.nanoTime() - storeStart);
+                    }
+                }
+                catch(Exception e){
+                    synchronized(failures){
+                        failures.add(e);
+                    }
+                }
+                synchronized(latencies){
+                    latencies.addAll(writerLatencies);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        for(Thread thread : threads){
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - startTime) / 1000000000.0;
+        fileStore.close();
+
+        // making sure every file was stored
+        if(!failures.isEmpty()){
+            throw failures.get(0);
+        }
+
+        Collections.sort(latencies);
+        return new double[]{latencies.size() / seconds, this.getPercentile(latencies, 0.5), this.getPercentile(latencies, 0.99)};
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Returns a percentile of the provided latencies.
+     *
+     * @param latencies The sorted latencies (ns).
+     * @param percentile The percentile (0 to 1).
+     * @return The latency at the percentile (ms).
+     */
+    private double getPercentile(ArrayList<Long> latencies, double percentile){
+        int index = (int) Math.min(latencies.size() - 1, Math.floor(percentile * latencies.size()));
+
+        return latencies.get(index) / 1000000.0;
+    }
+
+    /**
+     * Deletes the provided folder and it's contents.
+     *
+     * @param folder The folder to be deleted.
+     */
+    private void deleteFolder(File folder){
+        File[] contents = folder.listFiles();
+        if(contents != null){
+            for(File file : contents){
+                this.deleteFolder(file);
+            }
+        }
+        folder.delete();
+    }
+
+    /////////////////
+    // MAIN METHOD //
+    /////////////////
+
+    /**
+     * Main method - runs the benchmark using the command line parameters.
+     *
+     * @param args Parameters for the benchmark.
+     */
+    public static void main(String[] args){
+        try{
+            // gathering parameters
+            int files = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+            int filesize = (args.length > 1) ? Integer.parseInt(args[1]) : 4096;
+            int writers = (args.length > 2) ? Integer.parseInt(args[2]) : 8;
+            long window = (args.length > 3) ? Long.parseLong(args[3]) : 0;
+
+            // running the benchmark
+            new DurabilityBenchmark(files, filesize, writers, window).run();
+        }
+        catch(Exception e){
+            System.out.println("Unable to run benchmark : " + e.toString());
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package DS.Benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import DS.Dstore.DstoreOptions;
+import DS.Dstore.Storage.BlobFileStore;
+import DS.Dstore.Storage.DirectoryFileStore;
+import DS.Dstore.Storage.DirectoryLayout;
+import DS.Dstore.Storage.FileStore;
+import DS.Dstore.Storage.SegmentFileStore;
+import DS.Dstore.Storage.SyncPolicy;
+
+/**
+ * Benchmark that compares the rate at which a Dstore's storage engines store, load and
+ * remove small files.
+ *
+ * For each storage engine (a file per stored file in a flat or sharded folder, segments,
+ * and content-addressed blobs), a store is opened in a new folder, and the files are stored, loaded in a
+ * random order, and half of them are removed. The store is then closed and opened again,
+ * to measure the time taken to load its index. Every file has the same content, so the
+ * blob store only writes the first file's content. The storage engines are used directly (no Dstore is run), so that the cost of
+ * the engine is measured without the cost of the network.
+ *
+ * Usage: FileStoreBenchmark [FILES] [FILESIZE] [SEGMENT]
+ */
+public class FileStoreBenchmark{
+
+    // constants
+    private final static long SEED = 2207;
+
+    // member variables
+    private int files;
+    private int filesize;
+    private long segmentSize;
+    private File workingFolder;
+
+    /**
+     * Class constructor.
+     *
+     * @param files The number of files stored.
+     * @param filesize The size of each file in bytes.
+     * @param segmentSize The size of each segment in bytes.
+     */
+    public FileStoreBenchmark(int files, int filesize, long segmentSize){
+        // initializing
+        this.files = files;
+        this.filesize = filesize;
+        this.segmentSize = segmentSize;
+    }
+
+    /////////
+    // RUN //
+    /////////
+
+    /**
+     * Runs the benchmark for each storage engine and prints the results.
+     *
+     * @throws Exception If the benchmark could not be run.
+     */
+    public void run() throws Exception{
+        this.workingFolder = Files.createTempDirectory("ds-filestore-benchmark").toFile();
+
+        // printing header
+        System.out.println("File store : " + this.files + " files of " + this.filesize + " bytes (" + this.segmentSize + " byte segments)");
+        System.out.println(String.format("%-10s %12s %12s %12s %12s", "Storage", "stores/s", "loads/s", "removes/s", "open (ms)"));
+
+        // running each storage engine in it's own folder
+        String[] engines = {DstoreOptions.STORAGE_FILES, DstoreOptions.LAYOUT_SHARDED, DstoreOptions.STORAGE_SEGMENTS, DstoreOptions.STORAGE_BLOBS};
+        for(String engine : engines){
+            File folder = new File(this.workingFolder, engine);
+            double[] results = this.runEngine(engine, folder);
+
+            System.out.println(String.format("%-10s %12.0f %12.0f %12.0f %12.1f", engine, results[0], results[1], results[2], results[3]));
+        }
+
+        // cleaning up
+        this.deleteFolder(this.workingFolder);
+    }
+
+    /**
+     * Runs the benchmark for a single storage engine.
+     *
+     * @param engine The storage engine (DstoreOptions.STORAGE_FILES, DstoreOptions.LAYOUT_SHARDED, DstoreOptions.STORAGE_SEGMENTS or DstoreOptions.STORAGE_BLOBS).
+     * @param folder The folder the files are stored in.
+     * @return The stores, loads and removes made per second, and the time taken to reopen the store (ms).
+     * @throws Exception If a file could not be stored, loaded or removed.
+     */
+    private double[] runEngine(String engine, File folder) throws Exception{
+        Random random = new Random(SEED);
+        byte[] content = new byte[this.filesize];
+        random.nextBytes(content);
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        long checksum = crc.getValue();
+
+        ArrayList<String> filenames = new ArrayList<String>();
+        for(int i = 0; i < this.files; i++){
+            filenames.add("file" + i);
+        }
+
+        FileStore fileStore = this.createStore(engine, folder);
+        fileStore.open();
+
+        // STORING //
+
+        long start = System.nanoTime();
+        for(String filename : filenames){
+            fileStore.store(filename, content, checksum);
+        }
+        double stores = this.getRate(this.files, start);
+
+        // LOADING //
+
+        Collections.shuffle(filenames, random);
+        start = System.nanoTime();
+        for(String filename : filenames){
+            fileStore.load(filename);
+        }
+        double loads = this.getRate(this.files, start);
+
+        // REMOVING //
+
+        int removed = this.files / 2;
+        start = System.nanoTime();
+        for(int i = 0; i < removed; i++){
+            fileStore.remove(filenames.get(i));
+        }
+        double removes = this.getRate(removed, start);
+
+        // REOPENING //
+
+        fileStore.close();
+        fileStore = this.createStore(engine, folder);
+        start = System.nanoTime();
+        if(!fileStore.open()){
+            fileStore.verify();
+        }
+        double open = (System.nanoTime() - start) / 1000000.0;
+
+        // making sure the index survived
+        if(fileStore.getFileCount() != this.files - removed){
+            throw new Exception("Reopened " + engine + " store holds " + fileStore.getFileCount() + " files (expected " + (this.files - removed) + ").");
+        }
+        fileStore.close();
+
+        return new double[]{stores, loads, removes, open};
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Creates a store using the provided storage engine.
+     *
+     * @param engine The storage engine.
+     * @param folder The folder the files are stored in.
+     * @return The store.
+     */
+    private FileStore createStore(String engine, File folder){
+        if(engine.equals(DstoreOptions.STORAGE_SEGMENTS)){
+            return new SegmentFileStore(folder, this.segmentSize, new SyncPolicy(SyncPolicy.NONE, 0));
+        }
+
+        if(engine.equals(DstoreOptions.STORAGE_BLOBS)){
+            return new BlobFileStore(folder, new SyncPolicy(SyncPolicy.NONE, 0));
+        }
+
+        if(engine.equals(DstoreOptions.LAYOUT_SHARDED)){
+            return new DirectoryFileStore(folder, DirectoryLayout.SHARDED, 0, new SyncPolicy(SyncPolicy.NONE, 0));
+        }
+
+        return new DirectoryFileStore(folder, DirectoryLayout.FLAT, 0, new SyncPolicy(SyncPolicy.NONE, 0));
+    }
+
+    /**
+     * Returns the number of operations made per second.
+     *
+     * @param operations The number of operations made.
+     * @param start The time the operations were started (ns).
+     * @return The operations made per second.
+     */
+    private double getRate(int operations, long start){
+        return operations / ((System.nanoTime() - start) / 1000000000.0);
+    }
+
+    /**
+     * Deletes the provided folder and it's contents.
+     *
+     * @param folder The folder to be deleted.
+     */
+    private void deleteFolder(File folder){
+        File[] contents = folder.listFiles();
+        if(contents != null){
+            for(File file : contents){
+                this.deleteFolder(file);
+            }
+        }
+        folder.delete();
+    }
+
+    /////////////////
+    // MAIN METHOD //
+    /////////////////
+
+    /**
+     * Main method - runs the benchmark using the command line parameters.
+     *
+     * @param args Parameters for the benchmark.
+     */
+    public static void main(String[] args){
+        try{
+            // gathering parameters
+            int files = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+            int filesize = (args.length > 1) ? Integer.parseInt(args[1]) : 1024;
+            long segmentSize = (args.length > 2) ? Long.parseLong(args[2]) : 64 * 1024 * 1024;
+
+            // running the benchmark
+            new FileStoreBenchmark(files, filesize, segmentSize).run();
+        }
+        catch(Exception e){
+            System.out.println("Unable to run benchmark : " + e.toString());
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package DS.Benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import DS.Controller.Controller;
+import DS.Controller.ControllerOptions;
+import DS.DSClient.DSClient;
+import DS.Dstore.Dstore;
+import DS.Dstore.DstoreOptions;
+
+/**
+ * Benchmark that compares the throughput of LOAD operations when Dstores read each file
+ * from disk (readAllBytes) and when they serve files from memory-mapped buffers.
+ *
+ * For each mode, a Controller, a single Dstore (R=1) and a set of Clients are started within
+ * this process. The files are stored, and then every Client loads files chosen at random from
+ * them at the same time, so that the same files are loaded repeatedly and concurrently. The
+ * number of LOADs per second, the bytes loaded per second, and the median and 99th percentile
+ * LOAD latencies are reported for each mode (after a number of unmeasured warm-up loads).
+ *
+ * Usage: LoadThroughputBenchmark [LOADS] [FILES] [FILESIZE] [CLIENTS] [MAPPED]
+ */
+public class LoadThroughputBenchmark{
+
+    // constants
+    private final static int BASE_PORT = 22000;
+    private final static int TIMEOUT = 2000;
+    private final static int REBALANCE_PERIOD = 1000000; // no periodic rebalancing during the benchmark
+    private final static int WARMUP_LOADS = 50; // loads made by each client before measuring (connection setup, JIT)
+    private final static long SEED = 2207;
+
+    // member variables
+    private int loads;
+    private int files;
+    private int filesize;
+    private int clients;
+    private int mappedFiles;
+    private File workingFolder;
+
+    /**
+     * Class constructor.
+     *
+     * @param loads The number of files loaded by each client for each mode.
+     * @param files The number of files stored.
+     * @param filesize The size of each file in bytes.
+     * @param clients The number of clients loading files at the same time.
+     * @param mappedFiles The number of files the Dstore keeps mapped in the mapped mode.
+     */
+    public LoadThroughputBenchmark(int loads, int files, int filesize, int clients, int mappedFiles){
+        // initializing
+        this.loads = loads;
+        this.files = files;
+        this.filesize = filesize;
+        this.clients = clients;
+        this.mappedFiles = mappedFiles;
+    }
+
+    /////////
+    // RUN //
+    /////////
+
+    /**
+     * Runs the benchmark for each mode and prints the results.
+     *
+     * @throws Exception If the benchmark could not be run.
+     */
+    public void run() throws Exception{
+        // creating the files to be stored
+        this.workingFolder = Files.createTempDirectory("ds-load-benchmark").toFile();
+        ArrayList<File> fileList = this.createFiles();
+
+        // printing header
+        System.out.println("LOAD throughput : " + this.clients + " clients x " + this.loads + " loads of " + this.files + " files of "
+                           + this.filesize + " bytes (" + this.mappedFiles + " files kept mapped)");
+        System.out.println(String.format("%-8s %12s %12s %10s %10s", "Mode", "loads/s", "MB/s", "p50 (ms)", "p99 (ms)"));
+
+        // running each mode on it's own system
+        String[] modes = {"read", "mmap"};
+        for(int run = 0; run < modes.length; run++){
+            DstoreOptions options = new DstoreOptions();
+            if(modes[run].equals("mmap")){
+                options.setMappedFiles(this.mappedFiles);
+            }
+
+            ArrayList<Double> latencies = new ArrayList<Double>();
+            long time = this.runMode(options, BASE_PORT + (run * 100), fileList, latencies);
+            Collections.sort(latencies, Comparator.naturalOrder());
+
+            double seconds = time / 1000000000.0;
+            System.out.println(String.format("%-8s %12.0f %12.1f %10.2f %10.2f", modes[run],
+                                             latencies.size() / seconds,
+                                             ((double) latencies.size() * this.filesize) / (1024 * 1024) / seconds,
+                                             this.getPercentile(latencies, 50),
+                                             this.getPercentile(latencies, 99)));
+        }
+
+        // cleaning up
+        this.deleteFolder(this.workingFolder);
+    }
+
+    /**
+     * Runs the benchmark for a single mode.
+     *
+     * @param options The options of the Dstore.
+     * @param port The port of the Controller (the Dstore listens on the following port).
+     * @param fileList The files to be stored and loaded.
+     * @param latencies The list the latency of each measured LOAD is added to (ms).
+     * @return The time taken for the clients to make their measured loads (ns).
+     * @throws Exception If the system could not be started or a LOAD failed.
+     */
+    private long runMode(DstoreOptions options, int port, ArrayList<File> fileList, ArrayList<Double> latencies) throws Exception{
+        // CONTROLLER //
+
+        BenchmarkInterface controllerInterface = new BenchmarkInterface();
+        Controller controller = new Controller(port, 1, TIMEOUT, REBALANCE_PERIOD, new ControllerOptions(), controllerInterface);
+        this.startServer(() -> controllerInterface.startNetworkProcess(controller));
+        Thread.sleep(200);
+
+        // DSTORE //
+
+        BenchmarkInterface dstoreInterface = new BenchmarkInterface();
+        String folder = this.workingFolder.getPath() + File.separatorChar + port;
+        Dstore dstore = new Dstore(port + 1, port, TIMEOUT, folder, dstoreInterface, options);
+        this.startServer(() -> dstoreInterface.startNetworkProcess(dstore));
+
+        // waiting for the dstore to join
+        while(controller.getIndex().getDstores().size() < 1){
+            Thread.sleep(10);
+        }
+        Thread.sleep(500);
+
+        // STORING //
+
+        BenchmarkInterface storeInterface = new BenchmarkInterface();
+        DSClient storeClient = new DSClient(port, TIMEOUT, storeInterface);
+        storeInterface.startNetworkProcess(storeClient);
+        for(File file : fileList){
+            storeClient.storeFile(file, this.filesize);
+        }
+
+        // LOADING //
+
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        ArrayList<ArrayList<Double>> clientLatencies = new ArrayList<ArrayList<Double>>();
+        ArrayList<Exception> failures = new ArrayList<Exception>();
+        CountDownLatch warmedUp = new CountDownLatch(this.clients);
+        CountDownLatch measuring = new CountDownLatch(1);
+
+        for(int i = 0; i < this.clients; i++){
+            BenchmarkInterface clientInterface = new BenchmarkInterface();
+            DSClient client = new DSClient(port, TIMEOUT, clientInterface);
+            clientInterface.startNetworkProcess(client);
+            Random random = new Random(SEED + i);
+            ArrayList<Double> measured = new ArrayList<Double>();
+            clientLatencies.add(measured);
+
+            threads.add(new Thread(() -> {
+                try{
+                    // warming up
+                    try{
+                        for(int j = 0; j < WARMUP_LOADS; j++){
+                            client.loadFile(fileList.get(random.nextInt(fileList.size())).getName(), false);
+                        }
+                    }
+                    finally{
+                        warmedUp.countDown();
+                    }
+
+                    // waiting for every client to warm up
+                    measuring.await();
+
+                    // loading the files
+                    for(int j = 0; j < this.loads; j++){
+                        String filename = fileList.get(random.nextInt(fileList.size())).getName();
+
+                        long start = System.nanoTime();
+                        client.loadFile(filename, false);
+                        long end = System.nanoTime();
+
+                        measured.add((end - start) / 1000000.0);
+                    }
+                }
+                catch(Exception e){
+                    synchronized(failures){
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+
+        // measuring once every client has warmed up
+        for(Thread thread : threads){
+            thread.start();
+        }
+        warmedUp.await();
+        long start = System.nanoTime();
+        measuring.countDown();
+        for(Thread thread : threads){
+            thread.join();
+        }
+        long time = System.nanoTime() - start;
+
+        // stopping the system
+        controller.close();
+
+        // failed loads invalidate the measurements
+        if(!failures.isEmpty()){
+            throw failures.get(0);
+        }
+
+        // gathering the latencies
+        for(ArrayList<Double> measured : clientLatencies){
+            latencies.addAll(measured);
+        }
+
+        return time;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Starts a server process on a new thread.
+     *
+     * @param runnable The runnable that starts the server.
+     */
+    private void startServer(Runnable runnable){
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Creates the files that will be stored by the benchmark.
+     *
+     * @return The list of files.
+     * @throws Exception If the files could not be created.
+     */
+    private ArrayList<File> createFiles() throws Exception{
+        ArrayList<File> fileList = new ArrayList<File>();
+        File folder = new File(this.workingFolder, "files");
+        folder.mkdir();
+
+        byte[] content = new byte[this.filesize];
+        new Random(SEED).nextBytes(content);
+        for(int i = 0; i < this.files; i++){
+            File file = new File(folder, "file" + i);
+            FileOutputStream fileOutput = new FileOutputStream(file);
+            fileOutput.write(content);
+            fileOutput.close();
+            fileList.add(file);
+        }
+
+        return fileList;
+    }
+
+    /**
+     * Gathers the provided percentile of a sorted list of latencies (nearest-rank).
+     *
+     * @param latencies The sorted list of latencies.
+     * @param percentile The percentile (0 - 100).
+     * @return The latency at the percentile.
+     */
+    private double getPercentile(ArrayList<Double> latencies, int percentile){
+        int rank = (int) Math.ceil((percentile / 100.0) * latencies.size());
+        return latencies.get(Math.max(rank - 1, 0));
+    }
+
+    /**
+     * Deletes the provided folder and it's contents.
+     *
+     * @param folder The folder to be deleted.
+     */
+    private void deleteFolder(File folder){
+        File[] contents = folder.listFiles();
+        if(contents != null){
+            for(File file : contents){
+                this.deleteFolder(file);
+            }
+        }
+        folder.delete();
+    }
+
+    /////////////////
+    // MAIN METHOD //
+    /////////////////
+
+    /**
+     * Main method - runs the benchmark using the command line parameters.
+     *
+     * @param args Parameters for the benchmark.
+     */
+    public static void main(String[] args){
+        try{
+            // gathering parameters
+            int loads = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+            int files = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+            int filesize = (args.length > 2) ? Integer.parseInt(args[2]) : 1024 * 1024;
+            int clients = (args.length > 3) ? Integer.parseInt(args[3]) : 4;
+            int mappedFiles = (args.length > 4) ? Integer.parseInt(args[4]) : 64;
+
+            // running the benchmark
+            new LoadThroughputBenchmark(loads, files, filesize, clients, mappedFiles).run();
+        }
+        catch(Exception e){
+            System.out.println("Unable to run benchmark : " + e.toString());
+        }
+
+        // stopping any remaining connection threads
+        System.exit(0);
+    }
+}
@@ -0,0 +1,177 @@
+package DS.Benchmark;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import DS.Controller.Rebalancer.RebalanceInformation;
+import DS.Controller.Rebalancer.RebalancedSystem;
+import DS.Controller.Rebalancer.Rebalancer;
+import DS.Controller.Rebalancer.System.BalanceMode;
+
+/**
+ * Benchmark that measures the time taken by the Rebalancer to plan a rebalance.
+ *
+ * A file distribution is generated where every file is replicated R times across
+ * the original Dstores, a number of new (empty) Dstores have joined, and a percentage
+ * of the files have lost one of their replicas. File sizes are spread evenly over powers 
+ * of two between 1KB and 1MB. The Rebalancer then plans the rebalance of this distribution, 
+ * and the time taken to build the System, plan the rebalance, and the number of files and
+ * bytes moved are reported for each run. No messages are sent - only the planning is measured.
+ *
+ * Usage: RebalancePlanningBenchmark [FILES] [DSTORES] [R] [JOINED] [UNDER] [RUNS] [BALANCE]
+ */
+public class RebalancePlanningBenchmark{
+
+    // constants
+    private final static int BASE_PORT = 22000;
+    private final static int MIN_FILESIZE_POWER = 10; // 1KB
+    private final static int MAX_FILESIZE_POWER = 20; // 1MB
+    private final static long SEED = 2207;
+
+    // member variables
+    private int files;
+    private int dstores;
+    private int r;
+    private int joined;
+    private int underReplicated;
+    private int runs;
+    private BalanceMode balanceMode;
+
+    /**
+     * Class constructor.
+     *
+     * @param files The number of files in the system.
+     * @param dstores The number of Dstores in the system (including those that have joined).
+     * @param r The replication factor.
+     * @param joined The number of Dstores that have joined the system and store no files.
+     * @param underReplicated The percentage of files that have lost one of their replicas.
+     * @param runs The number of times the rebalance is planned.
+     * @param balanceMode What the files are spread evenly by.
+     */
+    public RebalancePlanningBenchmark(int files, int dstores, int r, int joined, int underReplicated, int runs, BalanceMode balanceMode){
+        // initializing
+        this.files = files;
+        this.dstores = dstores;
+        this.r = r;
+        this.joined = joined;
+        this.underReplicated = underReplicated;
+        this.runs = runs;
+        this.balanceMode = balanceMode;
+    }
+
+    /////////
+    // RUN //
+    /////////
+
+    /**
+     * Plans the rebalance for each run and prints the results.
+     *
+     * @throws Exception If the benchmark could not be run.
+     */
+    public void run() throws Exception{
+        // the original dstores must be able to hold R replicas of each file
+        if(this.dstores - this.joined < this.r){
+            throw new IllegalArgumentException("There must be at least R Dstores that are not joining.");
+        }
+
+        // printing header
+        System.out.println("Rebalance planning : " + this.files + " files, " + this.dstores + " Dstores (" + this.joined
+                           + " joined), R=" + this.r + ", " + this.underReplicated + "% of files under-replicated, balanced on " + this.balanceMode);
+        System.out.println(String.format("%-6s %12s %12s %10s %10s %14s %10s", "Run", "build (ms)", "plan (ms)", "sent", "removed", "bytes moved", "balanced"));
+
+        for(int run = 1; run <= this.runs; run++){
+            // generating the distribution
+            HashMap<Integer, HashMap<String, Integer>> fileDistribution = this.createFileDistribution();
+
+            // building the system
+            long buildStart = System.nanoTime();
+            DS.Controller.Rebalancer.System system = new DS.Controller.Rebalancer.System(this.r, fileDistribution, this.balanceMode);
+            long buildEnd = System.nanoTime();
+
+            // planning the rebalance
+            long planStart = System.nanoTime();
+            RebalancedSystem rebalancedSystem = Rebalancer.getRebalancedSystem(system);
+            long planEnd = System.nanoTime();
+
+            // counting the changes made
+            int sent = 0;
+            int removed = 0;
+            for(RebalanceInformation information : rebalancedSystem.getRebalanceInformation().values()){
+                sent += information.getFilesToSend().size();
+                removed += information.getFilesToRemove().size();
+            }
+
+            System.out.println(String.format("%-6d %12.1f %12.1f %10d %10d %14d %10s", run,
+                                             (buildEnd - buildStart) / 1000000.0,
+                                             (planEnd - planStart) / 1000000.0,
+                                             sent, removed, rebalancedSystem.getBytesMoved(),
+                                             rebalancedSystem.getSystem().isBalanced()));
+        }
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Creates the file distribution being rebalanced.
+     *
+     * Replicas are placed round-robin over the original Dstores, and the last replica of
+     * every under-replicated file is not placed.
+     *
+     * @return The file distribution as a mapping of Dstore to the files it stores.
+     */
+    private HashMap<Integer, HashMap<String, Integer>> createFileDistribution(){
+        HashMap<Integer, HashMap<String, Integer>> fileDistribution = new HashMap<Integer, HashMap<String, Integer>>();
+        for(int i = 0; i < this.dstores; i++){
+            fileDistribution.put(BASE_PORT + i, new HashMap<String, Integer>());
+        }
+
+        // file sizes are the same on every run
+        Random random = new Random(SEED);
+
+        // placing the files on the original dstores
+        int originalDstores = this.dstores - this.joined;
+        int underReplicatedEvery = (this.underReplicated > 0) ? (100 / this.underReplicated) : 0;
+        for(int file = 0; file < this.files; file++){
+            String filename = "file" + file;
+            int replicas = (underReplicatedEvery > 0 && file % underReplicatedEvery == 0) ? (this.r - 1) : this.r;
+            int filesize = 1 << (MIN_FILESIZE_POWER + random.nextInt(MAX_FILESIZE_POWER - MIN_FILESIZE_POWER + 1));
+
+            for(int replica = 0; replica < replicas; replica++){
+                int dstore = BASE_PORT + ((file + replica) % originalDstores);
+                fileDistribution.get(dstore).put(filename, filesize);
+            }
+        }
+
+        return fileDistribution;
+    }
+
+    /////////////////
+    // MAIN METHOD //
+    /////////////////
+
+    /**
+     * Main method - runs the benchmark using the command line parameters.
+     *
+     * @param args Parameters for the benchmark.
+     */
+    public static void main(String[] args){
+        try{
+            // gathering parameters
+            int files = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+            int dstores = (args.length > 1) ? Integer.parseInt(args[1]) : 100;
+            int r = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+            int joined = (args.length > 3) ? Integer.parseInt(args[3]) : 10;
+            int underReplicated = (args.length > 4) ? Integer.parseInt(args[4]) : 1;
+            int runs = (args.length > 5) ? Integer.parseInt(args[5]) : 3;
+            BalanceMode balanceMode = (args.length > 6) ? BalanceMode.fromString(args[6]) : BalanceMode.FILES;
+
+            // running the benchmark
+            new RebalancePlanningBenchmark(files, dstores, r, joined, underReplicated, runs, balanceMode).run();
+        }
+        catch(Exception e){
+            System.out.println("Unable to run benchmark : " + e.toString());
+        }
+    }
+}
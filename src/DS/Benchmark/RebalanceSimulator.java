@@ -0,0 +1,425 @@
+package DS.Benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import DS.Controller.Rebalancer.RebalanceInformation;
+import DS.Controller.Rebalancer.RebalancedSystem;
+import DS.Controller.Rebalancer.Rebalancer;
+import DS.Controller.Rebalancer.System.BalanceMode;
+import DS.Protocol.Token.TokenType.FileToSend;
+
+/**
+ * Offline simulator for the Rebalancer's planning.
+ *
+ * Builds a synthetic file distribution for a scenario, plans its rebalance, and then
+ * carries out the planned REBALANCE instructions on a copy of the distribution (as the
+ * Dstores would) to check that the plan is valid. A plan is valid if every instruction
+ * can be carried out (files are only sent by Dstores that store them, to Dstores that
+ * do not), the result matches the distribution the Rebalancer planned, every file is
+ * replicated R times, and the files are stored evenly. No Dstores are run and no messages
+ * are sent.
+ *
+ * The scenarios are:
+ * - uniform : each file is stored on R Dstores chosen at random.
+ * - skewed : each file is stored on R Dstores chosen at random, with Dstore i being chosen
+ * 1 / (i + 1) as often as the first.
+ * - join : files are spread evenly, and then CHANGED empty Dstores join.
+ * - loss : files are spread evenly, and then CHANGED Dstores (and their replicas) are lost.
+ * - all : runs every scenario.
+ *
+ * The results are printed as one line per run, so that the output of different versions
+ * of the Rebalancer can be compared.
+ *
+ * Usage: RebalanceSimulator [SCENARIO] [FILES] [DSTORES] [R] [CHANGED] [RUNS] [BALANCE] [SEED]
+ */
+public class RebalanceSimulator{
+
+    // constants
+    private final static int BASE_PORT = 23000;
+    private final static int MIN_FILESIZE_POWER = 10; // 1KB
+    private final static int MAX_FILESIZE_POWER = 20; // 1MB
+    private final static int MAX_REPORTED_VIOLATIONS = 5;
+    private final static String[] SCENARIOS = {"uniform", "skewed", "join", "loss"};
+
+    // member variables
+    private int files;
+    private int dstores;
+    private int r;
+    private int changed;
+    private int runs;
+    private BalanceMode balanceMode;
+    private long seed;
+
+    /**
+     * Class constructor.
+     *
+     * @param files The number of files in the system.
+     * @param dstores The number of Dstores in the system once the scenario has occured.
+     * @param r The replication factor.
+     * @param changed The number of Dstores that join or are lost (join and loss scenarios).
+     * @param runs The number of times each scenario is simulated.
+     * @param balanceMode What the files are spread evenly by.
+     * @param seed The seed used to generate the distributions.
+     */
+    public RebalanceSimulator(int files, int dstores, int r, int changed, int runs, BalanceMode balanceMode, long seed){
+        // initializing
+        this.files = files;
+        this.dstores = dstores;
+        this.r = r;
+        this.changed = changed;
+        this.runs = runs;
+        this.balanceMode = balanceMode;
+        this.seed = seed;
+    }
+
+    /////////
+    // RUN //
+    /////////
+
+    /**
+     * Simulates each of the provided scenarios and prints the results.
+     *
+     * @param scenarios The scenarios being simulated.
+     * @throws Exception If the simulation could not be run.
+     */
+    public void run(String[] scenarios) throws Exception{
+        // there must be enough dstores to hold R replicas of each file
+        if(this.dstores < this.r || this.dstores - this.changed < this.r){
+            throw new IllegalArgumentException("There must be at least R Dstores before and after the scenario.");
+        }
+
+        // printing header
+        System.out.println("Rebalance simulation : " + this.files + " files, " + this.dstores + " Dstores, R=" + this.r
+                           + ", " + this.changed + " Dstore(s) changed, balanced on " + this.balanceMode);
+        System.out.println(String.format("%-8s %-4s %12s %12s %10s %10s %14s %6s", "Scenario", "Run", "build (ms)", "plan (ms)",
+                                         "transfers", "removals", "bytes moved", "valid"));
+
+        for(String scenario : scenarios){
+            for(int run = 1; run <= this.runs; run++){
+                // generating the distribution (different for each run, the same for each version of the rebalancer)
+                Random random = new Random(this.seed + run);
+                HashMap<Integer, HashMap<String, Integer>> fileDistribution = this.createFileDistribution(scenario, random);
+
+                // building the system
+                long buildStart = System.nanoTime();
+                DS.Controller.Rebalancer.System system = new DS.Controller.Rebalancer.System(this.r, fileDistribution, this.balanceMode);
+                long buildEnd = System.nanoTime();
+
+                // planning the rebalance (if needed)
+                long planStart = System.nanoTime();
+                RebalancedSystem rebalancedSystem = system.isBalanced() ? null : Rebalancer.getRebalancedSystem(system);
+                long planEnd = System.nanoTime();
+
+                // validating the plan
+                ArrayList<String> violations = this.validate(fileDistribution, rebalancedSystem);
+
+                // counting the removals made
+                int removals = 0;
+                if(rebalancedSystem != null){
+                    for(RebalanceInformation information : rebalancedSystem.getRebalanceInformation().values()){
+                        removals += information.getFilesToRemove().size();
+                    }
+                }
+
+                // printing the results
+                System.out.println(String.format("%-8s %-4d %12.1f %12.1f %10d %10d %14d %6s", scenario, run,
+                                                 (buildEnd - buildStart) / 1000000.0,
+                                                 (planEnd - planStart) / 1000000.0,
+                                                 (rebalancedSystem == null) ? 0 : rebalancedSystem.getTransfers(),
+                                                 removals,
+                                                 (rebalancedSystem == null) ? 0 : rebalancedSystem.getBytesMoved(),
+                                                 violations.isEmpty()));
+
+                // printing the violations found
+                for(int i = 0; i < Math.min(violations.size(), MAX_REPORTED_VIOLATIONS); i++){
+                    System.out.println("    " + violations.get(i));
+                }
+                if(violations.size() > MAX_REPORTED_VIOLATIONS){
+                    System.out.println("    ... " + (violations.size() - MAX_REPORTED_VIOLATIONS) + " more violation(s)");
+                }
+            }
+        }
+    }
+
+    ///////////////////////////
+    // CREATING DISTRIBUTION //
+    ///////////////////////////
+
+    /**
+     * Creates the file distribution for the provided scenario.
+     *
+     * @param scenario The scenario being simulated.
+     * @param random The source of randomness for the distribution.
+     * @return The file distribution as a mapping of Dstore to the files it stores.
+     */
+    private HashMap<Integer, HashMap<String, Integer>> createFileDistribution(String scenario, Random random){
+        // UNIFORM //
+        if(scenario.equals("uniform")){
+            return this.createRandomDistribution(random, false);
+        }
+
+        // SKEWED //
+        else if(scenario.equals("skewed")){
+            return this.createRandomDistribution(random, true);
+        }
+
+        // JOIN //
+        else if(scenario.equals("join")){
+            // files spread over the original dstores, with the joined dstores empty
+            HashMap<Integer, HashMap<String, Integer>> fileDistribution = this.createEvenDistribution(random, this.dstores - this.changed);
+            for(int i = this.dstores - this.changed; i < this.dstores; i++){
+                fileDistribution.put(BASE_PORT + i, new HashMap<String, Integer>());
+            }
+            return fileDistribution;
+        }
+
+        // LOSS //
+        else if(scenario.equals("loss")){
+            // files spread over every dstore, and then the lost dstores removed
+            HashMap<Integer, HashMap<String, Integer>> fileDistribution = this.createEvenDistribution(random, this.dstores + this.changed);
+            for(int i = this.dstores; i < this.dstores + this.changed; i++){
+                fileDistribution.remove(BASE_PORT + i);
+            }
+            return fileDistribution;
+        }
+
+        // Unrecognised //
+        else{
+            throw new IllegalArgumentException("Unknown scenario '" + scenario + "'.");
+        }
+    }
+
+    /**
+     * Creates a distribution where each file is stored on R Dstores chosen at random.
+     *
+     * @param random The source of randomness for the distribution.
+     * @param skewed Whether Dstore i is chosen 1 / (i + 1) as often as the first (true), or
+     * every Dstore is equally likely to be chosen (false).
+     * @return The file distribution as a mapping of Dstore to the files it stores.
+     */
+    private HashMap<Integer, HashMap<String, Integer>> createRandomDistribution(Random random, boolean skewed){
+        HashMap<Integer, HashMap<String, Integer>> fileDistribution = this.createDstores(this.dstores);
+
+        // cumulative weight of each dstore
+        double[] cumulativeWeights = new double[this.dstores];
+        double totalWeight = 0;
+        for(int i = 0; i < this.dstores; i++){
+            totalWeight += skewed ? (1.0 / (i + 1)) : 1.0;
+            cumulativeWeights[i] = totalWeight;
+        }
+
+        // placing each file on R different dstores
+        for(int file = 0; file < this.files; file++){
+            String filename = "file" + file;
+            int filesize = RebalanceSimulator.getFileSize(random);
+
+            HashSet<Integer> chosen = new HashSet<Integer>();
+            while(chosen.size() < this.r){
+                chosen.add(RebalanceSimulator.search(cumulativeWeights, random.nextDouble() * totalWeight));
+            }
+            for(int dstore : chosen){
+                fileDistribution.get(BASE_PORT + dstore).put(filename, filesize);
+            }
+        }
+
+        return fileDistribution;
+    }
+
+    /**
+     * Creates a distribution where the replicas of each file are placed round-robin over
+     * the provided number of Dstores (i.e., the files are stored evenly).
+     *
+     * @param random The source of randomness for the file sizes.
+     * @param dstores The number of Dstores the files are spread over.
+     * @return The file distribution as a mapping of Dstore to the files it stores.
+     */
+    private HashMap<Integer, HashMap<String, Integer>> createEvenDistribution(Random random, int dstores){
+        HashMap<Integer, HashMap<String, Integer>> fileDistribution = this.createDstores(dstores);
+
+        for(int file = 0; file < this.files; file++){
+            String filename = "file" + file;
+            int filesize = RebalanceSimulator.getFileSize(random);
+
+            for(int replica = 0; replica < this.r; replica++){
+                fileDistribution.get(BASE_PORT + ((file + replica) % dstores)).put(filename, filesize);
+            }
+        }
+
+        return fileDistribution;
+    }
+
+    /**
+     * Creates a distribution of the provided number of Dstores that store no files.
+     *
+     * @param dstores The number of Dstores.
+     * @return The file distribution as a mapping of Dstore to the files it stores.
+     */
+    private HashMap<Integer, HashMap<String, Integer>> createDstores(int dstores){
+        HashMap<Integer, HashMap<String, Integer>> fileDistribution = new HashMap<Integer, HashMap<String, Integer>>();
+        for(int i = 0; i < dstores; i++){
+            fileDistribution.put(BASE_PORT + i, new HashMap<String, Integer>());
+        }
+
+        return fileDistribution;
+    }
+
+    ////////////////
+    // VALIDATION //
+    ////////////////
+
+    /**
+     * Carries out the planned rebalance on a copy of the original distribution, and checks
+     * that the plan is valid.
+     *
+     * Files are sent before any are removed, and Dstores send files from what they stored
+     * before the rebalance, as Dstores do when handling a REBALANCE message.
+     *
+     * @param original The file distribution before the rebalance.
+     * @param rebalancedSystem The planned rebalance (null if no rebalance was needed).
+     * @return The violations found (empty if the plan is valid).
+     */
+    private ArrayList<String> validate(HashMap<Integer, HashMap<String, Integer>> original, RebalancedSystem rebalancedSystem){
+        ArrayList<String> violations = new ArrayList<String>();
+
+        // copying the original distribution
+        HashMap<Integer, HashMap<String, Integer>> result = new HashMap<Integer, HashMap<String, Integer>>();
+        for(Integer dstore : original.keySet()){
+            result.put(dstore, new HashMap<String, Integer>(original.get(dstore)));
+        }
+
+        // CARRYING OUT THE PLAN //
+
+        if(rebalancedSystem != null){
+            HashMap<Integer, RebalanceInformation> rebalanceInformation = rebalancedSystem.getRebalanceInformation();
+
+            // sending files
+            for(Integer dstore : rebalanceInformation.keySet()){
+                for(FileToSend fileToSend : rebalanceInformation.get(dstore).getFilesToSend()){
+                    if(!original.get(dstore).containsKey(fileToSend.filename)){
+                        violations.add("Dstore " + dstore + " sends '" + fileToSend.filename + "' which it does not store.");
+                        continue;
+                    }
+
+                    for(int target : fileToSend.dStores){
+                        if(!result.containsKey(target)){
+                            violations.add("'" + fileToSend.filename + "' is sent to unknown Dstore " + target + ".");
+                        }
+                        else if(result.get(target).containsKey(fileToSend.filename)){
+                            violations.add("'" + fileToSend.filename + "' is sent to Dstore " + target + " which already stores it.");
+                        }
+                        else{
+                            result.get(target).put(fileToSend.filename, fileToSend.filesize);
+                        }
+                    }
+                }
+            }
+
+            // removing files
+            for(Integer dstore : rebalanceInformation.keySet()){
+                for(String fileToRemove : rebalanceInformation.get(dstore).getFilesToRemove()){
+                    if(!original.get(dstore).containsKey(fileToRemove)){
+                        violations.add("Dstore " + dstore + " removes '" + fileToRemove + "' which it did not store.");
+                    }
+                    result.get(dstore).remove(fileToRemove);
+                }
+            }
+
+            // result must be what the rebalancer planned
+            if(!result.equals(rebalancedSystem.getSystem().getFileDistribution())){
+                violations.add("Carrying out the plan does not produce the planned distribution.");
+            }
+        }
+
+        // CHECKING INVARIANTS //
+
+        // every file is replicated R times
+        HashMap<String, Integer> replicas = new HashMap<String, Integer>();
+        for(HashMap<String, Integer> files : result.values()){
+            for(String file : files.keySet()){
+                replicas.merge(file, 1, Integer::sum);
+            }
+        }
+        for(String file : replicas.keySet()){
+            if(replicas.get(file) != this.r){
+                violations.add("'" + file + "' is replicated " + replicas.get(file) + " times.");
+            }
+        }
+
+        // files are stored evenly
+        if(!new DS.Controller.Rebalancer.System(this.r, result, this.balanceMode).filesStoredEvenly()){
+            violations.add("Files are not stored evenly.");
+        }
+
+        return violations;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Returns a random file size (a power of two between 1KB and 1MB).
+     *
+     * @param random The source of randomness.
+     * @return The file size in bytes.
+     */
+    private static int getFileSize(Random random){
+        return 1 << (MIN_FILESIZE_POWER + random.nextInt(MAX_FILESIZE_POWER - MIN_FILESIZE_POWER + 1));
+    }
+
+    /**
+     * Finds the index of the first cumulative weight greater than the provided value.
+     *
+     * @param cumulativeWeights The cumulative weights (ascending).
+     * @param value The value being searched for.
+     * @return The index of the first weight greater than the value.
+     */
+    private static int search(double[] cumulativeWeights, double value){
+        int low = 0;
+        int high = cumulativeWeights.length - 1;
+        while(low < high){
+            int middle = (low + high) / 2;
+            if(cumulativeWeights[middle] > value){
+                high = middle;
+            }
+            else{
+                low = middle + 1;
+            }
+        }
+
+        return low;
+    }
+
+    /////////////////
+    // MAIN METHOD //
+    /////////////////
+
+    /**
+     * Main method - runs the simulation using the command line parameters.
+     *
+     * @param args Parameters for the simulation.
+     */
+    public static void main(String[] args){
+        try{
+            // gathering parameters
+            String scenario = (args.length > 0) ? args[0] : "all";
+            int files = (args.length > 1) ? Integer.parseInt(args[1]) : 10000;
+            int dstores = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+            int r = (args.length > 3) ? Integer.parseInt(args[3]) : 3;
+            int changed = (args.length > 4) ? Integer.parseInt(args[4]) : 1;
+            int runs = (args.length > 5) ? Integer.parseInt(args[5]) : 3;
+            BalanceMode balanceMode = (args.length > 6) ? BalanceMode.fromString(args[6]) : BalanceMode.FILES;
+            long seed = (args.length > 7) ? Long.parseLong(args[7]) : 2207;
+
+            // running the simulation
+            String[] scenarios = scenario.equals("all") ? SCENARIOS : new String[]{scenario};
+            new RebalanceSimulator(files, dstores, r, changed, runs, balanceMode, seed).run(scenarios);
+        }
+        catch(Exception e){
+            System.out.println("Unable to run simulation : " + e.toString());
+        }
+    }
+}
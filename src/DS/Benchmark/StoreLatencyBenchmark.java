@@ -0,0 +1,310 @@
+package DS.Benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+
+import DS.Controller.Controller;
+import DS.Controller.ControllerOptions;
+import DS.DSClient.DSClient;
+import DS.Dstore.Dstore;
+import DS.Dstore.DstoreRequestHandler;
+import DS.Protocol.Token.Token;
+import DS.Protocol.Token.TokenType.StoreToken;
+import Network.Connection;
+
+/**
+ * Benchmark that measures the latency of STORE operations under different write quorums.
+ *
+ * For each write quorum (W=1, W=R/2+1 and W=R), a Controller, a set of Dstores and a Client
+ * are started within this process, and the Client stores a sequence of files. One of the Dstores
+ * is a straggler that delays every STORE it receives, to model a slow disk or an overloaded machine.
+ * The median, 99th percentile and maximum STORE latencies seen by the Client are reported for each
+ * write quorum (after a number of unmeasured warm-up stores).
+ *
+ * Usage: StoreLatencyBenchmark [STORES] [FILESIZE] [R] [DSTORES] [DELAY]
+ */
+public class StoreLatencyBenchmark{
+
+    // constants
+    private final static int BASE_PORT = 21000;
+    private final static int TIMEOUT = 2000;
+    private final static int REBALANCE_PERIOD = 1000000; // no periodic rebalancing during the benchmark
+    private final static int WARMUP_STORES = 20; // stores made before measuring (connection setup, JIT)
+
+    // member variables
+    private int stores;
+    private int filesize;
+    private int r;
+    private int dstores;
+    private int stragglerDelay;
+    private File workingFolder;
+
+    /**
+     * Class constructor.
+     *
+     * @param stores The number of files stored for each write quorum.
+     * @param filesize The size of each file in bytes.
+     * @param r The replication factor.
+     * @param dstores The number of Dstores.
+     * @param stragglerDelay The delay added to every STORE by the straggler Dstore (ms).
+     */
+    public StoreLatencyBenchmark(int stores, int filesize, int r, int dstores, int stragglerDelay){
+        // initializing
+        this.stores = stores;
+        this.filesize = filesize;
+        this.r = r;
+        this.dstores = dstores;
+        this.stragglerDelay = stragglerDelay;
+    }
+
+    /////////
+    // RUN //
+    /////////
+
+    /**
+     * Runs the benchmark for each write quorum and prints the results.
+     *
+     * @throws Exception If the benchmark could not be run.
+     */
+    public void run() throws Exception{
+        // creating the files to be stored
+        this.workingFolder = Files.createTempDirectory("ds-store-benchmark").toFile();
+        ArrayList<File> files = this.createFiles();
+
+        // write quorums being compared
+        LinkedHashSet<Integer> quorums = new LinkedHashSet<Integer>();
+        quorums.add(1);
+        quorums.add(this.r / 2 + 1);
+        quorums.add(this.r);
+
+        // printing header
+        System.out.println("STORE latency : " + this.stores + " files of " + this.filesize + " bytes, R=" + this.r + ", "
+                           + this.dstores + " Dstores (1 straggler delayed by " + this.stragglerDelay + "ms)");
+        System.out.println(String.format("%-6s %10s %10s %10s", "W", "p50 (ms)", "p99 (ms)", "max (ms)"));
+
+        // running each write quorum on it's own system
+        int run = 0;
+        for(int quorum : quorums){
+            ArrayList<Double> latencies = this.runQuorum(quorum, BASE_PORT + (run * 100), files);
+            Collections.sort(latencies, Comparator.naturalOrder());
+
+            System.out.println(String.format("%-6s %10.2f %10.2f %10.2f", "W=" + quorum,
+                                             this.getPercentile(latencies, 50),
+                                             this.getPercentile(latencies, 99),
+                                             latencies.get(latencies.size() - 1)));
+            run++;
+        }
+
+        // cleaning up
+        this.deleteFolder(this.workingFolder);
+    }
+
+    /**
+     * Runs the benchmark for a single write quorum.
+     *
+     * @param quorum The write quorum of the Controller.
+     * @param port The port of the Controller (Dstores listen on the following ports).
+     * @param files The files to be stored.
+     * @return The latency of each STORE operation in milliseconds.
+     * @throws Exception If the system could not be started or a STORE failed.
+     */
+    private ArrayList<Double> runQuorum(int quorum, int port, ArrayList<File> files) throws Exception{
+        // CONTROLLER //
+
+        ControllerOptions options = new ControllerOptions();
+        options.setWriteQuorum(quorum);
+        BenchmarkInterface controllerInterface = new BenchmarkInterface();
+        Controller controller = new Controller(port, this.r, TIMEOUT, REBALANCE_PERIOD, options, controllerInterface);
+        this.startServer(() -> controllerInterface.startNetworkProcess(controller));
+        Thread.sleep(200);
+
+        // DSTORES //
+
+        for(int i = 1; i <= this.dstores; i++){
+            BenchmarkInterface dstoreInterface = new BenchmarkInterface();
+            String folder = this.workingFolder.getPath() + File.separatorChar + port + "-" + i;
+            Dstore dstore = new Dstore(port + i, port, TIMEOUT, folder, dstoreInterface);
+
+            // first dstore is the straggler
+            if(i == 1){
+                dstore.setRequestHandler(new StragglerRequestHandler(dstore, this.stragglerDelay));
+            }
+
+            this.startServer(() -> dstoreInterface.startNetworkProcess(dstore));
+        }
+
+        // waiting for the dstores to join
+        while(controller.getIndex().getDstores().size() < this.dstores){
+            Thread.sleep(10);
+        }
+        Thread.sleep(500);
+
+        // CLIENT //
+
+        BenchmarkInterface clientInterface = new BenchmarkInterface();
+        DSClient client = new DSClient(port, TIMEOUT, clientInterface);
+        clientInterface.startNetworkProcess(client);
+
+        // storing the files
+        ArrayList<Double> latencies = new ArrayList<Double>();
+        for(int i = 0; i < files.size(); i++){
+            long start = System.nanoTime();
+            client.storeFile(files.get(i), this.filesize);
+            long end = System.nanoTime();
+
+            // recording latency of measured stores
+            if(i >= WARMUP_STORES){
+                latencies.add((end - start) / 1000000.0);
+            }
+        }
+
+        // stopping the system
+        controller.close();
+
+        // returning the latencies
+        return latencies;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Starts a server process on a new thread.
+     *
+     * @param runnable The runnable that starts the server.
+     */
+    private void startServer(Runnable runnable){
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Creates the files that will be stored by the benchmark.
+     *
+     * @return The list of files.
+     * @throws Exception If the files could not be created.
+     */
+    private ArrayList<File> createFiles() throws Exception{
+        ArrayList<File> files = new ArrayList<File>();
+        File folder = new File(this.workingFolder, "files");
+        folder.mkdir();
+
+        byte[] content = new byte[this.filesize];
+        for(int i = 0; i < this.stores + WARMUP_STORES; i++){
+            File file = new File(folder, "file" + i);
+            FileOutputStream fileOutput = new FileOutputStream(file);
+            fileOutput.write(content);
+            fileOutput.close();
+            files.add(file);
+        }
+
+        return files;
+    }
+
+    /**
+     * Gathers the provided percentile of a sorted list of latencies (nearest-rank).
+     *
+     * @param latencies The sorted list of latencies.
+     * @param percentile The percentile (0 - 100).
+     * @return The latency at the percentile.
+     */
+    private double getPercentile(ArrayList<Double> latencies, int percentile){
+        int rank = (int) Math.ceil((percentile / 100.0) * latencies.size());
+        return latencies.get(Math.max(rank - 1, 0));
+    }
+
+    /**
+     * Deletes the provided folder and it's contents.
+     *
+     * @param folder The folder to be deleted.
+     */
+    private void deleteFolder(File folder){
+        File[] contents = folder.listFiles();
+        if(contents != null){
+            for(File file : contents){
+                this.deleteFolder(file);
+            }
+        }
+        folder.delete();
+    }
+
+    //////////////////////
+    // STRAGGLER DSTORE //
+    //////////////////////
+
+    /**
+     * Request handler for a Dstore that is slow to store files.
+     */
+    private static class StragglerRequestHandler extends DstoreRequestHandler{
+
+        // member variables
+        private int delay;
+
+        /**
+         * Class constructor.
+         *
+         * @param dstore The Dstore associated with the request handler.
+         * @param delay The delay added to each STORE request (ms).
+         */
+        public StragglerRequestHandler(Dstore dstore, int delay){
+            super(dstore);
+            this.delay = delay;
+        }
+
+        /**
+         * Handles a given request, delaying STORE requests.
+         *
+         * @param connection The connection associated with the request.
+         * @param request Tokenized request to be handled.
+         */
+        @Override
+        public void handleRequestAux(Connection connection, Token request){
+            if(request instanceof StoreToken){
+                try{
+                    Thread.sleep(this.delay);
+                }
+                catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            super.handleRequestAux(connection, request);
+        }
+    }
+
+    /////////////////
+    // MAIN METHOD //
+    /////////////////
+
+    /**
+     * Main method - runs the benchmark using the command line parameters.
+     *
+     * @param args Parameters for the benchmark.
+     */
+    public static void main(String[] args){
+        try{
+            // gathering parameters
+            int stores = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+            int filesize = (args.length > 1) ? Integer.parseInt(args[1]) : 1024;
+            int r = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+            int dstores = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+            int delay = (args.length > 4) ? Integer.parseInt(args[4]) : 50;
+
+            // running the benchmark
+            new StoreLatencyBenchmark(stores, filesize, r, dstores, delay).run();
+        }
+        catch(Exception e){
+            System.out.println("Unable to run benchmark : " + e.toString());
+        }
+
+        // stopping any remaining connection threads
+        System.exit(0);
+    }
+}
@@ -1,7 +1,11 @@
 package DS.Controller;
 
+import java.util.ArrayList;
+
 import DS.Controller.Index.*;
 import DS.Controller.Rebalancer.Rebalancer;
+import DS.Controller.Repairer.Repairer;
+import DS.Protocol.PartitionMap;
 import DS.Protocol.Exception.*;
 import Network.NetworkInterface;
 import Network.Protocol.Event.HandeledNetworkEvent;
@@ -21,9 +25,13 @@ public class Controller extends Server{
     private int minDstores;
     private int timeout;
     private int rebalancePeriod;
+    private ControllerOptions options;
+    private PartitionMap partitionMap;
     private NetworkInterface networkInterface; 
     private volatile Index index;
     private volatile Rebalancer rebalancer;
+    private volatile Repairer repairer;
+    private RequestRateMonitor requestRateMonitor;
 
     /**
      * Class constructor.
@@ -35,15 +43,41 @@ public class Controller extends Server{
      * @param networkInterface The NetworkInterface associated with the controller.
      */
     public Controller(int port, int r, int timeout, int rebalancePeriod, NetworkInterface networkInterface){
+        this(port, r, timeout, rebalancePeriod, new ControllerOptions(), networkInterface);
+    }
+
+    /**
+     * Class constructor.
+     * 
+     * @param port The port the controller should listen on.
+     * @param minDstores The number of data stores to replicate files across.
+     * @param timeout The timeout length for communication.
+     * @param rebalancePeriod The rebalance period.
+     * @param options The optional settings for the controller.
+     * @param networkInterface The NetworkInterface associated with the controller.
+     * @throws IllegalArgumentException If the Controller's partitions do not include its
+     * own port.
+     */
+    public Controller(int port, int r, int timeout, int rebalancePeriod, ControllerOptions options, NetworkInterface networkInterface) throws IllegalArgumentException{
         // initializing new member variables
         super(ServerType.CONTROLLER, port, networkInterface);
+
+        // controller must own one of the partitions it is given
+        if(!options.getPartitions().isEmpty() && !options.getPartitions().contains(port)){
+            throw new IllegalArgumentException("Invalid partitions " + options.getPartitions() + " (must include the Controller's port " + port + ").");
+        }
+
         this.port = port;
         this.minDstores = r;
         this.timeout = timeout;
         this.rebalancePeriod = rebalancePeriod;
+        this.options = options;
+        this.partitionMap = new PartitionMap(options.getPartitions());
         this.networkInterface = networkInterface;
         this.index = new Index(this);
         this.rebalancer = new Rebalancer(this);
+        this.repairer = new Repairer(this);
+        this.requestRateMonitor = new RequestRateMonitor();
         this.setRequestHandler(new ControllerRequestHandler(this));
     }
 
@@ -62,6 +96,9 @@ public class Controller extends Server{
         try{
             // starting rebalance thread
             this.rebalancer.start();
+
+            // starting repair thread
+            this.repairer.start();
         }
         catch(Exception e){
             throw new ServerSetupException(ServerType.CONTROLLER, e);
@@ -104,6 +141,12 @@ public class Controller extends Server{
 
             for(DstoreIndex dstore : this.index.getDstores()){
                 if(dstore.getConnection() == exception.getConnection()){
+                    // gathering the files that have lost a replica
+                    ArrayList<String> lostReplicas = new ArrayList<String>();
+                    for(DstoreFile file : dstore.getFiles()){
+                        lostReplicas.add(file.getFilename());
+                    }
+
                     // removing the dstore from the index
                     this.index.removeDstore(exception.getConnection());
 
@@ -113,13 +156,11 @@ public class Controller extends Server{
                     // logging the disconnect
                     this.getNetworkInterface().logError(new HandeledNetworkException(new DstoreDisconnectException(dstore.getPort(), exception)));
 
-                    // rebalancing
-                    try{
-                        this.getRebalancer().rebalance();
-                    }
-                    catch(NetworkException e){
-                        this.handleError(new RebalanceFailureException(e));
-                    }
+                    // restoring the lost replicas (ahead of the rebalance)
+                    this.getRepairer().queueRepairs(lostReplicas);
+
+                    // rebalancing (coalesced with other membership changes)
+                    this.getRebalancer().requestRebalance();
 
                     return; // nothing else to do
                 }
@@ -186,6 +227,29 @@ public class Controller extends Server{
         return this.rebalancePeriod;
     }
 
+    /**
+     * Returns the number of Dstores that must acknowledge a STORE before it is
+     * reported as complete to the Client.
+     * 
+     * @return The write quorum of the Controller (at most the replication factor).
+     */
+    public int getWriteQuorum(){
+        // no quorum provided - waiting for all Dstores
+        if(this.options.getWriteQuorum() == 0){
+            return this.minDstores;
+        }
+
+        return Math.min(this.options.getWriteQuorum(), this.minDstores);
+    }
+
+    public ControllerOptions getOptions(){
+        return this.options;
+    }
+
+    public PartitionMap getPartitionMap(){
+        return this.partitionMap;
+    }
+
     public Index getIndex(){
         return this.index;
     }
@@ -193,4 +257,12 @@ public class Controller extends Server{
     public Rebalancer getRebalancer(){
         return this.rebalancer;
     }
+
+    public Repairer getRepairer(){
+        return this.repairer;
+    }
+
+    public RequestRateMonitor getRequestRateMonitor(){
+        return this.requestRateMonitor;
+    }
 }
\ No newline at end of file
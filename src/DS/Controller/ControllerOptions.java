@@ -0,0 +1,316 @@
+package DS.Controller;
+
+import java.util.ArrayList;
+
+import DS.Controller.Rebalancer.System.BalanceMode;
+
+/**
+ * Stores the optional settings of a Controller.
+ *
+ * Options are provided on the command line after the required parameters
+ * in the form 'name=value' (e.g., 'partitions=4000,4001'). Any option that
+ * is not provided keeps its default value.
+ */
+public class ControllerOptions{
+
+    // constants
+    private final static String SEPARATOR = "=";
+    private final static String LIST_SEPARATOR = ",";
+
+    // option names
+    public final static String PARTITIONS = "partitions";
+    public final static String WRITE_QUORUM = "w";
+    public final static String LEASE = "lease";
+    public final static String VERIFY = "verify";
+    public final static String RATE = "rate";
+    public final static String BALANCE = "balance";
+    public final static String DEBOUNCE = "debounce";
+    public final static String BUSY = "busy";
+    public final static String DEFER = "defer";
+    public final static String IMBALANCE = "imbalance";
+    public final static String REPAIRS = "repairs";
+    public final static String BATCH = "batch";
+
+    // member variables
+    private ArrayList<Integer> partitions;
+    private int writeQuorum; // 0 = all R Dstores
+    private int leasePeriod; // ms, 0 = locations not leased
+    private int verifyPeriod; // rebalance periods between full LISTs
+    private long rebalanceRate; // bytes per second, 0 = Dstores use their own limit
+    private BalanceMode balanceMode;
+    private int debounceWindow; // ms without a rebalance request before one is run
+    private double busyRate; // client requests per second above which balancing is deferred, 0 = never deferred
+    private int maxDeferral; // ms a rebalance can be deferred for
+    private double imbalanceThreshold; // imbalance (in the balance mode) that triggers a rebalance when quiet, 0 = never triggered
+    private int repairs; // files repaired at once after losing replicas, 0 = left to the rebalance
+    private int rebalanceBatch; // files sent to a dstore per rebalance message
+
+    /**
+     * Class constructor.
+     *
+     * Creates a set of options that all have their default value.
+     */
+    public ControllerOptions(){
+        // initializing defaults
+        this.partitions = new ArrayList<Integer>();
+        this.writeQuorum = 0;
+        this.leasePeriod = 0;
+        this.verifyPeriod = 10;
+        this.rebalanceRate = 0;
+        this.balanceMode = BalanceMode.FILES;
+        this.debounceWindow = 500;
+        this.busyRate = 0;
+        this.maxDeferral = 60000;
+        this.imbalanceThreshold = 1.0;
+        this.repairs = 2;
+        this.rebalanceBatch = 1000;
+    }
+
+    /////////////
+    // PARSING //
+    /////////////
+
+    /**
+     * Creates a ControllerOptions object from the provided command line arguments.
+     *
+     * @param args The command line arguments.
+     * @param offset The index of the first optional argument.
+     * @return The ControllerOptions described by the arguments.
+     * @throws IllegalArgumentException If one of the options is not recognised or is
+     * not of the correct form.
+     */
+    public static ControllerOptions fromArgs(String[] args, int offset) throws IllegalArgumentException{
+        ControllerOptions options = new ControllerOptions();
+
+        // parsing each option
+        for(int i = offset; i < args.length; i++){
+            // splitting option into name and value
+            String[] option = args[i].split(ControllerOptions.SEPARATOR, 2);
+            if(option.length != 2){
+                throw new IllegalArgumentException("Invalid option '" + args[i] + "'.");
+            }
+            String name = option[0];
+            String value = option[1];
+
+            // PARTITIONS //
+            if(name.equals(ControllerOptions.PARTITIONS)){
+                for(String port : value.split(ControllerOptions.LIST_SEPARATOR)){
+                    options.partitions.add(Integer.parseInt(port));
+                }
+            }
+
+            // WRITE QUORUM //
+            else if(name.equals(ControllerOptions.WRITE_QUORUM)){
+                options.writeQuorum = Integer.parseInt(value);
+
+                // quorum must contain at least one Dstore
+                if(options.writeQuorum < 1){
+                    throw new IllegalArgumentException("Invalid write quorum '" + value + "' (must be at least 1).");
+                }
+            }
+
+            // LEASE //
+            else if(name.equals(ControllerOptions.LEASE)){
+                options.leasePeriod = Integer.parseInt(value);
+
+                // lease cannot be negative
+                if(options.leasePeriod < 0){
+                    throw new IllegalArgumentException("Invalid lease period '" + value + "' (must not be negative).");
+                }
+            }
+
+            // VERIFY //
+            else if(name.equals(ControllerOptions.VERIFY)){
+                options.verifyPeriod = Integer.parseInt(value);
+
+                // must verify at some point
+                if(options.verifyPeriod < 1){
+                    throw new IllegalArgumentException("Invalid verify period '" + value + "' (must be at least 1).");
+                }
+            }
+
+            // RATE //
+            else if(name.equals(ControllerOptions.RATE)){
+                options.rebalanceRate = Long.parseLong(value);
+
+                // rate cannot be negative
+                if(options.rebalanceRate < 0){
+                    throw new IllegalArgumentException("Invalid rebalance rate '" + value + "' (must not be negative).");
+                }
+            }
+
+            // BALANCE //
+            else if(name.equals(ControllerOptions.BALANCE)){
+                options.balanceMode = BalanceMode.fromString(value);
+            }
+
+            // DEBOUNCE //
+            else if(name.equals(ControllerOptions.DEBOUNCE)){
+                options.debounceWindow = Integer.parseInt(value);
+
+                // window cannot be negative
+                if(options.debounceWindow < 0){
+                    throw new IllegalArgumentException("Invalid debounce window '" + value + "' (must not be negative).");
+                }
+            }
+
+            // BUSY //
+            else if(name.equals(ControllerOptions.BUSY)){
+                options.busyRate = Double.parseDouble(value);
+
+                // rate cannot be negative
+                if(options.busyRate < 0){
+                    throw new IllegalArgumentException("Invalid busy rate '" + value + "' (must not be negative).");
+                }
+            }
+
+            // DEFER //
+            else if(name.equals(ControllerOptions.DEFER)){
+                options.maxDeferral = Integer.parseInt(value);
+
+                // deferral cannot be negative
+                if(options.maxDeferral < 0){
+                    throw new IllegalArgumentException("Invalid maximum deferral '" + value + "' (must not be negative).");
+                }
+            }
+
+            // IMBALANCE //
+            else if(name.equals(ControllerOptions.IMBALANCE)){
+                options.imbalanceThreshold = Double.parseDouble(value);
+
+                // threshold cannot be negative
+                if(options.imbalanceThreshold < 0){
+                    throw new IllegalArgumentException("Invalid imbalance threshold '" + value + "' (must not be negative).");
+                }
+            }
+
+            // REPAIRS //
+            else if(name.equals(ControllerOptions.REPAIRS)){
+                options.repairs = Integer.parseInt(value);
+
+                // repairs cannot be negative
+                if(options.repairs < 0){
+                    throw new IllegalArgumentException("Invalid number of repairs '" + value + "' (must not be negative).");
+                }
+            }
+
+            // BATCH //
+            else if(name.equals(ControllerOptions.BATCH)){
+                options.rebalanceBatch = Integer.parseInt(value);
+
+                // must be at least one file per batch
+                if(options.rebalanceBatch < 1){
+                    throw new IllegalArgumentException("Invalid rebalance batch size '" + value + "' (must be at least 1).");
+                }
+            }
+
+            // Unrecognised //
+            else{
+                throw new IllegalArgumentException("Unknown option '" + name + "'.");
+            }
+        }
+
+        // returning the options
+        return options;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public ArrayList<Integer> getPartitions(){
+        return this.partitions;
+    }
+
+    public void setPartitions(ArrayList<Integer> partitions){
+        this.partitions = partitions;
+    }
+
+    public int getWriteQuorum(){
+        return this.writeQuorum;
+    }
+
+    public void setWriteQuorum(int writeQuorum){
+        this.writeQuorum = writeQuorum;
+    }
+
+    public int getLeasePeriod(){
+        return this.leasePeriod;
+    }
+
+    public void setLeasePeriod(int leasePeriod){
+        this.leasePeriod = leasePeriod;
+    }
+
+    public int getVerifyPeriod(){
+        return this.verifyPeriod;
+    }
+
+    public void setVerifyPeriod(int verifyPeriod){
+        this.verifyPeriod = verifyPeriod;
+    }
+
+    public long getRebalanceRate(){
+        return this.rebalanceRate;
+    }
+
+    public void setRebalanceRate(long rebalanceRate){
+        this.rebalanceRate = rebalanceRate;
+    }
+
+    public BalanceMode getBalanceMode(){
+        return this.balanceMode;
+    }
+
+    public void setBalanceMode(BalanceMode balanceMode){
+        this.balanceMode = balanceMode;
+    }
+
+    public int getDebounceWindow(){
+        return this.debounceWindow;
+    }
+
+    public void setDebounceWindow(int debounceWindow){
+        this.debounceWindow = debounceWindow;
+    }
+
+    public double getBusyRate(){
+        return this.busyRate;
+    }
+
+    public void setBusyRate(double busyRate){
+        this.busyRate = busyRate;
+    }
+
+    public int getMaxDeferral(){
+        return this.maxDeferral;
+    }
+
+    public void setMaxDeferral(int maxDeferral){
+        this.maxDeferral = maxDeferral;
+    }
+
+    public double getImbalanceThreshold(){
+        return this.imbalanceThreshold;
+    }
+
+    public void setImbalanceThreshold(double imbalanceThreshold){
+        this.imbalanceThreshold = imbalanceThreshold;
+    }
+
+    public int getRepairs(){
+        return this.repairs;
+    }
+
+    public void setRepairs(int repairs){
+        this.repairs = repairs;
+    }
+
+    public int getRebalanceBatch(){
+        return this.rebalanceBatch;
+    }
+
+    public void setRebalanceBatch(int rebalanceBatch){
+        this.rebalanceBatch = rebalanceBatch;
+    }
+}
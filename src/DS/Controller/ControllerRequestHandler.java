@@ -3,12 +3,15 @@ package DS.Controller;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import DS.Controller.Index.DstoreIndex;
 import DS.Controller.Index.State.OperationState;
 import DS.Protocol.Protocol;
 import DS.Protocol.Event.Operation.ListCompleteEvent;
 import DS.Protocol.Event.Operation.LoadCompleteEvent;
 import DS.Protocol.Event.Operation.RemoveCompleteEvent;
+import DS.Protocol.Event.Operation.ReplicateCompleteEvent;
 import DS.Protocol.Event.Operation.StoreCompleteEvent;
+import DS.Protocol.Event.Repair.FilesLostEvent;
 import DS.Protocol.Exception.*;
 import DS.Protocol.Token.*;
 import DS.Protocol.Token.TokenType.*;
@@ -41,6 +44,18 @@ public class ControllerRequestHandler extends RequestHandler{
     // MAIN //
     //////////
 
+    /**
+     * Determines if the provided request is a client operation (STORE, LOAD, RELOAD,
+     * REMOVE or LIST), and so counts towards the load on the system.
+     * 
+     * @param request The request being checked.
+     * @return True if the request is a client operation, false if not.
+     */
+    private boolean isClientRequest(Token request){
+        return (request instanceof StoreToken || request instanceof LoadToken || request instanceof ReloadToken 
+                || request instanceof RemoveToken || request instanceof ListToken);
+    }
+
     /**
      * Handles a given request.
      * 
@@ -48,6 +63,11 @@ public class ControllerRequestHandler extends RequestHandler{
      * @param request Tokenized request to be handled.
      */
     public void handleRequestAux(Connection connection, Token request){
+        // measuring client load
+        if(this.isClientRequest(request)){
+            this.controller.getRequestRateMonitor().recordRequest();
+        }
+
         // handling request
         try{
             // JOIN_DSTORE
@@ -121,7 +141,20 @@ public class ControllerRequestHandler extends RequestHandler{
 
             // REBALANCE COMPLETE
             else if(request instanceof RebalanceCompleteToken){
-                this.handleRebalanceCompleteRequest(connection);
+                RebalanceCompleteToken rebalanceCompleteToken = (RebalanceCompleteToken) request;
+                this.handleRebalanceCompleteRequest(connection, rebalanceCompleteToken.rebalance);
+            }
+
+            // REPLICATE_COMPLETE
+            else if(request instanceof ReplicateCompleteToken){
+                ReplicateCompleteToken replicateCompleteToken = (ReplicateCompleteToken) request;
+                this.handleReplicateCompleteRequest(connection, replicateCompleteToken.filename);
+            }
+
+            // FILES_LOST
+            else if(request instanceof FilesLostToken){
+                FilesLostToken filesLostToken = (FilesLostToken) request;
+                this.handleFilesLostRequest(connection, filesLostToken.filenames);
             }
 
             // Invalid Request
@@ -161,6 +194,12 @@ public class ControllerRequestHandler extends RequestHandler{
                     // sending error message to client
                     connection.sendMessage(Protocol.getErrorLoadMessage());
                 }
+                // File in another partition
+                else if(e instanceof WrongPartitionException){
+                    // sending error message to client
+                    WrongPartitionException exception = (WrongPartitionException) e;
+                    connection.sendMessage(Protocol.getErrorWrongPartitionMessage(exception.getController()));
+                }
             }
             catch(MessageSendException ex){
                 this.controller.handleError(ex);
@@ -189,8 +228,8 @@ public class ControllerRequestHandler extends RequestHandler{
         // sending JOIN_ACK to Dstore
         connection.sendMessage(Protocol.getJoinAckMessage());
 
-        // rebalancing system
-        this.controller.getRebalancer().rebalance();
+        // rebalancing system (coalesced with other membership changes)
+        this.controller.getRebalancer().requestRebalance();
     }
 
     /////////////////
@@ -200,6 +239,9 @@ public class ControllerRequestHandler extends RequestHandler{
     /**
      * Handles a JOIN_CLIENT request.
      * 
+     * The JOIN_ACK sent back to the client carries the partition map when
+     * the namespace is partitioned across several Controllers.
+     * 
      * @param connection The connection the request came from.
      * @param request The request token.
      */
@@ -211,7 +253,7 @@ public class ControllerRequestHandler extends RequestHandler{
         this.controller.handleEvent(new ServerConnectionEvent(ClientType.CLIENT, connection.getPort()));
 
         // sending JOIN_ACK to Client
-        connection.sendMessage(Protocol.getJoinAckMessage());
+        connection.sendMessage(Protocol.getJoinAckMessage(this.controller.getPartitionMap().getControllers()));
     }
 
     ///////////////////////////
@@ -239,6 +281,10 @@ public class ControllerRequestHandler extends RequestHandler{
     /**
      * Handles a request to store a file in the system.
      * 
+     * STORE_COMPLETE is sent to the Client once the Controller's write quorum of Dstores
+     * have acknowledged the store. Any Dstores that missed the quorum are then brought up 
+     * to date in the background of the request.
+     * 
      * @param connection The connection associated with the request.
      * @param filename The name of the file being stored.
      * @param filesize The size of the file being stored.
@@ -246,22 +292,29 @@ public class ControllerRequestHandler extends RequestHandler{
      * @throws FileAlreadyExistsException If there is already a file under this name in the Index.
      * @throws MessageSendException If a message could not be sent through the connection.
      * @throws OperationTimeoutException If the store operation did not complete within the Controller timeout period.
+     * @throws WrongPartitionException If the file does not belong to this Controller's partition.
      */
     public void handleStoreRequest(Connection connection, String filename, int filesize) throws Exception{
+        // making sure the file is in this controller's partition
+        this.checkPartition(filename);
+
         // starting to store the file
         ArrayList<Integer> dstores = this.controller.getIndex().startStoring(filename, filesize);
 
         // sending the message to the client
         connection.sendMessage(Protocol.getStoreToMessage(dstores));
 
-        // waiting for the store to be complete
-        this.controller.getIndex().waitForFileState(filename, OperationState.STORE_ACK_RECIEVED, this.controller.getTimeout());
+        // waiting for the write quorum to acknowledge the store
+        this.controller.getIndex().waitForStoreQuorum(filename, this.controller.getWriteQuorum(), this.controller.getTimeout());
 
         // store complete, sending STORE_COMPLETE message to Client
         connection.sendMessage(Protocol.getStoreCompleteMessage());
 
         // logging
         this.controller.handleEvent(new StoreCompleteEvent(filename, filesize));
+
+        // making sure all replicas of the file are stored
+        this.catchUpReplicas(filename, filesize);
     }
 
     /**
@@ -281,6 +334,11 @@ public class ControllerRequestHandler extends RequestHandler{
     /**
      * Handles a LOAD request.
      * 
+     * When the Controller leases file locations, the LOAD_FROM sent to the Client also
+     * contains the lease period and every Dstore the file can be loaded from, so that 
+     * the Client can load the file again without contacting the Controller until the 
+     * lease expires.
+     * 
      * @param connection The connection associated with the request.
      * @param filename The name of the file being loaded.
      * @throws NotEnoughDstoresException If there are not enough Dstores connected to the Controller to handle the request.
@@ -288,16 +346,28 @@ public class ControllerRequestHandler extends RequestHandler{
      * @throws NoValidDstoresException If there are no valid Dstores remaining to load the file form 
      * (exhausted all possible Dstores).
      * @throws MessageSendException If a message could not be sent through the connection.
+     * @throws WrongPartitionException If the file does not belong to this Controller's partition.
      */
     private void handleLoadRequest(Connection connection, String filename, boolean isReload) throws Exception{
-        // getting the dstore to store on
+        // making sure the file is in this controller's partition
+        this.checkPartition(filename);
+
+        // getting the dstore to store on (once the file has finished being moved by a rebalance)
         int dstoreToLoadFrom = this.controller.getIndex().getDstoreToLoadFrom(connection, filename, isReload);
 
         // getting the file size
         int filesize = this.controller.getIndex().getFileSize(filename);
 
         // sending LOAD_FROM to the Client
-        connection.sendMessage(Protocol.getLoadFromMessage(dstoreToLoadFrom, filesize));
+        int lease = this.controller.getOptions().getLeasePeriod();
+        if(lease > 0){
+            // locations of the file are leased
+            ArrayList<Integer> locations = this.controller.getIndex().getFileLocations(filename, dstoreToLoadFrom);
+            connection.sendMessage(Protocol.getLoadFromMessage(dstoreToLoadFrom, filesize, lease, locations));
+        }
+        else{
+            connection.sendMessage(Protocol.getLoadFromMessage(dstoreToLoadFrom, filesize));
+        }
 
         // logging
         this.controller.handleEvent(new LoadCompleteEvent(filename));
@@ -318,10 +388,14 @@ public class ControllerRequestHandler extends RequestHandler{
      * @throws FileDoesNotExist If there is no file in the index with this name.
      * @throws MessageSendException If a message could not be sent through the connection.
      * @throws OperationTimeoutException If the remove operation did not complete within the Controller timeout period.
+     * @throws WrongPartitionException If the file does not belong to this Controller's partition.
      */
     private void handleRemoveRequest(Connection connection, String filename) throws Exception{
-        // starting to remove the file
-        ArrayList<Connection> dstores = this.controller.getIndex().startRemoving(filename);
+        // making sure the file is in this controller's partition
+        this.checkPartition(filename);
+
+        // starting to remove the file (once it has finished being moved by a rebalance)
+        ArrayList<Connection> dstores = this.controller.getIndex().startRemoving(filename, this.controller.getTimeout());
 
         // looping through Dstores
         for(Connection dstore : dstores){
@@ -379,11 +453,24 @@ public class ControllerRequestHandler extends RequestHandler{
     /**
      * Handles the reception of a list of files from a Dstore (rebalancing).
      * 
+     * Copies of files that have been removed from the system are removed from the Dstore
+     * rather than being added back into the index.
+     * 
      * @param connection The connection associated with the message.
      * @param files The list of files provided in the message.
      */
     private void handleListFilesRequest(Connection connection, HashMap<String, Integer> files){
-        this.controller.getIndex().rebalanceListRecieved(connection, files);
+        ArrayList<String> removedFiles = this.controller.getIndex().rebalanceListRecieved(connection, files);
+
+        // removing the stale copies from the dstore
+        for(String filename : removedFiles){
+            try{
+                connection.sendMessage(Protocol.getRemoveMessage(filename));
+            }
+            catch(NetworkException e){
+                this.controller.handleError(e);
+            }
+        }
     }
 
     /**
@@ -392,8 +479,113 @@ public class ControllerRequestHandler extends RequestHandler{
      * @param connection The connection the message was received from.
      * @param files The list of files receieved in the message.
      */
-    private void handleRebalanceCompleteRequest(Connection connection){
-        this.controller.getIndex().rebalanceCompleteReceived(connection);
+    private void handleRebalanceCompleteRequest(Connection connection, int rebalance){
+        this.controller.getIndex().rebalanceCompleteReceived(connection, rebalance);
+    }
+
+    //////////////////////
+    // REPLICA CATCH-UP //
+    //////////////////////
+
+    /**
+     * Makes sure that every Dstore chosen to store a file ends up with a replica of it.
+     * 
+     * Waits for the Dstores that missed the write quorum to acknowledge the store, and 
+     * has the file copied onto any that still have not once the timeout passes. Failures
+     * are logged rather than thrown, as the Client has already been told the store is complete, 
+     * and the file is left to be repaired by the next rebalance.
+     * 
+     * @param filename The name of the file.
+     * @param filesize The size of the file in bytes.
+     */
+    private void catchUpReplicas(String filename, int filesize){
+        try{
+            // waiting for the remaining Dstores to acknowledge the store
+            ArrayList<Integer> laggingDstores = this.controller.getIndex().waitForPendingReplicas(filename, this.controller.getTimeout());
+
+            // all replicas stored
+            if(laggingDstores.isEmpty()){
+                return;
+            }
+
+            // starting the replication
+            ArrayList<Integer> targets = this.controller.getIndex().startReplicaRepair(filename, laggingDstores, this.controller.getTimeout());
+            if(targets.isEmpty()){
+                return;
+            }
+
+            // sending REPLICATE to a Dstore that stores the file
+            Connection source = this.controller.getIndex().getDstoresStoredOn(filename).get(0).getConnection();
+            source.sendMessage(Protocol.getReplicateMessage(filename, filesize, targets));
+
+            // waiting for the replication to be complete
+            this.controller.getIndex().waitForReplicaRepair(filename, this.controller.getTimeout());
+
+            // logging
+            this.controller.handleEvent(new ReplicateCompleteEvent(filename, targets));
+        }
+        catch(Exception e){
+            // file may be missing replicas - left to the next rebalance
+            this.controller.getIndex().getChanges().markFile(filename);
+
+            this.controller.handleError(new ReplicateFailureException(filename, e));
+        }
+    }
+
+    /**
+     * Handles the reception of a REPLICATE_COMPLETE message from a Dstore.
+     * 
+     * @param connection The connection the message was received from.
+     * @param filename The name of the file that was replicated.
+     */
+    private void handleReplicateCompleteRequest(Connection connection, String filename){
+        this.controller.getIndex().replicateCompleteRecieved(connection, filename);
+    }
+
+    ////////////////
+    // FILES LOST //
+    ////////////////
+
+    /**
+     * Handles the reception of a FILES_LOST message from a Dstore (e.g., one of its folders
+     * has failed).
+     * 
+     * Only the lost files are repaired and rebalanced - the Dstore keeps the rest of its
+     * files.
+     * 
+     * @param connection The connection the message was received from.
+     * @param filenames The names of the files the Dstore has lost.
+     */
+    private void handleFilesLostRequest(Connection connection, ArrayList<String> filenames){
+        DstoreIndex dstore = this.controller.getIndex().getIndexFromConnection(connection);
+        ArrayList<String> lostReplicas = this.controller.getIndex().filesLostRecieved(connection, filenames);
+
+        // logging
+        if(dstore != null){
+            this.controller.handleEvent(new FilesLostEvent(dstore.getPort(), lostReplicas.size()));
+        }
+
+        // restoring the lost replicas (ahead of the rebalance)
+        this.controller.getRepairer().queueRepairs(lostReplicas);
+
+        // rebalancing the lost files
+        this.controller.getRebalancer().requestRebalance();
+    }
+
+    ////////////////
+    // PARTITIONS //
+    ////////////////
+
+    /**
+     * Checks that the provided file belongs to the partition owned by this Controller.
+     * 
+     * @param filename The name of the file being checked.
+     * @throws WrongPartitionException If the file belongs to another Controller's partition.
+     */
+    private void checkPartition(String filename) throws WrongPartitionException{
+        if(!this.controller.getPartitionMap().ownsFile(this.controller.getPort(), filename)){
+            throw new WrongPartitionException(filename, this.controller.getPartitionMap().getController(filename));
+        }
     }
 
     /////////////
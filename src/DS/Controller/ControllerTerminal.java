@@ -24,9 +24,10 @@ public class ControllerTerminal extends NetworkInterface{
      * @param r The number of data stores to replicate files across.
      * @param timeout The timeout length for communication.
      * @param rebalancePeriod The rebalance period.
+     * @param options The optional settings for the controller.
      */
-    public ControllerTerminal(int port, int r, int timeout, int rebalancePeriod){
-        this.controller = new Controller(port, r, timeout, rebalancePeriod, this);
+    public ControllerTerminal(int port, int r, int timeout, int rebalancePeriod, ControllerOptions options){
+        this.controller = new Controller(port, r, timeout, rebalancePeriod, options, this);
 
         // starting Controller
         this.startNetworkProcess(this.controller); // start  it on seperate thread
@@ -101,12 +102,13 @@ public class ControllerTerminal extends NetworkInterface{
             int r = Integer.parseInt(args[1]);
             int timeout = Integer.parseInt(args[2]);
             int rebalancePeriod = Integer.parseInt(args[3]);
+            ControllerOptions options = ControllerOptions.fromArgs(args, 4);
 
             // Creating new DStore instance
-            ControllerTerminal controller = new ControllerTerminal(cPort, r, timeout, rebalancePeriod);
+            ControllerTerminal controller = new ControllerTerminal(cPort, r, timeout, rebalancePeriod, options);
         }
         catch(Exception e){
-            System.out.println("Unable to create Controller.");
+            System.out.println("Unable to create Controller. " + e.toString());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package DS.Controller.Index;
+
+import java.util.HashSet;
+
+/**
+ * Records the parts of the system that have changed since the last rebalance.
+ *
+ * Dstores are marked dirty when their list of files may no longer match the
+ * Index (e.g., they have just joined, or a STORE or REMOVE on them timed out), and
+ * so must be sent a LIST during the next rebalance. Files are marked dirty when their
+ * replicas may have changed (e.g., a Dstore storing them left the system, or a replica
+ * could not be copied). A rebalance is only required when something is dirty.
+ *
+ * Methods are synchronized as Dstores and files are marked by the threads serving
+ * requests while the Rebalancer is reading the set.
+ */
+public class DirtySet{
+
+    // member variables
+    private HashSet<Integer> dstores;
+    private HashSet<String> files;
+    private boolean membershipChanged;
+    private boolean verificationRequired;
+
+    /**
+     * Class constructor.
+     *
+     * Creates an empty (clean) set.
+     */
+    public DirtySet(){
+        // initializing
+        this.dstores = new HashSet<Integer>();
+        this.files = new HashSet<String>();
+        this.membershipChanged = false;
+        this.verificationRequired = false;
+    }
+
+    /////////////
+    // MARKING //
+    /////////////
+
+    /**
+     * Marks the provided Dstore as dirty.
+     *
+     * @param dstore The port of the Dstore.
+     */
+    public synchronized void markDstore(int dstore){
+        this.dstores.add(dstore);
+    }
+
+    /**
+     * Marks the provided file as dirty.
+     *
+     * @param filename The name of the file.
+     */
+    public synchronized void markFile(String filename){
+        this.files.add(filename);
+    }
+
+    /**
+     * Marks the set of Dstores in the system as having changed (a Dstore has
+     * joined or left).
+     */
+    public synchronized void markMembershipChanged(){
+        this.membershipChanged = true;
+    }
+
+    /**
+     * Marks the whole system as dirty, so that the next rebalance gathers the
+     * list of files from every Dstore.
+     */
+    public synchronized void markVerificationRequired(){
+        this.verificationRequired = true;
+    }
+
+    /////////////////
+    // REBALANCING //
+    /////////////////
+
+    /**
+     * Takes the contents of the set, leaving it clean.
+     *
+     * Changes made after the set is taken are recorded for the following rebalance.
+     *
+     * @return A DirtySet containing the changes recorded up to this point.
+     */
+    public synchronized DirtySet take(){
+        DirtySet changes = new DirtySet();
+        changes.dstores = this.dstores;
+        changes.files = this.files;
+        changes.membershipChanged = this.membershipChanged;
+        changes.verificationRequired = this.verificationRequired;
+
+        // clearing this set
+        this.dstores = new HashSet<Integer>();
+        this.files = new HashSet<String>();
+        this.membershipChanged = false;
+        this.verificationRequired = false;
+
+        return changes;
+    }
+
+    /**
+     * Adds the provided changes back into this set (e.g., after a rebalance failed
+     * to complete).
+     *
+     * @param changes The changes being added.
+     */
+    public synchronized void merge(DirtySet changes){
+        this.dstores.addAll(changes.dstores);
+        this.files.addAll(changes.files);
+        this.membershipChanged |= changes.membershipChanged;
+        this.verificationRequired |= changes.verificationRequired;
+    }
+
+    /**
+     * Determines if nothing has changed.
+     *
+     * @return True if no Dstores or files are dirty, false otherwise.
+     */
+    public synchronized boolean isClean(){
+        return (this.dstores.isEmpty() && this.files.isEmpty() && !this.membershipChanged && !this.verificationRequired);
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public synchronized HashSet<Integer> getDstores(){
+        return new HashSet<Integer>(this.dstores);
+    }
+
+    public synchronized HashSet<String> getFiles(){
+        return new HashSet<String>(this.files);
+    }
+
+    public synchronized boolean hasFiles(){
+        return !this.files.isEmpty();
+    }
+
+    public synchronized boolean hasMembershipChanged(){
+        return this.membershipChanged;
+    }
+
+    public synchronized boolean isVerificationRequired(){
+        return this.verificationRequired;
+    }
+
+    public synchronized String toString(){
+        return (this.dstores.size() + " Dstore(s) and " + this.files.size() + " file(s) changed");
+    }
+}
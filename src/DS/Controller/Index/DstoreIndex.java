@@ -1,6 +1,9 @@
 package DS.Controller.Index;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import DS.Controller.Index.State.OperationState;
@@ -68,6 +71,56 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
         }
     }
 
+    /**
+     * Merges the list of files reported by the Dstore (LIST) into the index.
+     * 
+     * Files being operated on, or that have changed since the list was requested, keep
+     * their entry. Other (IDLE) files are removed if the Dstore did not report them, and 
+     * files the Dstore reported that the index did not know of are added as IDLE, unless
+     * they have been removed from the system.
+     * 
+     * @param listedFiles The files reported by the Dstore, mapped to their filesize.
+     * @param changedFiles The files that have changed since the list was requested.
+     * @param removedFiles The files that have been removed from the system.
+     * @return The listed files that have been removed from the system (and so need to be
+     * removed from the Dstore).
+     */
+    public ArrayList<String> mergeFiles(HashMap<String, Integer> listedFiles, Set<String> changedFiles, Set<String> removedFiles){
+        ArrayList<DstoreFile> mergedFiles = new ArrayList<DstoreFile>();
+        HashSet<String> knownFiles = new HashSet<String>();
+        ArrayList<String> staleFiles = new ArrayList<String>();
+
+        // keeping the files the index knows of
+        for(DstoreFile file : this.files){
+            knownFiles.add(file.getFilename());
+
+            if(file.getState() != OperationState.IDLE || changedFiles.contains(file.getFilename()) || listedFiles.containsKey(file.getFilename())){
+                mergedFiles.add(file);
+            }
+        }
+
+        // adding the files the index did not know of
+        for(String filename : listedFiles.keySet()){
+            if(!knownFiles.contains(filename) && !changedFiles.contains(filename)){
+                // copy of a removed file (e.g., left by a move) - not adopted
+                if(removedFiles.contains(filename)){
+                    staleFiles.add(filename);
+                    continue;
+                }
+
+                DstoreFile dstoreFile = new DstoreFile(filename, listedFiles.get(filename));
+                dstoreFile.setState(OperationState.IDLE);
+
+                mergedFiles.add(dstoreFile);
+            }
+        }
+
+        // replacing the list in one step
+        this.files = new CopyOnWriteArrayList<DstoreFile>(mergedFiles);
+
+        return staleFiles;
+    }
+
     ////////////////////
     // HELPER METHODS //
     ////////////////////
@@ -149,6 +202,10 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
         return null;
     }
 
+    public void setFiles(ArrayList<DstoreFile> files){
+        this.files = new CopyOnWriteArrayList<DstoreFile>(files);
+    }
+
     public void setFiles(HashMap<String, Integer> files){
         // clearing old files
         this.files.clear();
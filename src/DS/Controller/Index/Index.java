@@ -4,13 +4,18 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import DS.Controller.Controller;
 import DS.Controller.Index.State.OperationState;
 import DS.Controller.Index.State.RebalanceState;
+import DS.Controller.Rebalancer.RebalanceInformation;
+import DS.Controller.Rebalancer.System.BalanceMode;
+import DS.Protocol.Event.Rebalance.RebalanceCheckpointEvent;
 import DS.Protocol.Exception.*;
+import DS.Protocol.Token.TokenType.FileToSend;
 import Network.Connection;
 import Network.Client.Client.ClientType;
 import Network.Protocol.Event.ServerConnectionEvent;
@@ -26,14 +31,45 @@ import Network.Protocol.Exception.NetworkException;
  * 
  * Methods are syncrhonized and properties are volatile to support concurrent access
  * that may occur as the Controller serves requests from multiple Clients concurrently.
+ * 
+ * When the Controller uses a write quorum smaller than the replication factor, Dstores
+ * that had not acknowledged a STORE when the quorum was reached are removed from the
+ * file's entry and recorded as pending replicas. They are added back when their
+ * STORE_ACK arrives late, or when a replica is copied onto them by another Dstore.
+ * 
+ * The Index also records the Dstores and files that have changed since the last 
+ * rebalance (Dstores joining and leaving, and STOREs, REMOVEs and replica copies that
+ * did not complete), so that the Rebalancer only needs to audit what has changed.
+ * 
+ * Rebalances run alongside client requests. Only the files being moved by a rebalance 
+ * are fenced (REMOVEs of them wait for the Dstores moving them to finish), files that are 
+ * stored or removed while a rebalance is in progress are left out of it, and the index 
+ * is switched over to the rebalanced distribution one Dstore at a time, as each Dstore 
+ * completes its rebalance instructions. When some Dstores do not complete their instructions 
+ * in time, the instructions that were completed are kept, and only the unfinished Dstores 
+ * are audited by the next rebalance.
  */
 public class Index {
 
+    // constants
+    private final static int PENDING_REPLICA_POLL_INTERVAL = 10; // ms
+    private final static int MOVE_POLL_INTERVAL = 10; // ms
+
     // member variables
     private Controller controller;
     private volatile CopyOnWriteArrayList<DstoreIndex> dstores;
     private volatile int minDstores;
     private volatile ConcurrentHashMap<Connection, ConcurrentHashMap<String, CopyOnWriteArrayList<Integer>>> loadRecord;
+    private volatile ConcurrentHashMap<String, CopyOnWriteArrayList<Integer>> pendingReplicas;
+    private volatile ConcurrentHashMap<String, CopyOnWriteArrayList<Integer>> replicaRepairs;
+    private volatile DirtySet changes;
+    private volatile boolean rebalancing;
+    private volatile Set<String> rebalanceChangedFiles; // files stored/removed during the current rebalance
+    private volatile Set<String> fencedFiles; // files being moved by the current rebalance
+    private volatile HashMap<String, Integer> fenceHolders; // fenced file -> dstores that have not completed their instructions for it
+    private volatile Set<String> removedFiles; // files removed from the system (and not stored since)
+    private volatile ConcurrentHashMap<Integer, RebalanceInformation> rebalanceInstructions; // instructions sent to dstores that have not completed them
+    private volatile int rebalanceRound; // the rebalance the instructions belong to
 
     /**
      * Class constructor.
@@ -46,6 +82,16 @@ public class Index {
         this.minDstores = controller.getMinDstores();
         this.dstores = new CopyOnWriteArrayList<DstoreIndex>();
         this.loadRecord = new ConcurrentHashMap<Connection, ConcurrentHashMap<String, CopyOnWriteArrayList<Integer>>>();
+        this.pendingReplicas = new ConcurrentHashMap<String, CopyOnWriteArrayList<Integer>>();
+        this.replicaRepairs = new ConcurrentHashMap<String, CopyOnWriteArrayList<Integer>>();
+        this.changes = new DirtySet();
+        this.rebalancing = false;
+        this.rebalanceChangedFiles = ConcurrentHashMap.newKeySet();
+        this.fencedFiles = ConcurrentHashMap.newKeySet();
+        this.fenceHolders = new HashMap<String, Integer>();
+        this.removedFiles = ConcurrentHashMap.newKeySet();
+        this.rebalanceInstructions = new ConcurrentHashMap<Integer, RebalanceInformation>();
+        this.rebalanceRound = 0;
     }
 
 
@@ -75,6 +121,10 @@ public class Index {
         // adding the dstore to the list of dstores
         this.dstores.add(new DstoreIndex(port, connection));
 
+        // dstore may have joined with files already in it's store
+        this.changes.markDstore(port);
+        this.changes.markMembershipChanged();
+
         // logging
         this.controller.handleEvent(new ServerConnectionEvent(ClientType.DSTORE, port));
 
@@ -95,8 +145,24 @@ public class Index {
      * @param port The port of the Dstore to be removed from the system (listen port).
      */
     public synchronized void removeDstore(Connection dstore){
+        DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+
+        // files on the dstore have lost a replica
+        if(dstoreIndex != null){
+            for(DstoreFile file : dstoreIndex.getFiles()){
+                this.changes.markFile(file.getFilename());
+            }
+            this.changes.markMembershipChanged();
+
+            // dstore will not complete its rebalance instructions
+            RebalanceInformation instructions = this.rebalanceInstructions.remove(dstoreIndex.getPort());
+            if(instructions != null){
+                this.abandonRebalanceInstructions(instructions);
+            }
+        }
+
         // removing the Dstore from the list of Dstores
-        this.dstores.remove(this.getIndexFromConnection(dstore));
+        this.dstores.remove(dstoreIndex);
     }
 
 
@@ -171,6 +237,12 @@ public class Index {
             this.getIndexFromPort(port).addFile(filename, filesize);
         }
 
+        // file is no longer removed
+        this.removedFiles.remove(filename);
+
+        // leaving the file out of any rebalance in progress
+        this.recordRebalanceChange(filename);
+
         // returning the list of dstores the file needs to be stored on
         return dstoresToStoreOn;
     }
@@ -182,8 +254,287 @@ public class Index {
      * @param filename The filename referenced by the STORE_ACK.
      */
     public synchronized void storeAckRecieved(Connection dstore, String filename){
-        // updatiing the dstore index
-        this.getIndexFromConnection(dstore).updateFileState(filename, OperationState.STORE_ACK_RECIEVED);
+        // gathering the dstore index
+        DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+
+        // Dstore missed the write quorum - adding it back to the file's entry
+        CopyOnWriteArrayList<Integer> pendingDstores = this.pendingReplicas.get(filename);
+        if(pendingDstores != null && pendingDstores.contains(dstoreIndex.getPort())){
+            // Dstore is no longer pending
+            pendingDstores.remove((Integer) dstoreIndex.getPort());
+            if(pendingDstores.isEmpty()){
+                this.pendingReplicas.remove(filename);
+            }
+
+            // adding the replica to the index
+            this.addReplica(dstoreIndex, filename);
+        }
+        // Dstore is part of an ongoing store
+        else{
+            // updatiing the dstore index
+            dstoreIndex.updateFileState(filename, OperationState.STORE_ACK_RECIEVED);
+        }
+    }
+
+    /**
+     * Waits for the provided number of Dstores to have acknowledged the storing of the
+     * given file. Will only wait for the provided amount of time.
+     * 
+     * Once the quorum is reached, the file becomes IDLE on the Dstores that acknowledged it, 
+     * and the remaining Dstores are recorded as pending replicas of the file.
+     * 
+     * @param filename The name of the file being stored.
+     * @param quorum The number of Dstores that must acknowledge the store.
+     * @param timeout The timeout for the tracking.
+     * @throws NetworkTimeoutException If the quorum of acknowledgements is not reached within the timeout.
+     */
+    public void waitForStoreQuorum(String filename, int quorum, int timeout) throws Exception{
+
+        // Waiting for Quorum of Acknowledgements //
+
+        long timeoutStamp = System.currentTimeMillis() + timeout;
+
+        while(this.getStoreAckCount(filename) < quorum){
+            if(System.currentTimeMillis() < timeoutStamp){
+                Thread.onSpinWait();
+            }
+            else{
+                // timeout occured
+                this.handleOperationTimeout(filename, OperationState.STORE_ACK_RECIEVED);
+
+                // throwing exception
+                throw new NetworkTimeoutException(filename, OperationState.STORE_ACK_RECIEVED);
+            }
+        }
+
+        // Quorum Reached Within Timeout //
+
+        this.handleStoreQuorumReached(filename);
+    }
+
+    /**
+     * Updates the index to reflect the write quorum having been reached for the given file.
+     * 
+     * @param filename The name of the file that reached it's write quorum.
+     */
+    private synchronized void handleStoreQuorumReached(String filename){
+        ArrayList<Integer> laggingDstores = new ArrayList<Integer>();
+
+        for(DstoreIndex dstore : this.getDstoresStoredOn(filename)){
+            // Dstore acknowledged the store - file is now idle
+            if(dstore.getFile(filename).getState() == OperationState.STORE_ACK_RECIEVED){
+                dstore.updateFileState(filename, OperationState.IDLE);
+            }
+            // Dstore has not acknowledged the store yet - file is pending on the Dstore
+            else{
+                dstore.removeFile(filename);
+                laggingDstores.add(dstore.getPort());
+            }
+        }
+
+        // recording the pending replicas
+        if(!laggingDstores.isEmpty()){
+            this.pendingReplicas.put(filename, new CopyOnWriteArrayList<Integer>(laggingDstores));
+        }
+    }
+
+    /**
+     * Gathers the number of Dstores that have acknowledged the storing of the given file.
+     * 
+     * @param filename The name of the file being stored.
+     * @return The number of Dstores that have sent a STORE_ACK for the file.
+     */
+    private synchronized int getStoreAckCount(String filename){
+        int count = 0;
+
+        for(DstoreIndex dstore : this.getDstoresStoredOn(filename)){
+            if(dstore.getFile(filename).getState() == OperationState.STORE_ACK_RECIEVED){
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    //////////////////////
+    // REPLICA CATCH-UP //
+    //////////////////////
+
+    /**
+     * Waits for the pending replicas of the given file to acknowledge the store. Will only wait 
+     * for the provided amount of time.
+     * 
+     * The wait happens after the Client has been answered, so the index is polled at an interval
+     * rather than spun on, to leave the processor free for requests that are still in progress.
+     * 
+     * @param filename The name of the file.
+     * @param timeout The timeout for the tracking.
+     * @return The list of Dstores that still had not acknowledged the store after the timeout 
+     * (empty if all replicas caught up).
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public ArrayList<Integer> waitForPendingReplicas(String filename, int timeout) throws InterruptedException{
+
+        long timeoutStamp = System.currentTimeMillis() + timeout;
+
+        // waiting for the pending replicas to acknowledge the store
+        while(this.pendingReplicas.containsKey(filename) && System.currentTimeMillis() < timeoutStamp){
+            Thread.sleep(Index.PENDING_REPLICA_POLL_INTERVAL);
+        }
+
+        // gathering the remaining pending replicas
+        return this.takePendingReplicas(filename);
+    }
+
+    /**
+     * Removes the pending replicas of the given file from the index.
+     * 
+     * @param filename The name of the file.
+     * @return The list of Dstores that were pending replicas of the file (empty if there were none).
+     */
+    private synchronized ArrayList<Integer> takePendingReplicas(String filename){
+        CopyOnWriteArrayList<Integer> pendingDstores = this.pendingReplicas.remove(filename);
+
+        // no pending replicas
+        if(pendingDstores == null){
+            return new ArrayList<Integer>();
+        }
+
+        return new ArrayList<Integer>(pendingDstores);
+    }
+
+    /**
+     * Starts the process of copying the given file onto the provided Dstores.
+     * 
+     * Waits for the file to finish being moved by a rebalance first, and leaves the file 
+     * out of any rebalance in progress, as the rebalance was planned on its old replicas.
+     * 
+     * @param filename The name of the file being replicated.
+     * @param dstores The Dstores the file should be copied onto.
+     * @param timeout The maximum time to wait for the file to finish being moved by a rebalance.
+     * @return The Dstores the file will be copied onto (those that are still connected
+     * and do not already store the file), or an empty list if the file is already being 
+     * copied.
+     * @throws FileDoesNotExistException If the file is not stored within the Index, or is 
+     * currently being operated on.
+     * @throws NetworkTimeoutException If the file is still being moved by a rebalance once the timeout passes.
+     */
+    public synchronized ArrayList<Integer> startReplicaRepair(String filename, ArrayList<Integer> dstores, int timeout) throws Exception{
+        // waiting for the file to finish being moved by a rebalance
+        this.waitForFileUnfenced(filename, timeout);
+
+        // ERROR CHECKING //
+
+        // file does not exist
+        if((!this.hasFile(filename) || !this.fileHasState(filename, OperationState.IDLE))){
+            throw new FileDoesNotExistException(filename);
+        }
+
+        // file already being copied
+        if(this.replicaRepairs.containsKey(filename)){
+            return new ArrayList<Integer>();
+        }
+
+        // CHECKS COMPLETE //
+
+        // gathering the dstores that still need the file
+        ArrayList<Integer> targets = new ArrayList<Integer>();
+        for(int port : dstores){
+            DstoreIndex dstore = this.getIndexFromPort(port);
+
+            if(dstore != null && !dstore.hasFile(filename)){
+                targets.add(port);
+            }
+        }
+
+        // recording the repair
+        if(!targets.isEmpty()){
+            this.replicaRepairs.put(filename, new CopyOnWriteArrayList<Integer>(targets));
+
+            // leaving the file out of any rebalance in progress
+            this.recordRebalanceChange(filename);
+        }
+
+        // returning the targets
+        return targets;
+    }
+
+    /**
+     * Updates the index after a REPLICATE_COMPLETE was recieved from a Dstore.
+     * 
+     * @param dstore The connection to the Dstore the REPLICATE_COMPLETE was recieved from.
+     * @param filename The name of the file that was replicated.
+     */
+    public synchronized void replicateCompleteRecieved(Connection dstore, String filename){
+        // gathering the dstores the file was copied to
+        CopyOnWriteArrayList<Integer> targets = this.replicaRepairs.remove(filename);
+
+        // repair no longer tracked (e.g., file was removed)
+        if(targets == null || !this.hasFile(filename)){
+            return;
+        }
+
+        // adding the replicas to the index
+        for(int port : targets){
+            DstoreIndex target = this.getIndexFromPort(port);
+
+            if(target != null){
+                this.addReplica(target, filename);
+            }
+        }
+    }
+
+    /**
+     * Waits for the copying of the given file to be completed. Will only wait for the 
+     * provided amount of time.
+     * 
+     * @param filename The name of the file being replicated.
+     * @param timeout The timeout for the tracking.
+     * @throws NetworkTimeoutException If the copy is not completed within the timeout.
+     */
+    public void waitForReplicaRepair(String filename, int timeout) throws NetworkTimeoutException{
+        
+        long timeoutStamp = System.currentTimeMillis() + timeout;
+
+        // waiting for the REPLICATE_COMPLETE
+        while(this.replicaRepairs.containsKey(filename)){
+            if(System.currentTimeMillis() < timeoutStamp){
+                Thread.onSpinWait();
+            }
+            else{
+                // timeout occured - no longer tracking the repair
+                CopyOnWriteArrayList<Integer> targets = this.replicaRepairs.remove(filename);
+
+                // file is missing replicas, and the targets may hold part of it
+                if(targets != null){
+                    for(int port : targets){
+                        this.changes.markDstore(port);
+                    }
+                }
+                this.changes.markFile(filename);
+
+                // throwing exception
+                throw new NetworkTimeoutException(filename, OperationState.REPLICATE_COMPLETE);
+            }
+        }
+    }
+
+    /**
+     * Adds an IDLE replica of the given file to the provided Dstore.
+     * 
+     * @param dstore The Dstore the replica is stored on.
+     * @param filename The name of the file.
+     */
+    private synchronized void addReplica(DstoreIndex dstore, String filename){
+        // file no longer in the system, or already on the dstore
+        if(!this.hasFile(filename) || dstore.hasFile(filename)){
+            return;
+        }
+
+        // adding the file to the dstore
+        int filesize = this.getDstoresStoredOn(filename).get(0).getFile(filename).getFilesize();
+        dstore.addFile(filename, filesize);
+        dstore.updateFileState(filename, OperationState.IDLE);
     }
 
     ///////////////////
@@ -195,6 +546,12 @@ public class Index {
      * 
      * @param connection The connection to the Client that sent the LOAD request.
      * @param filename The name of the file being requested.
+     * Files being moved by a rebalance are not fenced for loading - the copies they are 
+     * moved from stay valid until they are removed, and a copy that has been removed is 
+     * covered by a RELOAD.
+     * 
+     * @param connection The connection to the Client that sent the LOAD request.
+     * @param filename The name of the file being requested.
      * @param isReload Boolean representing if this load operation is a LOAD or RELOAD.
      * @return The Dstore the file should be loaded from.
      * @throws NotEnoughDstoresException If there are not enough Dstores connected to the controller to handle the request.
@@ -283,6 +640,29 @@ public class Index {
         }
     }
 
+    /**
+     * Gathers the ports of the Dstores that the provided file can be loaded from.
+     * 
+     * @param filename The name of the file.
+     * @param firstPort The port to be placed at the start of the list (i.e., the Dstore
+     * selected to load from).
+     * @return The ports of the Dstores the file is IDLE on, starting with the provided port.
+     */
+    public synchronized ArrayList<Integer> getFileLocations(String filename, int firstPort){
+        ArrayList<Integer> ports = new ArrayList<Integer>();
+        ports.add(firstPort);
+
+        // adding the other dstores the file is stored on
+        for(DstoreIndex dstore : this.getDstoresStoredOn(filename)){
+            if(dstore.getPort() != firstPort && dstore.getFile(filename).getState() == OperationState.IDLE){
+                ports.add(dstore.getPort());
+            }
+        }
+
+        // returning the ports
+        return ports;
+    }
+
     /**
      * Gathers the size of a file stored in the Index.
      * 
@@ -315,10 +695,15 @@ public class Index {
      * Starts the process of removing a give file from the system by updating the system index.
      * 
      * @param file The file being removed.
+     * @param timeout The maximum time to wait for the file to finish being moved by a rebalance.
      * @throws NotEnoughDstoresException If there are not enough Dstores connected to the controller to handle the request.
      * @throws FileDoesNotExistException If the file being requested is not stored within the Index.
+     * @throws NetworkTimeoutException If the file is still being moved by a rebalance once the timeout passes.
      */
-    public synchronized ArrayList<Connection> startRemoving(String filename) throws Exception{
+    public synchronized ArrayList<Connection> startRemoving(String filename, int timeout) throws Exception{
+
+        // waiting for the file to finish being moved by a rebalance
+        this.waitForFileUnfenced(filename, timeout);
 
         // ERROR CHECKING //
 
@@ -332,6 +717,12 @@ public class Index {
             throw new FileDoesNotExistException(filename);
         }
 
+        // leaving the file out of any rebalance in progress
+        this.recordRebalanceChange(filename);
+
+        // copies of the file found later (e.g., left by a move) are removed rather than adopted
+        this.removedFiles.add(filename);
+
         // getting the list of dstores the file is stored on
         ArrayList<DstoreIndex> dstores = this.getDstoresStoredOn(filename);
         ArrayList<Connection> connections = new ArrayList<Connection>();
@@ -345,6 +736,18 @@ public class Index {
             connections.add(dstore.getConnection());
         }
 
+        // pending replicas of the file also need to remove it
+        for(int port : this.takePendingReplicas(filename)){
+            DstoreIndex dstore = this.getIndexFromPort(port);
+
+            if(dstore != null){
+                connections.add(dstore.getConnection());
+            }
+        }
+
+        // file is no longer being replicated
+        this.replicaRepairs.remove(filename);
+
         // returning the dstores the file is to be removed from
         return connections;
     }
@@ -360,6 +763,44 @@ public class Index {
         this.getIndexFromConnection(dstore).updateFileState(filename, OperationState.REMOVE_ACK_RECIEVED);
     }
 
+    ////////////////
+    // LOST FILES //
+    ////////////////
+
+    /**
+     * Updates the index after a Dstore reported that it has lost some of its files (e.g.,
+     * one of its folders has failed).
+     * 
+     * The files are removed from the Dstore's entry and marked dirty, along with the Dstore,
+     * so that only the lost replicas are restored (the rest of the Dstore's files are left
+     * where they are).
+     * 
+     * @param dstore The connection to the Dstore the FILES_LOST was recieved from.
+     * @param filenames The names of the files the Dstore has lost.
+     * @return The names of the lost files that the index had recorded on the Dstore.
+     */
+    public synchronized ArrayList<String> filesLostRecieved(Connection dstore, ArrayList<String> filenames){
+        ArrayList<String> lostReplicas = new ArrayList<String>();
+        DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+
+        // dstore has left the system
+        if(dstoreIndex == null){
+            return lostReplicas;
+        }
+
+        // removing the lost replicas
+        for(String filename : filenames){
+            if(dstoreIndex.hasFile(filename)){
+                dstoreIndex.removeFile(filename);
+                lostReplicas.add(filename);
+            }
+            this.changes.markFile(filename);
+        }
+        this.changes.markDstore(dstoreIndex.getPort());
+
+        return lostReplicas;
+    }
+
     //////////////////////////
     // OPERATION COMPLETION //
     //////////////////////////
@@ -437,6 +878,9 @@ public class Index {
         if(expectedState == OperationState.STORE_ACK_RECIEVED){
             // removing the file from the index
             for(DstoreIndex dstore : this.getDstoresStoredOn(filename)){
+                // dstore may hold part (or all) of the file
+                this.changes.markDstore(dstore.getPort());
+
                 dstore.removeFile(filename);
             }
         }
@@ -445,9 +889,17 @@ public class Index {
         else if(expectedState == OperationState.REMOVE_ACK_RECIEVED){
             // removing the file from the index
             for(DstoreIndex dstore : this.dstores){
+                // dstore may not have removed the file
+                DstoreFile file = dstore.getFile(filename);
+                if(file != null && file.getState() != OperationState.REMOVE_ACK_RECIEVED){
+                    this.changes.markDstore(dstore.getPort());
+                }
+
                 dstore.removeFile(filename);
             }
         }
+
+        this.changes.markFile(filename);
     }
 
 
@@ -459,17 +911,19 @@ public class Index {
     /**
      * Starts a system rebalance.
      * 
-     * Disables the Controller request handler, waits for the system to become
-     * IDLE and updates the index to REBALANCE_LIST_IN_PROGRESS.
+     * Updates the provided Dstores to REBALANCE_LIST_IN_PROGRESS. The remaining
+     * Dstores are not sent a LIST, and so are updated straight to
+     * REBALANCE_LIST_RECIEVED (their files are taken from the index). Client
+     * requests continue to be served, and files stored or removed from this
+     * point on are recorded so that they can be left out of the rebalance.
      * 
+     * @param dstoresToList The ports of the Dstores that will be sent a LIST.
      * @throws NotEnoughDstoresException If there are not enough Dstores connected
      * to the system to carry out the rebalance operation.
      * @throws RebalanceAlreadyInProgressException If there is already a rebalance 
      * operation in progess.
-     * @throws NetworkTimeoutException If the system does not become idle within
-     * the timeout.
      */
-    public synchronized void startRebalanceList() throws NetworkException{
+    public synchronized void startRebalanceList(HashSet<Integer> dstoresToList) throws NetworkException{
         // ERROR CHECKING //
 
         // not enough dstores
@@ -484,15 +938,18 @@ public class Index {
 
         // CHECKS COMPLETE //
 
-        // disabling controller request handler
-        this.controller.getRequestHandler().disable();
-
-        // waiting for system to be idle
-        this.controller.getIndex().waitForSystemOperationState(OperationState.IDLE, this.controller.getTimeout());
+        // recording the files changed during the rebalance
+        this.rebalanceChangedFiles.clear();
+        this.rebalancing = true;
 
         // updating state of all Dstores in the index
         for(DstoreIndex dstore : this.dstores){
-            dstore.setRebalanceState(RebalanceState.REBALANCE_LIST_IN_PROGRESS);
+            if(dstoresToList.contains(dstore.getPort())){
+                dstore.setRebalanceState(RebalanceState.REBALANCE_LIST_IN_PROGRESS);
+            }
+            else{
+                dstore.setRebalanceState(RebalanceState.REBALANCE_LIST_RECIEVED);
+            }
         }
     }
 
@@ -503,34 +960,348 @@ public class Index {
      * @param dstore The Connection to the Dstore that the LIST was recieved from.
      * @param files A list of filenames mapped to their filesize (the files
      * stored on this Dstore).
+     * @return The listed files that have been removed from the system, and so need to be
+     * removed from the Dstore.
      */
-    public synchronized void rebalanceListRecieved(Connection dstore, HashMap<String, Integer> files){
+    public synchronized ArrayList<String> rebalanceListRecieved(Connection dstore, HashMap<String, Integer> files){
         // updating the dstore index state
         this.getIndexFromConnection(dstore).setRebalanceState(RebalanceState.REBALANCE_LIST_RECIEVED);
 
-        // updating the DstoreIndex for this Dstore
-        this.getIndexFromConnection(dstore).setFiles(files);
+        // updating the DstoreIndex for this Dstore (without losing files being operated on)
+        return this.getIndexFromConnection(dstore).mergeFiles(files, this.rebalanceChangedFiles, this.removedFiles);
     }
 
     /**
-     * Starts the move stage of a system rebalance. Updates the Index
-     * to REBALANCE_MOVE_IN_PROGRESS.
+     * Fences the provided files, so that they are not removed (or repaired) while they are 
+     * being moved by the rebalance. Each file's fence is lifted once every Dstore moving 
+     * it has completed its instructions.
+     * 
+     * @param filenames The names of the files being moved.
+     * @throws RebalanceAbortedException If one of the files has been stored, removed or
+     * is being operated on since the rebalance was planned.
      */
-    public synchronized void startRebalanceMove(){
+    public synchronized void fenceFiles(Set<String> filenames) throws RebalanceAbortedException{
+        // gathering the files that are idle across all dstores
+        HashMap<String, Boolean> idleFiles = this.getIdleFiles();
+
+        // making sure no file has changed
+        for(String filename : filenames){
+            if(!idleFiles.getOrDefault(filename, false) || this.rebalanceChangedFiles.contains(filename)){
+                // file needs to be rebalanced again
+                this.changes.markFile(filename);
+
+                throw new RebalanceAbortedException(filename);
+            }
+        }
+
+        // fencing the files
+        this.fencedFiles.addAll(filenames);
+    }
+
+    /**
+     * Starts the move stage of a system rebalance. Records the instructions sent to each
+     * Dstore, and updates those Dstores to REBALANCE_MOVE_IN_PROGRESS.
+     * 
+     * @param instructions The rebalance instructions for each Dstore, mapped from the 
+     * Dstore's port.
+     * @param rebalance The rebalance the instructions belong to (tags the REBALANCE and 
+     * REBALANCE_COMPLETE messages).
+     */
+    public synchronized void startRebalanceMove(HashMap<Integer, RebalanceInformation> instructions, int rebalance){
+        this.rebalanceInstructions.clear();
+        this.fenceHolders.clear();
+        this.rebalanceRound = rebalance;
+
         // updating index
         for(DstoreIndex dstore : this.dstores){
+            RebalanceInformation dstoreInstructions = instructions.get(dstore.getPort());
+
+            // dstore joined during the rebalance - not part of it
+            if(dstoreInstructions == null){
+                dstore.setRebalanceState(RebalanceState.IDLE);
+                continue;
+            }
+
+            this.rebalanceInstructions.put(dstore.getPort(), dstoreInstructions);
             dstore.setRebalanceState(RebalanceState.REBALANCE_MOVE_IN_PROGRESS);
+
+            // counting the dstores moving each fenced file
+            for(String filename : this.getInstructionFiles(dstoreInstructions)){
+                this.fenceHolders.merge(filename, 1, Integer::sum);
+            }
         }
     }
 
     /**
      * Updates the index after a REBALANCE_COMPLETE message was receieved from a Dstore.
      * 
+     * The instructions the Dstore completed are committed to the index straight away, 
+     * so that they are kept even if other Dstores do not complete theirs. A REBALANCE_COMPLETE
+     * for an earlier rebalance (completed after its timeout) is ignored, so that it cannot 
+     * commit the current rebalance's instructions early.
+     * 
      * @param dstore The Dstore Conectio that the message was receieved from.
+     * @param rebalance The rebalance the Dstore completed (0 if not given).
      */
-    public synchronized void rebalanceCompleteReceived(Connection dstore){
+    public synchronized void rebalanceCompleteReceived(Connection dstore, int rebalance){
+        DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+
+        // completed an earlier rebalance - dstore is audited by the next rebalance
+        if(rebalance != this.rebalanceRound){
+            return;
+        }
+
+        // gathering the dstore's instructions
+        RebalanceInformation instructions = this.rebalanceInstructions.remove(dstoreIndex.getPort());
+
+        // instructions already abandoned (completed after the timeout) - dstore is audited by the next rebalance
+        if(instructions == null){
+            return;
+        }
+
         // updating the dstore index state
-        this.getIndexFromConnection(dstore).setRebalanceState(RebalanceState.REBALANCE_COMPLETE_RECIEVED);
+        dstoreIndex.setRebalanceState(RebalanceState.REBALANCE_COMPLETE_RECIEVED);
+
+        // committing the dstore's instructions
+        this.commitRebalanceInstructions(dstoreIndex, instructions);
+
+        // lifting the fences of the files no other dstore is still moving
+        this.liftFences(instructions);
+
+        // logging
+        this.controller.handleEvent(new RebalanceCheckpointEvent(dstoreIndex.getPort(), instructions.getFilesToSend().size(), instructions.getFilesToRemove().size(), this.rebalanceInstructions.size()));
+    }
+
+    /**
+     * Switches the index over to the result of the provided instructions being completed 
+     * by the provided Dstore: the files it sent are added to the Dstores they were sent to,
+     * and the files it removed are removed from it.
+     * 
+     * Each file is switched in one step. Files that have changed since they were fenced
+     * (e.g., stored or removed by a client) are not switched, and are left to the next 
+     * rebalance.
+     * 
+     * @param dstore The Dstore that completed the instructions.
+     * @param instructions The instructions completed by the Dstore.
+     */
+    private synchronized void commitRebalanceInstructions(DstoreIndex dstore, RebalanceInformation instructions){
+        // adding the files sent by the dstore
+        for(FileToSend fileToSend : instructions.getFilesToSend()){
+            // file changed during the rebalance
+            if(!this.isCommittable(fileToSend.filename)){
+                this.changes.markFile(fileToSend.filename);
+                continue;
+            }
+
+            for(int port : fileToSend.dStores){
+                DstoreIndex target = this.getIndexFromPort(port);
+
+                // target left during the rebalance, or already has the file
+                if(target == null || target.hasFile(fileToSend.filename)){
+                    continue;
+                }
+
+                target.addFile(fileToSend.filename, fileToSend.filesize);
+                target.updateFileState(fileToSend.filename, OperationState.IDLE);
+            }
+        }
+
+        // removing the files removed by the dstore
+        for(String filename : instructions.getFilesToRemove()){
+            // file changed during the rebalance
+            if(!this.isCommittable(filename)){
+                this.changes.markFile(filename);
+                continue;
+            }
+
+            dstore.removeFile(filename);
+        }
+    }
+
+    /**
+     * Lifts the fence of each file in the provided (completed) instructions that no other 
+     * Dstore is still moving, and wakes the operations waiting on them.
+     * 
+     * @param instructions The instructions completed by a Dstore.
+     */
+    private synchronized void liftFences(RebalanceInformation instructions){
+        for(String filename : this.getInstructionFiles(instructions)){
+            Integer holders = this.fenceHolders.get(filename);
+            if(holders == null || holders <= 1){
+                this.fenceHolders.remove(filename);
+                this.fencedFiles.remove(filename);
+            }
+            else{
+                this.fenceHolders.put(filename, holders - 1);
+            }
+        }
+
+        // waking the operations waiting on the fences
+        this.notifyAll();
+    }
+
+    /**
+     * Returns the files sent or removed by the provided instructions.
+     * 
+     * @param instructions The instructions for a Dstore.
+     * @return The names of the files the instructions move.
+     */
+    private HashSet<String> getInstructionFiles(RebalanceInformation instructions){
+        HashSet<String> files = new HashSet<String>(instructions.getFilesToRemove());
+        for(FileToSend fileToSend : instructions.getFilesToSend()){
+            files.add(fileToSend.filename);
+        }
+
+        return files;
+    }
+
+    /**
+     * Determines if the rebalance of the given file can be committed to the index.
+     * 
+     * @param filename The name of the file.
+     * @return True if the file is IDLE and has not been stored or removed during the 
+     * rebalance, false otherwise.
+     */
+    private synchronized boolean isCommittable(String filename){
+        return (this.fileHasState(filename, OperationState.IDLE) && !this.rebalanceChangedFiles.contains(filename));
+    }
+
+    /**
+     * Records the changes left by instructions that were not completed. The Dstores the
+     * files were being sent to (and the files) are marked dirty, so that the next rebalance
+     * audits them.
+     * 
+     * @param instructions The instructions that were not completed.
+     */
+    private synchronized void abandonRebalanceInstructions(RebalanceInformation instructions){
+        for(FileToSend fileToSend : instructions.getFilesToSend()){
+            for(int port : fileToSend.dStores){
+                this.changes.markDstore(port);
+            }
+            this.changes.markFile(fileToSend.filename);
+        }
+        for(String filename : instructions.getFilesToRemove()){
+            this.changes.markFile(filename);
+        }
+    }
+
+    /**
+     * Waits for every Dstore sent rebalance instructions to complete them (or leave the
+     * system). Will only wait for the provided amount of time.
+     * 
+     * Moves take far longer than the other operations, so the instructions are polled at
+     * an interval rather than spun on.
+     * 
+     * @param timeout The maximum time to wait for.
+     * @throws RebalanceIncompleteException If some of the Dstores do not complete their
+     * instructions within the timeout (or the thread is interrupted while waiting).
+     */
+    public void waitForRebalanceMove(int timeout) throws RebalanceIncompleteException{
+
+        long timeoutStamp = System.currentTimeMillis() + timeout;
+
+        // waiting for the dstores to complete their instructions
+        while(!this.rebalanceInstructions.isEmpty()){
+            try{
+                if(System.currentTimeMillis() >= timeoutStamp){
+                    break;
+                }
+                Thread.sleep(Index.MOVE_POLL_INTERVAL);
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        // timeout occured - keeping the completed instructions
+        if(!this.rebalanceInstructions.isEmpty()){
+            throw new RebalanceIncompleteException(this.abandonRebalanceMove());
+        }
+
+        // Rebalance Stage Completed Within Timeout //
+
+        this.handleRebalanceComplete();
+    }
+
+    /**
+     * Abandons the instructions that have not been completed, and marks the Dstores 
+     * that did not complete them dirty.
+     * 
+     * @return The ports of the Dstores that did not complete their instructions.
+     */
+    private synchronized ArrayList<Integer> abandonRebalanceMove(){
+        ArrayList<Integer> unfinishedDstores = new ArrayList<Integer>(this.rebalanceInstructions.keySet());
+
+        // dstores may have carried out part of their instructions
+        for(int port : unfinishedDstores){
+            this.changes.markDstore(port);
+            this.abandonRebalanceInstructions(this.rebalanceInstructions.get(port));
+        }
+        this.rebalanceInstructions.clear();
+
+        // resetting the state of the index
+        for(DstoreIndex dstore : this.dstores){
+            dstore.setRebalanceState(RebalanceState.IDLE);
+        }
+
+        return unfinishedDstores;
+    }
+
+    /**
+     * Ends the current rebalance, lifting any remaining fences.
+     */
+    public synchronized void finishRebalance(){
+        this.rebalancing = false;
+        this.rebalanceInstructions.clear();
+        this.rebalanceChangedFiles.clear();
+        this.fencedFiles.clear();
+        this.fenceHolders.clear();
+
+        // waking the operations waiting on the fences
+        this.notifyAll();
+    }
+
+    /**
+     * Waits for the provided file to no longer be fenced by a rebalance. Will only wait
+     * for the provided amount of time.
+     * 
+     * Called by the methods that start an operation on the file, so that the fence check
+     * and the start of the operation happen under the same lock (a rebalance cannot fence
+     * the file in between). The lock is released while waiting.
+     * 
+     * @param filename The name of the file.
+     * @param timeout The maximum time to wait for.
+     * @throws NetworkTimeoutException If the file is still fenced once the timeout passes.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    private synchronized void waitForFileUnfenced(String filename, int timeout) throws NetworkTimeoutException, InterruptedException{
+
+        long timeoutStamp = System.currentTimeMillis() + timeout;
+
+        // waiting for the move to finish
+        while(this.fencedFiles.contains(filename)){
+            long remaining = timeoutStamp - System.currentTimeMillis();
+
+            // move did not finish in time
+            if(remaining <= 0){
+                throw new NetworkTimeoutException(filename, OperationState.IDLE);
+            }
+
+            this.wait(remaining);
+        }
+    }
+
+    /**
+     * Records that the provided file has been stored or removed during the current
+     * rebalance (if there is one).
+     * 
+     * @param filename The name of the file.
+     */
+    private synchronized void recordRebalanceChange(String filename){
+        if(this.rebalancing){
+            this.rebalanceChangedFiles.add(filename);
+        }
     }
 
     /**
@@ -568,9 +1339,6 @@ public class Index {
      * Handles the completion of a System rebalance.
      */
     private synchronized void handleRebalanceComplete(){
-        // enabling controller request handler
-        this.controller.getRequestHandler().enable();
-
         // resetting the state of the index
         for(DstoreIndex dstore : this.dstores){
             dstore.setRebalanceState(RebalanceState.IDLE);
@@ -585,9 +1353,6 @@ public class Index {
      * within the timeout.
      */
     private void handleRebalanceTimeout(RebalanceState expectedRebalancetate){
-        // enabling controller request handler
-        this.controller.getRequestHandler().enable();
-
         // resetting the state of the index
         for(DstoreIndex dstore : this.dstores){
             dstore.setRebalanceState(RebalanceState.IDLE);
@@ -714,6 +1479,35 @@ public class Index {
         return ports;
     }
 
+    /**
+     * Gets a list of Dstores that a replica of the given file can be copied onto. Picks
+     * the Dstores storing the fewest files out of those that do not already store the file.
+     * 
+     * @param filename The name of the file being repaired.
+     * @param numberOfDstores The number of replicas being added.
+     * @return The list of Dstore ports the file can be copied onto (may be fewer than
+     * requested if there are not enough Dstores).
+     */
+    public synchronized ArrayList<Integer> getDstoresToRepairOn(String filename, int numberOfDstores){
+        // sorting the dstores based on the number of files they contain
+        Collections.sort(this.dstores);
+
+        ArrayList<Integer> ports = new ArrayList<Integer>();
+
+        // picking the first dstores that do not have the file
+        for(DstoreIndex dstore : this.dstores){
+            if(ports.size() == numberOfDstores){
+                break;
+            }
+            if(!dstore.hasFile(filename)){
+                ports.add(dstore.getPort());
+            }
+        }
+
+        // returning the list of dstores
+        return ports;
+    }
+
     /**
      * Gathers a list of Indexes which store the provided file.
      * 
@@ -738,21 +1532,27 @@ public class Index {
      * Gathers the file distribution for the system. The file distribution
      * is a mapping of Dstores to the files that are stored on them. 
      * 
-     * Note that this method does not take into account the state of the files
-     * stored on the Dstores.
+     * Only files that are IDLE across all Dstores, and have not been stored or
+     * removed during the current rebalance, are included (files being operated on
+     * are left out of rebalancing).
      * 
      * @return A mapping of Dstores to the files stored on them.
      */
-    public HashMap<Integer, HashMap<String, Integer>> getFileDistribution(){
+    public synchronized HashMap<Integer, HashMap<String, Integer>> getFileDistribution(){
         // creating object to hold the file distribution
         HashMap<Integer, HashMap<String,Integer>> fileDistribution = new HashMap<Integer, HashMap<String,Integer>>();
+
+        // gathering the files that are idle across all dstores
+        HashMap<String, Boolean> idleFiles = this.getIdleFiles();
         
         // iterating through dstores and each dstores files to the object
         for(DstoreIndex dstore : this.dstores){
             HashMap<String, Integer> files = new HashMap<String, Integer>();
 
             for(DstoreFile file : dstore.getFiles()){
-                files.put(file.getFilename(), file.getFilesize());
+                if(idleFiles.get(file.getFilename()) && !this.rebalanceChangedFiles.contains(file.getFilename())){
+                    files.put(file.getFilename(), file.getFilesize());
+                }
             }
 
             fileDistribution.put(dstore.getPort(), files);
@@ -763,16 +1563,69 @@ public class Index {
     }
 
     /**
-     * Sets the provided file distribution into the index.
+     * Returns how unevenly files are spread across the Dstores, measured by what the 
+     * Controller balances on.
+     * 
+     * When balancing on files, the imbalance is the difference between the number of files 
+     * on the most and least loaded Dstores, as a fraction of the average number of files on 
+     * a Dstore (e.g., 1.0 when a Dstore that has just joined stores no files and the others 
+     * store the average). When balancing on bytes, it is the difference between the bytes 
+     * stored on the most and least loaded Dstores, beyond twice the size of the largest file 
+     * (the spread a rebalance leaves), as a fraction of the average bytes stored on a Dstore.
      * 
-     * @param fileDistribution The file distribution being set into the index.
+     * @return The imbalance of the system (0 if files are spread as evenly as a rebalance 
+     * would leave them).
      */
-    public void setFileDistribution(HashMap<Integer, HashMap<String, Integer>> fileDistribution){
-        // iterating through file distribution
-        for(Integer dstore : fileDistribution.keySet()){
-            // setting the file list into the index
-            this.getIndexFromPort(dstore).setFiles(fileDistribution.get(dstore));
+    public synchronized double getImbalance(){
+        // no dstores - nothing to spread
+        if(this.dstores.isEmpty()){
+            return 0;
+        }
+
+        boolean balancingOnBytes = (this.controller.getOptions().getBalanceMode() == BalanceMode.BYTES);
+
+        // finding the least and most loaded dstores
+        long leastLoad = Long.MAX_VALUE;
+        long mostLoad = 0;
+        long totalLoad = 0;
+        long largestFile = 0;
+        for(DstoreIndex dstore : this.dstores){
+            long load = 0;
+            for(DstoreFile file : dstore.getFiles()){
+                load += balancingOnBytes ? file.getFilesize() : 1;
+                largestFile = Math.max(largestFile, file.getFilesize());
+            }
+            leastLoad = Math.min(leastLoad, load);
+            mostLoad = Math.max(mostLoad, load);
+            totalLoad += load;
         }
+
+        // spread a rebalance would leave in place
+        long allowedSpread = balancingOnBytes ? 2 * largestFile : 0;
+
+        // spread relative to the average (at least one file/byte)
+        double averageLoad = Math.max(1.0, (double) totalLoad / this.dstores.size());
+        return (Math.max(0, mostLoad - leastLoad - allowedSpread) / averageLoad);
+    }
+
+    /**
+     * Gathers every file in the index, mapped to whether or not the file is IDLE
+     * on every Dstore it is stored on.
+     * 
+     * @return A mapping of filename to true if the file is IDLE, false if it is 
+     * being operated on.
+     */
+    private synchronized HashMap<String, Boolean> getIdleFiles(){
+        HashMap<String, Boolean> idleFiles = new HashMap<String, Boolean>();
+
+        for(DstoreIndex dstore : this.dstores){
+            for(DstoreFile file : dstore.getFiles()){
+                boolean idle = (file.getState() == OperationState.IDLE);
+                idleFiles.put(file.getFilename(), idleFiles.getOrDefault(file.getFilename(), true) && idle);
+            }
+        }
+
+        return idleFiles;
     }
 
     /**
@@ -863,6 +1716,10 @@ public class Index {
         return this.dstores;
     }
 
+    public DirtySet getChanges(){
+        return this.changes;
+    }
+
     /**
      * Returns the list of ports for all Dstores on the system.
      * 
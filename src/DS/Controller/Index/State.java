@@ -17,6 +17,7 @@ public class State{
         REMOVE_IN_PROGRESS("Remove In Progress"),
         REMOVE_ACK_RECIEVED("Remove Acknowledgement Recieved"),
         REMOVE_COMPLETE("Remove Complete"),
+        REPLICATE_COMPLETE("Replicate Complete"),
         IDLE("Idle");
 
         private String state;
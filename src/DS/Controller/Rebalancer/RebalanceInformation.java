@@ -37,6 +37,65 @@ public class RebalanceInformation{
         return Protocol.getRebalanceMessage(this.getFilesToSend(), this.getFilesToRemove());
     }
 
+    /**
+     * Returns the REBALANCE message for this rebalance information, limiting the
+     * rate at which the Dstore sends files to the provided rate.
+     * 
+     * @param rate The rate (bytes per second) the Dstore must send files at (0 to leave
+     * the Dstore's own limit in place).
+     * @return The REBALANCE message for this rebalance information.
+     */
+    public String getRebalanceMessage(long rate){
+        // no rate provided - dstore uses it's own limit
+        if(rate <= 0){
+            return this.getRebalanceMessage();
+        }
+
+        return Protocol.getRebalanceMessage(this.getFilesToSend(), this.getFilesToRemove(), rate);
+    }
+
+    /**
+     * Returns the number of batches the instructions are sent in, when each batch holds 
+     * at most the provided number of files to send and remove.
+     * 
+     * @param batchSize The maximum number of files in a batch.
+     * @return The number of batches (at least 1).
+     */
+    public int getBatchCount(int batchSize){
+        int files = this.filesToSend.size() + this.filesToRemove.size();
+
+        return Math.max(1, (files + batchSize - 1) / batchSize);
+    }
+
+    /**
+     * Returns the message for the provided batch of this rebalance information.
+     * 
+     * Files to send are placed in the batches before files to remove, so a Dstore that 
+     * carries out the batches in order sends a file before removing it. Instructions that
+     * fit in a single batch are still sent as a REBALANCE_BATCH, so that the Dstore's
+     * REBALANCE_COMPLETE names the rebalance it completed.
+     * 
+     * @param rebalance The rebalance the instructions belong to.
+     * @param batch The number of the batch (from 1).
+     * @param batchSize The maximum number of files in a batch.
+     * @param rate The rate (bytes per second) the Dstore must send files at (0 to leave
+     * the Dstore's own limit in place).
+     * @return The REBALANCE_BATCH message for the batch.
+     */
+    public String getRebalanceBatchMessage(int rebalance, int batch, int batchSize, long rate){
+        int batches = this.getBatchCount(batchSize);
+
+        // files in the batch (sends first, then removes)
+        int sends = this.filesToSend.size();
+        int start = (batch - 1) * batchSize;
+        int end = Math.min(start + batchSize, sends + this.filesToRemove.size());
+
+        return Protocol.getRebalanceBatchMessage(rebalance, batch, batches, 
+                                                 this.filesToSend.subList(Math.min(start, sends), Math.min(end, sends)), 
+                                                 this.filesToRemove.subList(Math.max(0, start - sends), Math.max(0, end - sends)), 
+                                                 rate);
+    }
+
     /////////////////////////
     // GETTERS AND SETTERS //
     /////////////////////////
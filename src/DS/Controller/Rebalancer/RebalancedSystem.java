@@ -1,6 +1,7 @@
 package DS.Controller.Rebalancer;
 
 import java.util.HashMap;
+import java.util.HashSet;
 
 import DS.Protocol.Token.TokenType.FileToSend;
 
@@ -14,6 +15,8 @@ public class RebalancedSystem{
     // member variables
     private System system; 
     private HashMap<Integer, RebalanceInformation> rebalanceInformation;
+    private int transfers; // file copies made by the rebalance
+    private long bytesMoved; // bytes copied by the rebalance
 
     /**
      * Class constructor.
@@ -25,6 +28,8 @@ public class RebalancedSystem{
         // initializing
         this.system = system;
         this.rebalanceInformation = rebalanceInformation;
+        this.transfers = 0;
+        this.bytesMoved = 0;
     }
 
     ///////////////////////////////////////
@@ -40,8 +45,14 @@ public class RebalancedSystem{
         // adding the file to send to the rebalance information
         this.rebalanceInformation.get(dstoreSendingFile).getFilesToSend().add(fileToSend);
 
-        // updating the file distribution
-        this.system.updateFromRebalanceInformation(this.rebalanceInformation);
+        // recording the data moved (one copy for each dstore)
+        this.transfers += fileToSend.dStores.size();
+        this.bytesMoved += (long) fileToSend.filesize * fileToSend.dStores.size();
+
+        // updating the file distribution (only the change being made)
+        for(int dstore : fileToSend.dStores){
+            this.system.addFileToDstore(dstore, fileToSend.filename, fileToSend.filesize);
+        }
     }
 
     /**
@@ -53,8 +64,26 @@ public class RebalancedSystem{
         // adding the file to send to the rebalance information
         this.rebalanceInformation.get(dstoreRemovingFile).getFilesToRemove().add(fileToRemove);
 
-        // updating the file distribution
-        this.system.updateFromRebalanceInformation(this.rebalanceInformation);
+        // updating the file distribution (only the change being made)
+        this.system.removeFileFromDstore(dstoreRemovingFile, fileToRemove);
+    }
+
+    /**
+     * Returns the names of the files that are sent or removed by the rebalance.
+     * 
+     * @return The names of the files moved by the rebalance.
+     */
+    public HashSet<String> getMovedFiles(){
+        HashSet<String> movedFiles = new HashSet<String>();
+
+        for(RebalanceInformation information : this.rebalanceInformation.values()){
+            for(FileToSend fileToSend : information.getFilesToSend()){
+                movedFiles.add(fileToSend.filename);
+            }
+            movedFiles.addAll(information.getFilesToRemove());
+        }
+
+        return movedFiles;
     }
 
     /////////////////////////
@@ -72,4 +101,12 @@ public class RebalancedSystem{
     public void setRebalanceInformation(HashMap<Integer, RebalanceInformation> rebalanceInformation){
         this.rebalanceInformation = rebalanceInformation;
     }
+
+    public int getTransfers(){
+        return this.transfers;
+    }
+
+    public long getBytesMoved(){
+        return this.bytesMoved;
+    }
 }
@@ -1,29 +1,65 @@
 package DS.Controller.Rebalancer;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 import DS.Controller.Controller;
+import DS.Controller.Index.DirtySet;
 import DS.Controller.Index.DstoreIndex;
 import DS.Controller.Index.State.RebalanceState;
 import DS.Protocol.Protocol;
 import DS.Protocol.Event.Rebalance.RebalanceCompleteEvent;
+import DS.Protocol.Event.Rebalance.RebalanceDeferredEvent;
 import DS.Protocol.Event.Rebalance.RebalanceFileListGatheredEvent;
 import DS.Protocol.Event.Rebalance.RebalanceNotRequiredEvent;
+import DS.Protocol.Event.Rebalance.RebalancePlannedEvent;
+import DS.Protocol.Event.Rebalance.RebalanceSkippedEvent;
 import DS.Protocol.Event.Rebalance.RebalanceStartedEvent;
+import DS.Protocol.Event.Rebalance.RebalanceTriggeredEvent;
+import DS.Protocol.Exception.RebalanceAbortedException;
 import DS.Protocol.Exception.RebalanceFailureException;
+import DS.Protocol.Exception.RebalanceIncompleteException;
 import DS.Protocol.Token.TokenType.FileToSend;
 import Network.Protocol.Exception.NetworkException;
 
 /**
  * Handles the rebalancing of the file system.
+ * 
+ * A rebalance only audits the Dstores that have changed since the last rebalance
+ * (as recorded by the Index), and is skipped altogether when nothing has changed. 
+ * Every Dstore is audited (full verification) once every 'verify period' number of 
+ * rebalance periods, and after a rebalance fails.
+ * 
+ * Rebalances are only run by the Rebalancer's thread. Membership changes (Dstores 
+ * joining and leaving) request a rebalance rather than running one, and requests made 
+ * within the 'debounce' window of each other are coalesced into a single rebalance, 
+ * which is run once no request has been made for the window (or once a rebalance period 
+ * has passed since the first request).
+ * 
+ * Rebalances are deferred while the Controller is busy serving clients (more than the 
+ * 'busy' number of requests per second), until the clients are quiet or the rebalance has 
+ * been deferred for the 'defer' period. Rebalances for files that may have lost replicas 
+ * are urgent, and are never deferred. When the system is quiet and nothing has changed, 
+ * a rebalance is still run if the Index shows files spread more unevenly than the 
+ * 'imbalance' threshold. Rebalances wait for the Repairer to restore any lost replicas
+ * before they start.
  */
 public class Rebalancer extends Thread{
+
+    // constants
+    private final static int DEFER_CHECK_INTERVAL = 1000; // ms between checks of a deferred rebalance
     
     // member variables
     private Controller controller;
+    private volatile long lastVerification;
+    private Object triggerLock;
+    private int pendingRequests; // rebalance requests not yet served
+    private long firstRequest; // time of the first pending request
+    private long lastRequest; // time of the latest pending request
+    private long deferredSince; // time the current rebalance was first deferred (0 if not deferred)
+    private int rebalanceCount; // number of rebalances that have moved files (identifies their messages)
 
     /**
      * Class constructor.
@@ -33,6 +69,13 @@ public class Rebalancer extends Thread{
     public Rebalancer(Controller controller){
         // initializing
         this.controller = controller;
+        this.lastVerification = 0; // first rebalance verifies every dstore
+        this.triggerLock = new Object();
+        this.pendingRequests = 0;
+        this.firstRequest = 0;
+        this.lastRequest = 0;
+        this.deferredSince = 0;
+        this.rebalanceCount = 0;
     }
 
     /**
@@ -48,14 +91,33 @@ public class Rebalancer extends Thread{
     ///////////////////////////
 
     /**
-     * Continually waits for the 'rebalance period' of time
-     * to pass before rebalancing the ssytem.
+     * Continually waits for the 'rebalance period' of time to pass (or
+     * for a rebalance to be requested) before rebalancing the ssytem.
      */
     private void waitForRebalance(){
         while(controller.isActive()){
             try{
-                // waiting for rebalance-period amount of time
-                Thread.sleep(this.controller.getRebalancePeriod());
+                // waiting for the rebalance period to pass or a requested rebalance to be due
+                int requests = this.waitForTrigger();
+
+                // event for coalesced requests
+                if(requests > 0){
+                    this.controller.handleEvent(new RebalanceTriggeredEvent(requests));
+                }
+
+                // clients busy - deferring the rebalance
+                double requestRate = this.controller.getRequestRateMonitor().getRequestRate();
+                if(this.isDeferrable(requestRate)){
+                    if(this.deferredSince == 0){
+                        this.deferredSince = java.lang.System.currentTimeMillis();
+                        this.controller.handleEvent(new RebalanceDeferredEvent(requestRate, this.controller.getIndex().getImbalance()));
+                    }
+                    continue;
+                }
+                this.deferredSince = 0;
+
+                // waiting for files that lost replicas to be repaired first
+                this.controller.getRepairer().waitForRepairs();
 
                 // rebalance system
                 this.rebalance();
@@ -67,6 +129,99 @@ public class Rebalancer extends Thread{
         }
     }
 
+    /**
+     * Waits until the next rebalance is due.
+     * 
+     * A rebalance is due once a rebalance period has passed since the Rebalancer started 
+     * waiting, or, if a rebalance has been requested, once the debounce window has passed
+     * since the latest request (or a rebalance period has passed since the first). While
+     * a rebalance is deferred, it is due again after the defer check interval.
+     * 
+     * @return The number of requests served by the rebalance (0 if it is a periodic rebalance).
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    private int waitForTrigger() throws InterruptedException{
+        synchronized(this.triggerLock){
+            long periodicRebalance = java.lang.System.currentTimeMillis() + (this.deferredSince > 0 ? DEFER_CHECK_INTERVAL : this.controller.getRebalancePeriod());
+
+            while(true){
+                // time the next rebalance is due
+                long due = periodicRebalance;
+                if(this.pendingRequests > 0){
+                    long debounced = Math.min(this.lastRequest + this.controller.getOptions().getDebounceWindow(), 
+                                              this.firstRequest + this.controller.getRebalancePeriod());
+                    due = Math.min(due, debounced);
+                }
+
+                // rebalance due - taking the pending requests
+                long now = java.lang.System.currentTimeMillis();
+                if(now >= due){
+                    int requests = this.pendingRequests;
+                    this.pendingRequests = 0;
+                    return requests;
+                }
+
+                // waiting until the rebalance is due (or a new request is made)
+                this.triggerLock.wait(due - now);
+            }
+        }
+    }
+
+    /**
+     * Determines if the next rebalance can be deferred.
+     * 
+     * A rebalance is deferred while the rate of client requests is at least the 'busy' rate, 
+     * unless files may have lost replicas (the rebalance is urgent) or the rebalance has 
+     * already been deferred for the 'defer' period.
+     * 
+     * @param requestRate The current rate of client requests (requests per second).
+     * @return True if the rebalance can be deferred, false if it must be run now.
+     */
+    private boolean isDeferrable(double requestRate){
+        double busyRate = this.controller.getOptions().getBusyRate();
+
+        // deferral disabled or clients not busy
+        if(busyRate <= 0 || requestRate < busyRate){
+            return false;
+        }
+
+        // files may have lost replicas - urgent
+        if(this.controller.getIndex().getChanges().hasFiles()){
+            return false;
+        }
+
+        // deferred for too long
+        if(this.deferredSince > 0 && java.lang.System.currentTimeMillis() - this.deferredSince >= this.controller.getOptions().getMaxDeferral()){
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Requests a rebalance of the system.
+     * 
+     * The rebalance is run by the Rebalancer's thread once no other request has been made
+     * for the debounce window, so that several changes made together (e.g., many Dstores
+     * joining at once) are rebalanced together. Requests made while a rebalance is running 
+     * are served by the following rebalance.
+     */
+    public void requestRebalance(){
+        synchronized(this.triggerLock){
+            long now = java.lang.System.currentTimeMillis();
+
+            // recording the request
+            if(this.pendingRequests == 0){
+                this.firstRequest = now;
+            }
+            this.lastRequest = now;
+            this.pendingRequests++;
+
+            // waking the rebalancer to re-calculate when the rebalance is due
+            this.triggerLock.notifyAll();
+        }
+    }
+
     ///////////////////////////
     // MAIN REBALANCE METHOD //
     ///////////////////////////
@@ -74,6 +229,11 @@ public class Rebalancer extends Thread{
     /**
      * Rebalances the system.
      * 
+     * Takes the changes recorded by the Index since the last rebalance, and skips the
+     * rebalance if there are none (and a full verification is not due, and the files are
+     * not spread more unevenly than the imbalance threshold). If the rebalance
+     * fails, the changes are recorded again and a full verification is requested.
+     * 
      * @throws NotEnoughDstoresException If there are not enough Dstores connected
      * to the system to carry out the rebalance operation.
      * @throws RebalanceAlreadyInProgressException If there is already a rebalance 
@@ -85,27 +245,106 @@ public class Rebalancer extends Thread{
      */
     public void rebalance() throws NetworkException{
 
+        // GATHERING CHANGES //
+
+        // taking the changes made since the last rebalance
+        DirtySet changes = this.controller.getIndex().getChanges().take();
+        boolean verifying = changes.isVerificationRequired() || this.isVerificationDue();
+
+        double imbalance = this.controller.getIndex().getImbalance();
+        boolean imbalanced = this.isImbalanced(imbalance);
+
+        // nothing has changed - no need to rebalance
+        if(!verifying && !imbalanced && changes.isClean()){
+            this.controller.handleEvent(new RebalanceSkippedEvent());
+            return;
+        }
+
+        // REBALANCING //
+
+        try{
+            this.rebalance(changes, verifying, imbalanced ? imbalance : 0);
+        }
+        catch(NetworkException e){
+            // changes were not rebalanced - the index may not match the dstores either (unless aborted before 
+            // moving, or the dstores that did not finish moving have been marked dirty)
+            if(!(e instanceof RebalanceAbortedException || e instanceof RebalanceIncompleteException)){
+                changes.markVerificationRequired();
+            }
+            this.controller.getIndex().getChanges().merge(changes);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Rebalances the system for the provided changes.
+     * 
+     * @param changes The changes made to the system since the last rebalance.
+     * @param verifying Whether or not every Dstore should be audited.
+     * @param imbalance The imbalance of the system if it triggered the rebalance (0 otherwise).
+     * @throws NetworkException If the rebalance could not be completed.
+     */
+    private void rebalance(DirtySet changes, boolean verifying, double imbalance) throws NetworkException{
+
         // event for rebalance starting
-        this.controller.handleEvent(new RebalanceStartedEvent());
+        String reason = verifying ? "full verification" : changes.toString();
+        if(imbalance > 0){
+            reason += String.format(", imbalance %.2f", imbalance);
+        }
+        this.controller.handleEvent(new RebalanceStartedEvent(reason));
 
         // GATHERING FILE LIST //
 
+        // gathering the dstores to audit
+        HashSet<Integer> dstoresToList = verifying ? new HashSet<Integer>(this.controller.getIndex().getDstorePorts()) : changes.getDstores();
+
         // starting rebalance list
-        this.controller.getIndex().startRebalanceList();
+        this.controller.getIndex().startRebalanceList(dstoresToList);
+
+        try{
+            this.rebalanceDstores(dstoresToList, verifying);
+        }
+        finally{
+            // ending the rebalance (lifting any fences left in place)
+            this.controller.getIndex().finishRebalance();
+        }
+    }
+
+    /**
+     * Gathers the file lists from the provided Dstores and moves files between the
+     * Dstores so that the system is balanced.
+     * 
+     * Client requests continue to be served during the rebalance. Only the files being 
+     * moved are fenced, and the rebalance is aborted if any of them have changed since 
+     * the rebalance was planned.
+     * 
+     * @param dstoresToList The ports of the Dstores being sent a LIST.
+     * @param verifying Whether or not every Dstore is being audited.
+     * @throws NetworkException If the rebalance could not be completed.
+     */
+    private void rebalanceDstores(HashSet<Integer> dstoresToList, boolean verifying) throws NetworkException{
 
-        // sending LIST requests to dstores
+        // sending LIST requests to dstores being audited
         for(DstoreIndex dstore : this.controller.getIndex().getDstores()){
-            dstore.getConnection().sendMessage(Protocol.getListMessage());
+            if(dstoresToList.contains(dstore.getPort())){
+                dstore.getConnection().sendMessage(Protocol.getListMessage());
+            }
         }
 
-        // waiting for all Dstores to respond
+        // waiting for the Dstores to respond
         this.controller.getIndex().waitForRebalanceState(RebalanceState.REBALANCE_LIST_RECIEVED, this.controller.getTimeout());
     
         // creating System instance
-        System system = new System(this.controller.getMinDstores(), this.controller.getIndex().getFileDistribution());
+        System system = new System(this.controller.getMinDstores(), this.controller.getIndex().getFileDistribution(), this.controller.getOptions().getBalanceMode());
 
         // event for file list gathered 
-        this.controller.handleEvent(new RebalanceFileListGatheredEvent());
+        this.controller.handleEvent(new RebalanceFileListGatheredEvent(dstoresToList.size()));
+
+        // every dstore has been audited
+        if(verifying){
+            this.lastVerification = java.lang.System.currentTimeMillis();
+        }
 
         // CHECKING IF SYSTEM IS BALANCED //
 
@@ -113,28 +352,25 @@ public class Rebalancer extends Thread{
 
             // REBALANCING //
 
-            // starting the moving process
-            this.controller.getIndex().startRebalanceMove();
-
             // calculating the adjustments
             RebalancedSystem rebalancedSystem = Rebalancer.getRebalancedSystem(system);
+            this.controller.handleEvent(new RebalancePlannedEvent(rebalancedSystem.getTransfers(), rebalancedSystem.getBytesMoved()));
 
-            // sending rebalance messages
-            for(Integer dstore : rebalancedSystem.getRebalanceInformation().keySet()){
-                // forming message
-                String rebalanceMessage = rebalancedSystem.getRebalanceInformation().get(dstore).getRebalanceMessage();
+            // fencing the files being moved (aborts if any have changed since planning)
+            HashSet<String> movedFiles = rebalancedSystem.getMovedFiles();
+            this.controller.getIndex().fenceFiles(movedFiles);
 
-                // sending message
-                this.controller.getIndex().getIndexFromPort(dstore).getConnection().sendMessage(rebalanceMessage);
-            }
+            // starting the moving process
+            int rebalance = ++this.rebalanceCount;
+            this.controller.getIndex().startRebalanceMove(rebalancedSystem.getRebalanceInformation(), rebalance);
 
-            // waiting for rebalance complete responses
-            this.controller.getIndex().waitForRebalanceState(RebalanceState.REBALANCE_COMPLETE_RECIEVED, this.controller.getTimeout());
+            // sending rebalance messages
+            this.sendRebalanceMessages(rebalancedSystem.getRebalanceInformation(), rebalance);
 
-            // REBALANCE COMPLETE //
+            // waiting for rebalance complete responses (each dstore's instructions committed as it completes)
+            this.controller.getIndex().waitForRebalanceMove(this.controller.getTimeout());
 
-            // updating the index
-            this.controller.getIndex().setFileDistribution(rebalancedSystem.getSystem().getFileDistribution());
+            // REBALANCE COMPLETE //
 
             // creating event to show rebalance successfull
             this.controller.handleEvent(new RebalanceCompleteEvent());
@@ -145,6 +381,70 @@ public class Rebalancer extends Thread{
         }
     }
 
+    /**
+     * Sends each Dstore its rebalance instructions.
+     * 
+     * Instructions are sent in batches of at most 'batch' files, so that no message grows
+     * with the size of the rebalance, and Dstores start on their first batch while the rest
+     * are still being sent. The first batch is sent to every Dstore before the second, and so on.
+     * 
+     * @param rebalanceInformation The instructions for each Dstore, mapped from the Dstore's port.
+     * @param rebalance The rebalance the instructions belong to.
+     * @throws MessageSendException If a message could not be sent through a connection channel.
+     */
+    private void sendRebalanceMessages(HashMap<Integer, RebalanceInformation> rebalanceInformation, int rebalance) throws NetworkException{
+        int batchSize = this.controller.getOptions().getRebalanceBatch();
+        long rate = this.controller.getOptions().getRebalanceRate();
+
+        // number of rounds of batches
+        int rounds = 1;
+        for(RebalanceInformation information : rebalanceInformation.values()){
+            rounds = Math.max(rounds, information.getBatchCount(batchSize));
+        }
+
+        for(int batch = 1; batch <= rounds; batch++){
+            for(Integer dstore : rebalanceInformation.keySet()){
+                RebalanceInformation information = rebalanceInformation.get(dstore);
+
+                // dstore has no more batches
+                if(batch > information.getBatchCount(batchSize)){
+                    continue;
+                }
+
+                // sending message (unless the dstore has since left)
+                DstoreIndex dstoreIndex = this.controller.getIndex().getIndexFromPort(dstore);
+                if(dstoreIndex != null){
+                    dstoreIndex.getConnection().sendMessage(information.getRebalanceBatchMessage(rebalance, batch, batchSize, rate));
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines if every Dstore is due to be audited.
+     * 
+     * @return True if at least 'verify period' rebalance periods have passed since every
+     * Dstore was last audited, false if not.
+     */
+    private boolean isVerificationDue(){
+        long verifyPeriod = (long) this.controller.getOptions().getVerifyPeriod() * this.controller.getRebalancePeriod();
+
+        return (java.lang.System.currentTimeMillis() - this.lastVerification >= verifyPeriod);
+    }
+
+    /**
+     * Determines if the provided imbalance is above the imbalance threshold, and so should
+     * trigger a rebalance even though nothing has changed.
+     * 
+     * @param imbalance The imbalance of the system (as given by the Index).
+     * @return True if the system is imbalanced, false otherwise.
+     */
+    private boolean isImbalanced(double imbalance){
+        double threshold = this.controller.getOptions().getImbalanceThreshold();
+
+        return (threshold > 0 && imbalance > threshold);
+    }
+
     /////////////////////////////
     // CALCULATING ADJUSTMENTS //
     /////////////////////////////
@@ -156,7 +456,7 @@ public class Rebalancer extends Thread{
      * @return A RebalancedSystem object that contains the rebalanced
      * file distribution and rebalance information.
      */
-    private static RebalancedSystem getRebalancedSystem(System system){
+    public static RebalancedSystem getRebalancedSystem(System system){
         // creating rebalance information object
         HashMap<Integer, RebalanceInformation> rebalanceInformation = new HashMap<Integer, RebalanceInformation>(); 
 
@@ -178,8 +478,13 @@ public class Rebalancer extends Thread{
         // FILES NOT STORED EVENLY //
 
         if(!system.filesStoredEvenly()){
-            // rebalancing system for files not stored evenly
-            rebalancedSystem = Rebalancer.rebalanceForNotStoredEvenly(rebalancedSystem);
+            // rebalancing system for files not stored evenly (by what the system is balanced on)
+            if(system.getBalanceMode() == System.BalanceMode.BYTES){
+                rebalancedSystem = Rebalancer.rebalanceForBytesNotStoredEvenly(rebalancedSystem);
+            }
+            else{
+                rebalancedSystem = Rebalancer.rebalanceForNotStoredEvenly(rebalancedSystem);
+            }
         }
 
         return rebalancedSystem;
@@ -232,12 +537,8 @@ public class Rebalancer extends Thread{
      */
     private static RebalancedSystem rebalanceForNotStoredEvenly(RebalancedSystem rebalancedSystem){
         // calculating min and max values
-        double r = rebalancedSystem.getSystem().getMinDstores();
-        double f = rebalancedSystem.getSystem().getNumberOfFiles();
-        double n = rebalancedSystem.getSystem().getNumberOfDstores();
-        double averageFiles = r * f / n;
-        double minFiles = Math.floor(averageFiles);
-        double maxFiles = Math.ceil(averageFiles);
+        int minFiles = rebalancedSystem.getSystem().getMinFilesPerDstore();
+        int maxFiles = rebalancedSystem.getSystem().getMaxFilesPerDstore();
 
         // iterating over dstores
         for(Integer dstore : rebalancedSystem.getSystem().getDstores()){
@@ -290,6 +591,57 @@ public class Rebalancer extends Thread{
         return rebalancedSystem;
     }
 
+    /**
+     * Rebalances the given system in the case where bytes are not stored evenly across 
+     * the Dstores.
+     * 
+     * Files are moved from the Dstore storing the most bytes to the Dstore storing the 
+     * fewest, until the two are within twice the size of the largest file of each other. 
+     * The largest file that does not take the Dstore storing the most bytes below the 
+     * Dstore storing the fewest is moved each time, so that the Dstores are brought 
+     * together in as few moves as possible.
+     * 
+     * @param rebalancedSystem The RebalancedSystem object that is being rebalanced due to
+     * bytes not being stored evenly across Dstores.
+     * @return The RebalancedSystem object that has been updated so that bytes are stored
+     * across dstores evenly.
+     */
+    private static RebalancedSystem rebalanceForBytesNotStoredEvenly(RebalancedSystem rebalancedSystem){
+        System system = rebalancedSystem.getSystem();
+
+        while(!system.filesStoredEvenly()){
+            // most and least loaded dstores
+            Integer dstoreSending = system.getDstoresSortedByBytes().last();
+            Integer dstoreReceiving = system.getDstoresSortedByBytes().first();
+
+            // FINDING FILE THAT CAN BE SENT //
+
+            long maxFilesize = (system.getBytesOnDstore(dstoreSending) - system.getBytesOnDstore(dstoreReceiving)) / 2;
+            FileOnDstore fileOnDstoreToSend = system.getLargestFileNotOnDstore(dstoreSending, dstoreReceiving, maxFilesize);
+
+            // no file would bring the dstores closer together (only possible with empty files)
+            if(fileOnDstoreToSend == null || fileOnDstoreToSend.getFileSize() == 0){
+                break;
+            }
+
+            // CREATING FILE TO SEND OBJECT //
+
+            FileToSend fileToSend = new FileToSend(fileOnDstoreToSend.getFilename(), fileOnDstoreToSend.getFileSize(), new ArrayList<Integer>(List.of(dstoreReceiving)));
+
+            // UPDATING REBALANCE INFORMATION //
+
+            // the dstore storing the most bytes must send the file
+            rebalancedSystem.addFileToSend(dstoreSending, fileToSend);
+
+            // the dstore storing the most bytes must remove the file
+            rebalancedSystem.addFileToRemove(dstoreSending, fileToSend.filename);
+        }
+
+        // RETURNING RESULT //
+
+        return rebalancedSystem;
+    }
+
     ////////////////////
     // HELPER METHODS //
     ////////////////////
@@ -304,14 +656,11 @@ public class Rebalancer extends Thread{
      * @return A list of dstores the file can be sent to.
      */
     public static ArrayList<Integer> getDstoresToSendTo(System system, String filename, int neededDstores){
-        // getting sorted list of dstores
-        ArrayList<Integer> sortedDstores = system.getDstoresSortedByFiles();
-
-        // forming list of dstores that the file can be sent to
+        // forming list of dstores that the file can be sent to (least loaded first)
         ArrayList<Integer> dstoresToSendTo = new ArrayList<Integer>();
-        for(Integer dstore : sortedDstores){
+        for(Integer dstore : system.getDstoresSortedByLoad()){
             // only chosing dstores that do not already store the file
-            if(!system.getFilesOnDstore(dstore).keySet().contains(filename)){
+            if(!system.getFilesOnDstore(dstore).containsKey(filename)){
                 // adding dstoe to the list
                 dstoresToSendTo.add(dstore);
 
@@ -331,38 +680,49 @@ public class Rebalancer extends Thread{
      * by the provided Dstore. A file can be stolen if the file is not already
      * contained on the Dstore that is stealing the file.
      * 
+     * Files are stolen from Dstores that store more than the most files a Dstore can
+     * store when files are stored evenly, or, if there are none, from Dstores that store 
+     * more than the fewest. The smallest file that can be stolen from these Dstores is 
+     * chosen, so that as few bytes as possible are moved. The search stops as soon as a 
+     * file of the smallest size in the System is found, as no other file can beat it.
+     * 
      * @param system The system the Dstore stealing a file is contained within.
      * @param dstoreStealing The Dstore stealing the file.
      * @return A FileOnDstore object representing a file on a Dstore that can be stolen
      * by the provided Dstore.
      */
     public static FileOnDstore getFileToSteal(System system, Integer dstoreStealing){
-        // sort dstores based on files 
-        ArrayList<Integer> sortedDstores = system.getDstoresSortedByFiles();
-
-        // reversing the list - most-to-fewest
-        Collections.reverse(sortedDstores);
-
-        // list of the files on the dstore stealing
-        ArrayList<String> filesOnDstoreStealing = new ArrayList<String>(system.getFilesOnDstore(dstoreStealing).keySet());
-
-        // finding file that can be stolen (first file on highest ranking dstore that is not already on the dstore stealing)
-        for(Integer dstoreToStealFrom : sortedDstores){
-            // only picking dstore that is not the one stealing
-            if(dstoreToStealFrom != dstoreStealing){
-                // iterating over this dstore's files
-                for(String fileToSteal : system.getFilesOnDstore(dstoreToStealFrom).keySet()){
-                    // finding file that is not on the dstore stealing
-                    if(!filesOnDstoreStealing.contains(fileToSteal)){
-                        // returning the FileOnDstore
-                        return new FileOnDstore(dstoreToStealFrom, fileToSteal, system.getFileSize(fileToSteal));
-                    }
+        // the best file found so far
+        FileOnDstore fileToSteal = null;
+        int fileToStealRank = 0;
+        int smallestFileSize = system.getSmallestFileSize();
+
+        // finding file that can be stolen (searching the highest ranking dstores first)
+        for(Integer dstoreToStealFrom : system.getDstoresSortedByFiles().descendingSet()){
+            // ranking the dstore (lower is better)
+            int filesOnDstore = system.getFilesOnDstore(dstoreToStealFrom).size();
+            int rank = (filesOnDstore > system.getMaxFilesPerDstore()) ? 0 : (filesOnDstore > system.getMinFilesPerDstore()) ? 1 : 2;
+
+            // remaining dstores are ranked lower than the file already found (or cannot have a smaller file)
+            if(fileToSteal != null && (rank > fileToStealRank || fileToSteal.getFileSize() == smallestFileSize)){
+                break;
+            }
+
+            // only picking dstore that is not the one stealing (and could have a smaller file)
+            if(!dstoreToStealFrom.equals(dstoreStealing) && system.getSmallestFileSizeOnDstore(dstoreToStealFrom) != -1
+               && (fileToSteal == null || system.getSmallestFileSizeOnDstore(dstoreToStealFrom) < fileToSteal.getFileSize())){
+                // smallest file on this dstore that is not on the dstore stealing
+                FileOnDstore candidate = system.getSmallestFileNotOnDstore(dstoreToStealFrom, dstoreStealing);
+
+                if(candidate != null && (fileToSteal == null || candidate.getFileSize() < fileToSteal.getFileSize())){
+                    fileToSteal = candidate;
+                    fileToStealRank = rank;
                 }
             }
         }
 
-        // no suitable file found - returning null
-        return null;
+        // returning the file (null if no suitable file found)
+        return fileToSteal;
     }
 
     /**
@@ -370,31 +730,25 @@ public class Rebalancer extends Thread{
      * to this Dstore. A file can be sent to another Dstore if it is not already containned on
      * the Dstore it is being sent to.
      * 
+     * The smallest file on the Dstore sending that is not on the lowest ranking Dstore is
+     * chosen, so that as few bytes as possible are moved.
+     * 
      * @param system The System the Dstore sending a file is contained within.
      * @param dstoreSending The Dstore sending a file.
      * @return A FileOnDstore object representing a file on the Dstore that can be sent
      * to another Dstore within the System.
      */
     public static FileOnDstore getFileToSend(System system, Integer dstoreSending){
-        // sort dstores based on files 
-        ArrayList<Integer> sortedDstores = system.getDstoresSortedByFiles();
-
-        // list of the files on the dstore sending
-        ArrayList<String> filesOnDstoreSending = new ArrayList<String>(system.getFilesOnDstore(dstoreSending).keySet());
-
-        // finding file that can be stolen (first file on highest ranking dstore that is not already on the dstore stealing)
-        for(Integer dstoreToSendTo : sortedDstores){
-            // only picking dstore that is not the one stealing
-            if(dstoreToSendTo != dstoreSending){
-                // list of files on the dstore to send to
-                ArrayList<String> filesOnDstoreToSendTo = new ArrayList<String>(system.getFilesOnDstore(dstoreToSendTo).keySet());
-
+        // finding file that can be sent (smallest file on the dstore sending that is not already on the lowest ranking dstore)
+        for(Integer dstoreToSendTo : system.getDstoresSortedByFiles()){
+            // only picking dstore that is not the one sending
+            if(!dstoreToSendTo.equals(dstoreSending)){
                 // seeinng if dstore sending has a file that can be send to this dstore
-                for(String fileToSend : filesOnDstoreSending){
-                    if(!filesOnDstoreToSendTo.contains(fileToSend)){
-                        // suitable file found - returning the file on dstore object
-                        return new FileOnDstore(dstoreToSendTo, fileToSend, system.getFileSize(fileToSend));
-                    }
+                FileOnDstore fileToSend = system.getSmallestFileNotOnDstore(dstoreSending, dstoreToSendTo);
+
+                if(fileToSend != null){
+                    // suitable file found - returning the file on dstore object
+                    return new FileOnDstore(dstoreToSendTo, fileToSend.getFilename(), fileToSend.getFileSize());
                 }
             }
         }
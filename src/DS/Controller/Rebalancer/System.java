@@ -1,12 +1,14 @@
 package DS.Controller.Rebalancer;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.stream.Collectors;
-
-import DS.Protocol.Token.TokenType.FileToSend;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * Stores the contents of the Distributed File Storage System.
@@ -14,12 +16,34 @@ import DS.Protocol.Token.TokenType.FileToSend;
  * The contents of the distributed File Storage System include the 
  * minimum number of Dstores that each file must be replicated over
  * and the mapping of files across Dstores (file distribution).
+ * 
+ * Alongside the file distribution, the System maintains the number of
+ * Dstores each file is replicated over, the size of each file, the set of
+ * files that are not replicated the minimum number of times, and the Dstores
+ * ordered by the number of files (and bytes) they store. The files on each Dstore
+ * are also grouped by size, so that the Rebalancer can move the smallest
+ * files. These are updated incrementally as files are added to and removed from 
+ * Dstores, so that the Rebalancer can query them in constant (or logarithmic) time 
+ * while planning a rebalance.
+ * 
+ * Files are stored evenly when each Dstore stores the average number of files (the
+ * default), or, when the System is balanced on bytes, when each Dstore stores close
+ * to the average number of bytes.
  */
 public class System{
 
     // member variables
     private int minDstores;
+    private BalanceMode balanceMode;
     private HashMap<Integer, HashMap<String, Integer>> fileDistribution;
+    private HashMap<String, Integer> fileCount;
+    private HashMap<String, Integer> fileSizes;
+    private HashSet<String> filesNotStoredMinTimes;
+    private TreeSet<Integer> dstoresByFiles;
+    private HashMap<Integer, TreeMap<Integer, ArrayDeque<String>>> filesBySize; // dstore -> (size -> files of that size)
+    private HashMap<Integer, Long> bytesStored;
+    private TreeSet<Integer> dstoresByBytes;
+    private TreeMap<Integer, Integer> fileSizeCount; // size -> number of files of that size
 
     /**
      * Class constructor.
@@ -29,9 +53,64 @@ public class System{
      * @param fileDistribution The distribution of files across Dstores within the System.
      */
     public System(int minDstores, HashMap<Integer, HashMap<String, Integer>> fileDistribution){
+        this(minDstores, fileDistribution, BalanceMode.FILES);
+    }
+
+    /**
+     * Class constructor.
+     * 
+     * @param minDstores The minimum number of Dstores that each file must be replicated
+     * over.
+     * @param fileDistribution The distribution of files across Dstores within the System.
+     * @param balanceMode What the files must be spread evenly by (number of files or bytes).
+     */
+    public System(int minDstores, HashMap<Integer, HashMap<String, Integer>> fileDistribution, BalanceMode balanceMode){
         // initializing
         this.minDstores = minDstores;
-        this.fileDistribution = fileDistribution;
+        this.balanceMode = balanceMode;
+        this.fileDistribution = new HashMap<Integer, HashMap<String, Integer>>();
+        this.fileCount = new HashMap<String, Integer>();
+        this.fileSizes = new HashMap<String, Integer>();
+        this.filesNotStoredMinTimes = new HashSet<String>();
+        this.filesBySize = new HashMap<Integer, TreeMap<Integer, ArrayDeque<String>>>();
+        this.bytesStored = new HashMap<Integer, Long>();
+        this.fileSizeCount = new TreeMap<Integer, Integer>();
+
+        // dstores ordered by the number of files they store (ties broken by port)
+        this.dstoresByFiles = new TreeSet<Integer>(Comparator.comparingInt((Integer dstore) -> this.fileDistribution.get(dstore).size())
+                                                              .thenComparing(Comparator.naturalOrder()));
+
+        // dstores ordered by the number of bytes they store (ties broken by port)
+        this.dstoresByBytes = new TreeSet<Integer>(Comparator.comparingLong((Integer dstore) -> this.bytesStored.get(dstore))
+                                                             .thenComparing(Comparator.naturalOrder()));
+
+        // adding the dstores and their files (in bulk rather than file-by-file)
+        for(Integer dstore : fileDistribution.keySet()){
+            HashMap<String, Integer> files = new HashMap<String, Integer>(fileDistribution.get(dstore));
+            this.fileDistribution.put(dstore, files);
+
+            long bytes = 0;
+            for(String file : files.keySet()){
+                int filesize = files.get(file);
+                bytes += filesize;
+
+                // recording the file's replica count and size
+                if(this.fileCount.merge(file, 1, Integer::sum) == 1){
+                    this.fileSizes.put(file, filesize);
+                    this.fileSizeCount.merge(filesize, 1, Integer::sum);
+                }
+            }
+            this.bytesStored.put(dstore, bytes);
+
+            // ordering the dstore
+            this.dstoresByFiles.add(dstore);
+            this.dstoresByBytes.add(dstore);
+        }
+
+        // finding the files not stored the minimum number of times
+        for(String file : this.fileCount.keySet()){
+            this.updateMinTimes(file, this.fileCount.get(file));
+        }
     }
 
     ///////////////////////////////////
@@ -44,10 +123,34 @@ public class System{
      * 
      * @param dstore The Dstore the file is being added to.
      * @param file The file being added to the Dstore.
+     * @param filesize The size of the file being added.
      */
     public void addFileToDstore(Integer dstore, String file, int filesize){
-        // adding the file to the dstore's file list
+        // file already on the dstore - nothing to update
+        if(this.fileDistribution.get(dstore).containsKey(file)){
+            return;
+        }
+
+        // adding the file to the dstore's file list (re-ordering the dstore)
+        this.dstoresByFiles.remove(dstore);
+        this.dstoresByBytes.remove(dstore);
         this.fileDistribution.get(dstore).put(file, filesize);
+        if(this.filesBySize.containsKey(dstore)){
+            this.filesBySize.get(dstore).computeIfAbsent(filesize, size -> new ArrayDeque<String>()).add(file);
+        }
+        this.bytesStored.put(dstore, this.bytesStored.get(dstore) + filesize);
+        this.dstoresByFiles.add(dstore);
+        this.dstoresByBytes.add(dstore);
+
+        // updating the file's replica count and size
+        int count = this.fileCount.getOrDefault(file, 0) + 1;
+        this.fileCount.put(file, count);
+        if(count == 1){
+            // new file in the system
+            this.fileSizes.put(file, filesize);
+            this.fileSizeCount.merge(filesize, 1, Integer::sum);
+        }
+        this.updateMinTimes(file, count);
     }
 
     /**
@@ -58,34 +161,46 @@ public class System{
      * @param file The file being removed from the Dstore.
      */
     public void removeFileFromDstore(Integer dstore, String file){
-        // removing the file from the dstore's file list
-        this.fileDistribution.get(dstore).remove(file);
+        // file not on the dstore - nothing to update
+        if(!this.fileDistribution.get(dstore).containsKey(file)){
+            return;
+        }
+
+        // removing the file from the dstore's file list (re-ordering the dstore)
+        this.dstoresByFiles.remove(dstore);
+        this.dstoresByBytes.remove(dstore);
+        int filesize = this.fileDistribution.get(dstore).remove(file);
+        this.bytesStored.put(dstore, this.bytesStored.get(dstore) - filesize);
+        this.dstoresByFiles.add(dstore);
+        this.dstoresByBytes.add(dstore);
+
+        // updating the file's replica count
+        int count = this.fileCount.get(file) - 1;
+        if(count == 0){
+            // file no longer stored on the system
+            this.fileCount.remove(file);
+            this.fileSizeCount.computeIfPresent(this.fileSizes.remove(file), (size, files) -> (files == 1) ? null : files - 1);
+            this.filesNotStoredMinTimes.remove(file);
+        }
+        else{
+            this.fileCount.put(file, count);
+            this.updateMinTimes(file, count);
+        }
     }
 
     /**
-     * Updates the provided system state to reflect the changes made in the provided
-     * rebalance information.
+     * Updates the set of files not stored the minimum number of times for the
+     * provided file.
      * 
-     * @param rebalanceInformation The description of the changes made to the system state.
+     * @param file The file whose replica count has changed.
+     * @param count The number of Dstores the file is now replicated over.
      */
-    public void updateFromRebalanceInformation(HashMap<Integer, RebalanceInformation> rebalanceInformation){
-        // dealing with rebalance information for each dstore
-        for(Integer dstore : rebalanceInformation.keySet()){
-
-            // DEALING WITH FILES SENT //
-
-            for(FileToSend fileToSend : rebalanceInformation.get(dstore).getFilesToSend()){
-                for(int dstorePort : fileToSend.dStores){
-                    this.addFileToDstore(dstorePort, fileToSend.filename, fileToSend.filesize);
-                }
-            }
-
-            // DEALING WITH FILES REMOVED //
-            
-            for(String fileToRemove : rebalanceInformation.get(dstore).getFilesToRemove()){
-                // removing the file from the file distribution
-                this.removeFileFromDstore(dstore, fileToRemove);
-            }
+    private void updateMinTimes(String file, int count){
+        if(count < this.minDstores){
+            this.filesNotStoredMinTimes.add(file);
+        }
+        else{
+            this.filesNotStoredMinTimes.remove(file);
         }
     }
 
@@ -113,38 +228,77 @@ public class System{
      * false if not.
      */
     public boolean filesStoredMinTimes(){
-        // if files are stored r times, then there are no files not stored R times (duh...)
-        return (this.getFilesNotStoredMinTimes().size() == 0);
+        return this.filesNotStoredMinTimes.isEmpty();
     }
 
     /**
      * Determines if the files within the system are stored evenly across the Dstores.
      * 
-     * Files are stored evenly if each Dstore stores between Floor(R * F / N) and 
-     * Ceiling(R * F / N) files, where R is the replication factor, F is the number
-     * of files, and N is the number of Dstores (i.e., each Dstore stores the average
-     * amount of files).
+     * When balancing on files, files are stored evenly if each Dstore stores between 
+     * Floor(R * F / N) and Ceiling(R * F / N) files, where R is the replication factor, F 
+     * is the number of files, and N is the number of Dstores (i.e., each Dstore stores the 
+     * average amount of files).
+     * 
+     * When balancing on bytes, files are stored evenly if the Dstore storing the most bytes
+     * stores no more than twice the size of the largest file more than the Dstore storing the
+     * fewest bytes (i.e., moving any one file would not bring the two closer together).
      * 
      * @return True if the files are stored evenly, false if not.
      */
     public boolean filesStoredEvenly(){
-        // calculating min and max values
+        // no dstores - nothing to spread
+        if(this.dstoresByFiles.isEmpty()){
+            return true;
+        }
+
+        // BALANCING ON BYTES //
+
+        if(this.balanceMode == BalanceMode.BYTES){
+            long spread = this.bytesStored.get(this.dstoresByBytes.last()) - this.bytesStored.get(this.dstoresByBytes.first());
+
+            return (spread <= 2L * this.getLargestFileSize());
+        }
+
+        // BALANCING ON FILES //
+
+        // only the least and most loaded dstores need to be checked
+        int fewestFiles = this.fileDistribution.get(this.dstoresByFiles.first()).size();
+        int mostFiles = this.fileDistribution.get(this.dstoresByFiles.last()).size();
+
+        return (fewestFiles >= this.getMinFilesPerDstore() && mostFiles <= this.getMaxFilesPerDstore());
+    }
+
+    /**
+     * Returns the fewest number of files a Dstore can store when files are stored evenly
+     * (Floor(R * F / N)).
+     * 
+     * @return The fewest number of files a Dstore can store.
+     */
+    public int getMinFilesPerDstore(){
+        return (int) Math.floor(this.getAverageFilesPerDstore());
+    }
+
+    /**
+     * Returns the most files a Dstore can store when files are stored evenly
+     * (Ceiling(R * F / N)).
+     * 
+     * @return The most files a Dstore can store.
+     */
+    public int getMaxFilesPerDstore(){
+        return (int) Math.ceil(this.getAverageFilesPerDstore());
+    }
+
+    /**
+     * Returns the average number of files stored on a Dstore (R * F / N).
+     * 
+     * @return The average number of files stored on a Dstore.
+     */
+    private double getAverageFilesPerDstore(){
         double r = this.minDstores;
         double f = this.getNumberOfFiles();
         double n = this.getNumberOfDstores();
-        double averageFiles = r * f / n;
-        double minFiles = Math.floor(averageFiles);
-        double maxFiles = Math.ceil(averageFiles);
-
-        // looping over dstores and checking the number of files they store
-        for(int dstoreCount : this.getDstoreFileCount().values()){
-            if(dstoreCount < minFiles || dstoreCount > maxFiles){
-                return false;
-            }
-        }
 
-        // not returned false - file spread is good - returning true
-        return true;
+        return (r * f / n);
     }
 
     ///////////////////////////
@@ -180,8 +334,8 @@ public class System{
      */
     public Integer getDstoreThatHasFile(String file){
         // finding dstore that stores the file
-        for(Integer dstore : this.getDstores()){
-            if(this.getFilesOnDstore(dstore).keySet().contains(file)){
+        for(Integer dstore : this.fileDistribution.keySet()){
+            if(this.fileDistribution.get(dstore).containsKey(file)){
                 return dstore;
             }
         }
@@ -201,7 +355,7 @@ public class System{
 
         // populating the dstore count
         for(Integer dstore : this.fileDistribution.keySet()){
-            dstoreCount.put(dstore, this.fileDistribution.get(dstore).keySet().size());
+            dstoreCount.put(dstore, this.fileDistribution.get(dstore).size());
         }
 
         // returning the dstore count
@@ -209,35 +363,51 @@ public class System{
     }
 
     /**
-     * Returns a list of all Dstores in the System, sorted by the number of files they 
+     * Returns the Dstores in the System, ordered by the number of files they
      * contain, in ascending order.
      * 
-     * @return A list of all Dstores in the System, sorted according to the number of files 
+     * The returned set is a live view that is re-ordered as files are added and
+     * removed, and so must not be iterated over while the System is being changed.
+     * 
+     * @return The Dstores in the System, ordered according to the number of files
      * they contain.
      */
-    public ArrayList<Integer> getDstoresSortedByFiles(){
-        // creating mapping for sorting (cannot sort a map of object -> map, but can sort map of object -> list)
-        HashMap<Integer, ArrayList<String>> dstoresList = new HashMap<Integer, ArrayList<String>>();
-        for(Integer dstore : this.fileDistribution.keySet()){
-            dstoresList.put(dstore, new ArrayList<String>(this.fileDistribution.get(dstore).keySet()));
-        }
+    public TreeSet<Integer> getDstoresSortedByFiles(){
+        return this.dstoresByFiles;
+    }
 
-        // getting list of dstores in order of files they store
-        List<Integer> sortedDstoresList = dstoresList.entrySet().stream()
-            .collect(
-                    Collectors.toMap(
-                            Map.Entry::getKey,
-                            entry -> entry.getValue().size()
-                        ) // get a map where key=original key and value list size
-            )
-            .entrySet()
-            .stream() // sort map by value - list size
-            .sorted(Map.Entry.<Integer, Integer>comparingByValue())
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toList());
+    /**
+     * Returns the Dstores in the System, ordered by the number of bytes they
+     * store, in ascending order.
+     * 
+     * The returned set is a live view that is re-ordered as files are added and
+     * removed, and so must not be iterated over while the System is being changed.
+     * 
+     * @return The Dstores in the System, ordered according to the number of bytes 
+     * they store.
+     */
+    public TreeSet<Integer> getDstoresSortedByBytes(){
+        return this.dstoresByBytes;
+    }
 
-        // returning the sorted list of dstores
-        return new ArrayList<Integer>(sortedDstoresList);
+    /**
+     * Returns the Dstores in the System, ordered by what the System is balanced on
+     * (the number of files or bytes they store), in ascending order.
+     * 
+     * @return The Dstores in the System, ordered by how loaded they are.
+     */
+    public TreeSet<Integer> getDstoresSortedByLoad(){
+        return (this.balanceMode == BalanceMode.BYTES) ? this.dstoresByBytes : this.dstoresByFiles;
+    }
+
+    /**
+     * Returns the number of bytes stored on the provided Dstore.
+     * 
+     * @param dstore The Dstore the number of bytes is being gathered for.
+     * @return The total size of the files stored on the Dstore.
+     */
+    public long getBytesOnDstore(Integer dstore){
+        return this.bytesStored.get(dstore);
     }
 
     /////////////////////////
@@ -251,16 +421,7 @@ public class System{
      * @return A mapping of filename to filesize for all files in the system.
      */
     public HashMap<String, Integer> getFiles(){
-        // hashmap to hold the list of files
-        HashMap<String, Integer> files = new HashMap<String, Integer>();
-
-        // iterating over dstores and adding each ones files to the map
-        for(HashMap<String, Integer> dstoreFiles : this.fileDistribution.values()){
-            files.putAll(dstoreFiles);
-        }
-
-        // returning the created file list
-        return files;
+        return new HashMap<String, Integer>(this.fileSizes);
     }
 
     /**
@@ -269,7 +430,7 @@ public class System{
      * @return All files stored in the system as a list of filenames.
      */
     public ArrayList<String> getFileNames(){
-        return new ArrayList<String>(this.getFiles().keySet());
+        return new ArrayList<String>(this.fileSizes.keySet());
     }
 
     /**
@@ -278,21 +439,7 @@ public class System{
      * @return The number of file stored in the System.
      */
     public int getNumberOfFiles(){
-        // list to hold all files
-        ArrayList<String> files = new ArrayList<String>();
-
-        // iterating through dstordes and adding files to list
-        for(Integer dstore : this.fileDistribution.keySet()){
-            for(String file : this.fileDistribution.get(dstore).keySet()){
-                // only adding file if it's not yet been added
-                if(!files.contains(file)){
-                    files.add(file);
-                }
-            }
-        }
-
-        // returning number of files
-        return files.size();
+        return this.fileCount.size();
     }
 
     /**
@@ -307,28 +454,167 @@ public class System{
     }
 
     /**
-     * Returns the filesize for the provided file. 
+     * Returns the size of the smallest file stored on the provided Dstore.
      * 
-     * Returns -1 if there is no record of the file in the System.
+     * @param dstore The Dstore being searched.
+     * @return The size of the smallest file on the Dstore, or -1 if the Dstore stores no files.
+     */
+    public int getSmallestFileSizeOnDstore(Integer dstore){
+        TreeMap<Integer, ArrayDeque<String>> filesBySize = this.getFilesOnDstoreBySize(dstore);
+
+        while(!filesBySize.isEmpty()){
+            // dropping the files at the front that are no longer on the dstore
+            Map.Entry<Integer, ArrayDeque<String>> smallestFiles = filesBySize.firstEntry();
+            while(!smallestFiles.getValue().isEmpty() && !this.isOnDstore(dstore, smallestFiles.getValue().peekFirst(), smallestFiles.getKey())){
+                smallestFiles.getValue().pollFirst();
+            }
+
+            // files of this size remain
+            if(!smallestFiles.getValue().isEmpty()){
+                return smallestFiles.getKey();
+            }
+
+            filesBySize.remove(smallestFiles.getKey());
+        }
+
+        // no files on the dstore
+        return -1;
+    }
+
+    /**
+     * Finds the smallest file on a Dstore that is not stored on another Dstore.
      * 
-     * @return The filesize of the provided file, or -1 if the file is not 
-     * found in the file distribution.
+     * @param dstoreWithFile The Dstore the file is stored on.
+     * @param dstoreWithoutFile The Dstore the file must not be stored on.
+     * @return A FileOnDstore object representing the file on the Dstore it is stored on, 
+     * or null if every file on the Dstore is stored on the other Dstore.
      */
-    public int getFileSize(String file){
-        // setting initial value for the filesize
-        int filesize = -1;
+    public FileOnDstore getSmallestFileNotOnDstore(Integer dstoreWithFile, Integer dstoreWithoutFile){
+        return this.getFileNotOnDstore(dstoreWithFile, dstoreWithoutFile, this.getFilesOnDstoreBySize(dstoreWithFile));
+    }
 
-        // iterating through the file distributio to find the file
-        for(Integer dstore : this.fileDistribution.keySet()){
-            for(String f : this.fileDistribution.get(dstore).keySet()){
-                if(f.equals(file)){
-                    filesize = this.fileDistribution.get(dstore).get(f);
+    /**
+     * Finds the largest file on a Dstore that is no larger than the provided size and is not 
+     * stored on another Dstore.
+     * 
+     * @param dstoreWithFile The Dstore the file is stored on.
+     * @param dstoreWithoutFile The Dstore the file must not be stored on.
+     * @param maxFilesize The largest size the file can be.
+     * @return A FileOnDstore object representing the file on the Dstore it is stored on, 
+     * or null if there is no suitable file.
+     */
+    public FileOnDstore getLargestFileNotOnDstore(Integer dstoreWithFile, Integer dstoreWithoutFile, long maxFilesize){
+        int limit = (int) Math.min(maxFilesize, Integer.MAX_VALUE);
+
+        return this.getFileNotOnDstore(dstoreWithFile, dstoreWithoutFile, this.getFilesOnDstoreBySize(dstoreWithFile).headMap(limit, true).descendingMap());
+    }
+
+    /**
+     * Finds the first file, in the order of the provided sizes, on a Dstore that is not 
+     * stored on another Dstore.
+     * 
+     * @param dstoreWithFile The Dstore the file is stored on.
+     * @param dstoreWithoutFile The Dstore the file must not be stored on.
+     * @param filesBySize The files on the Dstore, grouped by size in the order they are searched.
+     * @return A FileOnDstore object representing the file on the Dstore it is stored on, 
+     * or null if there is no suitable file.
+     */
+    private FileOnDstore getFileNotOnDstore(Integer dstoreWithFile, Integer dstoreWithoutFile, Map<Integer, ArrayDeque<String>> filesBySize){
+        HashMap<String, Integer> filesOnDstoreWithoutFile = this.fileDistribution.get(dstoreWithoutFile);
+
+        Iterator<Map.Entry<Integer, ArrayDeque<String>>> sizes = filesBySize.entrySet().iterator();
+        while(sizes.hasNext()){
+            Map.Entry<Integer, ArrayDeque<String>> filesOfSize = sizes.next();
+
+            // finding a file of this size that is not on the other dstore
+            Iterator<String> files = filesOfSize.getValue().iterator();
+            while(files.hasNext()){
+                String file = files.next();
+
+                // dropping the files that are no longer on the dstore (cheap, as they are near the front)
+                if(!this.isOnDstore(dstoreWithFile, file, filesOfSize.getKey())){
+                    files.remove();
+                }
+                else if(!filesOnDstoreWithoutFile.containsKey(file)){
+                    return new FileOnDstore(dstoreWithFile, file, filesOfSize.getKey());
                 }
             }
+
+            // no files of this size left on the dstore
+            if(filesOfSize.getValue().isEmpty()){
+                sizes.remove();
+            }
         }
 
-        // returning the filesize
-        return filesize;
+        // no suitable file found - returning null
+        return null;
+    }
+
+    /**
+     * Returns the files stored on the provided Dstore, grouped by their size.
+     * 
+     * The grouping is only built the first time it is needed for a Dstore (it is not needed
+     * when the System is already balanced), and files added to the Dstore are then appended
+     * to it. Files removed from the Dstore are left in place, and are dropped by the searches
+     * when they come across them, so that keeping the grouping up to date costs nothing when
+     * a file is removed.
+     * 
+     * @param dstore The Dstore the files are being gathered for.
+     * @return The files stored on the Dstore (and files since removed from it), mapped from 
+     * their size.
+     */
+    private TreeMap<Integer, ArrayDeque<String>> getFilesOnDstoreBySize(Integer dstore){
+        return this.filesBySize.computeIfAbsent(dstore, key -> {
+            TreeMap<Integer, ArrayDeque<String>> files = new TreeMap<Integer, ArrayDeque<String>>();
+            for(Map.Entry<String, Integer> file : this.fileDistribution.get(dstore).entrySet()){
+                files.computeIfAbsent(file.getValue(), size -> new ArrayDeque<String>()).add(file.getKey());
+            }
+            return files;
+        });
+    }
+
+    /**
+     * Determines if the provided file, of the provided size, is stored on the provided Dstore.
+     * 
+     * @param dstore The Dstore being checked.
+     * @param file The name of the file.
+     * @param filesize The size of the file.
+     * @return True if the file is stored on the Dstore, false if not.
+     */
+    private boolean isOnDstore(Integer dstore, String file, int filesize){
+        Integer storedSize = this.fileDistribution.get(dstore).get(file);
+
+        return storedSize != null && storedSize == filesize;
+    }
+
+    /**
+     * Returns the size of the smallest file in the System.
+     * 
+     * @return The size of the smallest file in the System, or 0 if there are no files.
+     */
+    public int getSmallestFileSize(){
+        return this.fileSizeCount.isEmpty() ? 0 : this.fileSizeCount.firstKey();
+    }
+
+    /**
+     * Returns the size of the largest file in the System.
+     * 
+     * @return The size of the largest file in the System, or 0 if there are no files.
+     */
+    public int getLargestFileSize(){
+        return this.fileSizeCount.isEmpty() ? 0 : this.fileSizeCount.lastKey();
+    }
+
+    /**
+     * Returns the filesize for the provided file. 
+     * 
+     * Returns -1 if there is no record of the file in the System.
+     * 
+     * @return The filesize of the provided file, or -1 if the file is not 
+     * found in the file distribution.
+     */
+    public int getFileSize(String file){
+        return this.fileSizes.getOrDefault(file, -1);
     }
     
     /**
@@ -339,25 +625,7 @@ public class System{
      * files are replicated across.
      */
     public HashMap<String, Integer> getFileCount(){
-        // map to hold all mappings
-        HashMap<String, Integer> fileCount = new HashMap<String, Integer>();
-
-        // iterating through dstordes and adding files to list
-        for(Integer dstore : this.fileDistribution.keySet()){
-            for(String file : this.fileDistribution.get(dstore).keySet()){
-                // file not yet added - has a count of one
-                if(!fileCount.keySet().contains(file)){
-                    fileCount.put(file, 1);
-                }
-                // file already added - increment count by 1
-                else{
-                    fileCount.put(file, fileCount.get(file) + 1);
-                }
-            }
-        }
-
-        // returning number of files
-        return fileCount;
+        return new HashMap<String, Integer>(this.fileCount);
     }
 
     /**
@@ -368,17 +636,11 @@ public class System{
      * that are not stored the minimum number of times.
      */
     public HashMap<String, Integer> getFilesNotStoredMinTimes(){
-        // gettinng mapping of files to the number of times they are stored
-        HashMap<String, Integer> allFilesCount = this.getFileCount();
-
         // creating map for files that are not stored R times
         HashMap<String, Integer> filesNotStoredMinTimes = new HashMap<String, Integer>();
 
-        // iterating through files and adding those that are not stored R times to the list
-        for(String file : allFilesCount.keySet()){
-            if(allFilesCount.get(file) < this.minDstores){
-                filesNotStoredMinTimes.put(file, allFilesCount.get(file));
-            }
+        for(String file : this.filesNotStoredMinTimes){
+            filesNotStoredMinTimes.put(file, this.fileCount.get(file));
         }
 
         // returning the list of files that are not stored r times
@@ -393,6 +655,10 @@ public class System{
         return this.minDstores;
     }
 
+    public BalanceMode getBalanceMode(){
+        return this.balanceMode;
+    }
+
     public HashMap<Integer, HashMap<String, Integer>> getFileDistribution(){
         return this.fileDistribution;
     }
@@ -400,4 +666,49 @@ public class System{
     public String toString(){
         return this.fileDistribution.toString();
     }
+
+    //////////////////
+    // BALANCE MODE //
+    //////////////////
+
+    /**
+     * Represents what files are spread evenly across the Dstores by.
+     */
+    public enum BalanceMode{
+        // modes
+        FILES("files"), // each dstore stores the same number of files
+        BYTES("bytes"); // each dstore stores the same number of bytes
+
+        private String balanceMode;
+
+        private BalanceMode(String balanceMode){
+            this.balanceMode = balanceMode;
+        }
+
+        /**
+         * Returns the BalanceMode with the provided name.
+         * 
+         * @param name The name of the mode (as used in the Controller's options).
+         * @return The BalanceMode with the provided name.
+         * @throws IllegalArgumentException If there is no mode with the provided name.
+         */
+        public static BalanceMode fromString(String name) throws IllegalArgumentException{
+            for(BalanceMode mode : BalanceMode.values()){
+                if(mode.balanceMode.equals(name)){
+                    return mode;
+                }
+            }
+
+            throw new IllegalArgumentException("Unknown balance mode '" + name + "'.");
+        }
+
+        /**
+         * Converts the balance mode to a string.
+         * @return String equivalent of the balance mode.
+         */
+        @Override
+        public String toString(){
+            return this.balanceMode;
+        }
+    }
 }
\ No newline at end of file
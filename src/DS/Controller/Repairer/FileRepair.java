@@ -0,0 +1,56 @@
+package DS.Controller.Repairer;
+
+/**
+ * Represents a file that is waiting to have its lost replicas restored.
+ *
+ * Repairs are ordered by the number of replicas the file has left (fewest first),
+ * so that the files closest to being lost are repaired first.
+ */
+public class FileRepair implements Comparable<FileRepair>{
+
+    // member variables
+    private String filename;
+    private int replicas; // replicas left when the repair was queued
+
+    /**
+     * Class constructor.
+     *
+     * @param filename The name of the file.
+     * @param replicas The number of replicas the file has left.
+     */
+    public FileRepair(String filename, int replicas){
+        // initializing
+        this.filename = filename;
+        this.replicas = replicas;
+    }
+
+    /**
+     * Compares this repair to another.
+     *
+     * @param otherRepair The repair being compared to.
+     * @return A negative number if this repair should be made first, 0 if the repairs are
+     * equal, and a positive number if the other repair should be made first.
+     */
+    @Override
+    public int compareTo(FileRepair otherRepair){
+        // fewest replicas first
+        if(this.replicas != otherRepair.getReplicas()){
+            return Integer.compare(this.replicas, otherRepair.getReplicas());
+        }
+
+        // same replicas - ordered by name
+        return this.filename.compareTo(otherRepair.getFilename());
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public int getReplicas(){
+        return this.replicas;
+    }
+}
@@ -0,0 +1,328 @@
+package DS.Controller.Repairer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import DS.Controller.Controller;
+import DS.Controller.Index.DstoreIndex;
+import DS.Protocol.Protocol;
+import DS.Protocol.Event.Operation.ReplicateCompleteEvent;
+import DS.Protocol.Event.Repair.RedundancyRestoredEvent;
+import DS.Protocol.Event.Repair.RepairQueuedEvent;
+import DS.Protocol.Exception.ReplicateFailureException;
+
+/**
+ * Restores the replicas of files that have lost them (e.g., when a Dstore fails).
+ *
+ * Under-replicated files are queued by the number of replicas they have left, and the
+ * files with the fewest replicas are repaired first. Each repair copies the file from a
+ * Dstore that stores it onto the least loaded Dstores that do not (a REPLICATE), and at most
+ * 'repairs' files are repaired at once. Rebalances wait for the queue to be emptied, so
+ * repairs are made ahead of any balancing.
+ *
+ * The time taken from the first file being queued to every queued file being repaired
+ * (the time to full redundancy) is logged, and kept as a metric.
+ */
+public class Repairer extends Thread{
+
+    // member variables
+    private Controller controller;
+    private Object queueLock;
+    private PriorityQueue<FileRepair> queue;
+    private HashMap<String, FileRepair> queuedFiles; // filename to its repair in the queue
+    private HashSet<String> activeFiles; // files being repaired
+    private HashSet<String> requeuedFiles; // files queued again while being repaired
+    private int activeRepairs;
+    private long repairStarted; // time the queue stopped being idle (0 if idle)
+    private int filesRepaired; // files repaired since the queue stopped being idle
+    private int filesNotRepaired; // files that could not be repaired since the queue stopped being idle
+    private volatile long timeToRedundancy; // ms taken to empty the queue the last time (-1 if never emptied)
+    private Semaphore repairSlots;
+    private ExecutorService repairExecutor;
+
+    /**
+     * Class constructor.
+     *
+     * @param controller The Controller the Repairer is repairing files for.
+     */
+    public Repairer(Controller controller){
+        // initializing
+        this.controller = controller;
+        this.queueLock = new Object();
+        this.queue = new PriorityQueue<FileRepair>();
+        this.queuedFiles = new HashMap<String, FileRepair>();
+        this.activeFiles = new HashSet<String>();
+        this.requeuedFiles = new HashSet<String>();
+        this.activeRepairs = 0;
+        this.repairStarted = 0;
+        this.filesRepaired = 0;
+        this.filesNotRepaired = 0;
+        this.timeToRedundancy = -1;
+        this.repairSlots = new Semaphore(Math.max(1, controller.getOptions().getRepairs()));
+        this.repairExecutor = Executors.newFixedThreadPool(Math.max(1, controller.getOptions().getRepairs()), runnable -> {
+            // repairs should not keep the controller alive
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.setDaemon(true);
+    }
+
+    /**
+     * Method run when thread started.
+     */
+    public void run(){
+        // repairing files as they are queued
+        this.repairFiles();
+    }
+
+    //////////////
+    // QUEUEING //
+    //////////////
+
+    /**
+     * Queues the provided files to have their lost replicas restored.
+     *
+     * Files that are not under-replicated are ignored. Files that are already queued
+     * are re-queued with their current number of replicas, and files that are being 
+     * repaired are queued again once their repair has finished (if they still need it).
+     *
+     * @param filenames The names of the files that may have lost replicas.
+     */
+    public void queueRepairs(Collection<String> filenames){
+        // repairs disabled - left to the rebalance
+        if(this.controller.getOptions().getRepairs() == 0){
+            return;
+        }
+
+        int queued = 0;
+
+        synchronized(this.queueLock){
+            for(String filename : filenames){
+                int replicas = this.controller.getIndex().getDstoresStoredOn(filename).size();
+
+                // file has all of its replicas
+                if(replicas >= this.controller.getMinDstores()){
+                    continue;
+                }
+
+                // file being repaired - checked again once the repair has finished
+                if(this.activeFiles.contains(filename)){
+                    this.requeuedFiles.add(filename);
+                    continue;
+                }
+
+                // removing any earlier repair of the file
+                FileRepair earlierRepair = this.queuedFiles.remove(filename);
+                if(earlierRepair != null){
+                    this.queue.remove(earlierRepair);
+                }
+
+                // queueing the repair
+                FileRepair repair = new FileRepair(filename, replicas);
+                this.queue.add(repair);
+                this.queuedFiles.put(filename, repair);
+                queued++;
+            }
+
+            // nothing to repair
+            if(queued == 0){
+                return;
+            }
+
+            // queue was idle - starting the time to redundancy
+            if(this.repairStarted == 0){
+                this.repairStarted = System.currentTimeMillis();
+            }
+
+            // waking the repairer
+            this.queueLock.notifyAll();
+        }
+
+        // logging
+        this.controller.handleEvent(new RepairQueuedEvent(queued));
+    }
+
+    /**
+     * Waits until there are no repairs queued or in progress.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void waitForRepairs() throws InterruptedException{
+        synchronized(this.queueLock){
+            while(!this.queue.isEmpty() || this.activeRepairs > 0){
+                this.queueLock.wait();
+            }
+        }
+    }
+
+    ///////////////
+    // REPAIRING //
+    ///////////////
+
+    /**
+     * Continually takes the most urgent repair from the queue and makes it, making at
+     * most 'repairs' repairs at once.
+     */
+    private void repairFiles(){
+        while(this.controller.isActive()){
+            try{
+                // waiting for a free repair slot
+                this.repairSlots.acquire();
+
+                // taking the most urgent repair
+                FileRepair repair = this.takeRepair();
+
+                // making the repair
+                this.repairExecutor.submit(() -> {
+                    boolean repaired = false;
+                    try{
+                        repaired = this.repairFile(repair.getFilename());
+                    }
+                    finally{
+                        this.repairSlots.release();
+                        this.finishRepair(repair.getFilename(), repaired);
+                    }
+                });
+            }
+            catch(InterruptedException e){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes the most urgent repair from the queue, waiting for one to be queued.
+     *
+     * @return The repair with the fewest replicas left.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    private FileRepair takeRepair() throws InterruptedException{
+        synchronized(this.queueLock){
+            while(this.queue.isEmpty()){
+                this.queueLock.wait();
+            }
+
+            FileRepair repair = this.queue.poll();
+            this.queuedFiles.remove(repair.getFilename());
+            this.activeFiles.add(repair.getFilename());
+            this.activeRepairs++;
+
+            return repair;
+        }
+    }
+
+    /**
+     * Records that a repair has finished, and queues the file again if it was queued while
+     * being repaired. Logs the time to full redundancy once every queued repair has finished.
+     *
+     * @param filename The name of the file that was repaired.
+     * @param repaired Whether or not the file was repaired.
+     */
+    private void finishRepair(String filename, boolean repaired){
+        synchronized(this.queueLock){
+            this.activeRepairs--;
+            this.activeFiles.remove(filename);
+
+            // file queued again while being repaired
+            if(this.requeuedFiles.remove(filename)){
+                this.queueRepairs(List.of(filename));
+            }
+
+            if(repaired){
+                this.filesRepaired++;
+            }
+            else{
+                this.filesNotRepaired++;
+            }
+
+            // every queued repair finished - queue now idle
+            if(this.queue.isEmpty() && this.activeRepairs == 0){
+                this.timeToRedundancy = System.currentTimeMillis() - this.repairStarted;
+                this.controller.handleEvent(new RedundancyRestoredEvent(this.filesRepaired, this.filesNotRepaired, this.timeToRedundancy));
+
+                this.repairStarted = 0;
+                this.filesRepaired = 0;
+                this.filesNotRepaired = 0;
+            }
+
+            // waking anything waiting for the repairs
+            this.queueLock.notifyAll();
+        }
+    }
+
+    /**
+     * Restores the lost replicas of the given file.
+     *
+     * Failures are logged rather than thrown, and the file is left to be repaired by
+     * the next rebalance.
+     *
+     * @param filename The name of the file.
+     * @return True if the file has all of its replicas, false if it could not be repaired.
+     */
+    private boolean repairFile(String filename){
+        try{
+            ArrayList<DstoreIndex> sources = this.controller.getIndex().getDstoresStoredOn(filename);
+            int missingReplicas = this.controller.getMinDstores() - sources.size();
+
+            // file has been removed, or already has all of its replicas
+            if(sources.isEmpty() || missingReplicas <= 0){
+                return true;
+            }
+
+            // starting the replication onto the least loaded dstores
+            ArrayList<Integer> targets = this.controller.getIndex().startReplicaRepair(filename, this.controller.getIndex().getDstoresToRepairOn(filename, missingReplicas), this.controller.getTimeout());
+
+            // not enough dstores to copy the file onto
+            if(targets.isEmpty()){
+                return false;
+            }
+
+            // sending REPLICATE to a Dstore that stores the file
+            DstoreIndex source = sources.get(0);
+            source.getConnection().sendMessage(Protocol.getReplicateMessage(filename, source.getFile(filename).getFilesize(), targets));
+
+            // waiting for the replication to be complete
+            this.controller.getIndex().waitForReplicaRepair(filename, this.controller.getTimeout());
+
+            // logging
+            this.controller.handleEvent(new ReplicateCompleteEvent(filename, targets));
+
+            return (targets.size() == missingReplicas);
+        }
+        catch(Exception e){
+            // file may still be missing replicas - left to the next rebalance
+            this.controller.getIndex().getChanges().markFile(filename);
+
+            this.controller.handleError(new ReplicateFailureException(filename, e));
+
+            return false;
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    /**
+     * Returns the time taken to repair every queued file the last time the queue was emptied.
+     *
+     * @return The time to full redundancy in ms (-1 if the queue has never been emptied).
+     */
+    public long getTimeToRedundancy(){
+        return this.timeToRedundancy;
+    }
+
+    public int getQueuedRepairs(){
+        synchronized(this.queueLock){
+            return this.queue.size() + this.activeRepairs;
+        }
+    }
+}
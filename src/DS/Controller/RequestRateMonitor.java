@@ -0,0 +1,71 @@
+package DS.Controller;
+
+/**
+ * Measures the rate at which a Controller is receiving client requests.
+ *
+ * Requests are counted in one second buckets, and the rate is the average
+ * number of requests per second over the last WINDOW seconds. The buckets
+ * are re-used as time passes, so the monitor uses a fixed amount of memory.
+ */
+public class RequestRateMonitor{
+
+    // constants
+    private final static int WINDOW = 10; // seconds the rate is averaged over
+
+    // member variables
+    private long[] bucketSeconds; // the second each bucket is counting
+    private int[] bucketCounts; // the requests counted in each bucket
+
+    /**
+     * Class constructor.
+     */
+    public RequestRateMonitor(){
+        // initializing
+        this.bucketSeconds = new long[WINDOW];
+        this.bucketCounts = new int[WINDOW];
+    }
+
+    ///////////////
+    // RECORDING //
+    ///////////////
+
+    /**
+     * Records that a client request has been received.
+     */
+    public synchronized void recordRequest(){
+        long second = System.currentTimeMillis() / 1000;
+        int bucket = (int) (second % WINDOW);
+
+        // bucket last used for an earlier second - starting it again
+        if(this.bucketSeconds[bucket] != second){
+            this.bucketSeconds[bucket] = second;
+            this.bucketCounts[bucket] = 0;
+        }
+
+        this.bucketCounts[bucket]++;
+    }
+
+    ///////////////
+    // REPORTING //
+    ///////////////
+
+    /**
+     * Returns the average number of requests received per second over the
+     * last WINDOW seconds.
+     *
+     * @return The request rate in requests per second.
+     */
+    public synchronized double getRequestRate(){
+        long second = System.currentTimeMillis() / 1000;
+
+        // counting the requests in buckets still inside the window
+        int requests = 0;
+        for(int bucket = 0; bucket < WINDOW; bucket++){
+            if(second - this.bucketSeconds[bucket] < WINDOW){
+                requests += this.bucketCounts[bucket];
+            }
+        }
+
+        return ((double) requests / WINDOW);
+    }
+}
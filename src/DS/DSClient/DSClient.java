@@ -2,8 +2,13 @@ package DS.DSClient;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32C;
 
+import DS.Protocol.PartitionMap;
 import DS.Protocol.Protocol;
 import DS.Protocol.Event.Operation.ListCompleteEvent;
 import DS.Protocol.Event.Operation.LoadCompleteEvent;
@@ -17,6 +22,7 @@ import Network.Client.Client;
 import Network.Protocol.Event.HandeledNetworkEvent;
 import Network.Protocol.Event.NetworkEvent;
 import Network.Protocol.Exception.ClientSetupException;
+import Network.Protocol.Exception.ConnectToServerException;
 import Network.Protocol.Exception.ConnectionTerminatedException;
 import Network.Protocol.Exception.HandeledNetworkException;
 import Network.Protocol.Exception.MessageSendException;
@@ -32,9 +38,23 @@ import Network.Server.Server.ServerType;
  * into the 'handleInputRequest' method.
  * 
  * The class is essentially a request handler for the DSClient.
+ * 
+ * When the namespace is partitioned across several Controllers, the DSClient
+ * receives the partition map when it joins and routes each request to the 
+ * Controller that owns the file.
+ * 
+ * File locations leased by the Controller in LOAD_FROM messages are kept in a
+ * location cache, so that repeat LOADs of a file go straight to a Dstore while
+ * the lease is valid.
  */
 public class DSClient extends Client{
 
+    // member variables
+    private PartitionMap partitionMap;
+    private HashMap<Integer, Connection> controllerConnections;
+    private DSClientOptions options;
+    private LocationCache locationCache;
+
     /**
      * Class Constructor.
      * 
@@ -43,8 +63,24 @@ public class DSClient extends Client{
      * @param networkInterface The interface component for the Client.
      */
     public DSClient(int cPort, int timeout, NetworkInterface networkInterface) {
+        this(cPort, timeout, new DSClientOptions(), networkInterface);
+    }
+
+    /**
+     * Class Constructor.
+     * 
+     * @param cPort The port of the Controller.
+     * @param timeout The message timeout period.
+     * @param options The optional settings for the Client.
+     * @param networkInterface The interface component for the Client.
+     */
+    public DSClient(int cPort, int timeout, DSClientOptions options, NetworkInterface networkInterface) {
         // initialising member variables
         super(cPort, timeout, networkInterface);
+        this.partitionMap = new PartitionMap(new ArrayList<Integer>(List.of(cPort)));
+        this.controllerConnections = new HashMap<Integer, Connection>();
+        this.options = options;
+        this.locationCache = new LocationCache(options.getCacheSize());
     }
 
     ///////////
@@ -73,6 +109,23 @@ public class DSClient extends Client{
                 throw new InvalidMessageException(response.message, this.getServerConnection().getPort());
             }
 
+            // PARTITIONS //
+
+            // adding the main connection to the controller connections
+            this.controllerConnections.put(this.getServerPort(), this.getServerConnection());
+
+            // joining the Controllers of the other partitions
+            JoinAckToken joinAckToken = (JoinAckToken) response;
+            if(joinAckToken.partitions.size() > 1){
+                this.partitionMap = new PartitionMap(joinAckToken.partitions);
+
+                for(int controller : this.partitionMap.getControllers()){
+                    if(!this.controllerConnections.containsKey(controller)){
+                        this.connectToPartition(controller);
+                    }
+                }
+            }
+
             // JOIN_CLIENT_HEARTBEAT //
 
             // sending JOIN_CLIENT_HEARTBEAT message to controller
@@ -96,6 +149,37 @@ public class DSClient extends Client{
         }
     }
 
+    /**
+     * Connects to the Controller of another partition of the system.
+     * 
+     * @param controller The port of the Controller.
+     * @throws ConnectToServerException If the DSClient could not connect to the Controller.
+     */
+    private void connectToPartition(int controller) throws ConnectToServerException{
+        try{
+            // setting up the connection
+            Connection connection = new Connection(this.getNetworkInterface(), controller, ServerType.CONTROLLER);
+
+            // sending JOIN_CLIENT message to controller
+            connection.sendMessage(Protocol.getJoinClientMessage());
+
+            // waiting for JOIN_ACK
+            Token response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.getTimeout()));
+
+            // making sure response is JOIN_ACK
+            if(!(response instanceof JoinAckToken)){
+                // throwing exception
+                throw new InvalidMessageException(response.message, controller);
+            }
+
+            // adding the connection to the controller connections
+            this.controllerConnections.put(controller, connection);
+        }
+        catch(Exception e){
+            throw new ConnectToServerException(ServerType.CONTROLLER, controller, e);
+        }
+    }
+
     ////////////////////
     // EVENT HANDLING //
     ////////////////////
@@ -134,6 +218,16 @@ public class DSClient extends Client{
                 this.getNetworkInterface().logError(new HandeledNetworkException(new ControllerDisconnectException(this.getServerPort(), exception)));
             }
 
+            // Partition Controller Disconnected //
+
+            else if(this.controllerConnections.containsValue(exception.getConnection())){
+                // removing connection from client
+                this.controllerConnections.remove(exception.getConnection().getPort());
+
+                // logging error
+                this.getNetworkInterface().logError(new HandeledNetworkException(new ControllerDisconnectException(exception.getConnection().getPort(), exception)));
+            }
+
             // Dstore disconnected //
 
             else if(this.getSecondaryServerConnections().contains(exception.getConnection())){
@@ -162,6 +256,15 @@ public class DSClient extends Client{
     /**
      * Handles a STORE request.
      * 
+     * The file is sent to all of the Dstores in parallel, and the request completes as soon
+     * as the Controller reports STORE_COMPLETE (i.e., once it's write quorum of Dstores have 
+     * the file). Any remaining transfers carry on in the background.
+     * 
+     * The file is read once for all of the Dstores, and is sent with its CRC32C checksum so
+     * that each Dstore can check the content it receives. The hash of the content is sent
+     * first, so that a Dstore that already holds the content can store the file without it
+     * being sent.
+     * 
      * @param file The file object to be stored.
      * @param filesize The size of the file being stored.
      * 
@@ -173,24 +276,37 @@ public class DSClient extends Client{
      * @throws InvalidMessageException If a message of the wrong form is receieved during the communication.
      */
     public void storeFile(File file, int filesize) throws Exception{
+        // gathering the controller that owns the file
+        Connection controller = this.getControllerConnection(file.getName());
+
         // sending the store message to the controller
-        this.getServerConnection().sendMessage(Protocol.getStoreMessage(file.getName(), filesize));
+        controller.sendMessage(Protocol.getStoreMessage(file.getName(), filesize));
 
         // gathering response
-        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+        Token response = RequestTokenizer.getToken(controller.getMessageWithinTimeout(this.getTimeout()));
         
         // STORE_TO
         if(response instanceof StoreToToken){
             // gathering the token
             StoreToToken storeToToken = (StoreToToken) response;
+
+            // reading the file (once for all of the dstores)
+            byte[] fileContent;
+            try(FileInputStream fileInput = new FileInputStream(file)){
+                fileContent = fileInput.readNBytes(filesize);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(fileContent);
+            long checksum = crc.getValue();
+            String hash = Protocol.getContentHash(fileContent);
             
             // sending file to each dstore
             for(int dstore : storeToToken.ports){
-                this.sendFileToDstore(file, filesize, dstore);
+                this.startSendingFileToDstore(file.getName(), fileContent, checksum, hash, dstore);
             }
 
             // waiting for response from Controller
-            response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+            response = RequestTokenizer.getToken(controller.getMessageWithinTimeout(this.getTimeout()));
 
             // STORE_COMPLETE
             if(response instanceof StoreCompleteToken){
@@ -200,7 +316,7 @@ public class DSClient extends Client{
 
             // Invalid Response
             else{
-                throw new InvalidMessageException(response.message, this.getServerPort());
+                throw new InvalidMessageException(response.message, controller.getPort());
             }
         }
 
@@ -214,26 +330,60 @@ public class DSClient extends Client{
             throw new FileAlreadyExistsException(file.getName());
         }
 
+        // ERROR_WRONG_PARTITION
+        else if(response instanceof ErrorWrongPartitionToken){
+            throw new WrongPartitionException(file.getName(), ((ErrorWrongPartitionToken) response).controller);
+        }
+
         // Invalid Response
         else{
-            throw new InvalidMessageException(response.message, this.getServerPort());
+            throw new InvalidMessageException(response.message, controller.getPort());
         }
     }
 
+    /**
+     * Sends the file with the given name to the Dstore listening on the provided port 
+     * on a new thread.
+     * 
+     * @param filename The name of the file being sent.
+     * @param fileContent The content of the file.
+     * @param checksum The CRC32C of the content.
+     * @param hash The SHA-256 of the content.
+     * @param dstore The Dstore the file is being send to.
+     */
+    private void startSendingFileToDstore(String filename, byte[] fileContent, long checksum, String hash, int dstore){
+        // runnable for the transfer thread
+        Runnable runnable = () -> {
+            try{
+                // sending the file
+                this.sendFileToDstore(filename, fileContent, checksum, hash, dstore);
+            }
+            catch(Exception e){
+                // logging error
+                this.handleError(new FileStoreException(filename, dstore, e));
+            }
+        };
+
+        // starting a thread to send the file
+        new Thread(runnable).start();
+    }
+
     /**
      * Sends the file with the given name to the Dstore listening on the provided port.
      * 
-     * @param file The file to be sent to the Dstore
+     * The content is not sent if the Dstore replies that it already holds it.
+     * 
+     * @param filename The name of the file being sent.
+     * @param fileContent The content of the file.
+     * @param checksum The CRC32C of the content.
+     * @param hash The SHA-256 of the content.
      * @param dstore The Dstore the file is being send to.
      * 
      * @throws MessageSendException If a message couldn't be sent through the connection.
      * @throws MessageReceievedException If a message could not be receieved through the connection.
      * @throws InvalidMessageException If a message of the wrong form is receieved during the communication.
      */
-    private void sendFileToDstore(File file, int filesize, int dstore) throws Exception{
-        // loading the file
-        FileInputStream fileInput = new FileInputStream(file);
-
+    private void sendFileToDstore(String filename, byte[] fileContent, long checksum, String hash, int dstore) throws Exception{
         // setting up the connection
         Connection connection = new Connection(this.getNetworkInterface(), dstore, ServerType.DSTORE);
 
@@ -250,7 +400,7 @@ public class DSClient extends Client{
             // making sure response is JOIN_ACK
             if(response instanceof JoinAckToken){
                 // sending store message
-                connection.sendMessage(Protocol.getStoreMessage(file.getName(), filesize));
+                connection.sendMessage(Protocol.getStoreMessage(filename, fileContent.length, checksum, hash));
 
                 // waiting for acknowledgement
                 response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.getTimeout()));
@@ -258,18 +408,20 @@ public class DSClient extends Client{
                 // making sure acknowledgement was receieved
                 if(response instanceof AckToken){
                     // sending the file to the dstore
-                    byte[] fileContent = fileInput.readNBytes(filesize);
                     connection.sendBytes(fileContent);
 
                     // closing streams
                     connection.close();
-                    fileInput.close();
+                }
+                // content already held by the dstore - nothing to send
+                else if(response instanceof BlobExistsToken){
+                    // closing streams
+                    connection.close();
                 }
                 // invalid response received
                 else{
                     // closing streams
                     connection.close();
-                    fileInput.close();
 
                     // throwing exception
                     throw new InvalidMessageException(response.message, connection.getPort());
@@ -279,7 +431,6 @@ public class DSClient extends Client{
             else{
                 // closing streams
                 connection.close();
-                fileInput.close();
 
                 // throwing exception
                 throw new InvalidMessageException(response.message, connection.getPort());
@@ -314,6 +465,39 @@ public class DSClient extends Client{
      * @throws InvalidMessageException If a message of the wrong form is receieved during the communication.
      */
     public byte[] loadFile(String filename, boolean isReload) throws Exception{
+        // LEASED LOCATION //
+
+        if(!isReload){
+            FileLocation location = this.locationCache.get(filename);
+
+            // loading straight from a Dstore while the location is leased
+            if(location != null){
+                // trying each leased Dstore in turn
+                for(int port : location.getPorts()){
+                    try{
+                        // loading file from Dstore
+                        byte[] fileContent = this.loadFileFromDstore(port, filename, location.getFilesize());
+
+                        // logging operation complete
+                        this.handleEvent(new LoadCompleteEvent(filename));
+
+                        // returning the file content
+                        return fileContent;
+                    }
+                    // unable to load file content - trying the next Dstore
+                    catch(Exception e){
+                        // Logging error
+                        this.handleError(new FileLoadException(filename, port, e));
+                    }
+                }
+
+                // no leased Dstore could serve the file - location no longer valid, asking the Controller
+                this.locationCache.invalidate(filename);
+            }
+        }
+
+        // CONTROLLER //
+
         // gathering the protocol command
         String message = "";
         if(!isReload){
@@ -323,17 +507,25 @@ public class DSClient extends Client{
             message = Protocol.getReloadMessage(filename);
         }
 
+        // gathering the controller that owns the file
+        Connection controller = this.getControllerConnection(filename);
+
         // sending LOAD message to controller
-        this.getServerConnection().sendMessage(message);
+        controller.sendMessage(message);
 
         // gathering response
-        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+        Token response = RequestTokenizer.getToken(controller.getMessageWithinTimeout(this.getTimeout()));
         
         // LOAD_FROM
         if(response instanceof LoadFromToken){
             // gathering the token
             LoadFromToken loadFromToken = (LoadFromToken) response;
 
+            // caching the location of the file if it was leased
+            if(loadFromToken.lease > 0){
+                this.locationCache.put(filename, new FileLocation(loadFromToken.filesize, loadFromToken.ports, loadFromToken.lease));
+            }
+
             // LOADING FILE
             try{
                 // loading file from Dstore
@@ -350,6 +542,9 @@ public class DSClient extends Client{
                 // Logging error
                 this.handleError(new FileLoadException(filename, loadFromToken.port, e));
 
+                // location is no longer valid
+                this.locationCache.invalidate(filename);
+
                 // reloading if data could not be gathered
                 return this.loadFile(filename, true);
             }
@@ -370,15 +565,23 @@ public class DSClient extends Client{
             throw new NoValidDstoresException();
         }
 
+        // ERROR_WRONG_PARTITION
+        else if(response instanceof ErrorWrongPartitionToken){
+            throw new WrongPartitionException(filename, ((ErrorWrongPartitionToken) response).controller);
+        }
+
         // Invalid Response
         else{
-            throw new InvalidMessageException(response.message, this.getServerPort());
+            throw new InvalidMessageException(response.message, controller.getPort());
         }
     }
 
     /**
      * Loads a given file from the provided Dstore.
      * 
+     * The Dstore sends the checksum of the file after its content, which is compared to the
+     * checksum of the content as it is receieved.
+     * 
      * @param port The port the file is being loaded from.
      * @param filename The name of the file being loaded from the Dstore.
      * @param filesize The size of the file being loaded.
@@ -386,6 +589,7 @@ public class DSClient extends Client{
      * 
      * @throws MessageSendException If a message couldn't be sent through the connection.
      * @throws MessageReceievedException If a message could not be receieved through the connection.
+     * @throws ChecksumMismatchException If the content receieved does not match the checksum of the file.
      */
     private byte[] loadFileFromDstore(int port, String filename, int filesize) throws Exception{
         // setting up the connection
@@ -404,10 +608,17 @@ public class DSClient extends Client{
             // making sure response is JOIN_ACK
             if(response instanceof JoinAckToken){
                  // sending LOAD_DATA message
-                connection.sendMessage(Protocol.getLoadDataMessage(filename));
+                connection.sendMessage(Protocol.getLoadDataWithChecksumMessage(filename));
+
+                // reading file data (checksumming it as it arrives)
+                CRC32C crc = new CRC32C();
+                byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.getTimeout(), crc);
 
-                // reading file data
-                byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.getTimeout());
+                // reading the checksum of the file and making sure the content matches it
+                long checksum = ByteBuffer.wrap(connection.getNBytesWithinTimeout(4, this.getTimeout())).getInt() & 0xFFFFFFFFL;
+                if(checksum != crc.getValue()){
+                    throw new ChecksumMismatchException(filename, checksum, crc.getValue());
+                }
 
                 // closing connection
                 connection.close();
@@ -450,11 +661,17 @@ public class DSClient extends Client{
      * @throws InvalidMessageException If a message of the wrong form is receieved during the communication.
      */
     public void removeFile(String filename) throws Exception{
+        // location of the file will no longer be valid
+        this.locationCache.invalidate(filename);
+
+        // gathering the controller that owns the file
+        Connection controller = this.getControllerConnection(filename);
+
         // sending remove to controller
-        this.getServerConnection().sendMessage(Protocol.getRemoveMessage(filename));
+        controller.sendMessage(Protocol.getRemoveMessage(filename));
 
         // gathering response
-        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+        Token response = RequestTokenizer.getToken(controller.getMessageWithinTimeout(this.getTimeout()));
 
         // REMOVE
         if(response instanceof RemoveCompleteToken){
@@ -472,9 +689,14 @@ public class DSClient extends Client{
             throw new FileDoesNotExistException(filename);
         }
 
+        // ERROR_WRONG_PARTITION
+        else if(response instanceof ErrorWrongPartitionToken){
+            throw new WrongPartitionException(filename, ((ErrorWrongPartitionToken) response).controller);
+        }
+
         // Invalid Response
         else{
-            throw new InvalidMessageException(response.message, this.getServerPort());
+            throw new InvalidMessageException(response.message, controller.getPort());
         }
     }
 
@@ -485,24 +707,49 @@ public class DSClient extends Client{
     /**
      * Handles a LIST request.
      * 
+     * In a partitioned system, every Controller is asked for the files in its
+     * partition and the lists are combined.
+     * 
      * @throws MessageSendException If a message couldn't be sent through the connection.
      * @throws MessageReceievedException If a message could not be receieved through the connection.
      */
     public HashMap<String, Integer> getFileList() throws Exception{
+        // map to hold the files across all partitions
+        HashMap<String, Integer> files = new HashMap<String, Integer>();
+
+        // gathering the file list from each partition
+        for(int controller : this.partitionMap.getControllers()){
+            files.putAll(this.getFileList(this.getControllerConnection(controller)));
+        }
+
+        // logging operation complete
+        this.handleEvent(new ListCompleteEvent());
+
+        // returning the list of files
+        return files;
+    }
+
+    /**
+     * Gathers the list of files from the provided Controller.
+     * 
+     * @param controller The connection to the Controller.
+     * @return The list of files stored within the Controller's partition.
+     * 
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     * @throws MessageReceievedException If a message could not be receieved through the connection.
+     */
+    private HashMap<String, Integer> getFileList(Connection controller) throws Exception{
         // sending message to Controller
-        this.getServerConnection().sendMessage(Protocol.getListMessage());
+        controller.sendMessage(Protocol.getListMessage());
 
         // gathering response
-        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+        Token response = RequestTokenizer.getToken(controller.getMessageWithinTimeout(this.getTimeout()));
 
         // LIST file1 file2 ...
         if(response instanceof ListFilesToken){
             // getting the file list token
             ListFilesToken listFilesToken = (ListFilesToken) response;
 
-            // logging operation complete
-            this.handleEvent(new ListCompleteEvent());
-
             // returning the list of files
             return listFilesToken.files;
         }
@@ -514,7 +761,57 @@ public class DSClient extends Client{
 
         // Invalid response
         else{
-            throw new InvalidMessageException(response.message, this.getServerPort());
+            throw new InvalidMessageException(response.message, controller.getPort());
         }
     }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Returns the connection to the Controller that owns the provided file.
+     * 
+     * @param filename The name of the file.
+     * @return The connection to the Controller that owns the file.
+     * @throws ControllerDisconnectException If the DSClient is no longer connected to the Controller.
+     */
+    private Connection getControllerConnection(String filename) throws ControllerDisconnectException{
+        return this.getControllerConnection(this.partitionMap.getController(filename));
+    }
+
+    /**
+     * Returns the connection to the Controller on the provided port.
+     * 
+     * @param controller The port of the Controller.
+     * @return The connection to the Controller.
+     * @throws ControllerDisconnectException If the DSClient is no longer connected to the Controller.
+     */
+    private Connection getControllerConnection(int controller) throws ControllerDisconnectException{
+        // gathering the connection
+        Connection connection = this.controllerConnections.get(controller);
+
+        // connection has been lost
+        if(connection == null){
+            throw new ControllerDisconnectException(controller);
+        }
+
+        return connection;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public DSClientOptions getOptions(){
+        return this.options;
+    }
+
+    public LocationCache getLocationCache(){
+        return this.locationCache;
+    }
+
+    public PartitionMap getPartitionMap(){
+        return this.partitionMap;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package DS.DSClient;
+
+/**
+ * Stores the optional settings of a DSClient.
+ *
+ * Options are provided on the command line after the required parameters
+ * in the form 'name=value' (e.g., 'cache=256'). Any option that
+ * is not provided keeps its default value.
+ */
+public class DSClientOptions{
+
+    // constants
+    private final static String SEPARATOR = "=";
+
+    // option names
+    public final static String CACHE = "cache";
+
+    // member variables
+    private int cacheSize;
+
+    /**
+     * Class constructor.
+     *
+     * Creates a set of options that all have their default value.
+     */
+    public DSClientOptions(){
+        // initializing defaults
+        this.cacheSize = 128;
+    }
+
+    /////////////
+    // PARSING //
+    /////////////
+
+    /**
+     * Creates a DSClientOptions object from the provided command line arguments.
+     *
+     * @param args The command line arguments.
+     * @param offset The index of the first optional argument.
+     * @return The DSClientOptions described by the arguments.
+     * @throws IllegalArgumentException If one of the options is not recognised or is
+     * not of the correct form.
+     */
+    public static DSClientOptions fromArgs(String[] args, int offset) throws IllegalArgumentException{
+        DSClientOptions options = new DSClientOptions();
+
+        // parsing each option
+        for(int i = offset; i < args.length; i++){
+            // splitting option into name and value
+            String[] option = args[i].split(DSClientOptions.SEPARATOR, 2);
+            if(option.length != 2){
+                throw new IllegalArgumentException("Invalid option '" + args[i] + "'.");
+            }
+            String name = option[0];
+            String value = option[1];
+
+            // CACHE //
+            if(name.equals(DSClientOptions.CACHE)){
+                options.cacheSize = Integer.parseInt(value);
+
+                // cache size cannot be negative
+                if(options.cacheSize < 0){
+                    throw new IllegalArgumentException("Invalid cache size '" + value + "' (must not be negative).");
+                }
+            }
+
+            // Unrecognised //
+            else{
+                throw new IllegalArgumentException("Unknown option '" + name + "'.");
+            }
+        }
+
+        // returning the options
+        return options;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getCacheSize(){
+        return this.cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize){
+        this.cacheSize = cacheSize;
+    }
+}
@@ -37,10 +37,11 @@ public class DSClientTerminal extends NetworkInterface{
      * 
      * @param cPort The port of the Controller.
      * @param timeout The message timeout period.
+     * @param options The optional settings for the Client.
      */
-    public DSClientTerminal(int cPort, int timeout) {
+    public DSClientTerminal(int cPort, int timeout, DSClientOptions options) {
         // initialising member variables
-        this.client = new DSClient(cPort, timeout, this);
+        this.client = new DSClient(cPort, timeout, options, this);
 
         // connecting to network
         this.startNetworkProcess(this.client);
@@ -291,9 +292,10 @@ public class DSClientTerminal extends NetworkInterface{
             // gathering parameters
             int cPort = Integer.parseInt(args[0]);
             int timeout = Integer.parseInt(args[1]);
+            DSClientOptions options = DSClientOptions.fromArgs(args, 2);
 
             // Creating new Client instance
-            new DSClientTerminal(cPort, timeout);
+            new DSClientTerminal(cPort, timeout, options);
         }
         catch(Exception e){
             System.out.println("Unable to create Client.");
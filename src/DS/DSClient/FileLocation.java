@@ -0,0 +1,56 @@
+package DS.DSClient;
+
+import java.util.ArrayList;
+
+/**
+ * Represents the location of a file within the system, as leased to the Client
+ * by the Controller.
+ * 
+ * The location is only valid until it's lease expires, after which the Client must
+ * ask the Controller where the file is stored again.
+ */
+public class FileLocation{
+
+    // member variables
+    private int filesize;
+    private ArrayList<Integer> ports;
+    private long expiry;
+
+    /**
+     * Class constructor.
+     * 
+     * @param filesize The size of the file in bytes.
+     * @param ports The ports of the Dstores the file is stored on.
+     * @param lease The length of time the location is valid for (ms).
+     */
+    public FileLocation(int filesize, ArrayList<Integer> ports, int lease){
+        this.filesize = filesize;
+        this.ports = ports;
+        this.expiry = System.currentTimeMillis() + lease;
+    }
+
+    /**
+     * Determines if the lease on the location has expired.
+     * 
+     * @return True if the lease has expired, false if not.
+     */
+    public boolean hasExpired(){
+        return (System.currentTimeMillis() >= this.expiry);
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getFilesize(){
+        return this.filesize;
+    }
+
+    public ArrayList<Integer> getPorts(){
+        return this.ports;
+    }
+
+    public long getExpiry(){
+        return this.expiry;
+    }
+}
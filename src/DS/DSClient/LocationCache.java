@@ -0,0 +1,112 @@
+package DS.DSClient;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the file locations leased to a Client by the Controller.
+ * 
+ * Entries are evicted in least-recently-used order once the cache is full, and are
+ * dropped when their lease expires or when loading from the location fails. A cache
+ * with a capacity of zero stores nothing.
+ */
+public class LocationCache{
+
+    // member variables
+    private int capacity;
+    private LinkedHashMap<String, FileLocation> locations;
+    private long hits;
+    private long misses;
+
+    /**
+     * Class constructor.
+     * 
+     * @param capacity The maximum number of file locations stored in the cache.
+     */
+    public LocationCache(int capacity){
+        // initializing
+        this.capacity = capacity;
+        this.hits = 0;
+        this.misses = 0;
+
+        // map in access order, evicting the least recently used entry when full
+        this.locations = new LinkedHashMap<String, FileLocation>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileLocation> eldest){
+                return (this.size() > LocationCache.this.capacity);
+            }
+        };
+    }
+
+    ///////////////////////
+    // CONFIGURING CACHE //
+    ///////////////////////
+
+    /**
+     * Gathers the location of the provided file, if it is cached and it's lease
+     * has not expired.
+     * 
+     * @param filename The name of the file.
+     * @return The location of the file, or null if there is no valid location cached.
+     */
+    public synchronized FileLocation get(String filename){
+        FileLocation location = this.locations.get(filename);
+
+        // location expired - removing it
+        if(location != null && location.hasExpired()){
+            this.locations.remove(filename);
+            location = null;
+        }
+
+        // recording outcome
+        if(location != null){
+            this.hits++;
+        }
+        else{
+            this.misses++;
+        }
+
+        return location;
+    }
+
+    /**
+     * Adds the location of a file to the cache.
+     * 
+     * @param filename The name of the file.
+     * @param location The location of the file.
+     */
+    public synchronized void put(String filename, FileLocation location){
+        if(this.capacity > 0){
+            this.locations.put(filename, location);
+        }
+    }
+
+    /**
+     * Removes the location of a file from the cache.
+     * 
+     * @param filename The name of the file.
+     */
+    public synchronized void invalidate(String filename){
+        this.locations.remove(filename);
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getCapacity(){
+        return this.capacity;
+    }
+
+    public synchronized int getSize(){
+        return this.locations.size();
+    }
+
+    public synchronized long getHits(){
+        return this.hits;
+    }
+
+    public synchronized long getMisses(){
+        return this.misses;
+    }
+}
@@ -0,0 +1,299 @@
+package DS.Dstore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import DS.Protocol.Exception.DiskBusyException;
+
+/**
+ * Runs a Dstore's disk operations (loading, storing and removing files) on a fixed set
+ * of disk threads, separate from the threads that handle its connections.
+ *
+ * Each type of operation has its own bounded queue, and the disk threads always take the
+ * next operation from the highest priority queue that is not empty - so LOADs are served
+ * before STOREs, and rebalance transfers only use the disk when clients are not waiting
+ * for it (and background scrubbing, compaction and verification only once nothing else
+ * is). When a queue is full, the thread submitting an operation waits for space (up to
+ * the timeout) and the operation is then rejected, so a saturated disk slows the Dstore's
+ * connections down rather than piling up an unbounded number of blocked operations.
+ *
+ * Operations on the same file are run one at a time, in the order they were submitted,
+ * whatever their priority (e.g., a REMOVE never overtakes a queued write of the file it
+ * removes). When a higher priority operation is waiting behind an earlier operation on
+ * its file, the earlier operation is run in its place. An operation that has been queued
+ * for more than half the timeout is run ahead of higher priority operations (aging), so
+ * rebalance transfers are not starved by clients, and complete before their sender gives
+ * up on them.
+ */
+public class DiskExecutor{
+
+    /**
+     * The types of disk operation, in priority order (highest first).
+     */
+    public enum Operation{
+        READ, // files loaded by clients
+        WRITE, // files stored by clients
+        REMOVE, // files removed by the controller (or a rebalance)
+        REBALANCE_READ, // files loaded to be sent to other Dstores
+        REBALANCE_WRITE, // files sent by other Dstores
+        BACKGROUND // files scrubbed, segments compacted and the store verified
+    }
+
+    // member variables
+    private ArrayList<ArrayDeque<DiskOperation>> queues; // one queue per type of operation
+    private HashMap<String, ArrayDeque<DiskOperation>> fileOperations; // filename -> operations queued or running, in order
+    private int capacity; // operations each queue can hold
+    private int timeout; // ms a submitter waits for space in a full queue
+    private int maxWait; // ms an operation is queued before it is run ahead of higher priorities
+    private long[] completed; // operations run, per type
+    private long[] rejected; // operations rejected, per type
+
+    /**
+     * Class constructor.
+     *
+     * @param threads The number of disk threads.
+     * @param capacity The number of operations of each type that can be queued.
+     * @param timeout The time (ms) a submitter waits for space in a full queue.
+     */
+    public DiskExecutor(int threads, int capacity, int timeout){
+        // initializing
+        this.queues = new ArrayList<ArrayDeque<DiskOperation>>();
+        for(int i = 0; i < Operation.values().length; i++){
+            this.queues.add(new ArrayDeque<DiskOperation>());
+        }
+        this.fileOperations = new HashMap<String, ArrayDeque<DiskOperation>>();
+        this.capacity = capacity;
+        this.timeout = timeout;
+        this.maxWait = timeout / 2;
+        this.completed = new long[Operation.values().length];
+        this.rejected = new long[Operation.values().length];
+
+        // starting the disk threads
+        for(int i = 0; i < threads; i++){
+            Thread thread = new Thread(() -> this.work(), "disk-" + i);
+            thread.setDaemon(true); // disk threads must not keep the Dstore alive
+            thread.start();
+        }
+    }
+
+    ////////////////
+    // SUBMITTING //
+    ////////////////
+
+    /**
+     * Queues an operation to be run on a disk thread, after any operation on the same file
+     * that was submitted before it.
+     *
+     * @param operation The type of the operation.
+     * @param filename The name of the file the operation is on (null for an operation on
+     * the whole store, which is ordered with the other such operations).
+     * @param task The operation.
+     * @return A future for the result of the operation.
+     * @throws DiskBusyException If the operation's queue stayed full for the whole timeout.
+     * @throws InterruptedException If the thread is interrupted while waiting for space.
+     */
+    public <T> Future<T> submit(Operation operation, String filename, Callable<T> task) throws DiskBusyException, InterruptedException{
+        FutureTask<T> future = new FutureTask<T>(task);
+        ArrayDeque<DiskOperation> queue = this.queues.get(operation.ordinal());
+
+        synchronized(this){
+            // waiting for space in the queue
+            long deadline = System.currentTimeMillis() + this.timeout;
+            while(queue.size() >= this.capacity){
+                long wait = deadline - System.currentTimeMillis();
+                if(wait <= 0){
+                    this.rejected[operation.ordinal()]++;
+                    throw new DiskBusyException(operation.name(), this.capacity);
+                }
+                this.wait(wait);
+            }
+
+            // queueing the operation (behind the file's earlier operations)
+            DiskOperation diskOperation = new DiskOperation(operation, filename, future);
+            queue.add(diskOperation);
+            this.fileOperations.computeIfAbsent(filename, f -> new ArrayDeque<DiskOperation>()).add(diskOperation);
+            this.notifyAll();
+        }
+
+        return future;
+    }
+
+    /**
+     * Runs an operation on a disk thread (after any operation on the same file that was
+     * submitted before it), and waits for it to finish.
+     *
+     * @param operation The type of the operation.
+     * @param filename The name of the file the operation is on (null for an operation on
+     * the whole store).
+     * @param task The operation.
+     * @return The result of the operation.
+     * @throws Exception The exception thrown by the operation, or DiskBusyException if it
+     * could not be queued.
+     */
+    public <T> T execute(Operation operation, String filename, Callable<T> task) throws Exception{
+        try{
+            return this.submit(operation, filename, task).get();
+        }
+        catch(ExecutionException e){
+            // passing on the operation's own exception
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /////////////
+    // RUNNING //
+    /////////////
+
+    /**
+     * Runs queued operations, highest priority first (run by each disk thread).
+     */
+    private void work(){
+        while(true){
+            DiskOperation task = null;
+
+            // taking the next operation
+            synchronized(this){
+                while(task == null){
+                    task = this.takeNext();
+
+                    if(task == null){
+                        try{
+                            this.wait();
+                        }
+                        catch(InterruptedException e){
+                            return;
+                        }
+                    }
+                }
+
+                // waking submitters waiting for space
+                this.notifyAll();
+            }
+
+            // running the operation (failures are passed to its future)
+            task.future.run();
+
+            synchronized(this){
+                this.completed[task.operation.ordinal()]++;
+
+                // letting the file's next operation run
+                ArrayDeque<DiskOperation> operations = this.fileOperations.get(task.filename);
+                operations.poll();
+                if(operations.isEmpty()){
+                    this.fileOperations.remove(task.filename);
+                }
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Takes the next operation to be run off its queue.
+     *
+     * The oldest operation that has been queued for longer than the maximum wait is taken
+     * first, and then the operations are taken in priority order. An operation waiting
+     * behind an earlier operation on its file is replaced by that operation, and skipped
+     * if that operation is already running.
+     *
+     * @return The operation to be run, or null if no queued operation can be run.
+     */
+    private DiskOperation takeNext(){
+        // operations that have waited too long
+        long deadline = System.currentTimeMillis() - this.maxWait;
+        DiskOperation oldest = null;
+        for(ArrayDeque<DiskOperation> queue : this.queues){
+            DiskOperation head = queue.peek();
+            if(head != null && head.queued <= deadline && (oldest == null || head.queued < oldest.queued)){
+                oldest = head;
+            }
+        }
+        DiskOperation next = (oldest == null) ? null : this.getRunnable(oldest);
+
+        // operations in priority order
+        for(int operation = 0; next == null && operation < this.queues.size(); operation++){
+            for(DiskOperation queued : this.queues.get(operation)){
+                next = this.getRunnable(queued);
+                if(next != null){
+                    break;
+                }
+            }
+        }
+
+        if(next != null){
+            this.queues.get(next.operation.ordinal()).remove(next);
+            next.running = true;
+        }
+        return next;
+    }
+
+    /**
+     * Returns the operation that must be run before a queued operation can be - the first
+     * operation on its file.
+     *
+     * @param queued The queued operation.
+     * @return The first operation on the queued operation's file, or null if it is already
+     * running.
+     */
+    private DiskOperation getRunnable(DiskOperation queued){
+        DiskOperation first = this.fileOperations.get(queued.filename).peek();
+
+        return first.running ? null : first;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getCapacity(){
+        return this.capacity;
+    }
+
+    public synchronized int getQueued(Operation operation){
+        return this.queues.get(operation.ordinal()).size();
+    }
+
+    public synchronized long getCompleted(Operation operation){
+        return this.completed[operation.ordinal()];
+    }
+
+    public synchronized long getRejected(Operation operation){
+        return this.rejected[operation.ordinal()];
+    }
+
+    ////////////////////
+    // DISK OPERATION //
+    ////////////////////
+
+    /**
+     * An operation queued for the disk threads.
+     */
+    private static class DiskOperation{
+
+        // member variables
+        private Operation operation;
+        private String filename;
+        private FutureTask<?> future;
+        private long queued; // time the operation was queued
+        private boolean running;
+
+        /**
+         * Class constructor.
+         *
+         * @param operation The type of the operation.
+         * @param filename The name of the file the operation is on.
+         * @param future The operation.
+         */
+        public DiskOperation(Operation operation, String filename, FutureTask<?> future){
+            this.operation = operation;
+            this.filename = filename;
+            this.future = future;
+            this.queued = System.currentTimeMillis();
+            this.running = false;
+        }
+    }
+}
@@ -1,10 +1,26 @@
 package DS.Dstore;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import DS.Dstore.DiskExecutor.Operation;
+import DS.Dstore.Storage.BlobFileStore;
+import DS.Dstore.Storage.DirectoryFileStore;
+import DS.Dstore.Storage.FileStore;
+import DS.Dstore.Storage.FolderMonitor;
+import DS.Dstore.Storage.ReadCache;
+import DS.Dstore.Storage.Scrubber;
+import DS.Dstore.Storage.SegmentCompactor;
+import DS.Dstore.Storage.SegmentFileStore;
+import DS.Dstore.Storage.StripedFileStore;
+import DS.Dstore.Storage.SyncPolicy;
 import DS.Protocol.Protocol;
+import DS.Protocol.Event.Storage.ManifestVerifiedEvent;
 import DS.Protocol.Exception.*;
 import DS.Protocol.Token.RequestTokenizer;
 import DS.Protocol.Token.Token;
@@ -31,14 +47,23 @@ import Network.Server.ServerThread;
   */
 public class Dstore extends Server{
 
+    // constants
+    public final static String FOLDER_SEPARATOR = ","; // separates the folders of a Dstore that stores files on several disks
+
     // member variables
     private int port;
     private int cPort;
     private int timeout;
     private String folderPath;
-    private File fileStore;
+    private FileStore fileStore;
     private ServerThread controllerThread;
     private NetworkInterface networkInterface;
+    private DstoreOptions options;
+    private RateLimiter transferLimiter;
+    private ExecutorService transferExecutor;
+    private DiskExecutor diskExecutor;
+    private RebalanceSequencer rebalanceSequencer;
+    private ReadCache readCache;
 
     /**
      * Class constructor.
@@ -50,6 +75,21 @@ public class Dstore extends Server{
      * @param networkInterface The network interface for the Dstore.
      */
     public Dstore(int port, int cPort, int timeout, String folderPath, NetworkInterface networkInterface){
+        this(port, cPort, timeout, folderPath, networkInterface, new DstoreOptions());
+    }
+
+    /**
+     * Class constructor.
+     * 
+     * @param port The port the DStore will listen on.
+     * @param cPort The port the Controller that the DStore will connect to is on.
+     * @param timeout The timout period for the DStore.
+     * @param fileFolder The folder where the DStore will store files (or several folders,
+     * separated by FOLDER_SEPARATOR, that files are spread across).
+     * @param networkInterface The network interface for the Dstore.
+     * @param options The optional settings of the Dstore.
+     */
+    public Dstore(int port, int cPort, int timeout, String folderPath, NetworkInterface networkInterface, DstoreOptions options){
         // initializing member variables
         super(ServerType.DSTORE, port, networkInterface);
         this.port = port;
@@ -57,6 +97,17 @@ public class Dstore extends Server{
         this.timeout = timeout;
         this.folderPath = folderPath;
         this.networkInterface = networkInterface;
+        this.options = options;
+        this.transferLimiter = new RateLimiter(options.getTransferRate());
+        this.transferExecutor = Executors.newFixedThreadPool(options.getTransfers(), runnable -> {
+            // transfers must not keep the Dstore alive
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.diskExecutor = new DiskExecutor(options.getDiskThreads(), options.getDiskQueue(), timeout);
+        this.rebalanceSequencer = new RebalanceSequencer();
+        this.readCache = new ReadCache(this.isMappingFiles() ? 0 : options.getCacheSize(), options.isOffHeap()); // mapped files are already in memory
         this.setRequestHandler(new DstoreRequestHandler(this));
     }
 
@@ -73,11 +124,11 @@ public class Dstore extends Server{
      */
     public void setup() throws ServerSetupException{
         try{
+            // setting up file storage folder (before the controller can send a LIST)
+            this.setupFileStore(this.folderPath);
+
             // connecting to controller
             this.connectToController();
-
-            // setting up file storage folder
-            this.setupFileStore(this.folderPath);
         }
         catch(Exception e){
             throw new ServerSetupException(ServerType.DSTORE, e);
@@ -120,18 +171,109 @@ public class Dstore extends Server{
     }
 
     /**
-     * Makes sure the DStores file store is ready to use by creating a directory
-     * if one doesnt already exist.
+     * Makes sure the DStores file store is ready to use by opening the storage engine
+     * chosen in the options (creating the directory if one doesnt already exist).
+     * 
+     * When several folders are provided (separated by FOLDER_SEPARATOR), each folder is
+     * given its own store and files are spread across them (see StripedFileStore), with a 
+     * FolderMonitor reporting the files lost with any folder that fails.
+     * 
+     * When the file store has no index of its files (e.g., a directory without a
+     * manifest), the index is built before the Dstore joins the Controller. Otherwise, the
+     * index is loaded and compared to the disk in the background.
+     * 
+     * @param folderPath The file store directory (or directories).
+     * @throws IOException If the file store could not be opened.
+     */
+    public void setupFileStore(String folderPath) throws IOException{
+        String[] folderPaths = folderPath.split(Dstore.FOLDER_SEPARATOR);
+        ArrayList<File> folders = new ArrayList<File>();
+        ArrayList<FileStore> stores = new ArrayList<FileStore>();
+        for(String path : folderPaths){
+            folders.add(new File(path));
+            stores.add(this.createFileStore(new File(path)));
+        }
+
+        // one folder - using its store directly
+        if(stores.size() == 1){
+            this.fileStore = stores.get(0);
+        }
+
+        // several folders - spreading files across them
+        else{
+            this.fileStore = new StripedFileStore(folders, stores);
+        }
+
+        // opening the store
+        if(!this.fileStore.open()){
+            // no index - building it from the disk
+            this.verifyFileStore();
+        }
+        else{
+            // verifying the index in the background
+            Thread verifier = new Thread(() -> this.verifyFileStore());
+            verifier.setDaemon(true);
+            verifier.start();
+        }
+
+        // reclaiming the space of removed files in the background
+        for(FileStore store : stores){
+            if(store instanceof SegmentFileStore){
+                new SegmentCompactor(this, (SegmentFileStore) store).start();
+            }
+        }
+
+        // reporting the folders that fail
+        if(this.fileStore instanceof StripedFileStore){
+            new FolderMonitor(this, (StripedFileStore) this.fileStore).start();
+        }
+
+        // checking stored files against their checksums in the background
+        if(this.options.getScrubRate() > 0){
+            new Scrubber(this, this.fileStore, this.options.getScrubRate()).start();
+        }
+    }
+
+    /**
+     * Creates the storage engine chosen in the options for a single folder.
      * 
-     * @param folderPath The file store directory.
+     * @param folder The folder the files are stored in.
+     * @return The file store for the folder.
+     */
+    private FileStore createFileStore(File folder){
+        // each folder forces its own writes (so that each disk is forced on its own)
+        SyncPolicy syncPolicy = new SyncPolicy(this.options.getFsync(), this.options.getGroupWindow());
+
+        // SEGMENTS //
+        if(this.options.getStorage().equals(DstoreOptions.STORAGE_SEGMENTS)){
+            return new SegmentFileStore(folder, this.options.getSegmentSize(), syncPolicy);
+        }
+
+        // BLOBS //
+        else if(this.options.getStorage().equals(DstoreOptions.STORAGE_BLOBS)){
+            return new BlobFileStore(folder, syncPolicy);
+        }
+
+        // FILES //
+        else{
+            return new DirectoryFileStore(folder, this.options.getLayout(), this.options.getMappedFiles(), syncPolicy);
+        }
+    }
+
+    /**
+     * Compares the file store's index to the disk, correcting any differences (on a disk
+     * thread, at the lowest priority).
      */
-    public void setupFileStore(String folderPath){
-        // creating file object
-        this.fileStore = new File(folderPath);
+    private void verifyFileStore(){
+        try{
+            long start = System.currentTimeMillis();
+            int corrections = this.diskExecutor.execute(Operation.BACKGROUND, null, () -> this.fileStore.verify());
 
-        // creating the file if it doesnt exist
-        if(!this.fileStore.exists()){
-            this.fileStore.mkdir();
+            // logging
+            this.handleEvent(new ManifestVerifiedEvent(this.fileStore.getFileCount(), corrections, System.currentTimeMillis() - start));
+        }
+        catch(Exception e){
+            this.handleError(new ManifestVerificationException(e));
         }
     }
 
@@ -203,25 +345,24 @@ public class Dstore extends Server{
 
     /**
      * Returns a list of files stored in the Dstore as a mapping of
-     * filenames to filesizes.
+     * filenames to filesizes (taken from the file store's index).
      * 
      * @return A mapping of filenames to filesizes.
      */
     public HashMap<String, Integer> getFiles(){
-        // gathering list of files
-        File[] fileList = this.getFileStore().listFiles();
+        return this.fileStore.getFiles();
+    }
 
-        // creating hashmap of files
-        HashMap<String, Integer> files = new HashMap<String, Integer>();
-        for(File file : fileList){
-            files.put(file.getName(), (int) file.length());
-        }
 
-        // returning map of files
-        return files;
+    /**
+     * Determines if the Dstore serves LOADs from memory-mapped files.
+     * 
+     * @return True if files are stored in a directory and kept mapped, false otherwise.
+     */
+    private boolean isMappingFiles(){
+        return (this.options.getStorage().equals(DstoreOptions.STORAGE_FILES) && this.options.getMappedFiles() > 0);
     }
 
-
     /////////////////////////
     // GETTERS AND SETTERS //
     /////////////////////////
@@ -242,11 +383,35 @@ public class Dstore extends Server{
         return this.folderPath;
     }
 
-    public File getFileStore(){
+    public FileStore getFileStore(){
         return this.fileStore;
     }
 
     public ServerThread getControllerThread(){
         return this.controllerThread;
     }
+
+    public DstoreOptions getOptions(){
+        return this.options;
+    }
+
+    public RateLimiter getTransferLimiter(){
+        return this.transferLimiter;
+    }
+
+    public ReadCache getReadCache(){
+        return this.readCache;
+    }
+
+    public RebalanceSequencer getRebalanceSequencer(){
+        return this.rebalanceSequencer;
+    }
+
+    public ExecutorService getTransferExecutor(){
+        return this.transferExecutor;
+    }
+
+    public DiskExecutor getDiskExecutor(){
+        return this.diskExecutor;
+    }
 }
\ No newline at end of file
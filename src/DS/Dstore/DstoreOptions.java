@@ -0,0 +1,354 @@
+package DS.Dstore;
+
+/**
+ * Stores the optional settings of a Dstore.
+ *
+ * Options are provided on the command line after the required parameters
+ * in the form 'name=value' (e.g., 'rate=1048576'). Any option that is not
+ * provided keeps its default value.
+ */
+public class DstoreOptions{
+
+    // constants
+    private final static String SEPARATOR = "=";
+
+    // option names
+    public final static String RATE = "rate";
+    public final static String TRANSFERS = "transfers";
+    public final static String CACHE = "cache";
+    public final static String OFF_HEAP = "offheap";
+    public final static String MMAP = "mmap";
+    public final static String STORAGE = "storage";
+    public final static String SEGMENT = "segment";
+    public final static String LAYOUT = "layout";
+    public final static String FSYNC = "fsync";
+    public final static String GROUP_WINDOW = "groupwindow";
+    public final static String SCRUB = "scrub";
+    public final static String DISK_THREADS = "diskthreads";
+    public final static String DISK_QUEUE = "diskqueue";
+
+    // storage engines
+    public final static String STORAGE_FILES = "files";
+    public final static String STORAGE_SEGMENTS = "segments";
+    public final static String STORAGE_BLOBS = "blobs";
+
+    // directory layouts
+    public final static String LAYOUT_FLAT = "flat";
+    public final static String LAYOUT_SHARDED = "sharded";
+
+    // fsync policies
+    public final static String FSYNC_NONE = "none";
+    public final static String FSYNC_FILE = "file";
+    public final static String FSYNC_GROUP = "group";
+
+    // member variables
+    private long transferRate; // bytes per second, 0 = not limited
+    private int transfers; // files sent to other Dstores at the same time
+    private long cacheSize; // bytes of file content cached in memory, 0 = no cache
+    private boolean offHeap; // whether the cache is held in direct (off-heap) buffers
+    private int mappedFiles; // files kept memory-mapped for LOADs, 0 = files are read
+    private String storage; // how stored files are kept on disk (STORAGE_FILES, STORAGE_SEGMENTS or STORAGE_BLOBS)
+    private long segmentSize; // bytes a segment grows to before a new one is started
+    private String layout; // how stored files are arranged in the folder (LAYOUT_FLAT or LAYOUT_SHARDED)
+    private String fsync; // when stored files are forced to disk (FSYNC_NONE, FSYNC_FILE or FSYNC_GROUP)
+    private long groupWindow; // ms a group commit waits for other stores to join it
+    private long scrubRate; // bytes per second read by the scrubber, 0 = files are not scrubbed
+    private int diskThreads; // threads that load, store and remove files
+    private int diskQueue; // disk operations of each type that can be queued
+
+    /**
+     * Class constructor.
+     *
+     * Creates a set of options that all have their default value.
+     */
+    public DstoreOptions(){
+        // initializing defaults
+        this.transferRate = 0;
+        this.transfers = 4;
+        this.cacheSize = 0;
+        this.offHeap = false;
+        this.mappedFiles = 0;
+        this.storage = DstoreOptions.STORAGE_FILES;
+        this.segmentSize = 64 * 1024 * 1024;
+        this.layout = DstoreOptions.LAYOUT_FLAT;
+        this.fsync = DstoreOptions.FSYNC_NONE;
+        this.groupWindow = 0;
+        this.scrubRate = 0;
+        this.diskThreads = 4;
+        this.diskQueue = 64;
+    }
+
+    /////////////
+    // PARSING //
+    /////////////
+
+    /**
+     * Creates a DstoreOptions object from the provided command line arguments.
+     *
+     * @param args The command line arguments.
+     * @param offset The index of the first optional argument.
+     * @return The DstoreOptions described by the arguments.
+     * @throws IllegalArgumentException If one of the options is not recognised or is
+     * not of the correct form.
+     */
+    public static DstoreOptions fromArgs(String[] args, int offset) throws IllegalArgumentException{
+        DstoreOptions options = new DstoreOptions();
+
+        // parsing each option
+        for(int i = offset; i < args.length; i++){
+            // splitting option into name and value
+            String[] option = args[i].split(DstoreOptions.SEPARATOR, 2);
+            if(option.length != 2){
+                throw new IllegalArgumentException("Invalid option '" + args[i] + "'.");
+            }
+            String name = option[0];
+            String value = option[1];
+
+            // RATE //
+            if(name.equals(DstoreOptions.RATE)){
+                options.transferRate = Long.parseLong(value);
+
+                // rate cannot be negative
+                if(options.transferRate < 0){
+                    throw new IllegalArgumentException("Invalid transfer rate '" + value + "' (must not be negative).");
+                }
+            }
+
+            // TRANSFERS //
+            else if(name.equals(DstoreOptions.TRANSFERS)){
+                options.transfers = Integer.parseInt(value);
+
+                // must be able to send at least one file
+                if(options.transfers < 1){
+                    throw new IllegalArgumentException("Invalid number of transfers '" + value + "' (must be at least 1).");
+                }
+            }
+
+            // CACHE //
+            else if(name.equals(DstoreOptions.CACHE)){
+                options.cacheSize = Long.parseLong(value);
+
+                // size cannot be negative
+                if(options.cacheSize < 0){
+                    throw new IllegalArgumentException("Invalid cache size '" + value + "' (must not be negative).");
+                }
+            }
+
+            // OFF_HEAP //
+            else if(name.equals(DstoreOptions.OFF_HEAP)){
+                if(!value.equals("true") && !value.equals("false")){
+                    throw new IllegalArgumentException("Invalid off-heap setting '" + value + "' (must be 'true' or 'false').");
+                }
+                options.offHeap = Boolean.parseBoolean(value);
+            }
+
+            // MMAP //
+            else if(name.equals(DstoreOptions.MMAP)){
+                options.mappedFiles = Integer.parseInt(value);
+
+                // number cannot be negative
+                if(options.mappedFiles < 0){
+                    throw new IllegalArgumentException("Invalid number of mapped files '" + value + "' (must not be negative).");
+                }
+            }
+
+            // STORAGE //
+            else if(name.equals(DstoreOptions.STORAGE)){
+                // must be a known storage engine
+                if(!value.equals(DstoreOptions.STORAGE_FILES) && !value.equals(DstoreOptions.STORAGE_SEGMENTS) && !value.equals(DstoreOptions.STORAGE_BLOBS)){
+                    throw new IllegalArgumentException("Invalid storage '" + value + "' (must be '" + DstoreOptions.STORAGE_FILES + "', '" + DstoreOptions.STORAGE_SEGMENTS + "' or '" + DstoreOptions.STORAGE_BLOBS + "').");
+                }
+                options.storage = value;
+            }
+
+            // SEGMENT //
+            else if(name.equals(DstoreOptions.SEGMENT)){
+                options.segmentSize = Long.parseLong(value);
+
+                // segments must be able to hold something
+                if(options.segmentSize < 1){
+                    throw new IllegalArgumentException("Invalid segment size '" + value + "' (must be at least 1).");
+                }
+            }
+
+            // LAYOUT //
+            else if(name.equals(DstoreOptions.LAYOUT)){
+                // must be a known layout
+                if(!value.equals(DstoreOptions.LAYOUT_FLAT) && !value.equals(DstoreOptions.LAYOUT_SHARDED)){
+                    throw new IllegalArgumentException("Invalid layout '" + value + "' (must be '" + DstoreOptions.LAYOUT_FLAT + "' or '" + DstoreOptions.LAYOUT_SHARDED + "').");
+                }
+                options.layout = value;
+            }
+
+            // FSYNC //
+            else if(name.equals(DstoreOptions.FSYNC)){
+                // must be a known policy
+                if(!value.equals(DstoreOptions.FSYNC_NONE) && !value.equals(DstoreOptions.FSYNC_FILE) && !value.equals(DstoreOptions.FSYNC_GROUP)){
+                    throw new IllegalArgumentException("Invalid fsync policy '" + value + "' (must be '" + DstoreOptions.FSYNC_NONE + "', '" + DstoreOptions.FSYNC_FILE + "' or '" + DstoreOptions.FSYNC_GROUP + "').");
+                }
+                options.fsync = value;
+            }
+
+            // GROUP_WINDOW //
+            else if(name.equals(DstoreOptions.GROUP_WINDOW)){
+                options.groupWindow = Long.parseLong(value);
+
+                // window cannot be negative
+                if(options.groupWindow < 0){
+                    throw new IllegalArgumentException("Invalid group commit window '" + value + "' (must not be negative).");
+                }
+            }
+
+            // SCRUB //
+            else if(name.equals(DstoreOptions.SCRUB)){
+                options.scrubRate = Long.parseLong(value);
+
+                // rate cannot be negative
+                if(options.scrubRate < 0){
+                    throw new IllegalArgumentException("Invalid scrub rate '" + value + "' (must not be negative).");
+                }
+            }
+
+            // DISK_THREADS //
+            else if(name.equals(DstoreOptions.DISK_THREADS)){
+                options.diskThreads = Integer.parseInt(value);
+
+                // must be able to use the disk
+                if(options.diskThreads < 1){
+                    throw new IllegalArgumentException("Invalid number of disk threads '" + value + "' (must be at least 1).");
+                }
+            }
+
+            // DISK_QUEUE //
+            else if(name.equals(DstoreOptions.DISK_QUEUE)){
+                options.diskQueue = Integer.parseInt(value);
+
+                // must be able to queue an operation
+                if(options.diskQueue < 1){
+                    throw new IllegalArgumentException("Invalid disk queue length '" + value + "' (must be at least 1).");
+                }
+            }
+
+            // Unrecognised //
+            else{
+                throw new IllegalArgumentException("Unknown option '" + name + "'.");
+            }
+        }
+
+        // mapped files are served without the read cache - both cannot be set
+        if(options.storage.equals(DstoreOptions.STORAGE_FILES) && options.mappedFiles > 0 && options.cacheSize > 0){
+            throw new IllegalArgumentException("Options '" + DstoreOptions.MMAP + "' and '" + DstoreOptions.CACHE + "' cannot both be set (the read cache is not used when files are mapped).");
+        }
+
+        // returning the options
+        return options;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getTransferRate(){
+        return this.transferRate;
+    }
+
+    public void setTransferRate(long transferRate){
+        this.transferRate = transferRate;
+    }
+
+    public int getTransfers(){
+        return this.transfers;
+    }
+
+    public void setTransfers(int transfers){
+        this.transfers = transfers;
+    }
+
+    public long getCacheSize(){
+        return this.cacheSize;
+    }
+
+    public void setCacheSize(long cacheSize){
+        this.cacheSize = cacheSize;
+    }
+
+    public boolean isOffHeap(){
+        return this.offHeap;
+    }
+
+    public void setOffHeap(boolean offHeap){
+        this.offHeap = offHeap;
+    }
+
+    public int getMappedFiles(){
+        return this.mappedFiles;
+    }
+
+    public void setMappedFiles(int mappedFiles){
+        this.mappedFiles = mappedFiles;
+    }
+
+    public String getStorage(){
+        return this.storage;
+    }
+
+    public void setStorage(String storage){
+        this.storage = storage;
+    }
+
+    public long getSegmentSize(){
+        return this.segmentSize;
+    }
+
+    public void setSegmentSize(long segmentSize){
+        this.segmentSize = segmentSize;
+    }
+
+    public String getLayout(){
+        return this.layout;
+    }
+
+    public void setLayout(String layout){
+        this.layout = layout;
+    }
+
+    public String getFsync(){
+        return this.fsync;
+    }
+
+    public void setFsync(String fsync){
+        this.fsync = fsync;
+    }
+
+    public long getGroupWindow(){
+        return this.groupWindow;
+    }
+
+    public void setGroupWindow(long groupWindow){
+        this.groupWindow = groupWindow;
+    }
+
+    public long getScrubRate(){
+        return this.scrubRate;
+    }
+
+    public void setScrubRate(long scrubRate){
+        this.scrubRate = scrubRate;
+    }
+
+    public int getDiskThreads(){
+        return this.diskThreads;
+    }
+
+    public void setDiskThreads(int diskThreads){
+        this.diskThreads = diskThreads;
+    }
+
+    public int getDiskQueue(){
+        return this.diskQueue;
+    }
+
+    public void setDiskQueue(int diskQueue){
+        this.diskQueue = diskQueue;
+    }
+}
@@ -2,14 +2,27 @@ package DS.Dstore;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32C;
+
+import DS.Dstore.DiskExecutor.Operation;
+import DS.Dstore.Storage.BlobFileStore;
+import DS.Dstore.Storage.FileStore;
+import DS.Dstore.Storage.ReadCache;
+import DS.Dstore.Storage.StripedFileStore;
 import DS.Protocol.Protocol;
 import DS.Protocol.Event.Operation.ListCompleteEvent;
 import DS.Protocol.Event.Operation.LoadCompleteEvent;
 import DS.Protocol.Event.Operation.RemoveCompleteEvent;
+import DS.Protocol.Event.Operation.ReplicateCompleteEvent;
 import DS.Protocol.Event.Operation.StoreCompleteEvent;
 import DS.Protocol.Event.Rebalance.RebalanceCompleteEvent;
 import DS.Protocol.Event.Rebalance.RebalanceStoreCompleteEvent;
+import DS.Protocol.Event.Storage.BlobReusedEvent;
+import DS.Protocol.Event.Storage.ReadCacheStatsEvent;
 import DS.Protocol.Exception.*;
 import DS.Protocol.Token.*;
 import DS.Protocol.Token.TokenType.*;
@@ -21,12 +34,8 @@ import Network.Protocol.Exception.RequestHandlingException;
 import Network.Server.RequestHandler;
 import Network.Server.Server.ServerType;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
 import java.nio.file.NoSuchFileException;
-import java.nio.file.Paths;
 
 /**
  * Handles requests sent to a Dstore by a DSClient and Controller.
@@ -51,6 +60,20 @@ public class DstoreRequestHandler extends RequestHandler{
     // MAIN //
     //////////
 
+    /**
+     * Determines if the provided request is followed by raw data on its connection.
+     * 
+     * STORE and REBALANCE_STORE requests are followed by the content of the file being
+     * stored, which must be read before the connection receives any further messages.
+     * 
+     * @param request The request being checked.
+     * @return True if the request is followed by data on the connection, false if not.
+     */
+    @Override
+    public boolean isDataRequest(Token request){
+        return (request instanceof StoreToken || request instanceof RebalanceStoreToken);
+    }
+
     /**
      * Handles a given request.
      * 
@@ -73,13 +96,13 @@ public class DstoreRequestHandler extends RequestHandler{
             // STORE //
             else if(request instanceof StoreToken){
                 StoreToken storeToken = (StoreToken) request;
-                this.handleStoreRequest(connection, storeToken.filename, storeToken.filesize);
+                this.handleStoreRequest(connection, storeToken.filename, storeToken.filesize, storeToken.checksum, storeToken.hash);
             }
 
             // LOAD_DATA //
             else if(request instanceof LoadDataToken){
                 LoadDataToken loadToken = (LoadDataToken) request;
-                this.handleLoadDataRequest(connection, loadToken.filename);
+                this.handleLoadDataRequest(connection, loadToken.filename, loadToken.checksum);
             }
 
             // REMOVE //
@@ -96,13 +119,19 @@ public class DstoreRequestHandler extends RequestHandler{
             // REBALANCE //
             else if(request instanceof RebalanceToken){
                 RebalanceToken rebalanceToken = (RebalanceToken) request;
-                this.handleRebalanceRequest(connection, rebalanceToken.filesToSend, rebalanceToken.filesToRemove);
+                this.handleRebalanceRequest(connection, rebalanceToken.filesToSend, rebalanceToken.filesToRemove, rebalanceToken.rate, rebalanceToken.rebalance, rebalanceToken.batch, rebalanceToken.batches);
             }
 
             // REBALANCE_STORE //
             else if(request instanceof RebalanceStoreToken){
                 RebalanceStoreToken rebalanceStoreToken = (RebalanceStoreToken) request;
-                this.handleRebalanceStoreRequest(connection, rebalanceStoreToken.filename, rebalanceStoreToken.filesize);
+                this.handleRebalanceStoreRequest(connection, rebalanceStoreToken.filename, rebalanceStoreToken.filesize, rebalanceStoreToken.checksum, rebalanceStoreToken.hash);
+            }
+
+            // REPLICATE //
+            else if(request instanceof ReplicateToken){
+                ReplicateToken replicateToken = (ReplicateToken) request;
+                this.handleReplicateRequest(connection, replicateToken.fileToSend);
             }
 
             // Invalid //
@@ -174,31 +203,63 @@ public class DstoreRequestHandler extends RequestHandler{
     /**
      * Handles a STORE request.
      * 
+     * The file data is read on the connection's thread, and then handed to a disk thread,
+     * which stores it and sends STORE_ACK to the Controller.
+     * 
+     * If the client sent the hash of the file's content and the Dstore already holds that
+     * content, the file is stored without the content being sent (the client is sent
+     * BLOB_EXISTS rather than ACK).
+     * 
      * @param connection The connection associated with the request.
      * @param filename The name of the file being stored.
      * @param filesize The size of the file being stored.
+     * @param checksum The CRC32C of the file sent by the client (-1 if not provided).
+     * @param hash The SHA-256 of the file sent by the client (null if not provided).
      * @throws MessageSendException If a message couldn't be sent through the connection.
      * @throws MessageReceievedException If a message could not be receieved through the connection.
+     * @throws ChecksumMismatchException If the content receieved does not match the checksum.
      */
-    private void handleStoreRequest(Connection connection, String filename, int filesize) throws Exception{
+    private void handleStoreRequest(Connection connection, String filename, int filesize, long checksum, String hash) throws Exception{
+        // content already held - storing the file without it
+        if(this.linkBlob(Operation.WRITE, filename, filesize, checksum, hash)){
+            connection.sendMessage(Protocol.getBlobExistsMessage());
+            this.dstore.getReadCache().invalidate(filename);
+
+            // sending STORE_ACK to contoller
+            this.dstore.getControllerThread().getConnection().sendMessage(Protocol.getStoreAckMessage(filename));
+
+            // logging
+            this.dstore.handleEvent(new BlobReusedEvent(filename, filesize));
+            this.dstore.handleEvent(new StoreCompleteEvent(filename, filesize));
+            return;
+        }
+
         // sending ACK back to client
         connection.sendMessage(Protocol.getAckMessage());
 
-        // reading file data
-        byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.dstore.getTimeout());
+        // reading file data (checksumming it as it arrives)
+        CRC32C crc = new CRC32C();
+        byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.dstore.getTimeout(), crc);
+        this.verifyChecksum(filename, checksum, crc.getValue());
 
-        // storing file data
-        File file = new File(this.dstore.getFolderPath() + File.separatorChar + filename);
-        FileOutputStream fileOutput = new FileOutputStream(file);
-        fileOutput.write(fileContent);
-        fileOutput.flush();
-        fileOutput.close();
+        // handing the file data to a disk thread (the connection is free once it is queued)
+        this.dstore.getDiskExecutor().submit(Operation.WRITE, filename, () -> {
+            try{
+                // storing file data (and dropping any cached copy it overwrote)
+                this.dstore.getFileStore().store(filename, fileContent, crc.getValue());
+                this.dstore.getReadCache().invalidate(filename);
 
-        // sending STORE_ACK to contoller
-        this.dstore.getControllerThread().getConnection().sendMessage(Protocol.getStoreAckMessage(filename));
+                // sending STORE_ACK to contoller
+                this.dstore.getControllerThread().getConnection().sendMessage(Protocol.getStoreAckMessage(filename));
 
-        // logging
-        this.dstore.handleEvent(new StoreCompleteEvent(filename, filesize));
+                // logging
+                this.dstore.handleEvent(new StoreCompleteEvent(filename, filesize));
+            }
+            catch(Exception e){
+                this.dstore.handleError(new RequestHandlingException(Protocol.getStoreMessage(filename, filesize), e));
+            }
+            return null;
+        });
     }
 
     ////////// 
@@ -208,34 +269,147 @@ public class DstoreRequestHandler extends RequestHandler{
     /**
      * Handles a LOAD request. 
      * 
+     * If asked for, the checksum of the file is sent after its content, so that the client
+     * can check the content it receives.
+     * 
      * @param connection The connection associated with the request.
      * @param filename The name of the file being loaded.
+     * @param checksum Whether the checksum of the file is sent after its content.
      * @throws MessageSendException If a message couldn't be sent through the connection.
      * @throws FileDoesNotExistException If the file being requested does not exist.
      */
-    private void handleLoadDataRequest(Connection connection, String filename) throws Exception{
-        // getting file
-        File file = new File(this.dstore.getFolderPath() + File.separatorChar + filename);
+    private void handleLoadDataRequest(Connection connection, String filename, boolean checksum) throws Exception{
+        ReadCache readCache = this.dstore.getReadCache();
 
-        // file exists - sending file to client
-        if(file.exists()){
-            // gathering file
-            FileInputStream fileInput = new FileInputStream(file);
+        // file cached - sending it from memory
+        ByteBuffer cachedContent = readCache.get(filename);
+        if(cachedContent != null){
+            connection.sendBytes(cachedContent);
+
+            // sending checksum
+            if(checksum){
+                this.sendChecksum(connection, filename, cachedContent);
+            }
+        }
+        // file not cached - loading it from the file store
+        else{
+            // generation taken before loading, so content overwritten meanwhile is not cached
+            long generation = readCache.getGeneration();
+
+            // gathering file (on a disk thread)
+            ByteBuffer fileContent;
+            try{
+                fileContent = this.dstore.getDiskExecutor().execute(Operation.READ, filename, () -> this.dstore.getFileStore().load(filename));
+            }
+            // file does not exist - closing connection
+            catch(NoSuchFileException e){
+                connection.close();
+
+                // throwing exception
+                throw new FileDoesNotExistException(filename);
+            }
 
             // sending file to client
-            byte[] fileContent = fileInput.readAllBytes();
             connection.sendBytes(fileContent);
-            fileInput.close();
 
-            // logging
-            this.dstore.handleEvent(new LoadCompleteEvent(filename));
+            // sending checksum
+            if(checksum){
+                this.sendChecksum(connection, filename, fileContent);
+            }
+
+            // caching the file
+            readCache.put(filename, fileContent, generation);
         }
-        // file does not exist - closing connection
-        else{
-            connection.close();
 
-            // throwing exception
-            throw new FileDoesNotExistException(filename);
+        // logging
+        this.dstore.handleEvent(new LoadCompleteEvent(filename));
+        this.reportReadCacheStats();
+    }
+
+    /**
+     * Sends the checksum of a file through a connection, as a 4-byte (big-endian) trailer
+     * following its content.
+     * 
+     * The checksum recorded when the file was stored is sent, so content that has been
+     * corrupted on disk is caught by the client. Files stored without a checksum have one
+     * computed from their content.
+     * 
+     * @param connection The connection the file was sent through.
+     * @param filename The name of the file.
+     * @param fileContent The content of the file.
+     * @throws MessageSendException If the checksum could not be sent.
+     */
+    private void sendChecksum(Connection connection, String filename, ByteBuffer fileContent) throws Exception{
+        // gathering the checksum
+        long checksum = this.dstore.getFileStore().getChecksum(filename);
+        if(checksum == FileStore.NO_CHECKSUM){
+            CRC32C crc = new CRC32C();
+            crc.update(fileContent.duplicate());
+            checksum = crc.getValue();
+        }
+
+        // sending the checksum
+        connection.sendBytes(ByteBuffer.allocate(4).putInt((int) checksum).array());
+    }
+
+    /**
+     * Stores a file by referencing content the Dstore already holds, if it stores files by
+     * the hash of their content.
+     * 
+     * The file is linked on a disk thread, so that it is ordered with the other operations
+     * on the file (e.g., an earlier write of the file that is still queued).
+     * 
+     * @param operation The type of disk operation the store is.
+     * @param filename The name of the file.
+     * @param filesize The size of the file.
+     * @param checksum The CRC32C of the file (-1 if not known).
+     * @param hash The SHA-256 of the file (null if not known).
+     * @return True if the file was stored, false if its content must be sent.
+     * @throws Exception If the file could not be recorded.
+     */
+    private boolean linkBlob(Operation operation, String filename, int filesize, long checksum, String hash) throws Exception{
+        FileStore fileStore = this.dstore.getFileStore();
+
+        // hash not known
+        if(hash == null){
+            return false;
+        }
+
+        // blobs in one folder
+        if(fileStore instanceof BlobFileStore){
+            return this.dstore.getDiskExecutor().execute(operation, filename, () -> ((BlobFileStore) fileStore).link(filename, hash, filesize, checksum));
+        }
+
+        // blobs spread across several folders
+        if(fileStore instanceof StripedFileStore){
+            return this.dstore.getDiskExecutor().execute(operation, filename, () -> ((StripedFileStore) fileStore).link(filename, hash, filesize, checksum));
+        }
+
+        return false;
+    }
+
+    /**
+     * Makes sure the checksum of receieved content matches the checksum it was sent with.
+     * 
+     * @param filename The name of the file.
+     * @param expected The checksum the content was sent with (-1 if none was sent).
+     * @param actual The checksum of the content receieved.
+     * @throws ChecksumMismatchException If the checksums do not match.
+     */
+    private void verifyChecksum(String filename, long expected, long actual) throws Exception{
+        if(expected != FileStore.NO_CHECKSUM && expected != actual){
+            throw new ChecksumMismatchException(filename, expected, actual);
+        }
+    }
+
+    /**
+     * Logs the hit, miss and eviction counts of the read cache, once every 1000 lookups.
+     */
+    private void reportReadCacheStats(){
+        ReadCache readCache = this.dstore.getReadCache();
+
+        if(readCache.isStatsReportDue()){
+            this.dstore.handleEvent(new ReadCacheStatsEvent(readCache.getHits(), readCache.getMisses(), readCache.getEvictions(), readCache.getSize(), readCache.getCapacity()));
         }
     }
 
@@ -252,17 +426,20 @@ public class DstoreRequestHandler extends RequestHandler{
      * @throws FileDoesNotExistException If the file being requested does not exist.
      */
     private void handleRemoveRequest(Connection connection, String filename) throws Exception{
-        // creating file object
-        File file = new File(this.dstore.getFolderPath() + File.separatorChar + filename);
-
-        // deleting file
+        // removing file (on a disk thread)
         try{
-            Files.delete(Paths.get(file.getAbsolutePath()));
+            this.dstore.getDiskExecutor().execute(Operation.REMOVE, filename, () -> {
+                this.dstore.getFileStore().remove(filename);
+                return null;
+            });
         }
-        catch(Exception e){
+        catch(NoSuchFileException e){
             throw new FileDoesNotExistException(filename);
         }
 
+        // removing the file from the read cache
+        this.dstore.getReadCache().invalidate(filename);
+
         // sending acknowleddgement to controller
         connection.sendMessage(Protocol.getRemoveAckMessage(filename));
 
@@ -299,138 +476,274 @@ public class DstoreRequestHandler extends RequestHandler{
     ///////////////
 
     /**
-     * Handles a REBALANCE request.
+     * Handles a REBALANCE (or REBALANCE_BATCH) request.
+     * 
+     * Large rebalances are sent as several batches. Each batch is carried out as soon as 
+     * the batches before it have been, and REBALANCE_COMPLETE is only sent once the last
+     * batch has been carried out.
      * 
      * @param connection The connection associated with the request.
      * @param filesToSend The files that must be sent to other Dstores.
      * @param filesToRemove The files to be removed from the Dstore.
+     * @param rate The rate (bytes per second) files must be sent at, or 0 if the Controller
+     * did not set one.
+     * @param rebalance The rebalance the batch belongs to (0 if not sent in batches).
+     * @param batch The number of this batch (from 1).
+     * @param batches The number of batches the rebalance is sent in.
      * @throws MessageSendException If a message could not be sent through a connection.
      * @throws MessageRecievedException If a message could not be receieved from a connection.
      * @throws FileDoesNotExistException If a file referenced in the request does not exist.
      * @throws InvalidMessageException If an invalid message is receieved from a Dstore whilst
      * sending files.
+     * @throws RebalanceBatchSkippedException If an earlier batch of the rebalance failed or
+     * was not received in time.
      */
-    private void handleRebalanceRequest(Connection connection, ArrayList<FileToSend> filesToSend, ArrayList<String> filesToRemove) throws Exception{
-        // FILES TO SEND //
+    private void handleRebalanceRequest(Connection connection, ArrayList<FileToSend> filesToSend, ArrayList<String> filesToRemove, long rate, int rebalance, int batch, int batches) throws Exception{
+        // BATCHING //
 
-        // iterate over files
-        for(FileToSend fileToSend : filesToSend){
-            // forming REBALANCE_STORE message
-            String message = Protocol.getRebalanceStoreMessage(fileToSend.filename, fileToSend.filesize);
+        // waiting for the earlier batches to be carried out
+        boolean batched = (batches > 1);
+        if(batched && !this.dstore.getRebalanceSequencer().waitForTurn(rebalance, batch, this.dstore.getTimeout())){
+            throw new RebalanceBatchSkippedException(batch, batches);
+        }
 
-            // loading file to be sent
-            File file = new File(this.dstore.getFolderPath() + File.separatorChar + fileToSend.filename);
+        boolean succeeded = false;
+        try{
+            // TRANSFER RATE //
 
-            // file exists - sending file to dstore's that need it
-            if(file.exists()){
-                // gathering file
-                FileInputStream fileInput = new FileInputStream(file);
+            // using the rate set by the controller for this rebalance only (the dstore's own limit otherwise)
+            RateLimiter transferLimiter = (rate > 0) ? new RateLimiter(rate) : this.dstore.getTransferLimiter();
 
-                // iterating over Dstores to send to
-                for(int dstore : fileToSend.dStores){
-                    // setting up the connection
-                    Connection dstoreConnection = new Connection(this.dstore.getNetworkInterface(), dstore, ServerType.DSTORE);
+            // FILES TO SEND //
 
-                    // adding connection to server
-                    this.dstore.getServerConnections().add(dstoreConnection);
+            // sending the files (in parallel)
+            this.sendFilesToDstores(filesToSend, transferLimiter);
 
-                    // sending dstore join message
-                    dstoreConnection.sendMessage(Protocol.getJoinDstoreMessage(this.dstore.getPort()));
+            // FILES TO REMOVE //
 
-                    try{
-                        // wait for acknowledgement
-                        Token response = RequestTokenizer.getToken(dstoreConnection.getMessageWithinTimeout(this.dstore.getTimeout()));
+            for(String fileToRemove : filesToRemove){
+                // removing file (on a disk thread)
+                try{
+                    this.dstore.getDiskExecutor().execute(Operation.REMOVE, fileToRemove, () -> {
+                        this.dstore.getFileStore().remove(fileToRemove);
+                        return null;
+                    });
+                }
+                catch(NoSuchFileException e){
+                    throw new FileDoesNotExistException(fileToRemove);
+                }
+
+                // removing the file from the read cache
+                this.dstore.getReadCache().invalidate(fileToRemove);
+            }
+
+            succeeded = true;
+        }
+        finally{
+            // letting the next batch be carried out (or skipped)
+            if(batched){
+                this.dstore.getRebalanceSequencer().finish(rebalance, batch, succeeded);
+            }
+        }
+
+        // more batches to come
+        if(batch < batches){
+            return;
+        }
+
+        // REBALANCE COMPLETE //
+
+        // sending message to controller (naming the rebalance, if the controller did)
+        connection.sendMessage((rebalance > 0) ? Protocol.getRebalanceCompleteMessage(rebalance) : Protocol.getRebalanceCompleteMessage());
+
+        // logging
+        this.dstore.handleEvent(new RebalanceCompleteEvent());
+    }
 
-                        // making sure response is JOIN_ACK
-                        if(response instanceof JoinAckToken){
-                            // sending rebalance message
-                            dstoreConnection.sendMessage(message);
+    /**
+     * Sends files stored on this Dstore to each of the Dstores that need them.
+     * 
+     * Each file is read once, and is then sent to each of its Dstores on the Dstore's
+     * transfer executor, so that several files (and Dstores) are sent to at the same time.
+     * No more than 'transfers' files are waiting to be sent at once, which bounds the 
+     * number of files held in memory. Returns once every transfer has finished.
+     * 
+     * @param filesToSend The files to be sent and the Dstores they must be sent to.
+     * @param transferLimiter The limiter the files are sent through.
+     * @throws MessageSendException If a message could not be sent through a connection.
+     * @throws MessageRecievedException If a message could not be receieved from a connection.
+     * @throws FileDoesNotExistException If one of the files does not exist.
+     * @throws InvalidMessageException If an invalid message is receieved whilst sending a file.
+     */
+    private void sendFilesToDstores(ArrayList<FileToSend> filesToSend, RateLimiter transferLimiter) throws Exception{
+        // transfers in progress
+        Semaphore permits = new Semaphore(this.dstore.getOptions().getTransfers());
+        ArrayList<Future<Void>> transfers = new ArrayList<Future<Void>>();
 
+        try{
+            for(FileToSend fileToSend : filesToSend){
+                // forming REBALANCE_STORE message
+                String message = this.getRebalanceStoreMessage(fileToSend);
+
+                // gathering file (loaded once for all of the dstores, on a disk thread)
+                ByteBuffer fileContent;
+                try{
+                    fileContent = this.dstore.getDiskExecutor().execute(Operation.REBALANCE_READ, fileToSend.filename, () -> this.dstore.getFileStore().load(fileToSend.filename));
+                }
+                // file does not exist - throwing exception
+                catch(NoSuchFileException e){
+                    throw new FileDoesNotExistException(fileToSend.filename);
+                }
+
+                // starting a transfer to each dstore
+                for(int dstore : fileToSend.dStores){
+                    // waiting for a transfer to finish
+                    permits.acquire();
+
+                    try{
+                        transfers.add(this.dstore.getTransferExecutor().submit(() -> {
                             try{
-                                // waiting for acknowledgement
-                                response = RequestTokenizer.getToken(dstoreConnection.getMessageWithinTimeout(this.dstore.getTimeout()));
-                    
-                                // making sure acknowledgement was receieved
-                                if(response instanceof AckToken){
-                                    // sending file to client
-                                    byte[] fileContent = fileInput.readAllBytes();
-                                    dstoreConnection.sendBytes(fileContent);
-                                    fileInput.close();
-                
-                                    // closing streams
-                                    dstoreConnection.close();
-                                    fileInput.close();
-                                }
-                                // invalid response received
-                                else{
-                                    // closing streams
-                                    dstoreConnection.close();
-                                    fileInput.close();
-                
-                                    // throwing exception
-                                    throw new InvalidMessageException(response.message, dstoreConnection.getPort());
-                                }
+                                this.sendFileToDstore(dstore, message, fileContent, transferLimiter);
+                                return null;
                             }
-                            catch(Exception e){
-                                // closing streams
-                                dstoreConnection.close();
-                                fileInput.close();
-                    
-                                // throwing exception
-                                throw e;
+                            finally{
+                                permits.release();
                             }
-                        }
-                        else{
-                            // closing streams
-                            dstoreConnection.close();
-                            fileInput.close();
-        
-                            // throwing exception
-                            throw new InvalidMessageException(response.message, dstoreConnection.getPort());
-                        }
+                        }));
                     }
-                    catch(Exception e){
-                        // closing streams
-                        dstoreConnection.close();
-                        fileInput.close();
-            
-                        // throwing exception
+                    catch(RejectedExecutionException e){
+                        permits.release();
                         throw e;
                     }
                 }
             }
-            // file does not exist - throwing exception
-            else{
-                // throwing exception
-                throw new FileDoesNotExistException(fileToSend.filename);
-            }
+        }
+        finally{
+            // waiting for the started transfers to finish
+            this.waitForTransfers(transfers);
+        }
+    }
+
+    /**
+     * Forms the REBALANCE_STORE message for a file, including its checksum and the hash of
+     * its content when they are known (so the receiving Dstore can check the content, and
+     * can skip the transfer if it already holds the content).
+     * 
+     * @param fileToSend The file being sent.
+     * @return The REBALANCE_STORE message for the file.
+     */
+    private String getRebalanceStoreMessage(FileToSend fileToSend){
+        FileStore fileStore = this.dstore.getFileStore();
+        long checksum = fileStore.getChecksum(fileToSend.filename);
+        String hash = null;
+        if(fileStore instanceof BlobFileStore){
+            hash = ((BlobFileStore) fileStore).getHash(fileToSend.filename);
+        }
+        else if(fileStore instanceof StripedFileStore){
+            hash = ((StripedFileStore) fileStore).getHash(fileToSend.filename);
+        }
+
+        // content hash known
+        if(hash != null){
+            return Protocol.getRebalanceStoreMessage(fileToSend.filename, fileToSend.filesize, checksum, hash);
+        }
+
+        // checksum known
+        if(checksum != FileStore.NO_CHECKSUM){
+            return Protocol.getRebalanceStoreMessage(fileToSend.filename, fileToSend.filesize, checksum);
         }
 
-        // FILES TO REMOVE //
+        return Protocol.getRebalanceStoreMessage(fileToSend.filename, fileToSend.filesize);
+    }
 
-        for(String fileToRemove : filesToRemove){
-            // creating file object
-            File file = new File(this.dstore.getFolderPath() + File.separatorChar + fileToRemove);
+    /**
+     * Waits for the provided transfers to finish.
+     * 
+     * @param transfers The transfers being waited for.
+     * @throws Exception The cause of the first transfer to fail (if any failed).
+     */
+    private void waitForTransfers(ArrayList<Future<Void>> transfers) throws Exception{
+        Exception failure = null;
 
-            // deleting file
+        for(Future<Void> transfer : transfers){
             try{
-                Files.delete(Paths.get(file.getAbsolutePath()));
+                transfer.get();
             }
-            catch(Exception e){
-                throw new FileDoesNotExistException(fileToRemove);
+            catch(ExecutionException e){
+                // recording the first failure
+                if(failure == null){
+                    failure = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                }
             }
         }
 
-        // REBALANCE COMPLETE //
+        // throwing the failure
+        if(failure != null){
+            throw failure;
+        }
+    }
 
-        // creating hashmap of files
-        HashMap<String, Integer> files = this.dstore.getFiles();
+    /**
+     * Sends the content of a file to a single Dstore (unless the Dstore replies that it
+     * already holds the content), and waits for the Dstore to confirm it has stored the
+     * file (STORE_ACK).
+     * 
+     * @param dstore The port of the Dstore the file is being sent to.
+     * @param message The REBALANCE_STORE message for the file.
+     * @param fileContent The content of the file.
+     * @param transferLimiter The limiter the file is sent through.
+     * @throws MessageSendException If a message could not be sent through the connection.
+     * @throws MessageRecievedException If a message could not be receieved from the connection.
+     * @throws InvalidMessageException If an invalid message is receieved whilst sending the file.
+     */
+    private void sendFileToDstore(int dstore, String message, ByteBuffer fileContent, RateLimiter transferLimiter) throws Exception{
+        // setting up the connection
+        Connection dstoreConnection = new Connection(this.dstore.getNetworkInterface(), dstore, ServerType.DSTORE);
 
-        // sending message to controller
-        connection.sendMessage(Protocol.getRebalanceCompleteMessage(files));
+        // adding connection to server
+        this.dstore.getServerConnections().add(dstoreConnection);
 
-        // logging
-        this.dstore.handleEvent(new RebalanceCompleteEvent());
+        // sending dstore join message
+        dstoreConnection.sendMessage(Protocol.getJoinDstoreMessage(this.dstore.getPort()));
+
+        try{
+            // wait for acknowledgement
+            Token response = RequestTokenizer.getToken(dstoreConnection.getMessageWithinTimeout(this.dstore.getTimeout()));
+
+            // making sure response is JOIN_ACK
+            if(!(response instanceof JoinAckToken)){
+                throw new InvalidMessageException(response.message, dstoreConnection.getPort());
+            }
+
+            // sending rebalance message
+            dstoreConnection.sendMessage(message);
+
+            // waiting for acknowledgement
+            response = RequestTokenizer.getToken(dstoreConnection.getMessageWithinTimeout(this.dstore.getTimeout()));
+
+            // content already held by the dstore - nothing to send
+            if(response instanceof BlobExistsToken){
+                return;
+            }
+
+            // making sure acknowledgement was receieved
+            if(!(response instanceof AckToken)){
+                throw new InvalidMessageException(response.message, dstoreConnection.getPort());
+            }
+
+            // sending file to dstore (limited to the transfer rate)
+            dstoreConnection.sendBytes(fileContent, transferLimiter);
+
+            // waiting for the dstore to store the file
+            response = RequestTokenizer.getToken(dstoreConnection.getMessageWithinTimeout(this.dstore.getTimeout()));
+            if(!(response instanceof StoreAckToken)){
+                throw new InvalidMessageException(response.message, dstoreConnection.getPort());
+            }
+        }
+        finally{
+            // closing streams
+            dstoreConnection.close();
+        }
     }
 
     /////////////////////
@@ -440,26 +753,88 @@ public class DstoreRequestHandler extends RequestHandler{
     /**
      * Handles a REBALANCE_STORE request.
      * 
+     * The file data is read on the connection's thread, and then handed to a disk thread
+     * to be stored (behind any client operations waiting for the disk, but in order with
+     * the other operations on the file, and never for longer than half the timeout).
+     * STORE_ACK is sent back to the sending Dstore once the file has been stored, so that
+     * the sender only reports the transfer complete once it is - if the store fails, no
+     * STORE_ACK is sent and the sender's transfer fails.
+     * 
      * @param connection The connection associated with the request.
      * @param filename The name of the file being sent.
      * @param filesize The size of the file being sent.
+     * @param checksum The CRC32C of the file sent by the Dstore (-1 if not provided).
+     * @param hash The SHA-256 of the file sent by the Dstore (null if not provided).
+     * @throws ChecksumMismatchException If the content receieved does not match the checksum.
      */
-    private void handleRebalanceStoreRequest(Connection connection, String filename, int filesize) throws Exception{
+    private void handleRebalanceStoreRequest(Connection connection, String filename, int filesize, long checksum, String hash) throws Exception{
+        // content already held - storing the file without it
+        if(this.linkBlob(Operation.REBALANCE_WRITE, filename, filesize, checksum, hash)){
+            connection.sendMessage(Protocol.getBlobExistsMessage());
+            this.dstore.getReadCache().invalidate(filename);
+
+            // logging
+            this.dstore.handleEvent(new BlobReusedEvent(filename, filesize));
+            this.dstore.handleEvent(new RebalanceStoreCompleteEvent(filename, filesize));
+            return;
+        }
+
         // sending ACK back to dstore
         connection.sendMessage(Protocol.getAckMessage());
 
-        // reading file data
-        byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.dstore.getTimeout());
+        // reading file data (checksumming it as it arrives)
+        CRC32C crc = new CRC32C();
+        byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.dstore.getTimeout(), crc);
+        this.verifyChecksum(filename, checksum, crc.getValue());
+
+        // handing the file data to a disk thread (the connection is free once it is queued)
+        this.dstore.getDiskExecutor().submit(Operation.REBALANCE_WRITE, filename, () -> {
+            try{
+                // storing file data (and dropping any cached copy it overwrote)
+                this.dstore.getFileStore().store(filename, fileContent, crc.getValue());
+                this.dstore.getReadCache().invalidate(filename);
+
+                // confirming the store to the sending dstore
+                connection.sendMessage(Protocol.getStoreAckMessage(filename));
+
+                // logging
+                this.dstore.handleEvent(new RebalanceStoreCompleteEvent(filename, filesize));
+            }
+            catch(Exception e){
+                this.dstore.handleError(new RequestHandlingException(Protocol.getRebalanceStoreMessage(filename, filesize), e));
+            }
+            return null;
+        });
+    }
+
+    ///////////////
+    // REPLICATE //
+    ///////////////
+
+    /**
+     * Handles a REPLICATE request.
+     * 
+     * Copies a file stored on this Dstore onto the Dstores that missed it's write quorum.
+     * REPLICATE_COMPLETE is only sent once every Dstore has confirmed it stored the file.
+     * 
+     * @param connection The connection associated with the request.
+     * @param fileToSend The file to be copied and the Dstores it must be copied onto.
+     * @throws MessageSendException If a message could not be sent through a connection.
+     * @throws MessageRecievedException If a message could not be receieved from a connection.
+     * @throws FileDoesNotExistException If the file does not exist.
+     * @throws InvalidMessageException If an invalid message is receieved whilst sending the file.
+     */
+    private void handleReplicateRequest(Connection connection, FileToSend fileToSend) throws Exception{
+        // sending the file to the dstores
+        ArrayList<FileToSend> filesToSend = new ArrayList<FileToSend>();
+        filesToSend.add(fileToSend);
+        this.sendFilesToDstores(filesToSend, this.dstore.getTransferLimiter());
 
-        // storing file data
-        File file = new File(this.dstore.getFolderPath() + File.separatorChar + filename);
-        FileOutputStream fileOutput = new FileOutputStream(file);
-        fileOutput.write(fileContent);
-        fileOutput.flush();
-        fileOutput.close();
+        // sending REPLICATE_COMPLETE to the controller
+        connection.sendMessage(Protocol.getReplicateCompleteMessage(fileToSend.filename));
 
         // logging
-        this.dstore.handleEvent(new RebalanceStoreCompleteEvent(filename, filesize));
+        this.dstore.handleEvent(new ReplicateCompleteEvent(fileToSend.filename, fileToSend.dStores));
     }
 
     /////////////
@@ -25,9 +25,10 @@ public class DstoreTerminal extends NetworkInterface{
      * @param cPort The port the Controller that the DStore will connect to is on.
      * @param timeout The timout period for the DStore.
      * @param folderPath The folder where the DStore will store files.
+     * @param options The optional settings of the Dstore.
      */
-    public DstoreTerminal(int port, int cPort, int timeout, String folderPath){
-        this.dstore = new Dstore(port, cPort, timeout, folderPath, this);
+    public DstoreTerminal(int port, int cPort, int timeout, String folderPath, DstoreOptions options){
+        this.dstore = new Dstore(port, cPort, timeout, folderPath, this, options);
 
         // starting the Dstore
         this.startNetworkProcess(this.dstore);
@@ -106,9 +107,10 @@ public class DstoreTerminal extends NetworkInterface{
             int cPort = Integer.parseInt(args[1]);
             int timeout = Integer.parseInt(args[2]);
             String fileFolder = args[3];
+            DstoreOptions options = DstoreOptions.fromArgs(args, 4);
 
             // Creating new DStore instance
-            DstoreTerminal dataStore = new DstoreTerminal(port, cPort, timeout, fileFolder);
+            DstoreTerminal dataStore = new DstoreTerminal(port, cPort, timeout, fileFolder, options);
         }
         catch(Exception e){
             System.out.println("Unable to create DStore." + e.toString());
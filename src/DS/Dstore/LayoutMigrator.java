@@ -0,0 +1,123 @@
+package DS.Dstore;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+
+import DS.Dstore.Storage.DirectoryLayout;
+
+/**
+ * Tool that moves the files in a Dstore's folder from one directory layout to another
+ * (e.g., from the flat layout to the sharded layout).
+ *
+ * Files are renamed into place rather than copied, so they keep their modification times
+ * and the Dstore's manifest stays valid. The folder is recorded as being migrated until
+ * every file has been moved, so a Dstore will not open a folder left part way through a
+ * migration - the tool can be run again to finish it.
+ *
+ * The Dstore must not be running while its folder is migrated.
+ *
+ * Usage: LayoutMigrator PATH LAYOUT
+ */
+public class LayoutMigrator{
+
+    // member variables
+    private File folder;
+    private String layout;
+
+    /**
+     * Class constructor.
+     *
+     * @param folder The Dstore's folder.
+     * @param layout The layout the folder is moved to (DirectoryLayout.FLAT or DirectoryLayout.SHARDED).
+     */
+    public LayoutMigrator(File folder, String layout){
+        // initializing
+        this.folder = folder;
+        this.layout = layout;
+    }
+
+    /////////////
+    // MIGRATE //
+    /////////////
+
+    /**
+     * Moves every file in the folder into the target layout.
+     *
+     * @return The number of files that were moved.
+     * @throws Exception If the folder does not exist or a file could not be moved.
+     */
+    public int migrate() throws Exception{
+        // the folder must exist
+        if(!this.folder.isDirectory()){
+            throw new Exception("The folder '" + this.folder.getPath() + "' does not exist.");
+        }
+
+        // recording the migration (so the folder is not opened part way through)
+        DirectoryLayout.writeLayout(this.folder, DirectoryLayout.MIGRATING);
+
+        // gathering the files in either layout (a previous migration may have been stopped part way through)
+        DirectoryLayout target = new DirectoryLayout(this.folder, this.layout);
+        HashMap<String, File> files = new DirectoryLayout(this.folder, DirectoryLayout.FLAT).listFiles();
+        files.putAll(new DirectoryLayout(this.folder, DirectoryLayout.SHARDED).listFiles());
+
+        // moving each file that is not already in place
+        int moved = 0;
+        for(String filename : files.keySet()){
+            File file = files.get(filename);
+            File targetFile = target.getFile(filename);
+
+            if(!file.equals(targetFile)){
+                targetFile.getParentFile().mkdirs();
+                Files.move(file.toPath(), targetFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                moved++;
+            }
+        }
+
+        // removing the shard directories left empty
+        if(!target.isSharded()){
+            for(File shard : target.listShards(this.folder)){
+                for(File subShard : target.listShards(shard)){
+                    subShard.delete();
+                }
+                shard.delete();
+            }
+        }
+
+        // recording the new layout
+        DirectoryLayout.writeLayout(this.folder, this.layout);
+
+        return moved;
+    }
+
+    /////////////////
+    // MAIN METHOD //
+    /////////////////
+
+    /**
+     * Main method - migrates a Dstore's folder using the command line parameters.
+     *
+     * @param args Parameters for the migration.
+     */
+    public static void main(String[] args){
+        try{
+            // gathering parameters
+            if(args.length != 2){
+                throw new IllegalArgumentException("Usage: LayoutMigrator <PATH> <" + DirectoryLayout.FLAT + "|" + DirectoryLayout.SHARDED + ">");
+            }
+            File folder = new File(args[0]);
+            String layout = args[1];
+            if(!layout.equals(DirectoryLayout.FLAT) && !layout.equals(DirectoryLayout.SHARDED)){
+                throw new IllegalArgumentException("Invalid layout '" + layout + "' (must be '" + DirectoryLayout.FLAT + "' or '" + DirectoryLayout.SHARDED + "').");
+            }
+
+            // migrating the folder
+            int moved = new LayoutMigrator(folder, layout).migrate();
+            System.out.println("Moved " + moved + " files in '" + folder.getPath() + "' to the " + layout + " layout.");
+        }
+        catch(Exception e){
+            System.out.println("Unable to migrate folder : " + e.toString());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package DS.Dstore;
+
+/**
+ * Makes sure the batches of a rebalance are carried out one at a time, in order.
+ *
+ * Large rebalances are sent to a Dstore as several REBALANCE_BATCH messages, and
+ * each message is handled on its own thread, so batches can arrive out of order
+ * and while earlier batches are still being carried out. The first batch of a
+ * rebalance starts it, and every other batch waits for the batch before it to
+ * finish. A batch only gives up if the rebalance makes no progress (no batch is
+ * carried out) for the whole timeout, so a long rebalance is not cut short. When a
+ * batch fails or gives up, the rebalance fails and the batches after it are skipped
+ * at once.
+ */
+public class RebalanceSequencer{
+
+    // member variables
+    private int rebalance; // the rebalance being carried out
+    private int nextBatch; // the next batch of the rebalance to carry out
+    private boolean failed; // whether or not a batch of the rebalance failed
+
+    /**
+     * Class constructor.
+     */
+    public RebalanceSequencer(){
+        // initializing
+        this.rebalance = 0;
+        this.nextBatch = 0;
+        this.failed = false;
+    }
+
+    ////////////////
+    // SEQUENCING //
+    ////////////////
+
+    /**
+     * Waits for the provided batch to be the next batch to carry out. Will only wait
+     * for the provided amount of time without a batch of the rebalance being carried
+     * out (the wait restarts each time the next batch moves on).
+     *
+     * @param rebalance The rebalance the batch belongs to.
+     * @param batch The number of the batch (from 1).
+     * @param timeout The maximum time to wait for.
+     * @return True if the batch should be carried out, false if it should be skipped
+     * (an earlier batch failed, or the rebalance made no progress for the whole timeout).
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public synchronized boolean waitForTurn(int rebalance, int batch, int timeout) throws InterruptedException{
+        // first batch - starting the rebalance
+        if(batch == 1){
+            this.rebalance = rebalance;
+            this.nextBatch = 1;
+            this.failed = false;
+            this.notifyAll();
+
+            return true;
+        }
+
+        long timeoutStamp = System.currentTimeMillis() + timeout;
+        int lastBatch = (this.rebalance == rebalance) ? this.nextBatch : 0;
+
+        // waiting for the earlier batches to finish
+        while(this.rebalance != rebalance || (!this.failed && this.nextBatch < batch)){
+            // the rebalance moved on - restarting the wait
+            if(this.rebalance == rebalance && this.nextBatch != lastBatch){
+                lastBatch = this.nextBatch;
+                timeoutStamp = System.currentTimeMillis() + timeout;
+            }
+
+            long remaining = timeoutStamp - System.currentTimeMillis();
+            if(remaining <= 0){
+                // no progress - failing the rebalance, so the later batches are skipped at once
+                if(this.rebalance == rebalance){
+                    this.failed = true;
+                    this.notifyAll();
+                }
+                return false;
+            }
+
+            this.wait(remaining);
+        }
+
+        return (!this.failed && this.nextBatch == batch);
+    }
+
+    /**
+     * Records that the provided batch has been carried out.
+     *
+     * @param rebalance The rebalance the batch belongs to.
+     * @param batch The number of the batch (from 1).
+     * @param succeeded Whether or not the batch was carried out successfully.
+     */
+    public synchronized void finish(int rebalance, int batch, boolean succeeded){
+        // batch no longer part of the current rebalance
+        if(this.rebalance != rebalance || this.nextBatch != batch){
+            return;
+        }
+
+        if(succeeded){
+            this.nextBatch++;
+        }
+        else{
+            this.failed = true;
+        }
+
+        // waking the waiting batches
+        this.notifyAll();
+    }
+}
@@ -0,0 +1,53 @@
+package DS.Dstore.Storage;
+
+/**
+ * Represents a piece of content held by a BlobFileStore, and the number of files that
+ * refer to it.
+ */
+public class Blob{
+
+    // member variables
+    private String hash; // SHA-256 of the content (hex)
+    private long size;
+    private long checksum; // CRC32C of the content (FileStore.NO_CHECKSUM if not known)
+    private int references; // files whose content is the blob
+
+    /**
+     * Class constructor.
+     *
+     * @param hash The SHA-256 of the content (hex).
+     * @param size The size of the content in bytes.
+     * @param checksum The CRC32C of the content (FileStore.NO_CHECKSUM if not known).
+     */
+    public Blob(String hash, long size, long checksum){
+        // initializing
+        this.hash = hash;
+        this.size = size;
+        this.checksum = checksum;
+        this.references = 0;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getHash(){
+        return this.hash;
+    }
+
+    public long getSize(){
+        return this.size;
+    }
+
+    public long getChecksum(){
+        return this.checksum;
+    }
+
+    public int getReferences(){
+        return this.references;
+    }
+
+    public void setReferences(int references){
+        this.references = references;
+    }
+}
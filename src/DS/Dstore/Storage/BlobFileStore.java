@@ -0,0 +1,385 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import DS.Protocol.Protocol;
+
+/**
+ * Stores the content of files as blobs named by the hash of their content, so that files
+ * with the same content (under different names) are only held once.
+ *
+ * Each blob is kept in the folder under a shard directory named by the first two hex
+ * digits of its hash (e.g., '<folder>/3f/3fa2...'). The blob holding each file's content,
+ * and the number of files that refer to each blob, are kept in a BlobIndex next to the
+ * folder ('<folder>.blobs'). A blob is deleted once no file refers to it.
+ *
+ * A file whose content is already held is stored without writing anything but an index
+ * record, and a STORE (or REBALANCE_STORE) that sends the hash of its content can be
+ * completed without the content being sent at all (see link()). New blobs are written to
+ * a temporary file in '<folder>/.tmp' and renamed into place, as in the DirectoryFileStore.
+ */
+public class BlobFileStore implements FileStore{
+
+    // constants
+    public final static String INDEX_SUFFIX = ".blobs";
+    private final static String TEMP_FOLDER = ".tmp";
+    private final static int SHARD_LENGTH = 2; // hex digits of the hash naming a blob's shard directory
+
+    // member variables
+    private File folder;
+    private File tempFolder; // where blobs are written before they are renamed into place
+    private BlobIndex index;
+    private SyncPolicy syncPolicy;
+
+    /**
+     * Class constructor.
+     *
+     * @param folder The folder the blobs are stored in.
+     * @param syncPolicy When written blobs are forced to disk.
+     */
+    public BlobFileStore(File folder, SyncPolicy syncPolicy){
+        // initializing
+        this.folder = folder;
+        this.tempFolder = new File(folder, BlobFileStore.TEMP_FOLDER);
+        this.index = new BlobIndex(new File(folder.getPath() + BlobFileStore.INDEX_SUFFIX), syncPolicy);
+        this.syncPolicy = syncPolicy;
+    }
+
+    /////////////
+    // OPENING //
+    /////////////
+
+    /**
+     * Opens the store, creating the folder if it does not exist and loading the index.
+     *
+     * @return True if the index was loaded, false if there was no index.
+     * @throws IOException If the index could not be loaded.
+     */
+    public boolean open() throws IOException{
+        // creating the folder if it doesnt exist
+        if(!this.folder.exists()){
+            this.folder.mkdir();
+        }
+
+        // clearing out blobs left part way through being written
+        if(this.tempFolder.exists()){
+            File[] tempFiles = this.tempFolder.listFiles();
+            if(tempFiles != null){
+                for(File tempFile : tempFiles){
+                    tempFile.delete();
+                }
+            }
+        }
+        else{
+            this.tempFolder.mkdir();
+        }
+
+        // loading the index
+        return this.index.load();
+    }
+
+    /**
+     * Compares the index to the blobs in the folder. Files whose blob is missing are
+     * removed from the index, and blobs that no file refers to (e.g., a blob written just
+     * before a crash) are deleted.
+     *
+     * Blobs are named by their content, so files cannot be recovered from blobs that are
+     * not in the index.
+     *
+     * @return The number of corrections made.
+     * @throws IOException If a correction could not be made.
+     */
+    public int verify() throws IOException{
+        int corrections = 0;
+
+        // files whose blob is missing
+        for(Map.Entry<String, Blob> entry : this.index.getFileBlobs().entrySet()){
+            synchronized(this){
+                if(this.index.getFile(entry.getKey()) == entry.getValue() && !this.getBlobFile(entry.getValue().getHash()).isFile()){
+                    this.index.unmap(entry.getKey());
+                    corrections++;
+                }
+            }
+        }
+
+        // blobs that no file refers to
+        File[] shards = this.folder.listFiles((file) -> file.isDirectory() && file.getName().length() == SHARD_LENGTH);
+        if(shards != null){
+            for(File shard : shards){
+                File[] blobFiles = shard.listFiles();
+                if(blobFiles == null){
+                    continue;
+                }
+
+                for(File blobFile : blobFiles){
+                    synchronized(this){
+                        if(this.index.getBlob(blobFile.getName()) == null){
+                            Files.deleteIfExists(blobFile.toPath());
+                            corrections++;
+                        }
+                    }
+                }
+            }
+        }
+
+        return corrections;
+    }
+
+    /**
+     * Closes the index.
+     *
+     * @throws IOException If the index could not be closed.
+     */
+    public void close() throws IOException{
+        this.index.close();
+    }
+
+    /////////////
+    // STORING //
+    /////////////
+
+    /**
+     * Stores a file, writing its content as a new blob unless a blob with the same content
+     * is already held.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file.
+     * @param checksum The CRC32C of the content (NO_CHECKSUM if not known).
+     * @throws IOException If the file could not be stored.
+     */
+    public void store(String filename, byte[] content, long checksum) throws IOException{
+        String hash = Protocol.getContentHash(content);
+
+        // content already held - referencing it
+        boolean held;
+        synchronized(this){
+            held = this.index.getBlob(hash) != null;
+            if(held){
+                this.deleteBlob(this.index.map(filename, hash, content.length, checksum));
+            }
+        }
+        if(held){
+            // forcing the index record (outside of the lock, so other records can be forced together)
+            this.index.sync();
+            return;
+        }
+
+        // writing the content to a temporary file
+        File tempFile = File.createTempFile("blob", null, this.tempFolder);
+        try{
+            FileOutputStream fileOutput = new FileOutputStream(tempFile);
+            try{
+                fileOutput.write(content);
+                fileOutput.flush();
+            }
+            finally{
+                fileOutput.close();
+            }
+
+            // making sure the content is on disk before it is renamed (forced with other writes in group mode)
+            this.syncPolicy.sync(tempFile);
+        }
+        catch(IOException e){
+            tempFile.delete();
+            throw e;
+        }
+
+        // moving the blob into place (unless the same content was stored meanwhile), and recording the file
+        File blobFile = this.getBlobFile(hash);
+        synchronized(this){
+            try{
+                if(this.index.getBlob(hash) == null){
+                    blobFile.getParentFile().mkdirs();
+                    Files.move(tempFile.toPath(), blobFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            finally{
+                tempFile.delete();
+            }
+            this.deleteBlob(this.index.map(filename, hash, content.length, checksum));
+        }
+
+        // making sure the rename, and then the index record, are on disk
+        this.syncPolicy.sync(blobFile.getParentFile());
+        this.index.sync();
+    }
+
+    /**
+     * Stores a file by referencing a blob that is already held, without its content.
+     *
+     * The file is only stored if the blob has the provided size and checksum, so that a
+     * STORE for different content (or a mistaken hash) is never matched to the blob.
+     *
+     * @param filename The name of the file.
+     * @param hash The SHA-256 of the file's content (hex).
+     * @param size The size of the file in bytes.
+     * @param checksum The CRC32C of the file's content (NO_CHECKSUM if not known).
+     * @return True if the file was stored, false if the blob is not held (the content
+     * must be sent).
+     * @throws IOException If the file could not be recorded in the index.
+     */
+    public boolean link(String filename, String hash, int size, long checksum) throws IOException{
+        synchronized(this){
+            Blob blob = this.index.getBlob(hash);
+
+            // blob not held (or not the content that was described)
+            if(blob == null || blob.getSize() != size || (checksum != FileStore.NO_CHECKSUM && blob.getChecksum() != FileStore.NO_CHECKSUM && blob.getChecksum() != checksum)){
+                return false;
+            }
+
+            // referencing the blob
+            this.deleteBlob(this.index.map(filename, hash, size, blob.getChecksum()));
+        }
+
+        // forcing the index record (outside of the lock, so other records can be forced together)
+        this.index.sync();
+        return true;
+    }
+
+    /**
+     * Loads the content of a file from its blob.
+     *
+     * @param filename The name of the file.
+     * @return A buffer holding the content of the file.
+     * @throws IOException If the file could not be loaded (NoSuchFileException if it is
+     * not stored).
+     */
+    public ByteBuffer load(String filename) throws IOException{
+        Blob blob = this.index.getFile(filename);
+        if(blob == null){
+            throw new NoSuchFileException(filename);
+        }
+
+        return ByteBuffer.wrap(Files.readAllBytes(this.getBlobFile(blob.getHash()).toPath()));
+    }
+
+    /**
+     * Reads the content of a file from its blob (blobs are never mapped, so this is the
+     * same as load()).
+     *
+     * @param filename The name of the file.
+     * @return A buffer holding the content of the file.
+     * @throws IOException If the file could not be read (NoSuchFileException if it is not
+     * stored).
+     */
+    public ByteBuffer read(String filename) throws IOException{
+        return this.load(filename);
+    }
+
+    /**
+     * Removes a file, deleting its blob if no other file refers to it.
+     *
+     * @param filename The name of the file.
+     * @throws IOException If the file could not be removed (NoSuchFileException if it is
+     * not stored).
+     */
+    public void remove(String filename) throws IOException{
+        synchronized(this){
+            if(this.index.getFile(filename) == null){
+                throw new NoSuchFileException(filename);
+            }
+
+            this.deleteBlob(this.index.unmap(filename));
+        }
+
+        // forcing the index record
+        this.index.sync();
+    }
+
+    /**
+     * Removes a file found to be corrupt, unless it no longer refers to a blob with the
+     * provided checksum (it has been replaced or removed since it was checked).
+     *
+     * @param filename The name of the file.
+     * @param checksum The checksum the corrupt content was checked against.
+     * @return True if the file was removed, false if it has been replaced or removed.
+     * @throws IOException If the file could not be removed.
+     */
+    public boolean removeCorrupt(String filename, long checksum) throws IOException{
+        synchronized(this){
+            if(this.getChecksum(filename) != checksum){
+                return false;
+            }
+
+            this.deleteBlob(this.index.unmap(filename));
+        }
+
+        // forcing the index record
+        this.index.sync();
+        return true;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Returns the file a blob is kept in.
+     *
+     * @param hash The SHA-256 of the blob's content (hex).
+     * @return The file the blob is kept in.
+     */
+    private File getBlobFile(String hash){
+        return new File(new File(this.folder, hash.substring(0, SHARD_LENGTH)), hash);
+    }
+
+    /**
+     * Deletes a blob that no file refers to anymore.
+     *
+     * @param orphan The blob (nothing is deleted if null).
+     * @throws IOException If the blob could not be deleted.
+     */
+    private void deleteBlob(Blob orphan) throws IOException{
+        if(orphan != null){
+            Files.deleteIfExists(this.getBlobFile(orphan.getHash()).toPath());
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public HashMap<String, Integer> getFiles(){
+        return this.index.getFiles();
+    }
+
+    public int getFileCount(){
+        return this.index.getFileCount();
+    }
+
+    public long getChecksum(String filename){
+        Blob blob = this.index.getFile(filename);
+
+        return (blob == null) ? FileStore.NO_CHECKSUM : blob.getChecksum();
+    }
+
+    public String getHash(String filename){
+        Blob blob = this.index.getFile(filename);
+
+        return (blob == null) ? null : blob.getHash();
+    }
+
+    public int getBlobCount(){
+        return this.index.getBlobCount();
+    }
+
+    public File getFolder(){
+        return this.folder;
+    }
+
+    public BlobIndex getIndex(){
+        return this.index;
+    }
+
+    public SyncPolicy getSyncPolicy(){
+        return this.syncPolicy;
+    }
+}
@@ -0,0 +1,336 @@
+package DS.Dstore.Storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory record of the files stored by a BlobFileStore, mapping each filename to the
+ * blob holding its content, and counting the files that refer to each blob.
+ *
+ * The index is persisted as a journal of the files mapped and unmapped, which is replayed
+ * (rebuilding the reference counts) when the Dstore starts. As with the Manifest, the
+ * journal is rewritten as a snapshot once it holds more than twice as many records as
+ * there are files. Records are flushed as they are written, and forced to disk (as
+ * required by the file store's SyncPolicy) by sync(), which the file store calls once it
+ * has released its lock, so that a file it has acknowledged keeps its mapping after a
+ * crash (and its blob is not deleted as unreferenced by the verification scan).
+ */
+public class BlobIndex{
+
+    // constants
+    private final static byte RECORD_MAP = 1;
+    private final static byte RECORD_UNMAP = 2;
+    private final static int COMPACTION_RATIO = 2; // journal records per file before compacting
+    private final static int MIN_COMPACTION_RECORDS = 1024; // journal records before compacting is considered
+
+    // member variables
+    private File journalFile;
+    private ConcurrentHashMap<String, Blob> files; // filename -> blob
+    private HashMap<String, Blob> blobs; // hash -> blob
+    private DataOutputStream journal;
+    private int journalRecords;
+    private SyncPolicy syncPolicy;
+
+    /**
+     * Class constructor.
+     *
+     * @param journalFile The file the index is persisted to.
+     * @param syncPolicy When journal records are forced to disk.
+     */
+    public BlobIndex(File journalFile, SyncPolicy syncPolicy){
+        // initializing
+        this.journalFile = journalFile;
+        this.files = new ConcurrentHashMap<String, Blob>();
+        this.blobs = new HashMap<String, Blob>();
+        this.journal = null;
+        this.journalRecords = 0;
+        this.syncPolicy = syncPolicy;
+    }
+
+    /////////////
+    // LOADING //
+    /////////////
+
+    /**
+     * Loads the index from its journal, and opens the journal for new records.
+     *
+     * A record that was only partly written ends the journal, and the index is left as it
+     * was before the record.
+     *
+     * @return True if a journal was loaded, false if there was no journal.
+     * @throws IOException If the journal could not be read or opened.
+     */
+    public synchronized boolean load() throws IOException{
+        boolean loaded = this.journalFile.exists();
+
+        // replaying the journal
+        if(loaded){
+            try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.journalFile)))){
+                while(true){
+                    byte record = input.readByte();
+                    String filename = input.readUTF();
+
+                    if(record == RECORD_MAP){
+                        String hash = input.readUTF();
+                        long size = input.readLong();
+                        long checksum = input.readLong();
+                        this.mapFile(filename, hash, size, checksum);
+                    }
+                    else{
+                        this.unmapFile(filename);
+                    }
+                    this.journalRecords++;
+                }
+            }
+            catch(EOFException e){
+                // end of journal
+            }
+        }
+
+        // rewriting the journal without any partial record
+        this.compact();
+
+        return loaded;
+    }
+
+    ///////////////
+    // RECORDING //
+    ///////////////
+
+    /**
+     * Records that the provided file's content is held in the blob with the provided hash,
+     * replacing any content the file had before.
+     *
+     * @param filename The name of the file.
+     * @param hash The SHA-256 of the content (hex).
+     * @param size The size of the content in bytes.
+     * @param checksum The CRC32C of the content (FileStore.NO_CHECKSUM if not known).
+     * @return The blob the file referred to before, if no file refers to it anymore (null
+     * otherwise).
+     * @throws IOException If the record could not be written to the journal.
+     */
+    public synchronized Blob map(String filename, String hash, long size, long checksum) throws IOException{
+        Blob orphan = this.mapFile(filename, hash, size, checksum);
+
+        // journaling the record
+        this.writeMapping(this.journal, filename, this.files.get(filename));
+        this.recordWritten();
+
+        return orphan;
+    }
+
+    /**
+     * Records that the provided file has been removed.
+     *
+     * @param filename The name of the file.
+     * @return The blob the file referred to, if no file refers to it anymore (null
+     * otherwise).
+     * @throws IOException If the record could not be written to the journal.
+     */
+    public synchronized Blob unmap(String filename) throws IOException{
+        // file not in the index
+        if(!this.files.containsKey(filename)){
+            return null;
+        }
+        Blob orphan = this.unmapFile(filename);
+
+        // journaling the record
+        this.journal.writeByte(RECORD_UNMAP);
+        this.journal.writeUTF(filename);
+        this.recordWritten();
+
+        return orphan;
+    }
+
+    /**
+     * Forces the records written so far to disk, as required by the SyncPolicy. Called
+     * without the file store's lock held, so that records can be forced together.
+     *
+     * @throws IOException If the journal could not be forced.
+     */
+    public void sync() throws IOException{
+        this.syncPolicy.sync(this.journalFile);
+    }
+
+    /**
+     * Maps a file to a blob in memory, creating the blob if it is not held.
+     *
+     * @param filename The name of the file.
+     * @param hash The SHA-256 of the content (hex).
+     * @param size The size of the content in bytes.
+     * @param checksum The CRC32C of the content (FileStore.NO_CHECKSUM if not known).
+     * @return The blob the file referred to before, if no file refers to it anymore (null
+     * otherwise).
+     */
+    private Blob mapFile(String filename, String hash, long size, long checksum){
+        Blob blob = this.blobs.get(hash);
+        if(blob == null){
+            blob = new Blob(hash, size, checksum);
+            this.blobs.put(hash, blob);
+        }
+        blob.setReferences(blob.getReferences() + 1);
+
+        // releasing the file's previous blob
+        Blob previous = this.files.put(filename, blob);
+        return (previous == null) ? null : this.release(previous);
+    }
+
+    /**
+     * Unmaps a file from its blob in memory.
+     *
+     * @param filename The name of the file.
+     * @return The blob the file referred to, if no file refers to it anymore (null
+     * otherwise).
+     */
+    private Blob unmapFile(String filename){
+        Blob previous = this.files.remove(filename);
+
+        return (previous == null) ? null : this.release(previous);
+    }
+
+    /**
+     * Drops a reference to a blob, forgetting the blob once no file refers to it.
+     *
+     * @param blob The blob.
+     * @return The blob if no file refers to it anymore, null otherwise.
+     */
+    private Blob release(Blob blob){
+        blob.setReferences(blob.getReferences() - 1);
+        if(blob.getReferences() > 0){
+            return null;
+        }
+
+        this.blobs.remove(blob.getHash());
+        return blob;
+    }
+
+    /**
+     * Writes a map record for the provided file.
+     *
+     * @param output The journal (or snapshot) the record is written to.
+     * @param filename The name of the file.
+     * @param blob The blob holding the file's content.
+     * @throws IOException If the record could not be written.
+     */
+    private void writeMapping(DataOutputStream output, String filename, Blob blob) throws IOException{
+        output.writeByte(RECORD_MAP);
+        output.writeUTF(filename);
+        output.writeUTF(blob.getHash());
+        output.writeLong(blob.getSize());
+        output.writeLong(blob.getChecksum());
+    }
+
+    /**
+     * Flushes the latest record to the journal, and compacts the journal if it has grown
+     * too large.
+     *
+     * @throws IOException If the journal could not be written.
+     */
+    private void recordWritten() throws IOException{
+        this.journal.flush();
+        this.journalRecords++;
+
+        // compacting the journal
+        if(this.journalRecords > MIN_COMPACTION_RECORDS && this.journalRecords > COMPACTION_RATIO * this.files.size()){
+            this.compact();
+        }
+    }
+
+    /**
+     * Rewrites the journal as a snapshot of the index (one record per file).
+     *
+     * As with the Manifest, the snapshot, and then the rename, are forced to disk as
+     * required by the SyncPolicy.
+     *
+     * @throws IOException If the journal could not be rewritten.
+     */
+    public synchronized void compact() throws IOException{
+        // closing the current journal
+        if(this.journal != null){
+            this.journal.close();
+        }
+
+        // writing the snapshot
+        File snapshotFile = new File(this.journalFile.getPath() + ".tmp");
+        try(DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshotFile)))){
+            for(Map.Entry<String, Blob> entry : this.files.entrySet()){
+                this.writeMapping(snapshot, entry.getKey(), entry.getValue());
+            }
+        }
+        this.syncPolicy.sync(snapshotFile);
+        Files.move(snapshotFile.toPath(), this.journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.syncPolicy.sync(this.journalFile.getAbsoluteFile().getParentFile());
+
+        // re-opening the journal
+        this.journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.journalFile, true)));
+        this.journalRecords = this.files.size();
+    }
+
+    /**
+     * Closes the journal.
+     *
+     * @throws IOException If the journal could not be closed.
+     */
+    public synchronized void close() throws IOException{
+        if(this.journal != null){
+            this.journal.close();
+            this.journal = null;
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    /**
+     * Returns the files in the index as a mapping of filenames to filesizes.
+     *
+     * @return A mapping of filenames to filesizes.
+     */
+    public HashMap<String, Integer> getFiles(){
+        HashMap<String, Integer> files = new HashMap<String, Integer>();
+        for(Map.Entry<String, Blob> entry : this.files.entrySet()){
+            files.put(entry.getKey(), (int) entry.getValue().getSize());
+        }
+
+        return files;
+    }
+
+    /**
+     * Returns the files in the index as a mapping of filenames to the blobs holding their
+     * content.
+     *
+     * @return A mapping of filenames to blobs.
+     */
+    public HashMap<String, Blob> getFileBlobs(){
+        return new HashMap<String, Blob>(this.files);
+    }
+
+    public Blob getFile(String filename){
+        return this.files.get(filename);
+    }
+
+    public synchronized Blob getBlob(String hash){
+        return this.blobs.get(hash);
+    }
+
+    public int getFileCount(){
+        return this.files.size();
+    }
+
+    public synchronized int getBlobCount(){
+        return this.blobs.size();
+    }
+}
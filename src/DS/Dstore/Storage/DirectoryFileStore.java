@@ -0,0 +1,314 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+
+/**
+ * Stores each file as a file of the same name within a folder.
+ *
+ * Files are kept directly in the folder, or under hash-prefix shard directories (see
+ * DirectoryLayout), so that no single directory holds millions of files.
+ *
+ * The files in the folder are recorded in a Manifest kept next to the folder
+ * ('<folder>.manifest'), so that the folder does not need to be walked to list them.
+ * Files can be served from memory-mapped buffers (see MappedFileCache) rather than
+ * being read for every load.
+ *
+ * Each file is written to a temporary file in '<folder>/.tmp' and then renamed over the
+ * file it replaces, so a load (or a crash) never sees a partly written file. When the
+ * SyncPolicy requires it, the temporary file is forced to disk before it is renamed and
+ * the directory holding it is forced afterwards (directory forces are batched by group
+ * commits).
+ */
+public class DirectoryFileStore implements FileStore{
+
+    // constants
+    public final static String MANIFEST_SUFFIX = ".manifest";
+    private final static String TEMP_FOLDER = ".tmp";
+    private final static int FILE_LOCKS = 64; // locks a file's replacement and removal are made under
+
+    // member variables
+    private File folder;
+    private File tempFolder; // where files are written before they are renamed into place
+    private String layoutName;
+    private DirectoryLayout layout;
+    private Manifest manifest;
+    private MappedFileCache mappedFiles;
+    private SyncPolicy syncPolicy;
+    private Object[] fileLocks; // striped by filename, so forces for other files are not held up
+
+    /**
+     * Class constructor.
+     *
+     * @param folder The folder the files are stored in.
+     * @param layout The layout of the folder (DirectoryLayout.FLAT or DirectoryLayout.SHARDED).
+     * @param mappedFiles The number of files kept memory-mapped (0 = files are read for every load).
+     * @param syncPolicy When written files are forced to disk.
+     */
+    public DirectoryFileStore(File folder, String layout, int mappedFiles, SyncPolicy syncPolicy){
+        // initializing
+        this.folder = folder;
+        this.tempFolder = new File(folder, DirectoryFileStore.TEMP_FOLDER);
+        this.layoutName = layout;
+        this.layout = new DirectoryLayout(folder, layout);
+        this.manifest = new Manifest(new File(folder.getPath() + DirectoryFileStore.MANIFEST_SUFFIX), syncPolicy);
+        this.mappedFiles = new MappedFileCache(mappedFiles);
+        this.syncPolicy = syncPolicy;
+        this.fileLocks = new Object[DirectoryFileStore.FILE_LOCKS];
+        for(int i = 0; i < this.fileLocks.length; i++){
+            this.fileLocks[i] = new Object();
+        }
+    }
+
+    /////////////
+    // OPENING //
+    /////////////
+
+    /**
+     * Opens the store, creating the folder if it does not exist and loading the manifest.
+     *
+     * An empty folder takes on the store's layout. A folder that holds files in another
+     * layout (or that is part way through being migrated) is not opened.
+     *
+     * @return True if the manifest was loaded, false if there was no manifest (it must be
+     * built by walking the folder).
+     * @throws IOException If the folder uses another layout, or the manifest could not be loaded.
+     */
+    public boolean open() throws IOException{
+        // creating the folder if it doesnt exist
+        if(!this.folder.exists()){
+            this.folder.mkdir();
+        }
+
+        // making sure the folder uses the store's layout
+        String folderLayout = DirectoryLayout.readLayout(this.folder);
+        if(!folderLayout.equals(this.layoutName)){
+            String[] contents = this.folder.list();
+
+            // folder in another layout - must be migrated first
+            if(folderLayout.equals(DirectoryLayout.MIGRATING) || (contents != null && contents.length > 0)){
+                throw new IOException("The folder '" + this.folder.getPath() + "' uses the '" + folderLayout + "' layout (use the LayoutMigrator to move it to the '" + this.layoutName + "' layout).");
+            }
+
+            // empty folder - taking on the store's layout
+            DirectoryLayout.writeLayout(this.folder, this.layoutName);
+        }
+
+        // clearing out files left part way through being written
+        if(this.tempFolder.exists()){
+            File[] tempFiles = this.tempFolder.listFiles();
+            if(tempFiles != null){
+                for(File tempFile : tempFiles){
+                    tempFile.delete();
+                }
+            }
+        }
+        else{
+            this.tempFolder.mkdir();
+        }
+
+        // loading the manifest
+        return this.manifest.load();
+    }
+
+    /**
+     * Compares the manifest to the files in the folder, correcting any differences.
+     *
+     * @return The number of corrections made to the manifest.
+     * @throws IOException If a correction could not be recorded.
+     */
+    public int verify() throws IOException{
+        return this.manifest.verify(this.layout);
+    }
+
+    /**
+     * Closes the manifest.
+     *
+     * @throws IOException If the manifest could not be closed.
+     */
+    public void close() throws IOException{
+        this.manifest.close();
+    }
+
+    /////////////
+    // STORING //
+    /////////////
+
+    /**
+     * Writes a file to the folder, and records it in the manifest.
+     *
+     * The content is written to a temporary file, which is forced to disk and then renamed 
+     * over any file it replaces. Returns once the write (and its manifest record) is on disk
+     * as required by the SyncPolicy.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file.
+     * @param checksum The CRC32C of the content (NO_CHECKSUM if not known).
+     * @throws IOException If the file could not be written.
+     */
+    public void store(String filename, byte[] content, long checksum) throws IOException{
+        File file = this.layout.getFile(filename);
+        File directory = file.getParentFile();
+        if(this.layout.isSharded()){
+            directory.mkdirs();
+        }
+
+        // writing the content to a temporary file
+        File tempFile = File.createTempFile("store", null, this.tempFolder);
+        try{
+            FileOutputStream fileOutput = new FileOutputStream(tempFile);
+            try{
+                fileOutput.write(content);
+                fileOutput.flush();
+            }
+            finally{
+                fileOutput.close();
+            }
+
+            // making sure the content is on disk before it is renamed (forced with other writes in group mode)
+            this.syncPolicy.sync(tempFile);
+        }
+        catch(IOException e){
+            tempFile.delete();
+            throw e;
+        }
+
+        // replacing the file and its manifest record together (so a scrub never removes the new version)
+        synchronized(this.getFileLock(filename)){
+            try{
+                // moving the file into place (replacing any earlier version in one step)
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(IOException e){
+                tempFile.delete();
+                throw e;
+            }
+
+            // making sure the rename is on disk
+            this.syncPolicy.sync(directory);
+
+            // recording the file in the manifest (and dropping any mapping it overwrote)
+            this.manifest.put(file, checksum);
+            this.mappedFiles.invalidate(filename);
+        }
+    }
+
+    /**
+     * Loads a file from the folder (or from its mapping).
+     *
+     * @param filename The name of the file.
+     * @return A buffer holding the content of the file.
+     * @throws IOException If the file could not be loaded (NoSuchFileException if it
+     * does not exist).
+     */
+    public ByteBuffer load(String filename) throws IOException{
+        // serving the mapped file
+        if(this.mappedFiles.isEnabled()){
+            return this.mappedFiles.get(this.layout.getFile(filename));
+        }
+
+        // reading the file
+        return this.read(filename);
+    }
+
+    /**
+     * Reads a file from the folder (never from its mapping).
+     *
+     * @param filename The name of the file.
+     * @return A buffer holding the content of the file.
+     * @throws IOException If the file could not be read (NoSuchFileException if it does
+     * not exist).
+     */
+    public ByteBuffer read(String filename) throws IOException{
+        return ByteBuffer.wrap(Files.readAllBytes(this.layout.getFile(filename).toPath()));
+    }
+
+    /**
+     * Deletes a file from the folder, and removes it from the manifest.
+     *
+     * @param filename The name of the file.
+     * @throws IOException If the file could not be deleted (NoSuchFileException if it
+     * does not exist).
+     */
+    public void remove(String filename) throws IOException{
+        synchronized(this.getFileLock(filename)){
+            // deleting the file
+            Files.delete(this.layout.getFile(filename).toPath());
+
+            // removing the file from the manifest and dropping its mapping
+            this.manifest.remove(filename);
+            this.mappedFiles.invalidate(filename);
+        }
+    }
+
+    /**
+     * Removes a file found to be corrupt, unless the manifest no longer records it with the
+     * provided checksum (it has been replaced or removed since it was checked).
+     *
+     * @param filename The name of the file.
+     * @param checksum The checksum the corrupt content was checked against.
+     * @return True if the file was removed, false if it has been replaced or removed.
+     * @throws IOException If the file could not be deleted.
+     */
+    public boolean removeCorrupt(String filename, long checksum) throws IOException{
+        synchronized(this.getFileLock(filename)){
+            if(this.manifest.getChecksum(filename) != checksum){
+                return false;
+            }
+
+            this.remove(filename);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the lock a file is replaced and removed under.
+     *
+     * @param filename The name of the file.
+     * @return The lock for the file.
+     */
+    private Object getFileLock(String filename){
+        return this.fileLocks[Math.floorMod(filename.hashCode(), this.fileLocks.length)];
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public HashMap<String, Integer> getFiles(){
+        return this.manifest.getFiles();
+    }
+
+    public int getFileCount(){
+        return this.manifest.getFileCount();
+    }
+
+    public long getChecksum(String filename){
+        return this.manifest.getChecksum(filename);
+    }
+
+    public File getFolder(){
+        return this.folder;
+    }
+
+    public DirectoryLayout getLayout(){
+        return this.layout;
+    }
+
+    public Manifest getManifest(){
+        return this.manifest;
+    }
+
+    public MappedFileCache getMappedFiles(){
+        return this.mappedFiles;
+    }
+
+    public SyncPolicy getSyncPolicy(){
+        return this.syncPolicy;
+    }
+}
@@ -0,0 +1,183 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Decides where each file is kept within a DirectoryFileStore's folder.
+ *
+ * In the flat layout, every file is kept directly in the folder. In the sharded layout,
+ * each file is kept two directories down, named by the first four hex digits of the CRC32
+ * of its name (e.g., 'folder/3f/a2/filename'), so that no directory holds more than a
+ * small share of the files.
+ *
+ * The layout of a folder is recorded next to it ('<folder>.layout'), and a folder without
+ * a record uses the flat layout. A folder can only be opened with the layout it uses, and
+ * is moved between layouts by the LayoutMigrator.
+ */
+public class DirectoryLayout{
+
+    // constants
+    public final static String FLAT = "flat";
+    public final static String SHARDED = "sharded";
+    public final static String MIGRATING = "migrating"; // recorded while a folder is being migrated
+    private final static String LAYOUT_SUFFIX = ".layout";
+
+    // member variables
+    private File folder;
+    private boolean sharded;
+
+    /**
+     * Class constructor.
+     *
+     * @param folder The folder the files are kept in.
+     * @param layout The layout of the folder (FLAT or SHARDED).
+     */
+    public DirectoryLayout(File folder, String layout){
+        // initializing
+        this.folder = folder;
+        this.sharded = layout.equals(DirectoryLayout.SHARDED);
+    }
+
+    ///////////
+    // PATHS //
+    ///////////
+
+    /**
+     * Returns the file a stored file with the provided name is kept in.
+     *
+     * @param filename The name of the stored file.
+     * @return The file within the folder.
+     */
+    public File getFile(String filename){
+        // flat - kept directly in the folder
+        if(!this.sharded){
+            return new File(this.folder, filename);
+        }
+
+        // sharded - kept under the shard directories of its hash
+        CRC32 crc = new CRC32();
+        crc.update(filename.getBytes(StandardCharsets.UTF_8));
+        String hash = String.format("%08x", crc.getValue());
+
+        return new File(new File(new File(this.folder, hash.substring(0, 2)), hash.substring(2, 4)), filename);
+    }
+
+    /**
+     * Returns every file kept in the folder under this layout.
+     *
+     * @return A mapping of filenames to the files they are kept in.
+     */
+    public HashMap<String, File> listFiles(){
+        HashMap<String, File> files = new HashMap<String, File>();
+
+        // flat - files directly in the folder
+        if(!this.sharded){
+            this.addFiles(this.folder, files);
+        }
+        // sharded - files two directories down
+        else{
+            for(File shard : this.listShards(this.folder)){
+                for(File subShard : this.listShards(shard)){
+                    this.addFiles(subShard, files);
+                }
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Adds the files directly within the provided directory to the provided mapping.
+     *
+     * @param directory The directory.
+     * @param files The mapping of filenames to files being added to.
+     */
+    private void addFiles(File directory, HashMap<String, File> files){
+        File[] fileList = directory.listFiles();
+        if(fileList != null){
+            for(File file : fileList){
+                if(file.isFile()){
+                    files.put(file.getName(), file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the shard directories within the provided directory.
+     *
+     * @param directory The directory.
+     * @return The shard directories (directories named by two hex digits).
+     */
+    public File[] listShards(File directory){
+        File[] shards = directory.listFiles(file -> file.isDirectory() && file.getName().matches("[0-9a-f]{2}"));
+
+        return (shards == null) ? new File[0] : shards;
+    }
+
+    ///////////////
+    // RECORDING //
+    ///////////////
+
+    /**
+     * Reads the layout recorded for the provided folder.
+     *
+     * @param folder The folder.
+     * @return The recorded layout (FLAT if none has been recorded).
+     * @throws IOException If the record could not be read.
+     */
+    public static String readLayout(File folder) throws IOException{
+        File layoutFile = DirectoryLayout.getLayoutFile(folder);
+        if(!layoutFile.exists()){
+            return DirectoryLayout.FLAT;
+        }
+
+        return Files.readString(layoutFile.toPath(), StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Records the layout of the provided folder.
+     *
+     * @param folder The folder.
+     * @param layout The layout of the folder (FLAT, SHARDED or MIGRATING).
+     * @throws IOException If the record could not be written.
+     */
+    public static void writeLayout(File folder, String layout) throws IOException{
+        File layoutFile = DirectoryLayout.getLayoutFile(folder);
+
+        // flat folders have no record
+        if(layout.equals(DirectoryLayout.FLAT)){
+            Files.deleteIfExists(layoutFile.toPath());
+        }
+        else{
+            Files.writeString(layoutFile.toPath(), layout, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Returns the file the layout of the provided folder is recorded in.
+     *
+     * @param folder The folder.
+     * @return The layout record, next to the folder.
+     */
+    private static File getLayoutFile(File folder){
+        return new File(folder.getPath() + DirectoryLayout.LAYOUT_SUFFIX);
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public File getFolder(){
+        return this.folder;
+    }
+
+    public boolean isSharded(){
+        return this.sharded;
+    }
+}
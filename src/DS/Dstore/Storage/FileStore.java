@@ -0,0 +1,119 @@
+package DS.Dstore.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+/**
+ * Storage engine used by a Dstore to hold the files it has been sent.
+ *
+ * Files are stored, loaded and removed whole, and are looked up by name. Loading or
+ * removing a file that is not stored throws a NoSuchFileException. The CRC32C of each
+ * file's content is kept with it, so that the content can be verified when it is sent on
+ * and while it is at rest.
+ */
+public interface FileStore{
+
+    // constants
+    public final static long NO_CHECKSUM = -1; // checksum of a file stored without one
+
+    /**
+     * Opens the store, loading its index of the files it holds.
+     *
+     * @return True if the index was loaded from disk, false if the index is empty and
+     * must be built by verify().
+     * @throws IOException If the store could not be opened.
+     */
+    public boolean open() throws IOException;
+
+    /**
+     * Compares the store's index to the files on disk, correcting any differences.
+     *
+     * @return The number of corrections made to the index.
+     * @throws IOException If the index could not be corrected.
+     */
+    public int verify() throws IOException;
+
+    /**
+     * Stores a file, replacing any file with the same name.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file.
+     * @param checksum The CRC32C of the content (NO_CHECKSUM if not known).
+     * @throws IOException If the file could not be stored.
+     */
+    public void store(String filename, byte[] content, long checksum) throws IOException;
+
+    /**
+     * Loads the content of a file.
+     *
+     * @param filename The name of the file.
+     * @return A buffer holding the content of the file.
+     * @throws IOException If the file could not be loaded (NoSuchFileException if it is
+     * not stored).
+     */
+    public ByteBuffer load(String filename) throws IOException;
+
+    /**
+     * Reads the content of a file from disk, bypassing any mapping of it (so that the
+     * content at rest can be verified).
+     *
+     * @param filename The name of the file.
+     * @return A buffer holding the content of the file.
+     * @throws IOException If the file could not be read (NoSuchFileException if it is
+     * not stored).
+     */
+    public ByteBuffer read(String filename) throws IOException;
+
+    /**
+     * Returns the checksum recorded for a file.
+     *
+     * @param filename The name of the file.
+     * @return The CRC32C of the file's content (NO_CHECKSUM if the file is not stored, or
+     * was stored without a checksum).
+     */
+    public long getChecksum(String filename);
+
+    /**
+     * Removes a file.
+     *
+     * @param filename The name of the file.
+     * @throws IOException If the file could not be removed (NoSuchFileException if it is
+     * not stored).
+     */
+    public void remove(String filename) throws IOException;
+
+    /**
+     * Removes a file found to be corrupt, unless it has been replaced since it was checked.
+     * The checksum is compared and the file removed in one step, so a STORE that overwrites
+     * the file meanwhile is never removed in its place.
+     *
+     * @param filename The name of the file.
+     * @param checksum The checksum the corrupt content was checked against.
+     * @return True if the file was removed, false if it is no longer stored with the
+     * provided checksum.
+     * @throws IOException If the file could not be removed.
+     */
+    public boolean removeCorrupt(String filename, long checksum) throws IOException;
+
+    /**
+     * Returns the files in the store as a mapping of filenames to filesizes.
+     *
+     * @return A mapping of filenames to filesizes.
+     */
+    public HashMap<String, Integer> getFiles();
+
+    /**
+     * Returns the number of files in the store.
+     *
+     * @return The number of files in the store.
+     */
+    public int getFileCount();
+
+    /**
+     * Closes the store.
+     *
+     * @throws IOException If the store could not be closed.
+     */
+    public void close() throws IOException;
+}
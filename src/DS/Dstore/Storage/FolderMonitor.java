@@ -0,0 +1,101 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Map;
+
+import DS.Dstore.Dstore;
+import DS.Protocol.Protocol;
+import DS.Protocol.Exception.FolderLostException;
+import Network.Protocol.Exception.NetworkException;
+import Network.Server.ServerThread;
+
+/**
+ * Watches the folders of a Dstore's striped file store, and reports the folders that can
+ * no longer be used.
+ *
+ * Every second, each folder in use is checked, and the files lost with any folder that
+ * has been dropped (by the check, or by a failed operation) are sent to the Controller in
+ * a FILES_LOST message. The Controller then restores the lost replicas alone, rather
+ * than the whole Dstore being treated as lost.
+ */
+public class FolderMonitor extends Thread{
+
+    // constants
+    private final static int CHECK_INTERVAL = 1000; // ms between checks of the folders
+
+    // member variables
+    private Dstore dstore;
+    private StripedFileStore fileStore;
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore the file store belongs to.
+     * @param fileStore The striped file store being watched.
+     */
+    public FolderMonitor(Dstore dstore, StripedFileStore fileStore){
+        // initializing
+        this.dstore = dstore;
+        this.fileStore = fileStore;
+        this.setDaemon(true);
+    }
+
+    /**
+     * Method run when thread started.
+     */
+    public void run(){
+        while(true){
+            try{
+                Thread.sleep(CHECK_INTERVAL);
+            }
+            catch(InterruptedException e){
+                return;
+            }
+
+            // checking the folders
+            this.fileStore.checkFolders();
+
+            // reporting the dropped folders
+            for(Map.Entry<File, ArrayList<String>> lostFolder : this.fileStore.takeLostFolders().entrySet()){
+                this.reportLostFolder(lostFolder.getKey(), lostFolder.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reports a folder that has been dropped, and the files lost with it.
+     *
+     * The lost files are dropped from the read cache and sent to the Controller. A Dstore
+     * that has not yet joined the Controller sends nothing, as the Controller gathers the
+     * files it still holds once it joins.
+     *
+     * @param folder The folder that was dropped.
+     * @param lostFiles The files lost with the folder.
+     */
+    private void reportLostFolder(File folder, ArrayList<String> lostFiles){
+        // logging
+        this.dstore.handleError(new FolderLostException(folder.getPath(), lostFiles.size()));
+
+        // no files lost
+        if(lostFiles.isEmpty()){
+            return;
+        }
+
+        // the lost files can no longer be loaded
+        for(String filename : lostFiles){
+            this.dstore.getReadCache().invalidate(filename);
+        }
+
+        // sending the lost files to the controller
+        ServerThread controllerThread = this.dstore.getControllerThread();
+        if(controllerThread != null){
+            try{
+                controllerThread.getConnection().sendMessage(Protocol.getFilesLostMessage(lostFiles));
+            }
+            catch(NetworkException e){
+                this.dstore.handleError(e);
+            }
+        }
+    }
+}
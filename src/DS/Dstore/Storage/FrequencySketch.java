@@ -0,0 +1,114 @@
+package DS.Dstore.Storage;
+
+/**
+ * Estimates how often each file has been requested recently, using a fixed amount
+ * of memory (a count-min sketch).
+ *
+ * Each file is counted in one small counter in each of the sketch's rows, and its
+ * frequency is estimated as the smallest of its counters (counters are shared between
+ * files, so the estimate can only be too high). Counters stop at 15, and every counter
+ * is halved once enough requests have been counted, so that files that were popular a
+ * long time ago are forgotten.
+ *
+ * The sketch is not thread-safe, and is only used under the ReadCache's lock.
+ */
+public class FrequencySketch{
+
+    // constants
+    private final static int ROWS = 4;
+    private final static int MAX_COUNT = 15;
+    private final static int RESET_MULTIPLIER = 10; // requests counted per counter before halving
+    private final static int[] SEEDS = {0x97cb3127, 0xb492b66f, 0x9ae16a3b, 0xc2b2ae35};
+
+    // member variables
+    private byte[][] counters;
+    private int mask;
+    private int additions;
+    private int resetSize;
+
+    /**
+     * Class constructor.
+     *
+     * @param width The number of counters in each row (rounded up to a power of two).
+     */
+    public FrequencySketch(int width){
+        // rounding up to a power of two
+        int rowWidth = Integer.highestOneBit(Math.max(16, width - 1)) << 1;
+
+        // initializing
+        this.counters = new byte[FrequencySketch.ROWS][rowWidth];
+        this.mask = rowWidth - 1;
+        this.additions = 0;
+        this.resetSize = rowWidth * FrequencySketch.RESET_MULTIPLIER;
+    }
+
+    //////////////
+    // COUNTING //
+    //////////////
+
+    /**
+     * Counts a request for the provided file.
+     *
+     * @param filename The name of the file.
+     */
+    public void increment(String filename){
+        int hash = filename.hashCode();
+        boolean incremented = false;
+
+        for(int row = 0; row < FrequencySketch.ROWS; row++){
+            int index = this.indexOf(hash, row);
+            if(this.counters[row][index] < FrequencySketch.MAX_COUNT){
+                this.counters[row][index]++;
+                incremented = true;
+            }
+        }
+
+        // aging the counters
+        if(incremented && ++this.additions >= this.resetSize){
+            this.reset();
+        }
+    }
+
+    /**
+     * Returns the estimated number of recent requests for the provided file.
+     *
+     * @param filename The name of the file.
+     * @return The estimated frequency of the file (0 to 15).
+     */
+    public int frequency(String filename){
+        int hash = filename.hashCode();
+        int frequency = FrequencySketch.MAX_COUNT;
+
+        for(int row = 0; row < FrequencySketch.ROWS; row++){
+            frequency = Math.min(frequency, this.counters[row][this.indexOf(hash, row)]);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset(){
+        for(byte[] row : this.counters){
+            for(int i = 0; i < row.length; i++){
+                row[i] >>= 1;
+            }
+        }
+        this.additions /= 2;
+    }
+
+    /**
+     * Returns the index of a file's counter within the provided row.
+     *
+     * @param hash The hash code of the file's name.
+     * @param row The row of the sketch.
+     * @return The index of the counter in the row.
+     */
+    private int indexOf(int hash, int row){
+        int index = hash * FrequencySketch.SEEDS[row];
+        index ^= (index >>> 16);
+
+        return index & this.mask;
+    }
+}
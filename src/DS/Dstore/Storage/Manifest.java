@@ -0,0 +1,369 @@
+package DS.Dstore.Storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory record of the files stored by a Dstore (their names, sizes, modification
+ * times and checksums), so that a LIST does not need to walk the file store.
+ *
+ * The manifest is persisted as a journal of the files added and removed, which is
+ * replayed when the Dstore starts. The journal is rewritten as a snapshot of the
+ * manifest once it holds more than twice as many records as there are files. Records
+ * (and snapshots) are forced to disk as required by the file store's SyncPolicy, so a
+ * file the Dstore has acknowledged keeps its record after a crash. With no SyncPolicy, 
+ * records are only flushed, and the manifest can fall behind the file store after a crash.
+ * The verification scan compares the manifest to the file store and corrects it, and is 
+ * run in the background whenever the journal is loaded.
+ */
+public class Manifest{
+
+    // constants
+    private final static byte RECORD_PUT = 1;
+    private final static byte RECORD_REMOVE = 2;
+    private final static byte RECORD_PUT_CHECKSUM = 3; // a put that also records the file's CRC32C
+    private final static int COMPACTION_RATIO = 2; // journal records per file before compacting
+    private final static int MIN_COMPACTION_RECORDS = 1024; // journal records before compacting is considered
+
+    // member variables
+    private File journalFile;
+    private ConcurrentHashMap<String, ManifestEntry> entries;
+    private DataOutputStream journal;
+    private int journalRecords;
+    private SyncPolicy syncPolicy;
+
+    /**
+     * Class constructor.
+     *
+     * @param journalFile The file the manifest is persisted to.
+     * @param syncPolicy When journal records are forced to disk.
+     */
+    public Manifest(File journalFile, SyncPolicy syncPolicy){
+        // initializing
+        this.journalFile = journalFile;
+        this.entries = new ConcurrentHashMap<String, ManifestEntry>();
+        this.journal = null;
+        this.journalRecords = 0;
+        this.syncPolicy = syncPolicy;
+    }
+
+    /////////////
+    // LOADING //
+    /////////////
+
+    /**
+     * Loads the manifest from its journal, and opens the journal for new records.
+     *
+     * A record that was only partly written (e.g., the Dstore crashed while writing it)
+     * ends the journal, and the manifest is left as it was before the record.
+     *
+     * @return True if a journal was loaded, false if there was no journal (the manifest
+     * is empty, and must be built by a verification scan).
+     * @throws IOException If the journal could not be read or opened.
+     */
+    public synchronized boolean load() throws IOException{
+        boolean loaded = this.journalFile.exists();
+
+        // replaying the journal
+        if(loaded){
+            try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.journalFile)))){
+                while(true){
+                    byte record = input.readByte();
+                    String filename = input.readUTF();
+
+                    if(record == RECORD_PUT){
+                        this.entries.put(filename, new ManifestEntry(input.readLong(), input.readLong(), FileStore.NO_CHECKSUM));
+                    }
+                    else if(record == RECORD_PUT_CHECKSUM){
+                        this.entries.put(filename, new ManifestEntry(input.readLong(), input.readLong(), input.readInt() & 0xFFFFFFFFL));
+                    }
+                    else{
+                        this.entries.remove(filename);
+                    }
+                    this.journalRecords++;
+                }
+            }
+            catch(EOFException e){
+                // end of journal
+            }
+        }
+
+        // rewriting the journal without any partial record
+        this.compact();
+
+        return loaded;
+    }
+
+    ///////////////
+    // RECORDING //
+    ///////////////
+
+    /**
+     * Records that the provided file has been stored. Returns once the record is on disk
+     * as required by the SyncPolicy.
+     *
+     * @param filename The name of the file.
+     * @param size The size of the file in bytes.
+     * @param modified The time the file was last modified.
+     * @param checksum The CRC32C of the file's content (FileStore.NO_CHECKSUM if not known).
+     * @throws IOException If the record could not be written to the journal.
+     */
+    public void put(String filename, long size, long modified, long checksum) throws IOException{
+        synchronized(this){
+            ManifestEntry entry = new ManifestEntry(size, modified, checksum);
+            this.entries.put(filename, entry);
+
+            // journaling the record
+            this.writeEntry(this.journal, filename, entry);
+            this.recordWritten();
+        }
+
+        // forcing the record (outside the lock, so that records can be forced together)
+        this.syncPolicy.sync(this.journalFile);
+    }
+
+    /**
+     * Records that the provided file has been stored, reading its size and modification
+     * time from the file store.
+     *
+     * @param file The file that has been stored.
+     * @param checksum The CRC32C of the file's content (FileStore.NO_CHECKSUM if not known).
+     * @throws IOException If the record could not be written to the journal.
+     */
+    public void put(File file, long checksum) throws IOException{
+        this.put(file.getName(), file.length(), file.lastModified(), checksum);
+    }
+
+    /**
+     * Records that the provided file has been removed. Returns once the record is on disk
+     * as required by the SyncPolicy.
+     *
+     * @param filename The name of the file.
+     * @throws IOException If the record could not be written to the journal.
+     */
+    public void remove(String filename) throws IOException{
+        synchronized(this){
+            // file not in the manifest
+            if(this.entries.remove(filename) == null){
+                return;
+            }
+
+            // journaling the record
+            this.journal.writeByte(RECORD_REMOVE);
+            this.journal.writeUTF(filename);
+            this.recordWritten();
+        }
+
+        // forcing the record (outside the lock, so that records can be forced together)
+        this.syncPolicy.sync(this.journalFile);
+    }
+
+    /**
+     * Writes a put record for the provided entry.
+     *
+     * @param output The journal (or snapshot) the record is written to.
+     * @param filename The name of the file.
+     * @param entry The file's entry.
+     * @throws IOException If the record could not be written.
+     */
+    private void writeEntry(DataOutputStream output, String filename, ManifestEntry entry) throws IOException{
+        boolean hasChecksum = entry.getChecksum() != FileStore.NO_CHECKSUM;
+
+        output.writeByte(hasChecksum ? RECORD_PUT_CHECKSUM : RECORD_PUT);
+        output.writeUTF(filename);
+        output.writeLong(entry.getSize());
+        output.writeLong(entry.getModified());
+        if(hasChecksum){
+            output.writeInt((int) entry.getChecksum());
+        }
+    }
+
+    /**
+     * Flushes the latest record to the journal, and compacts the journal if it has grown
+     * too large.
+     *
+     * @throws IOException If the journal could not be written.
+     */
+    private void recordWritten() throws IOException{
+        this.journal.flush();
+        this.journalRecords++;
+
+        // compacting the journal
+        if(this.journalRecords > MIN_COMPACTION_RECORDS && this.journalRecords > COMPACTION_RATIO * this.entries.size()){
+            this.compact();
+        }
+    }
+
+    /**
+     * Rewrites the journal as a snapshot of the manifest (one record per file).
+     *
+     * The snapshot is written to a temporary file that then replaces the journal, so a
+     * crash while compacting leaves the old journal in place. The snapshot, and then the
+     * rename, are forced to disk as required by the SyncPolicy.
+     *
+     * @throws IOException If the journal could not be rewritten.
+     */
+    public synchronized void compact() throws IOException{
+        // closing the current journal
+        if(this.journal != null){
+            this.journal.close();
+        }
+
+        // writing the snapshot
+        File snapshotFile = new File(this.journalFile.getPath() + ".tmp");
+        try(DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshotFile)))){
+            for(Map.Entry<String, ManifestEntry> entry : this.entries.entrySet()){
+                this.writeEntry(snapshot, entry.getKey(), entry.getValue());
+            }
+        }
+        this.syncPolicy.sync(snapshotFile);
+        Files.move(snapshotFile.toPath(), this.journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.syncPolicy.sync(this.journalFile.getAbsoluteFile().getParentFile());
+
+        // re-opening the journal
+        this.journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.journalFile, true)));
+        this.journalRecords = this.entries.size();
+    }
+
+    /**
+     * Closes the journal.
+     *
+     * @throws IOException If the journal could not be closed.
+     */
+    public synchronized void close() throws IOException{
+        if(this.journal != null){
+            this.journal.close();
+            this.journal = null;
+        }
+    }
+
+    //////////////////
+    // VERIFICATION //
+    //////////////////
+
+    /**
+     * Compares the manifest to the files in the provided folder, and corrects the manifest
+     * where they differ (files added, removed or changed outside of the Dstore).
+     *
+     * The folder is walked without holding the manifest's lock, and each difference is
+     * checked again before it is corrected, so files stored and removed while the scan is
+     * running are not mistaken for differences.
+     *
+     * @param layout The layout of the folder the Dstore stores files in.
+     * @return The number of corrections made to the manifest.
+     * @throws IOException If a correction could not be written to the journal.
+     */
+    public int verify(DirectoryLayout layout) throws IOException{
+        int corrections = 0;
+
+        // files on disk that are missing or different in the manifest
+        HashMap<String, File> filesOnDisk = layout.listFiles();
+        for(File file : filesOnDisk.values()){
+            if(!this.matches(file)){
+                corrections += this.correct(file);
+            }
+        }
+
+        // files in the manifest that are no longer on disk
+        for(String filename : this.entries.keySet()){
+            if(!filesOnDisk.containsKey(filename)){
+                corrections += this.correct(layout.getFile(filename));
+            }
+        }
+
+        return corrections;
+    }
+
+    /**
+     * Determines if the manifest's entry for the provided file matches the file on disk.
+     *
+     * @param file The file on disk.
+     * @return True if the manifest has an entry with the file's size and modification time,
+     * false otherwise.
+     */
+    private boolean matches(File file){
+        ManifestEntry entry = this.entries.get(file.getName());
+
+        return (entry != null && entry.getSize() == file.length() && entry.getModified() == file.lastModified());
+    }
+
+    /**
+     * Corrects the manifest's entry for the provided file to match the file on disk.
+     *
+     * @param file The file on disk.
+     * @return 1 if the entry was corrected, 0 if it already matched.
+     * @throws IOException If the correction could not be written to the journal.
+     */
+    private synchronized int correct(File file) throws IOException{
+        // file on disk
+        if(file.isFile()){
+            if(this.matches(file)){
+                return 0;
+            }
+            this.put(file, FileStore.NO_CHECKSUM);
+            return 1;
+        }
+
+        // file not on disk
+        if(this.entries.containsKey(file.getName())){
+            this.remove(file.getName());
+            return 1;
+        }
+        return 0;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    /**
+     * Returns the files in the manifest as a mapping of filenames to filesizes.
+     *
+     * @return A mapping of filenames to filesizes.
+     */
+    public HashMap<String, Integer> getFiles(){
+        HashMap<String, Integer> files = new HashMap<String, Integer>();
+        for(Map.Entry<String, ManifestEntry> entry : this.entries.entrySet()){
+            files.put(entry.getKey(), (int) entry.getValue().getSize());
+        }
+
+        return files;
+    }
+
+    /**
+     * Returns the checksum recorded for the provided file.
+     *
+     * @param filename The name of the file.
+     * @return The CRC32C of the file's content (FileStore.NO_CHECKSUM if the file is not in
+     * the manifest, or its checksum is not known).
+     */
+    public long getChecksum(String filename){
+        ManifestEntry entry = this.entries.get(filename);
+
+        return (entry == null) ? FileStore.NO_CHECKSUM : entry.getChecksum();
+    }
+
+    public ManifestEntry getEntry(String filename){
+        return this.entries.get(filename);
+    }
+
+    public boolean hasFile(String filename){
+        return this.entries.containsKey(filename);
+    }
+
+    public int getFileCount(){
+        return this.entries.size();
+    }
+}
@@ -0,0 +1,42 @@
+package DS.Dstore.Storage;
+
+/**
+ * Represents a file recorded in a Dstore's manifest.
+ */
+public class ManifestEntry{
+
+    // member variables
+    private long size;
+    private long modified;
+    private long checksum; // CRC32C of the file's content (FileStore.NO_CHECKSUM if not known)
+
+    /**
+     * Class constructor.
+     *
+     * @param size The size of the file in bytes.
+     * @param modified The time the file was last modified.
+     * @param checksum The CRC32C of the file's content (FileStore.NO_CHECKSUM if not known).
+     */
+    public ManifestEntry(long size, long modified, long checksum){
+        // initializing
+        this.size = size;
+        this.modified = modified;
+        this.checksum = checksum;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getSize(){
+        return this.size;
+    }
+
+    public long getModified(){
+        return this.modified;
+    }
+
+    public long getChecksum(){
+        return this.checksum;
+    }
+}
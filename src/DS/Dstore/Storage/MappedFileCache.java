@@ -0,0 +1,118 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps stored files memory-mapped, so that LOADs are served from the OS page cache
+ * without opening and reading the file each time.
+ *
+ * At most 'capacity' files are kept mapped, and the least recently loaded file is
+ * dropped when another file is mapped. A mapping is shared by every LOAD of its file,
+ * with each LOAD reading through its own view of the mapped buffer. Files are dropped
+ * when they are removed or overwritten, and are mapped again on their next LOAD.
+ *
+ * A dropped mapping is released by the garbage collector once no LOAD is using it. Files
+ * are overwritten by renaming a new file over them (never rewritten in place), so a LOAD
+ * running at the same time as an overwrite keeps reading the old file through its mapping.
+ */
+public class MappedFileCache{
+
+    // member variables
+    private int capacity;
+    private LinkedHashMap<String, MappedByteBuffer> mappings;
+    private long hits;
+    private long misses;
+
+    /**
+     * Class constructor.
+     *
+     * @param capacity The maximum number of files kept mapped.
+     */
+    public MappedFileCache(int capacity){
+        // initializing
+        this.capacity = capacity;
+        this.mappings = new LinkedHashMap<String, MappedByteBuffer>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MappedByteBuffer> eldest){
+                // dropping the least recently loaded file
+                return this.size() > MappedFileCache.this.capacity;
+            }
+        };
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /////////////
+    // MAPPING //
+    /////////////
+
+    /**
+     * Returns a view of the provided file's mapped content, mapping the file if it is not
+     * already mapped.
+     *
+     * The file is opened and mapped under the cache's lock, so a file that is overwritten
+     * or removed cannot be mapped again after it has been invalidated.
+     *
+     * @param file The file being loaded.
+     * @return A buffer holding the content of the file (read without the cache's lock).
+     * @throws IOException If the file could not be mapped (e.g., it does not exist).
+     */
+    public synchronized ByteBuffer get(File file) throws IOException{
+        // file already mapped
+        MappedByteBuffer mapping = this.mappings.get(file.getName());
+        if(mapping != null){
+            this.hits++;
+            return mapping.duplicate();
+        }
+
+        // mapping the file (the mapping stays valid once the channel is closed)
+        this.misses++;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        this.mappings.put(file.getName(), mapping);
+
+        return mapping.duplicate();
+    }
+
+    /**
+     * Drops the mapping of the provided file (e.g., because it has been removed or
+     * overwritten).
+     *
+     * @param filename The name of the file.
+     */
+    public synchronized void invalidate(String filename){
+        this.mappings.remove(filename);
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public boolean isEnabled(){
+        return this.capacity > 0;
+    }
+
+    public int getCapacity(){
+        return this.capacity;
+    }
+
+    public synchronized int getMappedFiles(){
+        return this.mappings.size();
+    }
+
+    public synchronized long getHits(){
+        return this.hits;
+    }
+
+    public synchronized long getMisses(){
+        return this.misses;
+    }
+}
@@ -0,0 +1,370 @@
+package DS.Dstore.Storage;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the content of popular files in memory, so that repeated LOADs of a file
+ * are served without reading it from disk.
+ *
+ * The cache holds at most 'capacity' bytes, and decides which files to keep with a
+ * W-TinyLFU policy:
+ *
+ *  - New files enter a small LRU window (1% of the capacity), so that a burst of
+ *    requests for a new file is served from memory.
+ *  - Files pushed out of the window are only admitted to the main cache if they have
+ *    been requested more often than the files they would push out (the frequencies
+ *    are estimated by a FrequencySketch), so that files read once do not push out
+ *    files that are read all the time.
+ *  - The main cache is split into a probation segment and a protected segment (80% of
+ *    the main cache). Files enter on probation, and are protected once they are
+ *    requested again.
+ *
+ * Files larger than an eighth of the capacity are never cached. The content can be
+ * held on the heap or in direct (off-heap) buffers, which are not copied by the garbage
+ * collector. Files are invalidated when they are removed or overwritten, and content
+ * read from disk before an invalidation is not admitted afterwards.
+ */
+public class ReadCache{
+
+    // constants
+    private final static int WINDOW_PERCENT = 1;
+    private final static int PROTECTED_PERCENT = 80;
+    private final static int MAX_FILE_FRACTION = 8; // largest cached file, as a fraction of the capacity
+    private final static int SKETCH_BYTES_PER_FILE = 4096; // expected file size, for sizing the sketch
+    private final static int MAX_SKETCH_WIDTH = 1 << 20;
+    private final static long STATS_INTERVAL = 1000; // lookups between stats reports
+
+    // member variables
+    private long capacity;
+    private boolean offHeap;
+    private long windowCapacity;
+    private long protectedCapacity;
+    private LinkedHashMap<String, ByteBuffer> window;
+    private LinkedHashMap<String, ByteBuffer> probation;
+    private LinkedHashMap<String, ByteBuffer> protectedFiles;
+    private long windowSize;
+    private long probationSize;
+    private long protectedSize;
+    private FrequencySketch sketch;
+    private long generation; // number of invalidations made
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long reportedLookups;
+
+    /**
+     * Class constructor.
+     *
+     * @param capacity The maximum number of bytes held by the cache (0 disables the cache).
+     * @param offHeap Whether or not file content is held in direct (off-heap) buffers.
+     */
+    public ReadCache(long capacity, boolean offHeap){
+        // initializing
+        this.capacity = capacity;
+        this.offHeap = offHeap;
+        this.windowCapacity = Math.max(1, capacity * ReadCache.WINDOW_PERCENT / 100);
+        this.protectedCapacity = (capacity - this.windowCapacity) * ReadCache.PROTECTED_PERCENT / 100;
+        this.window = new LinkedHashMap<String, ByteBuffer>(16, 0.75f, true);
+        this.probation = new LinkedHashMap<String, ByteBuffer>(16, 0.75f, true);
+        this.protectedFiles = new LinkedHashMap<String, ByteBuffer>(16, 0.75f, true);
+        this.windowSize = 0;
+        this.probationSize = 0;
+        this.protectedSize = 0;
+        this.sketch = new FrequencySketch((int) Math.min(ReadCache.MAX_SKETCH_WIDTH, capacity / ReadCache.SKETCH_BYTES_PER_FILE));
+        this.generation = 0;
+        this.hits = 0;
+        this.misses = 0;
+        this.evictions = 0;
+        this.reportedLookups = 0;
+    }
+
+    /////////////
+    // LOOKUPS //
+    /////////////
+
+    /**
+     * Returns the cached content of the provided file.
+     *
+     * The returned buffer is a view of the cached content, and can be read without
+     * holding the cache's lock.
+     *
+     * @param filename The name of the file.
+     * @return The content of the file, or null if the file is not cached.
+     */
+    public synchronized ByteBuffer get(String filename){
+        // cache disabled
+        if(!this.isEnabled()){
+            return null;
+        }
+
+        this.sketch.increment(filename);
+
+        // window
+        ByteBuffer content = this.window.get(filename);
+
+        // protected segment
+        if(content == null){
+            content = this.protectedFiles.get(filename);
+        }
+
+        // probation segment - requested again, so protected
+        if(content == null){
+            content = this.probation.remove(filename);
+            if(content != null){
+                this.probationSize -= content.capacity();
+                this.protect(filename, content);
+            }
+        }
+
+        // recording the lookup
+        if(content == null){
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+
+        return content.duplicate();
+    }
+
+    /**
+     * Returns the current generation of the cache, which is taken before a file is read
+     * from disk and given back when the content is added to the cache.
+     *
+     * @return The number of invalidations made so far.
+     */
+    public synchronized long getGeneration(){
+        return this.generation;
+    }
+
+    ///////////////
+    // ADMISSION //
+    ///////////////
+
+    /**
+     * Adds the content of a file that has been read from disk to the cache.
+     *
+     * The content is not added if the cache has been invalidated since it was read (the
+     * file may have been removed or overwritten in the meantime), if the file is already
+     * cached, or if the file is too large to cache.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file (its position is not changed).
+     * @param generation The generation of the cache before the file was read.
+     */
+    public synchronized void put(String filename, ByteBuffer content, long generation){
+        // content may be stale, already cached or too large
+        if(!this.isEnabled() || generation != this.generation || this.contains(filename) || content.remaining() > this.capacity / ReadCache.MAX_FILE_FRACTION){
+            return;
+        }
+
+        // adding the file to the window
+        ByteBuffer buffer = this.toBuffer(content);
+        this.window.put(filename, buffer);
+        this.windowSize += buffer.capacity();
+
+        // moving the files pushed out of the window to the main cache
+        while(this.windowSize > this.windowCapacity){
+            Iterator<Map.Entry<String, ByteBuffer>> iterator = this.window.entrySet().iterator();
+            Map.Entry<String, ByteBuffer> candidate = iterator.next();
+            iterator.remove();
+            this.windowSize -= candidate.getValue().capacity();
+
+            this.admit(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    /**
+     * Admits a file pushed out of the window to the main cache, if it is requested more
+     * often than each of the files it would push out.
+     *
+     * @param candidate The name of the file pushed out of the window.
+     * @param content The content of the file.
+     */
+    private void admit(String candidate, ByteBuffer content){
+        long mainCapacity = this.capacity - this.windowCapacity;
+        int candidateFrequency = this.sketch.frequency(candidate);
+
+        // making room for the candidate
+        while(this.probationSize + this.protectedSize + content.capacity() > mainCapacity){
+            // victim is the least recently used file on probation (or protected, if none on probation)
+            LinkedHashMap<String, ByteBuffer> segment = this.probation.isEmpty() ? this.protectedFiles : this.probation;
+            String victim = segment.keySet().iterator().next();
+
+            // victim requested as often - candidate rejected
+            if(candidateFrequency <= this.sketch.frequency(victim)){
+                this.evictions++;
+                return;
+            }
+
+            // evicting the victim
+            this.removeFrom(segment, victim);
+            this.evictions++;
+        }
+
+        // admitting the candidate on probation
+        this.probation.put(candidate, content);
+        this.probationSize += content.capacity();
+    }
+
+    /**
+     * Moves a file into the protected segment, moving the least recently used protected
+     * files back on probation if the segment is full.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file.
+     */
+    private void protect(String filename, ByteBuffer content){
+        this.protectedFiles.put(filename, content);
+        this.protectedSize += content.capacity();
+
+        // demoting files while the segment is full
+        while(this.protectedSize > this.protectedCapacity && this.protectedFiles.size() > 1){
+            Iterator<Map.Entry<String, ByteBuffer>> iterator = this.protectedFiles.entrySet().iterator();
+            Map.Entry<String, ByteBuffer> demoted = iterator.next();
+            iterator.remove();
+            this.protectedSize -= demoted.getValue().capacity();
+
+            this.probation.put(demoted.getKey(), demoted.getValue());
+            this.probationSize += demoted.getValue().capacity();
+        }
+    }
+
+    //////////////////
+    // INVALIDATION //
+    //////////////////
+
+    /**
+     * Removes the provided file from the cache (e.g., because it has been removed or
+     * overwritten).
+     *
+     * @param filename The name of the file.
+     */
+    public synchronized void invalidate(String filename){
+        // content read before this point is no longer admitted
+        this.generation++;
+
+        this.removeFrom(this.window, filename);
+        this.removeFrom(this.probation, filename);
+        this.removeFrom(this.protectedFiles, filename);
+    }
+
+    /**
+     * Removes a file from one of the cache's segments, if it is in it.
+     *
+     * @param segment The segment the file is removed from.
+     * @param filename The name of the file.
+     */
+    private void removeFrom(LinkedHashMap<String, ByteBuffer> segment, String filename){
+        ByteBuffer content = segment.remove(filename);
+        if(content == null){
+            return;
+        }
+
+        if(segment == this.window){
+            this.windowSize -= content.capacity();
+        }
+        else if(segment == this.probation){
+            this.probationSize -= content.capacity();
+        }
+        else{
+            this.protectedSize -= content.capacity();
+        }
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Determines if the provided file is cached (without counting it as a request).
+     *
+     * @param filename The name of the file.
+     * @return True if the file is in one of the cache's segments, false otherwise.
+     */
+    private boolean contains(String filename){
+        return this.window.containsKey(filename) || this.probation.containsKey(filename) || this.protectedFiles.containsKey(filename);
+    }
+
+    /**
+     * Returns a buffer holding exactly the provided content, on or off the heap as
+     * required. Heap content that fills its whole array is kept without being copied.
+     *
+     * @param content The content of a file.
+     * @return A buffer holding the content.
+     */
+    private ByteBuffer toBuffer(ByteBuffer content){
+        // content can be kept as it is
+        if(!this.offHeap && content.hasArray() && content.arrayOffset() == 0 && content.position() == 0 && content.remaining() == content.array().length){
+            return content.duplicate();
+        }
+
+        // copying the content
+        ByteBuffer buffer = this.offHeap ? ByteBuffer.allocateDirect(content.remaining()) : ByteBuffer.allocate(content.remaining());
+        buffer.put(content.duplicate());
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /**
+     * Determines if the stats of the cache are due to be reported (once every
+     * 1000 lookups).
+     *
+     * @return True if the stats should be reported, false otherwise.
+     */
+    public synchronized boolean isStatsReportDue(){
+        long lookups = this.hits + this.misses;
+        if(lookups - this.reportedLookups < ReadCache.STATS_INTERVAL){
+            return false;
+        }
+
+        this.reportedLookups = lookups;
+        return true;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public boolean isEnabled(){
+        return this.capacity > 0;
+    }
+
+    public boolean isOffHeap(){
+        return this.offHeap;
+    }
+
+    public long getCapacity(){
+        return this.capacity;
+    }
+
+    public synchronized long getSize(){
+        return this.windowSize + this.probationSize + this.protectedSize;
+    }
+
+    public synchronized long getHits(){
+        return this.hits;
+    }
+
+    public synchronized long getMisses(){
+        return this.misses;
+    }
+
+    public synchronized long getEvictions(){
+        return this.evictions;
+    }
+
+    /**
+     * Returns the proportion of lookups that were served from the cache.
+     *
+     * @return The hit ratio (0 if there have been no lookups).
+     */
+    public synchronized double getHitRatio(){
+        long lookups = this.hits + this.misses;
+
+        return (lookups == 0) ? 0 : (double) this.hits / lookups;
+    }
+}
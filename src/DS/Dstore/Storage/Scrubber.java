@@ -0,0 +1,157 @@
+package DS.Dstore.Storage;
+
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32C;
+
+import DS.Dstore.Dstore;
+import DS.Dstore.DiskExecutor.Operation;
+import DS.Protocol.Protocol;
+import DS.Protocol.Event.Storage.ScrubCompletedEvent;
+import DS.Protocol.Exception.ChecksumMismatchException;
+import DS.Protocol.Exception.ScrubException;
+import Network.RateLimiter;
+import Network.Protocol.Exception.NetworkException;
+import Network.Server.ServerThread;
+
+/**
+ * Checks the files in a Dstore's file store against the checksums they were stored with,
+ * so that content that has rotted on disk is found before a client loads it.
+ *
+ * Files are read straight from the disk (never from the read cache or a mapping) at no
+ * more than 'rate' bytes per second, on the Dstore's disk threads at the lowest priority,
+ * so that scrubbing does not compete with LOADs and STOREs. A corrupt file is removed from the store (unless it has
+ * been overwritten since it was read), and reported to the Controller in a FILES_LOST
+ * message, so that a good replica is copied back onto the Dstore. Once every file has
+ * been checked, the scrubber waits before starting the next pass.
+ */
+public class Scrubber extends Thread{
+
+    // constants
+    private final static int PASS_INTERVAL = 10000; // ms between passes over the files
+
+    // member variables
+    private Dstore dstore;
+    private FileStore fileStore;
+    private RateLimiter rateLimiter;
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore the file store belongs to.
+     * @param fileStore The file store being scrubbed.
+     * @param rate The maximum rate files are read at, in bytes per second.
+     */
+    public Scrubber(Dstore dstore, FileStore fileStore, long rate){
+        // initializing
+        this.dstore = dstore;
+        this.fileStore = fileStore;
+        this.rateLimiter = new RateLimiter(rate);
+        this.setDaemon(true);
+        this.setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Method run when thread started.
+     */
+    public void run(){
+        while(true){
+            try{
+                Thread.sleep(PASS_INTERVAL);
+
+                // checking every file
+                this.scrub();
+            }
+            catch(InterruptedException e){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks every file in the store against its checksum, removing the files that do not
+     * match.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting to read a file.
+     */
+    private void scrub() throws InterruptedException{
+        long start = System.currentTimeMillis();
+        int files = 0;
+        long bytes = 0;
+        int corrupt = 0;
+
+        HashMap<String, Integer> storedFiles = this.fileStore.getFiles();
+        for(String filename : storedFiles.keySet()){
+            // file stored without a checksum - nothing to check against
+            long checksum = this.fileStore.getChecksum(filename);
+            if(checksum == FileStore.NO_CHECKSUM){
+                continue;
+            }
+
+            // waiting to read the file (limited to the scrub rate)
+            this.rateLimiter.acquire(storedFiles.get(filename));
+
+            try{
+                // reading the file from disk
+                ByteBuffer content = this.dstore.getDiskExecutor().execute(Operation.BACKGROUND, filename, () -> this.fileStore.read(filename));
+                CRC32C crc = new CRC32C();
+                crc.update(content.duplicate());
+
+                // file replaced while it was read - checked on the next pass
+                if(this.fileStore.getChecksum(filename) != checksum){
+                    continue;
+                }
+                files++;
+                bytes += content.remaining();
+
+                // content does not match - removing the corrupt file (unless it was replaced meanwhile)
+                if(crc.getValue() != checksum){
+                    this.dstore.handleError(new ChecksumMismatchException(filename, checksum, crc.getValue()));
+
+                    if(this.dstore.getDiskExecutor().execute(Operation.BACKGROUND, filename, () -> this.fileStore.removeCorrupt(filename, checksum))){
+                        this.dstore.getReadCache().invalidate(filename);
+                        this.reportCorruptFile(filename);
+                        corrupt++;
+                    }
+                }
+            }
+            // file removed while it was being checked
+            catch(NoSuchFileException e){
+                continue;
+            }
+            // scrubber stopped while waiting for a disk thread
+            catch(InterruptedException e){
+                throw e;
+            }
+            catch(Exception e){
+                this.dstore.handleError(new ScrubException(filename, e));
+            }
+        }
+
+        // logging
+        this.dstore.handleEvent(new ScrubCompletedEvent(files, bytes, corrupt, System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Reports a corrupt file that has been removed to the Controller, so that the replica
+     * is restored. A Dstore that has not yet joined the Controller sends nothing, as the
+     * Controller gathers the files it still holds once it joins.
+     *
+     * @param filename The name of the file that was removed.
+     */
+    private void reportCorruptFile(String filename){
+        ServerThread controllerThread = this.dstore.getControllerThread();
+        if(controllerThread != null){
+            try{
+                ArrayList<String> lostFiles = new ArrayList<String>();
+                lostFiles.add(filename);
+                controllerThread.getConnection().sendMessage(Protocol.getFilesLostMessage(lostFiles));
+            }
+            catch(NetworkException e){
+                this.dstore.handleError(e);
+            }
+        }
+    }
+}
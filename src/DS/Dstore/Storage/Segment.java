@@ -0,0 +1,141 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A single segment file of a SegmentFileStore, that records are appended to.
+ *
+ * Keeps track of how many of the segment's bytes belong to records that are still live
+ * (i.e., the latest record of a stored file), so that segments that are mostly garbage
+ * can be compacted.
+ */
+public class Segment{
+
+    // member variables
+    private int id;
+    private File file;
+    private FileChannel channel;
+    private long size; // bytes written to the segment
+    private long liveBytes; // bytes of the segment's records that are live
+
+    /**
+     * Class constructor. Opens (or creates) the segment file.
+     *
+     * @param id The id of the segment (segments are written in order of their ids).
+     * @param file The segment file.
+     * @throws IOException If the segment file could not be opened.
+     */
+    public Segment(int id, File file) throws IOException{
+        // initializing
+        this.id = id;
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = this.channel.size();
+        this.liveBytes = 0;
+    }
+
+    /////////////
+    // WRITING //
+    /////////////
+
+    /**
+     * Appends a record to the end of the segment.
+     *
+     * @param record The record being appended.
+     * @return The offset of the record within the segment.
+     * @throws IOException If the record could not be written.
+     */
+    public long append(ByteBuffer record) throws IOException{
+        long offset = this.size;
+
+        while(record.hasRemaining()){
+            this.size += this.channel.write(record, this.size);
+        }
+
+        return offset;
+    }
+
+    /**
+     * Reads bytes from the segment into the provided buffer, until it is full.
+     *
+     * @param buffer The buffer being read into.
+     * @param offset The offset in the segment to read from.
+     * @throws IOException If the bytes could not be read (e.g., the segment ends first).
+     */
+    public void read(ByteBuffer buffer, long offset) throws IOException{
+        while(buffer.hasRemaining()){
+            int read = this.channel.read(buffer, offset);
+            if(read < 0){
+                throw new IOException("Segment " + this.id + " ended before offset " + offset + ".");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Cuts off the end of the segment (e.g., a record that was only partly written).
+     *
+     * @param size The size the segment is cut to.
+     * @throws IOException If the segment could not be truncated.
+     */
+    public void truncate(long size) throws IOException{
+        this.channel.truncate(size);
+        this.size = size;
+    }
+
+    /**
+     * Forces the segment's records to disk.
+     *
+     * @throws IOException If the segment could not be forced to disk.
+     */
+    public void force() throws IOException{
+        this.channel.force(false);
+    }
+
+    /**
+     * Closes the segment file.
+     *
+     * @throws IOException If the segment file could not be closed.
+     */
+    public void close() throws IOException{
+        this.channel.close();
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    /**
+     * Returns the proportion of the segment that is no longer live (removed or replaced
+     * files, and tombstones).
+     *
+     * @return The proportion of garbage in the segment (0 - 1).
+     */
+    public double getGarbageRatio(){
+        return (this.size == 0) ? 0 : 1 - ((double) this.liveBytes / this.size);
+    }
+
+    public int getId(){
+        return this.id;
+    }
+
+    public File getFile(){
+        return this.file;
+    }
+
+    public long getSize(){
+        return this.size;
+    }
+
+    public long getLiveBytes(){
+        return this.liveBytes;
+    }
+
+    public void addLiveBytes(long bytes){
+        this.liveBytes += bytes;
+    }
+}
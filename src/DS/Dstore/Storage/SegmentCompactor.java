@@ -0,0 +1,66 @@
+package DS.Dstore.Storage;
+
+import DS.Dstore.Dstore;
+import DS.Dstore.DiskExecutor.Operation;
+import DS.Protocol.Event.Storage.SegmentCompactedEvent;
+import DS.Protocol.Exception.SegmentCompactionException;
+
+/**
+ * Reclaims the space used by removed and replaced files in a Dstore's segment store.
+ *
+ * Every second, the segments that are at least half garbage are compacted one at a
+ * time (oldest first), on the Dstore's disk threads at the lowest priority, so that
+ * compacting does not compete with LOADs and STOREs for more than one segment's worth
+ * of reads and writes at once.
+ */
+public class SegmentCompactor extends Thread{
+
+    // constants
+    private final static int COMPACTION_INTERVAL = 1000; // ms between checks for segments to compact
+    private final static double GARBAGE_RATIO = 0.5; // garbage a segment must have to be compacted
+
+    // member variables
+    private Dstore dstore;
+    private SegmentFileStore fileStore;
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore the segment store belongs to.
+     * @param fileStore The segment store being compacted.
+     */
+    public SegmentCompactor(Dstore dstore, SegmentFileStore fileStore){
+        // initializing
+        this.dstore = dstore;
+        this.fileStore = fileStore;
+        this.setDaemon(true);
+    }
+
+    /**
+     * Method run when thread started.
+     */
+    public void run(){
+        while(true){
+            try{
+                Thread.sleep(COMPACTION_INTERVAL);
+            }
+            catch(InterruptedException e){
+                return;
+            }
+
+            // compacting the segments that are mostly garbage
+            for(Segment segment : this.fileStore.getSegmentsToCompact(GARBAGE_RATIO)){
+                try{
+                    long start = System.currentTimeMillis();
+                    long reclaimed = this.dstore.getDiskExecutor().execute(Operation.BACKGROUND, null, () -> this.fileStore.compact(segment));
+
+                    // logging
+                    this.dstore.handleEvent(new SegmentCompactedEvent(segment.getId(), reclaimed, System.currentTimeMillis() - start));
+                }
+                catch(Exception e){
+                    this.dstore.handleError(new SegmentCompactionException(segment.getId(), e));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package DS.Dstore.Storage;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stores files by appending them to large segment files, rather than creating a file
+ * for each of them.
+ *
+ * Each stored file is appended to the active segment as a record (its name, length and
+ * content), and the location of the latest record of each file is kept in an in-memory
+ * index, which is rebuilt by reading the segments in order when the store is opened.
+ * Removing a file appends a tombstone record. Once the active segment is full, a new
+ * segment is started.
+ *
+ * Records of files that have since been replaced or removed are garbage, and are reclaimed
+ * by compacting the segment they are in: its live records are copied to the active segment,
+ * and the segment is deleted (see SegmentCompactor). Records are forced to disk as required
+ * by the SyncPolicy - with group commits, the records appended by concurrent stores are
+ * forced by a single fsync of the segment. A record that was only partly written is cut
+ * off when the store is opened.
+ *
+ * Record layout: [type (1 byte)][name length (2 bytes)][name (UTF-8)] followed by, for
+ * stored files, [content length (4 bytes)][CRC32C (4 bytes, if known)][content].
+ */
+public class SegmentFileStore implements FileStore{
+
+    // constants
+    private final static byte RECORD_STORE = 1;
+    private final static byte RECORD_TOMBSTONE = 2;
+    private final static byte RECORD_STORE_CHECKSUM = 3; // a stored file with the CRC32C of its content
+    private final static String SEGMENT_PREFIX = "segment-";
+    private final static String SEGMENT_SUFFIX = ".log";
+
+    // member variables
+    private File folder;
+    private long segmentSize;
+    private ConcurrentHashMap<String, SegmentLocation> index;
+    private ConcurrentSkipListMap<Integer, Segment> segments;
+    private Segment activeSegment;
+    private ReentrantReadWriteLock segmentLock; // held for reading while loading, and for writing while deleting segments
+    private SyncPolicy syncPolicy;
+
+    /**
+     * Class constructor.
+     *
+     * @param folder The folder the segments are kept in.
+     * @param segmentSize The size a segment is allowed to grow to before a new segment is started.
+     * @param syncPolicy When appended records are forced to disk.
+     */
+    public SegmentFileStore(File folder, long segmentSize, SyncPolicy syncPolicy){
+        // initializing
+        this.folder = folder;
+        this.segmentSize = segmentSize;
+        this.index = new ConcurrentHashMap<String, SegmentLocation>();
+        this.segments = new ConcurrentSkipListMap<Integer, Segment>();
+        this.activeSegment = null;
+        this.segmentLock = new ReentrantReadWriteLock();
+        this.syncPolicy = syncPolicy;
+    }
+
+    /////////////
+    // OPENING //
+    /////////////
+
+    /**
+     * Opens the store, rebuilding the index by reading every segment in order.
+     *
+     * @return True (the index is always rebuilt from the segments).
+     * @throws IOException If a segment could not be read.
+     */
+    public synchronized boolean open() throws IOException{
+        // creating the folder if it doesnt exist
+        if(!this.folder.exists()){
+            this.folder.mkdir();
+        }
+
+        // gathering the segments
+        File[] fileList = this.folder.listFiles();
+        if(fileList != null){
+            for(File file : fileList){
+                String name = file.getName();
+                if(name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)){
+                    int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    this.segments.put(id, new Segment(id, file));
+                }
+            }
+        }
+
+        // replaying the segments (oldest first)
+        for(Segment segment : this.segments.values()){
+            this.replay(segment);
+        }
+
+        // appending to the newest segment
+        this.activeSegment = this.segments.isEmpty() ? this.createSegment(1) : this.segments.lastEntry().getValue();
+
+        return true;
+    }
+
+    /**
+     * Reads every record in the provided segment into the index. A record that was only
+     * partly written ends the segment, and is cut off.
+     *
+     * @param segment The segment being replayed.
+     * @throws IOException If the segment could not be read.
+     */
+    private void replay(Segment segment) throws IOException{
+        long offset = 0;
+
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.getFile())))){
+            while(offset < segment.getSize()){
+                // reading the header
+                byte type = input.readByte();
+                byte[] name = new byte[input.readUnsignedShort()];
+                input.readFully(name);
+                String filename = new String(name, StandardCharsets.UTF_8);
+                long dataOffset = offset + 3 + name.length;
+
+                // stored file
+                if(type == RECORD_STORE || type == RECORD_STORE_CHECKSUM){
+                    int length = input.readInt();
+                    dataOffset += 4;
+                    long checksum = FileStore.NO_CHECKSUM;
+                    if(type == RECORD_STORE_CHECKSUM){
+                        checksum = input.readInt() & 0xFFFFFFFFL;
+                        dataOffset += 4;
+                    }
+                    if(length < 0 || dataOffset + length > segment.getSize()){
+                        break;
+                    }
+                    input.skipNBytes(length);
+
+                    this.indexRecord(filename, new SegmentLocation(segment.getId(), offset, dataOffset, length, checksum));
+                    offset = dataOffset + length;
+                }
+                // tombstone
+                else if(type == RECORD_TOMBSTONE){
+                    this.unindexRecord(filename);
+                    offset = dataOffset;
+                }
+                // unknown record - not fully written
+                else{
+                    break;
+                }
+            }
+        }
+        catch(EOFException e){
+            // partial record at the end of the segment
+        }
+
+        // cutting off any partial record
+        if(offset < segment.getSize()){
+            segment.truncate(offset);
+        }
+    }
+
+    /**
+     * Compares the index to the segments. The index is rebuilt from the segments when the
+     * store is opened, so there is nothing to correct.
+     *
+     * @return 0 (no corrections are made).
+     */
+    public int verify(){
+        return 0;
+    }
+
+    /**
+     * Closes every segment.
+     *
+     * @throws IOException If a segment could not be closed.
+     */
+    public synchronized void close() throws IOException{
+        for(Segment segment : this.segments.values()){
+            segment.close();
+        }
+    }
+
+    /////////////
+    // STORING //
+    /////////////
+
+    /**
+     * Appends a file to the active segment. Returns once the record is on disk as required
+     * by the SyncPolicy.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file.
+     * @param checksum The CRC32C of the content (NO_CHECKSUM if not known).
+     * @throws IOException If the record could not be written.
+     */
+    public void store(String filename, byte[] content, long checksum) throws IOException{
+        Segment segment;
+        synchronized(this){
+            segment = this.appendStore(filename, ByteBuffer.wrap(content), checksum);
+        }
+
+        // forcing the record to disk (outside of the lock, so other records can be appended)
+        this.syncPolicy.sync(segment.getFile());
+    }
+
+    /**
+     * Loads a file from the segment its latest record is in.
+     *
+     * @param filename The name of the file.
+     * @return A buffer holding the content of the file.
+     * @throws IOException If the file could not be read (NoSuchFileException if it is
+     * not stored).
+     */
+    public ByteBuffer load(String filename) throws IOException{
+        this.segmentLock.readLock().lock();
+        try{
+            SegmentLocation location = this.index.get(filename);
+            if(location == null){
+                throw new NoSuchFileException(filename);
+            }
+
+            // reading the content (the segment cannot be deleted while the lock is held)
+            ByteBuffer content = ByteBuffer.allocate(location.getLength());
+            this.segments.get(location.getSegment()).read(content, location.getDataOffset());
+            content.flip();
+
+            return content;
+        }
+        finally{
+            this.segmentLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads a file from the segment its latest record is in (segments are never mapped,
+     * so this is the same as loading it).
+     *
+     * @param filename The name of the file.
+     * @return A buffer holding the content of the file.
+     * @throws IOException If the file could not be read (NoSuchFileException if it is
+     * not stored).
+     */
+    public ByteBuffer read(String filename) throws IOException{
+        return this.load(filename);
+    }
+
+    /**
+     * Removes a file by appending a tombstone to the active segment.
+     *
+     * @param filename The name of the file.
+     * @throws IOException If the tombstone could not be written (NoSuchFileException if
+     * the file is not stored).
+     */
+    public void remove(String filename) throws IOException{
+        Segment segment;
+        synchronized(this){
+            if(!this.index.containsKey(filename)){
+                throw new NoSuchFileException(filename);
+            }
+
+            segment = this.appendTombstone(filename);
+        }
+
+        // forcing the tombstone to disk
+        this.syncPolicy.sync(segment.getFile());
+    }
+
+    /**
+     * Removes a file found to be corrupt by appending a tombstone, unless its latest record
+     * no longer has the provided checksum (it has been replaced or removed since it was
+     * checked).
+     *
+     * @param filename The name of the file.
+     * @param checksum The checksum the corrupt content was checked against.
+     * @return True if the file was removed, false if it has been replaced or removed.
+     * @throws IOException If the tombstone could not be written.
+     */
+    public boolean removeCorrupt(String filename, long checksum) throws IOException{
+        Segment segment;
+        synchronized(this){
+            if(this.getChecksum(filename) != checksum){
+                return false;
+            }
+
+            segment = this.appendTombstone(filename);
+        }
+
+        // forcing the tombstone to disk
+        this.syncPolicy.sync(segment.getFile());
+        return true;
+    }
+
+    ////////////////
+    // COMPACTING //
+    ////////////////
+
+    /**
+     * Returns the segments (other than the active segment) whose proportion of garbage is
+     * at least the provided ratio.
+     *
+     * @param garbageRatio The proportion of garbage a segment must have to be compacted.
+     * @return The segments to be compacted, oldest first.
+     */
+    public synchronized ArrayList<Segment> getSegmentsToCompact(double garbageRatio){
+        ArrayList<Segment> segmentsToCompact = new ArrayList<Segment>();
+        for(Segment segment : this.segments.values()){
+            if(segment != this.activeSegment && segment.getGarbageRatio() >= garbageRatio){
+                segmentsToCompact.add(segment);
+            }
+        }
+
+        return segmentsToCompact;
+    }
+
+    /**
+     * Compacts a segment by copying its live records to the active segment, and then
+     * deleting it.
+     *
+     * The segment is read without holding the store's lock, and each record is checked
+     * again before it is copied, so files stored and removed while compacting are not
+     * overwritten. Tombstones are only copied while an older segment could still hold the
+     * record they remove.
+     *
+     * @param segment The segment being compacted (not the active segment).
+     * @return The number of bytes reclaimed.
+     * @throws IOException If the segment could not be compacted.
+     */
+    public long compact(Segment segment) throws IOException{
+        long offset = 0;
+        long copiedBytes = 0;
+
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.getFile())))){
+            while(offset < segment.getSize()){
+                // reading the header
+                byte type = input.readByte();
+                byte[] name = new byte[input.readUnsignedShort()];
+                input.readFully(name);
+                String filename = new String(name, StandardCharsets.UTF_8);
+                long recordOffset = offset;
+                offset += 3 + name.length;
+
+                // stored file
+                if(type == RECORD_STORE || type == RECORD_STORE_CHECKSUM){
+                    int length = input.readInt();
+                    long checksum = FileStore.NO_CHECKSUM;
+                    if(type == RECORD_STORE_CHECKSUM){
+                        checksum = input.readInt() & 0xFFFFFFFFL;
+                        offset += 4;
+                    }
+                    offset += 4 + length;
+
+                    // record replaced or removed - skipping it
+                    SegmentLocation location = this.index.get(filename);
+                    if(location == null || !location.isAt(segment.getId(), recordOffset)){
+                        input.skipNBytes(length);
+                        continue;
+                    }
+
+                    // copying the record (if it is still live)
+                    byte[] content = new byte[length];
+                    input.readFully(content);
+                    synchronized(this){
+                        location = this.index.get(filename);
+                        if(location != null && location.isAt(segment.getId(), recordOffset)){
+                            this.appendStore(filename, ByteBuffer.wrap(content), checksum);
+                            copiedBytes += location.getRecordSize();
+                        }
+                    }
+                }
+                // tombstone
+                else{
+                    synchronized(this){
+                        if(!this.index.containsKey(filename) && this.segments.firstKey() < segment.getId()){
+                            this.appendTombstone(filename);
+                            copiedBytes += 3 + name.length;
+                        }
+                    }
+                }
+            }
+        }
+
+        // making sure the copies are on disk before the segment is deleted
+        synchronized(this){
+            this.activeSegment.force();
+        }
+
+        // deleting the segment
+        this.segmentLock.writeLock().lock();
+        try{
+            this.segments.remove(segment.getId());
+            segment.close();
+            Files.delete(segment.getFile().toPath());
+        }
+        finally{
+            this.segmentLock.writeLock().unlock();
+        }
+
+        return segment.getSize() - copiedBytes;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Appends a stored file record to the active segment, and points the index at it.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file.
+     * @param checksum The CRC32C of the content (NO_CHECKSUM if not known).
+     * @return The segment the record was appended to.
+     * @throws IOException If the record could not be written.
+     */
+    private Segment appendStore(String filename, ByteBuffer content, long checksum) throws IOException{
+        byte[] name = this.getNameBytes(filename);
+        int length = content.remaining();
+        boolean hasChecksum = checksum != FileStore.NO_CHECKSUM;
+        int headerSize = 3 + name.length + 4 + (hasChecksum ? 4 : 0);
+
+        // forming the record
+        ByteBuffer record = ByteBuffer.allocate(headerSize + length);
+        record.put(hasChecksum ? RECORD_STORE_CHECKSUM : RECORD_STORE);
+        record.putShort((short) name.length);
+        record.put(name);
+        record.putInt(length);
+        if(hasChecksum){
+            record.putInt((int) checksum);
+        }
+        record.put(content);
+        record.flip();
+
+        // appending the record
+        Segment segment = this.getSegmentFor(record.remaining());
+        long offset = segment.append(record);
+
+        // indexing the record
+        this.indexRecord(filename, new SegmentLocation(segment.getId(), offset, offset + headerSize, length, checksum));
+
+        return segment;
+    }
+
+    /**
+     * Appends a tombstone record to the active segment, and removes the file from the index.
+     *
+     * @param filename The name of the file being removed.
+     * @return The segment the record was appended to.
+     * @throws IOException If the record could not be written.
+     */
+    private Segment appendTombstone(String filename) throws IOException{
+        byte[] name = this.getNameBytes(filename);
+
+        // forming the record
+        ByteBuffer record = ByteBuffer.allocate(3 + name.length);
+        record.put(RECORD_TOMBSTONE);
+        record.putShort((short) name.length);
+        record.put(name);
+        record.flip();
+
+        // appending the record
+        Segment segment = this.getSegmentFor(record.remaining());
+        segment.append(record);
+
+        // removing the file from the index
+        this.unindexRecord(filename);
+
+        return segment;
+    }
+
+    /**
+     * Encodes a filename for a record.
+     *
+     * @param filename The name of the file.
+     * @return The UTF-8 bytes of the name.
+     * @throws IOException If the name is too long to be recorded.
+     */
+    private byte[] getNameBytes(String filename) throws IOException{
+        byte[] name = filename.getBytes(StandardCharsets.UTF_8);
+        if(name.length > 0xFFFF){
+            throw new IOException("Filename '" + filename + "' is too long to be stored in a segment.");
+        }
+
+        return name;
+    }
+
+    /**
+     * Points the index at a file's latest record, marking any earlier record as garbage.
+     *
+     * @param filename The name of the file.
+     * @param location The location of the file's latest record.
+     */
+    private void indexRecord(String filename, SegmentLocation location){
+        this.segments.get(location.getSegment()).addLiveBytes(location.getRecordSize());
+
+        SegmentLocation earlierLocation = this.index.put(filename, location);
+        if(earlierLocation != null){
+            this.segments.get(earlierLocation.getSegment()).addLiveBytes(-earlierLocation.getRecordSize());
+        }
+    }
+
+    /**
+     * Removes a file from the index, marking its latest record as garbage.
+     *
+     * @param filename The name of the file.
+     */
+    private void unindexRecord(String filename){
+        SegmentLocation earlierLocation = this.index.remove(filename);
+        if(earlierLocation != null){
+            this.segments.get(earlierLocation.getSegment()).addLiveBytes(-earlierLocation.getRecordSize());
+        }
+    }
+
+    /**
+     * Returns the segment a record of the provided size should be appended to, starting a
+     * new segment if the active segment is full.
+     *
+     * @param recordSize The size of the record.
+     * @return The active segment.
+     * @throws IOException If a new segment could not be created.
+     */
+    private Segment getSegmentFor(long recordSize) throws IOException{
+        // active segment full - starting a new segment
+        if(this.activeSegment.getSize() > 0 && this.activeSegment.getSize() + recordSize > this.segmentSize){
+            this.activeSegment = this.createSegment(this.activeSegment.getId() + 1);
+        }
+
+        return this.activeSegment;
+    }
+
+    /**
+     * Creates a new, empty segment.
+     *
+     * @param id The id of the segment.
+     * @return The new segment.
+     * @throws IOException If the segment file could not be created.
+     */
+    private Segment createSegment(int id) throws IOException{
+        Segment segment = new Segment(id, new File(this.folder, SEGMENT_PREFIX + id + SEGMENT_SUFFIX));
+        this.segments.put(id, segment);
+
+        // making sure the new segment file is on disk
+        this.syncPolicy.sync(this.folder);
+
+        return segment;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public HashMap<String, Integer> getFiles(){
+        HashMap<String, Integer> files = new HashMap<String, Integer>();
+        for(Map.Entry<String, SegmentLocation> entry : this.index.entrySet()){
+            files.put(entry.getKey(), entry.getValue().getLength());
+        }
+
+        return files;
+    }
+
+    public int getFileCount(){
+        return this.index.size();
+    }
+
+    public long getChecksum(String filename){
+        SegmentLocation location = this.index.get(filename);
+
+        return (location == null) ? FileStore.NO_CHECKSUM : location.getChecksum();
+    }
+
+    public int getSegmentCount(){
+        return this.segments.size();
+    }
+
+    public long getSegmentSize(){
+        return this.segmentSize;
+    }
+
+    public SyncPolicy getSyncPolicy(){
+        return this.syncPolicy;
+    }
+}
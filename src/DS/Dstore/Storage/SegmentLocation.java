@@ -0,0 +1,72 @@
+package DS.Dstore.Storage;
+
+/**
+ * The location of a stored file's record within a SegmentFileStore.
+ */
+public class SegmentLocation{
+
+    // member variables
+    private int segment;
+    private long recordOffset; // offset of the record's header
+    private long dataOffset; // offset of the file's content
+    private int length; // length of the file's content
+    private long checksum; // CRC32C of the file's content (FileStore.NO_CHECKSUM if not known)
+
+    /**
+     * Class constructor.
+     *
+     * @param segment The id of the segment the record is in.
+     * @param recordOffset The offset of the record within the segment.
+     * @param dataOffset The offset of the file's content within the segment.
+     * @param length The length of the file's content.
+     * @param checksum The CRC32C of the file's content (FileStore.NO_CHECKSUM if not known).
+     */
+    public SegmentLocation(int segment, long recordOffset, long dataOffset, int length, long checksum){
+        // initializing
+        this.segment = segment;
+        this.recordOffset = recordOffset;
+        this.dataOffset = dataOffset;
+        this.length = length;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Determines if this location is the record at the provided offset of the provided
+     * segment.
+     *
+     * @param segment The id of the segment.
+     * @param recordOffset The offset of the record within the segment.
+     * @return True if the locations are the same, false otherwise.
+     */
+    public boolean isAt(int segment, long recordOffset){
+        return (this.segment == segment && this.recordOffset == recordOffset);
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getSegment(){
+        return this.segment;
+    }
+
+    public long getRecordOffset(){
+        return this.recordOffset;
+    }
+
+    public long getDataOffset(){
+        return this.dataOffset;
+    }
+
+    public int getLength(){
+        return this.length;
+    }
+
+    public long getChecksum(){
+        return this.checksum;
+    }
+
+    public long getRecordSize(){
+        return (this.dataOffset - this.recordOffset) + this.length;
+    }
+}
@@ -0,0 +1,644 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads a Dstore's files across several folders (e.g., one on each disk), with each
+ * folder holding its files in its own FileStore.
+ *
+ * Each new file is placed in the folder with the fewest operations in progress (the
+ * folder whose disk is least busy), choosing the folder with the most free space when
+ * several are equally busy (and the folder with the fewest files when several folders
+ * share a disk), and never in a folder without room for it. A file that is stored again
+ * is replaced in the folder that already holds it. The folder holding each
+ * file is kept in memory (built from the folders' own indexes), so LOADs, REMOVEs and
+ * LISTs are served across every folder.
+ *
+ * A folder that can no longer be used (e.g., its disk has failed or been unmounted) is
+ * dropped, along with the files it held, while the other folders carry on being used.
+ * Folders are checked when an operation on them fails, and whenever checkFolders() is
+ * called. The files lost with each folder are kept until they are taken by
+ * takeLostFolders(), so that they can be reported to the Controller.
+ */
+public class StripedFileStore implements FileStore{
+
+    // member variables
+    private ArrayList<File> folders;
+    private ArrayList<FileStore> stores; // the store of each folder
+    private boolean[] failed; // whether each folder has been dropped
+    private AtomicInteger[] activeOperations; // operations in progress on each folder
+    private ConcurrentHashMap<String, Integer> locations; // filename to the folder holding it
+    private LinkedHashMap<File, ArrayList<String>> lostFolders; // folders dropped (and the files lost with them) not yet taken
+
+    /**
+     * Class constructor.
+     *
+     * @param folders The folders the files are spread across.
+     * @param stores The store of each folder (in the same order as the folders).
+     */
+    public StripedFileStore(ArrayList<File> folders, ArrayList<FileStore> stores){
+        // initializing
+        this.folders = folders;
+        this.stores = stores;
+        this.failed = new boolean[folders.size()];
+        this.activeOperations = new AtomicInteger[folders.size()];
+        for(int i = 0; i < folders.size(); i++){
+            this.activeOperations[i] = new AtomicInteger(0);
+        }
+        this.locations = new ConcurrentHashMap<String, Integer>();
+        this.lostFolders = new LinkedHashMap<File, ArrayList<String>>();
+    }
+
+    /////////////
+    // OPENING //
+    /////////////
+
+    /**
+     * Opens the store of every folder. A folder whose store cannot be opened is dropped,
+     * and the other folders are used without it.
+     *
+     * @return True if the index of every folder was loaded, false if one of them must be
+     * built by verify().
+     * @throws IOException If no folder could be opened.
+     */
+    public boolean open() throws IOException{
+        boolean loaded = true;
+        IOException failure = null;
+
+        for(int i = 0; i < this.stores.size(); i++){
+            try{
+                if(!this.stores.get(i).open()){
+                    loaded = false;
+                }
+            }
+            catch(IOException e){
+                failure = e;
+                this.failFolder(i);
+            }
+        }
+
+        // no folder can be used
+        if(this.getFolderCount() == 0){
+            throw new IOException("None of the Dstore's folders could be opened.", failure);
+        }
+
+        // finding the folder of each file
+        this.buildLocations();
+
+        return loaded;
+    }
+
+    /**
+     * Compares the index of every folder to the files on disk, correcting any
+     * differences, and then finds the folder of each file again.
+     *
+     * @return The number of corrections made.
+     * @throws IOException If an index could not be corrected.
+     */
+    public int verify() throws IOException{
+        int corrections = 0;
+
+        for(int i = 0; i < this.stores.size(); i++){
+            if(this.isFailed(i)){
+                continue;
+            }
+
+            try{
+                corrections += this.stores.get(i).verify();
+            }
+            catch(IOException e){
+                this.checkFolder(i);
+                if(!this.isFailed(i)){
+                    throw e;
+                }
+            }
+        }
+
+        return corrections + this.buildLocations();
+    }
+
+    /**
+     * Closes the store of every folder that is in use.
+     *
+     * @throws IOException If a store could not be closed.
+     */
+    public void close() throws IOException{
+        for(int i = 0; i < this.stores.size(); i++){
+            if(!this.isFailed(i)){
+                this.stores.get(i).close();
+            }
+        }
+    }
+
+    /////////////
+    // STORING //
+    /////////////
+
+    /**
+     * Stores a file in the folder that already holds it, or (for a new file) in the
+     * least busy folder with room for it. A file whose folder is dropped while it is being
+     * written is written to another folder.
+     *
+     * @param filename The name of the file.
+     * @param content The content of the file.
+     * @param checksum The CRC32C of the content (NO_CHECKSUM if not known).
+     * @throws IOException If the file could not be stored.
+     */
+    public void store(String filename, byte[] content, long checksum) throws IOException{
+        while(true){
+            // finding the folder (reserving one for a new file)
+            Integer folder = this.locations.get(filename);
+            boolean reserved = false;
+            if(folder == null){
+                int chosenFolder = this.chooseFolder(content.length);
+                synchronized(this){
+                    folder = this.locations.putIfAbsent(filename, chosenFolder);
+                }
+                if(folder == null){
+                    folder = chosenFolder;
+                    reserved = true;
+                }
+            }
+
+            try{
+                this.activeOperations[folder].incrementAndGet();
+                this.stores.get(folder).store(filename, content, checksum);
+                return;
+            }
+            catch(IOException e){
+                // releasing the reservation
+                if(reserved){
+                    this.locations.remove(filename, folder);
+                }
+
+                // folder still usable - the store failed
+                if(!this.checkFolder(folder)){
+                    throw e;
+                }
+            }
+            finally{
+                this.activeOperations[folder].decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Stores a file by referencing a blob that is already held in one of the folders
+     * (when the folders store files as blobs), without its content. A file that is
+     * already stored is only linked within its own folder.
+     *
+     * @param filename The name of the file.
+     * @param hash The SHA-256 of the file's content (hex).
+     * @param size The size of the file in bytes.
+     * @param checksum The CRC32C of the file's content (NO_CHECKSUM if not known).
+     * @return True if the file was stored, false if no folder holds the blob (the content
+     * must be sent).
+     * @throws IOException If the file could not be recorded.
+     */
+    public boolean link(String filename, String hash, int size, long checksum) throws IOException{
+        Integer existing = this.locations.get(filename);
+
+        for(int i = 0; i < this.stores.size(); i++){
+            if(this.isFailed(i) || !(this.stores.get(i) instanceof BlobFileStore) || (existing != null && existing != i)){
+                continue;
+            }
+
+            if(((BlobFileStore) this.stores.get(i)).link(filename, hash, size, checksum)){
+                synchronized(this){
+                    this.locations.put(filename, i);
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Loads the content of a file from the folder holding it.
+     *
+     * @param filename The name of the file.
+     * @return A buffer holding the content of the file.
+     * @throws IOException If the file could not be loaded (NoSuchFileException if it is
+     * not stored).
+     */
+    public ByteBuffer load(String filename) throws IOException{
+        int folder = this.getFolder(filename);
+
+        try{
+            this.activeOperations[folder].incrementAndGet();
+            return this.stores.get(folder).load(filename);
+        }
+        catch(IOException e){
+            this.checkFolder(folder);
+            throw e;
+        }
+        finally{
+            this.activeOperations[folder].decrementAndGet();
+        }
+    }
+
+    /**
+     * Reads the content of a file from the disk of the folder holding it.
+     *
+     * @param filename The name of the file.
+     * @return A buffer holding the content of the file.
+     * @throws IOException If the file could not be read (NoSuchFileException if it is not
+     * stored).
+     */
+    public ByteBuffer read(String filename) throws IOException{
+        int folder = this.getFolder(filename);
+
+        try{
+            this.activeOperations[folder].incrementAndGet();
+            return this.stores.get(folder).read(filename);
+        }
+        catch(IOException e){
+            this.checkFolder(folder);
+            throw e;
+        }
+        finally{
+            this.activeOperations[folder].decrementAndGet();
+        }
+    }
+
+    /**
+     * Removes a file from the folder holding it.
+     *
+     * @param filename The name of the file.
+     * @throws IOException If the file could not be removed (NoSuchFileException if it is
+     * not stored).
+     */
+    public void remove(String filename) throws IOException{
+        int folder = this.getFolder(filename);
+
+        try{
+            this.activeOperations[folder].incrementAndGet();
+            this.stores.get(folder).remove(filename);
+            this.locations.remove(filename, folder);
+        }
+        catch(IOException e){
+            this.checkFolder(folder);
+            throw e;
+        }
+        finally{
+            this.activeOperations[folder].decrementAndGet();
+        }
+    }
+
+    /**
+     * Removes a file found to be corrupt from the folder holding it, unless it has been
+     * replaced or removed since it was checked.
+     *
+     * @param filename The name of the file.
+     * @param checksum The checksum the corrupt content was checked against.
+     * @return True if the file was removed, false if it has been replaced or removed.
+     * @throws IOException If the file could not be removed.
+     */
+    public boolean removeCorrupt(String filename, long checksum) throws IOException{
+        int folder;
+        try{
+            folder = this.getFolder(filename);
+        }
+        catch(NoSuchFileException e){
+            return false;
+        }
+
+        try{
+            this.activeOperations[folder].incrementAndGet();
+            if(!this.stores.get(folder).removeCorrupt(filename, checksum)){
+                return false;
+            }
+            this.locations.remove(filename, folder);
+            return true;
+        }
+        catch(IOException e){
+            this.checkFolder(folder);
+            throw e;
+        }
+        finally{
+            this.activeOperations[folder].decrementAndGet();
+        }
+    }
+
+    //////////////
+    // FAILURES //
+    //////////////
+
+    /**
+     * Checks that every folder in use can still be used, dropping those that cannot.
+     *
+     * @return The number of folders dropped.
+     */
+    public int checkFolders(){
+        int dropped = 0;
+
+        for(int i = 0; i < this.folders.size(); i++){
+            if(!this.isFailed(i) && this.checkFolder(i)){
+                dropped++;
+            }
+        }
+
+        return dropped;
+    }
+
+    /**
+     * Checks that a folder can still be used (it is still a directory that can be written
+     * to), and drops it if it cannot.
+     *
+     * @param folder The index of the folder.
+     * @return True if the folder has been dropped, false if it is still in use.
+     */
+    private boolean checkFolder(int folder){
+        File file = this.folders.get(folder);
+
+        if(!this.isFailed(folder) && (!file.isDirectory() || !file.canWrite())){
+            this.failFolder(folder);
+        }
+
+        return this.isFailed(folder);
+    }
+
+    /**
+     * Drops a folder, so that no more files are stored in (or served from) it, and records
+     * the files that were lost with it.
+     *
+     * @param folder The index of the folder.
+     */
+    private void failFolder(int folder){
+        synchronized(this){
+            if(this.failed[folder]){
+                return;
+            }
+            this.failed[folder] = true;
+
+            // gathering the files lost with the folder
+            ArrayList<String> lostFiles = new ArrayList<String>();
+            for(Map.Entry<String, Integer> location : this.locations.entrySet()){
+                if(location.getValue() == folder && this.locations.remove(location.getKey(), folder)){
+                    lostFiles.add(location.getKey());
+                }
+            }
+            this.lostFolders.put(this.folders.get(folder), lostFiles);
+        }
+
+        // closing the folder's store (its index may be on the lost disk)
+        try{
+            this.stores.get(folder).close();
+        }
+        catch(Exception e){
+            // nothing more can be done with the folder
+        }
+    }
+
+    /**
+     * Returns the folders dropped since the last call, along with the files lost with
+     * each of them.
+     *
+     * @return A mapping of the dropped folders to the files lost with them.
+     */
+    public synchronized LinkedHashMap<File, ArrayList<String>> takeLostFolders(){
+        LinkedHashMap<File, ArrayList<String>> lostFolders = this.lostFolders;
+        this.lostFolders = new LinkedHashMap<File, ArrayList<String>>();
+
+        return lostFolders;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Chooses the folder a new file is stored in - the folder with the fewest operations
+     * in progress, then the most free space, and then the fewest files, out of those with
+     * room for the file.
+     *
+     * @param size The size of the file in bytes.
+     * @return The index of the folder.
+     * @throws IOException If no folder in use has room for the file.
+     */
+    private int chooseFolder(int size) throws IOException{
+        int chosenFolder = -1;
+        int chosenLoad = 0;
+        long chosenSpace = 0;
+        int chosenFiles = 0;
+
+        for(int i = 0; i < this.folders.size(); i++){
+            if(this.isFailed(i)){
+                continue;
+            }
+
+            // folder without room for the file
+            long space = this.folders.get(i).getUsableSpace();
+            if(space < size){
+                continue;
+            }
+
+            int load = this.activeOperations[i].get();
+            int files = this.stores.get(i).getFileCount();
+            if(chosenFolder == -1 || load < chosenLoad || (load == chosenLoad && (space > chosenSpace || (space == chosenSpace && files < chosenFiles)))){
+                chosenFolder = i;
+                chosenLoad = load;
+                chosenSpace = space;
+                chosenFiles = files;
+            }
+        }
+
+        if(chosenFolder == -1){
+            throw new IOException("None of the Dstore's folders has room for a file of " + size + " bytes.");
+        }
+
+        return chosenFolder;
+    }
+
+    /**
+     * Finds the folder of each file from the indexes of the folders in use, and adds the
+     * files that are missing to the folder locations.
+     *
+     * The locations are merged into while the Dstore is serving requests (rather than
+     * replaced), under the lock new files reserve their folder under, so files stored
+     * while the indexes are read are never dropped. A file found in more than one folder
+     * (e.g., a folder that came back after its files were restored elsewhere) is kept in
+     * the folder the locations already hold it in, or else in the folder with the newest
+     * copy (by the modification time in its manifest), and is removed from the others.
+     * A file whose location is a folder that does not hold it yet (a new file being
+     * stored) is left to its STORE.
+     *
+     * @return The number of duplicate files removed.
+     * @throws IOException If a duplicate file could not be removed.
+     */
+    private synchronized int buildLocations() throws IOException{
+        // finding the folders holding each file
+        HashMap<String, ArrayList<Integer>> foundFiles = new HashMap<String, ArrayList<Integer>>();
+        for(int i = 0; i < this.stores.size(); i++){
+            if(this.failed[i]){
+                continue;
+            }
+
+            for(String filename : this.stores.get(i).getFiles().keySet()){
+                foundFiles.computeIfAbsent(filename, f -> new ArrayList<Integer>()).add(i);
+            }
+        }
+
+        // merging the folders into the locations
+        int duplicates = 0;
+        for(Map.Entry<String, ArrayList<Integer>> foundFile : foundFiles.entrySet()){
+            String filename = foundFile.getKey();
+            ArrayList<Integer> holders = foundFile.getValue();
+
+            // file being stored in a folder that does not hold it yet
+            Integer located = this.locations.get(filename);
+            if(located != null && !holders.contains(located)){
+                continue;
+            }
+
+            // keeping the located (or newest) copy
+            int kept = (located != null) ? located : this.getNewestCopy(filename, holders);
+            this.locations.put(filename, kept);
+
+            // removing the other copies
+            for(int holder : holders){
+                if(holder != kept){
+                    this.stores.get(holder).remove(filename);
+                    duplicates++;
+                }
+            }
+        }
+
+        return duplicates;
+    }
+
+    /**
+     * Returns the folder holding the newest copy of a file, by the modification time in the
+     * manifest of each folder (the first folder is kept when the times are the same, or
+     * not known).
+     *
+     * @param filename The name of the file.
+     * @param holders The folders holding a copy of the file.
+     * @return The index of the folder holding the newest copy.
+     */
+    private int getNewestCopy(String filename, ArrayList<Integer> holders){
+        int newest = holders.get(0);
+        long newestModified = this.getModified(newest, filename);
+
+        for(int holder : holders){
+            long modified = this.getModified(holder, filename);
+            if(modified > newestModified){
+                newest = holder;
+                newestModified = modified;
+            }
+        }
+
+        return newest;
+    }
+
+    /**
+     * Returns the modification time of a file recorded in a folder's manifest.
+     *
+     * @param folder The index of the folder.
+     * @param filename The name of the file.
+     * @return The modification time of the file, or -1 if the folder's store does not keep
+     * one.
+     */
+    private long getModified(int folder, String filename){
+        FileStore store = this.stores.get(folder);
+        if(store instanceof DirectoryFileStore){
+            ManifestEntry entry = ((DirectoryFileStore) store).getManifest().getEntry(filename);
+            if(entry != null){
+                return entry.getModified();
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the folder holding a file.
+     *
+     * @param filename The name of the file.
+     * @return The index of the folder.
+     * @throws NoSuchFileException If the file is not stored.
+     */
+    private int getFolder(String filename) throws NoSuchFileException{
+        Integer folder = this.locations.get(filename);
+        if(folder == null){
+            throw new NoSuchFileException(filename);
+        }
+
+        return folder;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public HashMap<String, Integer> getFiles(){
+        HashMap<String, Integer> files = new HashMap<String, Integer>();
+        for(int i = 0; i < this.stores.size(); i++){
+            if(!this.isFailed(i)){
+                files.putAll(this.stores.get(i).getFiles());
+            }
+        }
+
+        return files;
+    }
+
+    public int getFileCount(){
+        int files = 0;
+        for(int i = 0; i < this.stores.size(); i++){
+            if(!this.isFailed(i)){
+                files += this.stores.get(i).getFileCount();
+            }
+        }
+
+        return files;
+    }
+
+    public long getChecksum(String filename){
+        Integer folder = this.locations.get(filename);
+
+        return (folder == null) ? FileStore.NO_CHECKSUM : this.stores.get(folder).getChecksum(filename);
+    }
+
+    public String getHash(String filename){
+        Integer folder = this.locations.get(filename);
+
+        return (folder == null || !(this.stores.get(folder) instanceof BlobFileStore)) ? null : ((BlobFileStore) this.stores.get(folder)).getHash(filename);
+    }
+
+    public ArrayList<File> getFolders(){
+        return this.folders;
+    }
+
+    public ArrayList<FileStore> getStores(){
+        return this.stores;
+    }
+
+    public synchronized boolean isFailed(int folder){
+        return this.failed[folder];
+    }
+
+    public synchronized int getFolderCount(){
+        int folders = 0;
+        for(boolean folderFailed : this.failed){
+            if(!folderFailed){
+                folders++;
+            }
+        }
+
+        return folders;
+    }
+
+    public int getActiveOperations(int folder){
+        return this.activeOperations[folder].get();
+    }
+}
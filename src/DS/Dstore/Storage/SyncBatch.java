@@ -0,0 +1,58 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+
+/**
+ * A group of files whose writes are forced to disk together by a SyncPolicy.
+ */
+public class SyncBatch{
+
+    // member variables
+    private long id;
+    private HashSet<File> files;
+    private boolean synced;
+    private IOException failure; // why the batch could not be forced (null if it was)
+
+    /**
+     * Class constructor.
+     *
+     * @param id The id of the batch (batches are forced in order of their ids).
+     */
+    public SyncBatch(long id){
+        // initializing
+        this.id = id;
+        this.files = new HashSet<File>();
+        this.synced = false;
+        this.failure = null;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getId(){
+        return this.id;
+    }
+
+    public HashSet<File> getFiles(){
+        return this.files;
+    }
+
+    public boolean isSynced(){
+        return this.synced;
+    }
+
+    public void setSynced(boolean synced){
+        this.synced = synced;
+    }
+
+    public IOException getFailure(){
+        return this.failure;
+    }
+
+    public void setFailure(IOException failure){
+        this.failure = failure;
+    }
+}
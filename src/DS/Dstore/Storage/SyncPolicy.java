@@ -0,0 +1,228 @@
+package DS.Dstore.Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Decides when a FileStore's writes are forced to disk (fsync'd), and so how many of the
+ * files it has acknowledged can be lost if the machine crashes.
+ *
+ * - NONE : Writes are left to the OS, which writes them to disk in its own time.
+ * - FILE : Each write is forced to disk before the store returns.
+ * - GROUP : Writes made at the same time are forced to disk together (group commit). The
+ * first writer waits 'window' ms for others to join it and then forces the whole batch,
+ * while writes arriving during the force wait to be forced in the next batch. Each writer
+ * returns once its batch has been forced, so fewer fsyncs are made for the same guarantee.
+ */
+public class SyncPolicy{
+
+    // constants
+    public final static String NONE = "none";
+    public final static String FILE = "file";
+    public final static String GROUP = "group";
+
+    // member variables
+    private String mode;
+    private long window; // ms a batch is held open for other writes to join
+    private long batches; // batches started so far
+    private SyncBatch collectingBatch; // the batch new writes join (null if none is open)
+    private boolean forcing; // whether a batch is being forced
+    private long syncs; // files and directories forced so far
+
+    /**
+     * Class constructor.
+     *
+     * @param mode The policy (NONE, FILE or GROUP).
+     * @param window The number of ms a group commit is held open for other writes to join.
+     */
+    public SyncPolicy(String mode, long window){
+        // initializing
+        this.mode = mode;
+        this.window = window;
+        this.batches = 0;
+        this.collectingBatch = null;
+        this.forcing = false;
+        this.syncs = 0;
+    }
+
+    /////////////
+    // SYNCING //
+    /////////////
+
+    /**
+     * Makes sure the writes made to the provided file (or directory) are on disk, as
+     * required by the policy.
+     *
+     * @param file The file (or directory) that was written to.
+     * @throws IOException If the writes could not be forced to disk.
+     */
+    public void sync(File file) throws IOException{
+        // NONE //
+        if(this.mode.equals(SyncPolicy.NONE)){
+            return;
+        }
+
+        // FILE //
+        if(this.mode.equals(SyncPolicy.FILE)){
+            this.force(file);
+            return;
+        }
+
+        // GROUP //
+        this.syncInBatch(file);
+    }
+
+    /**
+     * Forces the provided file to disk as part of a batch, and waits for the batch to be
+     * forced.
+     *
+     * @param file The file (or directory) that was written to.
+     * @throws IOException If the batch could not be forced to disk.
+     */
+    private void syncInBatch(File file) throws IOException{
+        SyncBatch batch;
+        boolean leading = false;
+
+        // joining the open batch (or opening one)
+        synchronized(this){
+            if(this.collectingBatch == null){
+                this.collectingBatch = new SyncBatch(++this.batches);
+                leading = true;
+            }
+            batch = this.collectingBatch;
+            batch.getFiles().add(file);
+        }
+
+        // LEADING //
+        if(leading){
+            this.forceBatch(batch);
+        }
+
+        // FOLLOWING //
+        else{
+            try{
+                synchronized(this){
+                    while(!batch.isSynced()){
+                        this.wait();
+                    }
+                }
+            }
+            catch(InterruptedException e){
+                throw new InterruptedIOException("Interrupted while waiting for a group commit.");
+            }
+        }
+
+        // batch could not be forced
+        if(batch.getFailure() != null){
+            throw batch.getFailure();
+        }
+    }
+
+    /**
+     * Holds a batch open for other writes to join, and then forces every file in it.
+     *
+     * The batch is always forced (even if the leading writer is interrupted), so that the
+     * writers waiting on it are woken.
+     *
+     * @param batch The batch being led.
+     */
+    private void forceBatch(SyncBatch batch){
+        boolean interrupted = false;
+
+        // holding the batch open for other writes to join
+        long closeTime = System.currentTimeMillis() + this.window;
+        while(System.currentTimeMillis() < closeTime){
+            try{
+                Thread.sleep(Math.max(1, closeTime - System.currentTimeMillis()));
+            }
+            catch(InterruptedException e){
+                interrupted = true;
+            }
+        }
+
+        // closing the batch once the previous batch has been forced
+        synchronized(this){
+            while(this.forcing){
+                try{
+                    this.wait();
+                }
+                catch(InterruptedException e){
+                    interrupted = true;
+                }
+            }
+            this.collectingBatch = null;
+            this.forcing = true;
+        }
+
+        // forcing every file in the batch
+        IOException failure = null;
+        for(File batchFile : batch.getFiles()){
+            try{
+                this.force(batchFile);
+            }
+            catch(IOException e){
+                failure = e;
+            }
+        }
+
+        // waking the writers in the batch
+        synchronized(this){
+            batch.setFailure(failure);
+            batch.setSynced(true);
+            this.forcing = false;
+            this.notifyAll();
+        }
+
+        // passing on any interrupt
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Forces the provided file (or directory) to disk.
+     *
+     * @param file The file (or directory).
+     * @throws IOException If the file could not be forced to disk.
+     */
+    private void force(File file) throws IOException{
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            channel.force(true);
+        }
+        catch(NoSuchFileException e){
+            // file removed since it was written - nothing left to force
+        }
+
+        synchronized(this){
+            this.syncs++;
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getMode(){
+        return this.mode;
+    }
+
+    public long getWindow(){
+        return this.window;
+    }
+
+    public boolean isEnabled(){
+        return !this.mode.equals(SyncPolicy.NONE);
+    }
+
+    public synchronized long getBatches(){
+        return this.batches;
+    }
+
+    public synchronized long getSyncs(){
+        return this.syncs;
+    }
+}
@@ -0,0 +1,39 @@
+package DS.Protocol.Event.Operation;
+
+import java.util.ArrayList;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Represents the event of a REPLICATE operation being completed.
+ */
+public class ReplicateCompleteEvent extends NetworkEvent{
+
+    // member variables
+    private String filename;
+    private ArrayList<Integer> dstores;
+    
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file that has been replicated.
+     * @param dstores The Dstores the file has been copied onto.
+     */
+    public ReplicateCompleteEvent(String filename, ArrayList<Integer> dstores){
+        super("'REPLICATE' operation complete for file : '" + filename + "' onto Dstores : " + dstores.toString() + ".");
+        this.filename = filename;
+        this.dstores = dstores;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public ArrayList<Integer> getDstores(){
+        return this.dstores;
+    }
+}
@@ -0,0 +1,22 @@
+package DS.Protocol.Event.Rebalance;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a Dstore completes its rebalance instructions, and they
+ * are committed to the index.
+ */
+public class RebalanceCheckpointEvent extends NetworkEvent{
+
+    /**
+     * Class constructor.
+     * 
+     * @param dstore The port of the Dstore.
+     * @param filesSent The number of files the Dstore sent.
+     * @param filesRemoved The number of files the Dstore removed.
+     * @param dstoresRemaining The number of Dstores yet to complete their instructions.
+     */
+    public RebalanceCheckpointEvent(int dstore, int filesSent, int filesRemoved, int dstoresRemaining){
+        super("Rebalance instructions completed by Dstore " + dstore + " (" + filesSent + " file(s) sent, " + filesRemoved + " removed), " + dstoresRemaining + " Dstore(s) remaining.");
+    }
+}
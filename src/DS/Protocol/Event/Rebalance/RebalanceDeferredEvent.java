@@ -0,0 +1,20 @@
+package DS.Protocol.Event.Rebalance;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a rebalance is deferred because the Controller is busy
+ * serving clients.
+ */
+public class RebalanceDeferredEvent extends NetworkEvent{
+
+    /**
+     * Class constructor.
+     * 
+     * @param requestRate The rate of client requests (requests per second).
+     * @param imbalance The imbalance of the system (as given by the Index).
+     */
+    public RebalanceDeferredEvent(double requestRate, double imbalance){
+        super(String.format("Rebalance deferred - %.1f client request(s) per second, imbalance %.2f.", requestRate, imbalance));
+    }
+}
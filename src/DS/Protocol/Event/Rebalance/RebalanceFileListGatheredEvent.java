@@ -15,4 +15,13 @@ public class RebalanceFileListGatheredEvent extends NetworkEvent{
     public RebalanceFileListGatheredEvent(){
         super("File list gathered from all Dstores for Rebalance.");
     }
+
+    /**
+     * Class constructor.
+     * 
+     * @param dstores The number of Dstores the file list was gathered from.
+     */
+    public RebalanceFileListGatheredEvent(int dstores){
+        super("File list gathered from " + dstores + " Dstore(s) for Rebalance.");
+    }
 }
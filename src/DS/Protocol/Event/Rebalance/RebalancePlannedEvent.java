@@ -0,0 +1,20 @@
+package DS.Protocol.Event.Rebalance;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for case where the files to be moved during a rebalance have been
+ * planned.
+ */
+public class RebalancePlannedEvent extends NetworkEvent{
+
+    /**
+     * Class constructor.
+     * 
+     * @param transfers The number of file copies the rebalance will make.
+     * @param bytes The number of bytes the rebalance will copy between Dstores.
+     */
+    public RebalancePlannedEvent(int transfers, long bytes){
+        super("Rebalance planned - " + transfers + " file transfer(s) (" + bytes + " bytes) to be made.");
+    }
+}
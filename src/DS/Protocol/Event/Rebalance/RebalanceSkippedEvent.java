@@ -0,0 +1,17 @@
+package DS.Protocol.Event.Rebalance;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a system rebalance is skipped because nothing
+ * has changed since the last rebalance.
+ */
+public class RebalanceSkippedEvent extends NetworkEvent{
+    
+    /**
+     * Class constructor.
+     */
+    public RebalanceSkippedEvent(){
+        super("Rebalance skipped - no changes since the last rebalance.");
+    }
+}
@@ -13,4 +13,13 @@ public class RebalanceStartedEvent extends NetworkEvent{
     public RebalanceStartedEvent(){
         super("Rebalance started.");
     }
+
+    /**
+     * Class constructor.
+     * 
+     * @param reason A description of why the rebalance was started.
+     */
+    public RebalanceStartedEvent(String reason){
+        super("Rebalance started (" + reason + ").");
+    }
 }
\ No newline at end of file
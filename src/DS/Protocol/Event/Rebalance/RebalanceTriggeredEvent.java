@@ -0,0 +1,19 @@
+package DS.Protocol.Event.Rebalance;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for case where a rebalance has been triggered by requests (e.g., from
+ * Dstores joining or leaving the system) rather than the rebalance period.
+ */
+public class RebalanceTriggeredEvent extends NetworkEvent{
+
+    /**
+     * Class constructor.
+     * 
+     * @param requests The number of requests the rebalance serves.
+     */
+    public RebalanceTriggeredEvent(int requests){
+        super("Rebalance triggered by " + requests + " request(s).");
+    }
+}
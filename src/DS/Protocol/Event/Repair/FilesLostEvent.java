@@ -0,0 +1,20 @@
+package DS.Protocol.Event.Repair;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a Dstore reports that it has lost some of its files (e.g.,
+ * one of its folders has failed).
+ */
+public class FilesLostEvent extends NetworkEvent{
+
+    /**
+     * Class constructor.
+     * 
+     * @param port The port of the Dstore.
+     * @param files The number of files lost.
+     */
+    public FilesLostEvent(int port, int files){
+        super("Dstore " + port + " lost " + files + " file(s).");
+    }
+}
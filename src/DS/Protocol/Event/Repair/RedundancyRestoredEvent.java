@@ -0,0 +1,32 @@
+package DS.Protocol.Event.Repair;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where every queued repair has finished.
+ */
+public class RedundancyRestoredEvent extends NetworkEvent{
+
+    // member variables
+    private long timeToRedundancy;
+
+    /**
+     * Class constructor.
+     * 
+     * @param filesRepaired The number of files repaired.
+     * @param filesNotRepaired The number of files that could not be repaired (left to the next rebalance).
+     * @param timeToRedundancy The time taken from the first file being queued to the last repair finishing (ms).
+     */
+    public RedundancyRestoredEvent(int filesRepaired, int filesNotRepaired, long timeToRedundancy){
+        super("Repairs finished - " + filesRepaired + " file(s) repaired, " + filesNotRepaired + " left to the next rebalance, time to full redundancy : " + timeToRedundancy + "ms.");
+        this.timeToRedundancy = timeToRedundancy;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getTimeToRedundancy(){
+        return this.timeToRedundancy;
+    }
+}
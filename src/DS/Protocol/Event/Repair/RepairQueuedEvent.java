@@ -0,0 +1,18 @@
+package DS.Protocol.Event.Repair;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where files that have lost replicas are queued for repair.
+ */
+public class RepairQueuedEvent extends NetworkEvent{
+
+    /**
+     * Class constructor.
+     * 
+     * @param files The number of files queued.
+     */
+    public RepairQueuedEvent(int files){
+        super(files + " under-replicated file(s) queued for repair.");
+    }
+}
@@ -0,0 +1,20 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a Dstore stores a file using content it already holds, so the
+ * content of the file is not sent to it.
+ */
+public class BlobReusedEvent extends NetworkEvent{
+
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file.
+     * @param filesize The size of the file (the number of bytes not sent).
+     */
+    public BlobReusedEvent(String filename, int filesize){
+        super("File '" + filename + "' stored using content already held - " + filesize + " bytes not transferred.");
+    }
+}
@@ -0,0 +1,21 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a Dstore's manifest has been compared to the files in
+ * its file store.
+ */
+public class ManifestVerifiedEvent extends NetworkEvent{
+
+    /**
+     * Class constructor.
+     * 
+     * @param files The number of files in the manifest.
+     * @param corrections The number of corrections made to the manifest.
+     * @param time The time taken to verify the manifest (ms).
+     */
+    public ManifestVerifiedEvent(int files, int corrections, long time){
+        super("Manifest verified - " + files + " file(s), " + corrections + " correction(s) made in " + time + "ms.");
+    }
+}
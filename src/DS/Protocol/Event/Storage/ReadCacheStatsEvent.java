@@ -0,0 +1,22 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for reporting how well a Dstore's read cache is serving LOADs.
+ */
+public class ReadCacheStatsEvent extends NetworkEvent{
+
+    /**
+     * Class constructor.
+     * 
+     * @param hits The number of LOADs served from the cache.
+     * @param misses The number of LOADs served from disk.
+     * @param evictions The number of files evicted from (or not admitted to) the cache.
+     * @param size The number of bytes held by the cache.
+     * @param capacity The maximum number of bytes held by the cache.
+     */
+    public ReadCacheStatsEvent(long hits, long misses, long evictions, long size, long capacity){
+        super("Read cache - " + hits + " hit(s), " + misses + " miss(es), " + evictions + " eviction(s), " + size + "/" + capacity + " bytes cached.");
+    }
+}
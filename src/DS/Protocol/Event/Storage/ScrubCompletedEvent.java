@@ -0,0 +1,21 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where the scrubber has checked every file in a Dstore's file store.
+ */
+public class ScrubCompletedEvent extends NetworkEvent{
+
+    /**
+     * Class constructor.
+     * 
+     * @param files The number of files checked.
+     * @param bytes The number of bytes read.
+     * @param corrupt The number of corrupt files found (and removed).
+     * @param time The time taken to check the files (ms).
+     */
+    public ScrubCompletedEvent(int files, long bytes, int corrupt, long time){
+        super("Scrub complete - " + files + " file(s) (" + bytes + " bytes) checked, " + corrupt + " corrupt file(s) removed in " + time + "ms.");
+    }
+}
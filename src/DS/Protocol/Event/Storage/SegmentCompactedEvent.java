@@ -0,0 +1,20 @@
+package DS.Protocol.Event.Storage;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a segment of a Dstore's segment store has been compacted.
+ */
+public class SegmentCompactedEvent extends NetworkEvent{
+
+    /**
+     * Class constructor.
+     * 
+     * @param segment The id of the segment.
+     * @param reclaimed The number of bytes reclaimed.
+     * @param time The time taken to compact the segment (ms).
+     */
+    public SegmentCompactedEvent(int segment, long reclaimed, long time){
+        super("Segment " + segment + " compacted - " + reclaimed + " bytes reclaimed in " + time + "ms.");
+    }
+}
@@ -0,0 +1,45 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for when the content of a file does not match its checksum (i.e., the
+ * content was corrupted on the network or on disk).
+ */
+public class ChecksumMismatchException extends NetworkException{
+
+    // member variables
+    private String filename;
+    private long expected;
+    private long actual;
+
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file.
+     * @param expected The checksum the content should have.
+     * @param actual The checksum of the content.
+     */
+    public ChecksumMismatchException(String filename, long expected, long actual){
+        super("The content of file '" + filename + "' does not match its checksum (expected " + expected + ", was " + actual + ").");
+        this.filename = filename;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public long getExpected(){
+        return this.expected;
+    }
+
+    public long getActual(){
+        return this.actual;
+    }
+}
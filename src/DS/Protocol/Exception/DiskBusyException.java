@@ -0,0 +1,20 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for the case where a Dstore's disk is too busy to take on another operation
+ * (the operation's queue stayed full for the whole timeout).
+ */
+public class DiskBusyException extends NetworkException{
+
+    /**
+     * Class constructor.
+     * 
+     * @param operation The type of disk operation.
+     * @param capacity The number of operations of the type that can be queued.
+     */
+    public DiskBusyException(String operation, int capacity){
+        super("The disk is too busy to take another " + operation + " operation (" + capacity + " already queued).");
+    }
+}
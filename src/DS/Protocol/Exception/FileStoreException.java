@@ -0,0 +1,38 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for when client cannot send file content to a Dstore.
+ */
+public class FileStoreException extends NetworkException{
+    
+    // member variables
+    private String filename;
+    private int port;
+
+    /**
+     * Class constructor.
+     * 
+     * @param filename
+     * @param port
+     * @param cause
+     */
+    public FileStoreException(String filename, int port, Exception cause){
+        super("Unable to store file content for file '" + filename + "' on port : " + port + ".", cause);
+        this.filename = filename;
+        this.port = port;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public int getPort(){
+        return this.port;
+    }
+}
@@ -0,0 +1,20 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for the case where one of a Dstore's folders can no longer be used (e.g., its
+ * disk has failed), and the files it held have been lost.
+ */
+public class FolderLostException extends NetworkException{
+
+    /**
+     * Class constructor.
+     *
+     * @param folder The path of the folder.
+     * @param files The number of files lost with the folder.
+     */
+    public FolderLostException(String folder, int files){
+        super("The folder '" + folder + "' can no longer be used (" + files + " file(s) lost).");
+    }
+}
@@ -0,0 +1,19 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for the case where a Dstore's manifest could not be compared to the
+ * files in its file store.
+ */
+public class ManifestVerificationException extends NetworkException{
+
+    /**
+     * Class constructor.
+     * 
+     * @param cause The cause of the exception.
+     */
+    public ManifestVerificationException(Exception cause){
+        super("Unable to verify the manifest of the file store.", cause);
+    }
+}
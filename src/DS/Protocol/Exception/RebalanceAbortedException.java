@@ -0,0 +1,31 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for the case where a rebalance is abandoned because a file it
+ * planned to move was changed by a client request before it could be moved.
+ */
+public class RebalanceAbortedException extends NetworkException{
+
+    // member variables
+    private String filename;
+
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file that was changed.
+     */
+    public RebalanceAbortedException(String filename){
+        super("The rebalance was aborted as the file '" + filename + "' changed while the rebalance was being planned.");
+        this.filename = filename;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+}
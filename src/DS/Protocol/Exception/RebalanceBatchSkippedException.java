@@ -0,0 +1,20 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for the case where a batch of rebalance instructions is not carried out, 
+ * because an earlier batch of the rebalance failed or was not received in time.
+ */
+public class RebalanceBatchSkippedException extends NetworkException{
+
+    /**
+     * Class constructor.
+     * 
+     * @param batch The number of the batch that was skipped.
+     * @param batches The number of batches in the rebalance.
+     */
+    public RebalanceBatchSkippedException(int batch, int batches){
+        super("Batch " + batch + " of " + batches + " of the rebalance was skipped as an earlier batch failed or was not received in time.");
+    }
+}
@@ -0,0 +1,34 @@
+package DS.Protocol.Exception;
+
+import java.util.ArrayList;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for the case where some of the Dstores sent rebalance instructions do not
+ * complete them within the timeout. The instructions completed by the other Dstores
+ * are kept.
+ */
+public class RebalanceIncompleteException extends NetworkException{
+
+    // member variables
+    private ArrayList<Integer> unfinishedDstores;
+
+    /**
+     * Class constructor.
+     * 
+     * @param unfinishedDstores The ports of the Dstores that did not complete their instructions.
+     */
+    public RebalanceIncompleteException(ArrayList<Integer> unfinishedDstores){
+        super("The rebalance was not completed by Dstore(s) : " + unfinishedDstores.toString() + " within the timeout (instructions completed by the other Dstores were kept).");
+        this.unfinishedDstores = unfinishedDstores;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public ArrayList<Integer> getUnfinishedDstores(){
+        return this.unfinishedDstores;
+    }
+}
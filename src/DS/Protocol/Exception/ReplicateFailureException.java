@@ -0,0 +1,32 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for the case where the missing replicas of a file could not be copied 
+ * onto the Dstores that need them.
+ */
+public class ReplicateFailureException extends NetworkException{
+
+    // member variables
+    private String filename;
+
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file being replicated.
+     * @param cause The cause for the failure.
+     */
+    public ReplicateFailureException(String filename, Exception cause){
+        super("Unable to replicate file '" + filename + "'.", cause);
+        this.filename = filename;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+}
@@ -0,0 +1,20 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for the case where a file in a Dstore's file store could not be checked
+ * against its checksum by the scrubber.
+ */
+public class ScrubException extends NetworkException{
+
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file.
+     * @param cause The cause of the exception.
+     */
+    public ScrubException(String filename, Exception cause){
+        super("Unable to scrub file '" + filename + "'.", cause);
+    }
+}
@@ -0,0 +1,20 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for the case where a segment of a Dstore's segment store could not be
+ * compacted.
+ */
+public class SegmentCompactionException extends NetworkException{
+
+    /**
+     * Class constructor.
+     * 
+     * @param segment The id of the segment.
+     * @param cause The cause of the exception.
+     */
+    public SegmentCompactionException(int segment, Exception cause){
+        super("Unable to compact segment " + segment + " of the file store.", cause);
+    }
+}
@@ -0,0 +1,38 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * An exception for the case where a request for a file is sent to a Controller
+ * that does not own the file's partition.
+ */
+public class WrongPartitionException extends NetworkException{
+
+    // member variables
+    private String filename;
+    private int controller;
+
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file the request was for.
+     * @param controller The port of the Controller that owns the file.
+     */
+    public WrongPartitionException(String filename, int controller){
+        super("The file '" + filename + "' belongs to the partition of the Controller on port : " + controller + ".");
+        this.filename = filename;
+        this.controller = controller;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public int getController(){
+        return this.controller;
+    }
+}
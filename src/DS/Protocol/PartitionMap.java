@@ -0,0 +1,101 @@
+package DS.Protocol;
+
+import java.util.ArrayList;
+
+/**
+ * Maps filenames onto the Controllers that own them.
+ *
+ * When several Controllers are deployed together, the namespace of filenames is
+ * hash-partitioned across them - each Controller manages only the files whose
+ * names hash onto its partition. The partition map is the ordered list of Controller
+ * ports, and is shared with Clients when they join so that they can route each
+ * request to the Controller that owns the file.
+ *
+ * A partition map with one (or no) Controllers describes an unpartitioned system,
+ * where every file is owned by the single Controller.
+ */
+public class PartitionMap{
+
+    // member variables
+    private ArrayList<Integer> controllers;
+
+    /**
+     * Class constructor.
+     *
+     * @param controllers The ports of the Controllers in the system, in partition
+     * order.
+     */
+    public PartitionMap(ArrayList<Integer> controllers){
+        // initializing
+        this.controllers = controllers;
+    }
+
+    /////////////
+    // ROUTING //
+    /////////////
+
+    /**
+     * Returns the partition that the provided file belongs to.
+     *
+     * String hash codes are defined by the Java language specification, so
+     * every process computes the same partition for the same filename.
+     *
+     * @param filename The name of the file.
+     * @return The index of the partition the file belongs to.
+     */
+    public int getPartition(String filename){
+        // unpartitioned - everything is in the first partition
+        if(!this.isPartitioned()){
+            return 0;
+        }
+
+        return Math.floorMod(filename.hashCode(), this.controllers.size());
+    }
+
+    /**
+     * Returns the port of the Controller that owns the provided file.
+     *
+     * @param filename The name of the file.
+     * @return The port of the Controller that owns the file.
+     */
+    public int getController(String filename){
+        return this.controllers.get(this.getPartition(filename));
+    }
+
+    /**
+     * Determines if the provided file is owned by the Controller on the provided port.
+     *
+     * @param controller The port of the Controller.
+     * @param filename The name of the file.
+     * @return True if the Controller owns the file, false if not.
+     */
+    public boolean ownsFile(int controller, String filename){
+        // unpartitioned - the Controller owns every file
+        if(!this.isPartitioned()){
+            return true;
+        }
+
+        return (this.getController(filename) == controller);
+    }
+
+    /**
+     * Determines if the system described by the map is partitioned.
+     *
+     * @return True if there is more than one Controller in the map, false if not.
+     */
+    public boolean isPartitioned(){
+        return (this.controllers.size() > 1);
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public ArrayList<Integer> getControllers(){
+        return this.controllers;
+    }
+
+    public String toString(){
+        return this.controllers.toString();
+    }
+}
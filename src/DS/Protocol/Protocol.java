@@ -1,7 +1,11 @@
 package DS.Protocol;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 
 import DS.Protocol.Token.TokenType.FileToSend;
 
@@ -12,6 +16,7 @@ public class Protocol {
 
 	// constants
 	private final static String SPACE = " ";
+	private final static String HASH_ALGORITHM = "SHA-256"; // hash identifying a file's content
 
 	/////////////////////
 	// CLIENT MESSAGES //
@@ -27,6 +32,7 @@ public class Protocol {
 	public final static String LOAD_DATA_TOKEN = "LOAD_DATA";
 	public final static String RELOAD_TOKEN = "RELOAD";
 	public final static String REMOVE_TOKEN = "REMOVE"; // also from Controller
+	public final static String CHECKSUM_TOKEN = "CHECKSUM"; // asks for the checksum to follow LOAD_DATA content
 
 
 	// getter methods //
@@ -63,6 +69,14 @@ public class Protocol {
 		return (Protocol.STORE_TOKEN + Protocol.SPACE + filename + Protocol.SPACE + filesize);
 	}
 
+	public static String getStoreMessage(String filename, int filesize, long checksum){
+		return (Protocol.getStoreMessage(filename, filesize) + Protocol.SPACE + checksum);
+	}
+
+	public static String getStoreMessage(String filename, int filesize, long checksum, String hash){
+		return (Protocol.getStoreMessage(filename, filesize, checksum) + Protocol.SPACE + hash);
+	}
+
 	public static String getLoadMessage(String filename){
 		return (Protocol.LOAD_TOKEN + Protocol.SPACE + filename);
 	}
@@ -71,6 +85,10 @@ public class Protocol {
 		return (Protocol.LOAD_DATA_TOKEN + Protocol.SPACE + filename);
 	}
 
+	public static String getLoadDataWithChecksumMessage(String filename){
+		return (Protocol.getLoadDataMessage(filename) + Protocol.SPACE + Protocol.CHECKSUM_TOKEN);
+	}
+
 	public static String getReloadMessage(String filename){
 		return (Protocol.RELOAD_TOKEN + Protocol.SPACE + filename);
 	}
@@ -91,11 +109,14 @@ public class Protocol {
 	public final static String LOAD_FROM_TOKEN = "LOAD_FROM";
 	public final static String REMOVE_COMPLETE_TOKEN = "REMOVE_COMPLETE";
 	public final static String REBALANCE_TOKEN = "REBALANCE";
+	public final static String REBALANCE_BATCH_TOKEN = "REBALANCE_BATCH";
 	public final static String ERROR_DSTORE_PORT_IN_USE_TOKEN = "ERROR_DSTORE_PORT_IN_USE";
 	public final static String ERROR_FILE_DOES_NOT_EXIST_TOKEN = "ERROR_FILE_DOES_NOT_EXIST"; // also from Dstores
 	public final static String ERROR_FILE_ALREADY_EXISTS_TOKEN = "ERROR_FILE_ALREADY_EXISTS";
 	public final static String ERROR_NOT_ENOUGH_DSTORES_TOKEN = "ERROR_NOT_ENOUGH_DSTORES";
 	public final static String ERROR_LOAD_TOKEN = "ERROR_LOAD";
+	public final static String ERROR_WRONG_PARTITION_TOKEN = "ERROR_WRONG_PARTITION";
+	public final static String REPLICATE_TOKEN = "REPLICATE";
 
 	// getter methods //
 
@@ -103,6 +124,22 @@ public class Protocol {
 		return Protocol.JOIN_ACK_TOKEN;
 	}
 
+	public static String getJoinAckMessage(ArrayList<Integer> partitions){
+		// unpartitioned system - plain JOIN_ACK
+		if(partitions.size() <= 1){
+			return Protocol.getJoinAckMessage();
+		}
+
+		// converting the list of ports to strings
+		ArrayList<String> stringPartitions = new ArrayList<String>();
+		for(int partition : partitions){
+			stringPartitions.add(Integer.toString(partition));
+		}
+
+		// returning the message
+		return (Protocol.JOIN_ACK_TOKEN + Protocol.SPACE + String.join(Protocol.SPACE, stringPartitions));
+	}
+
 	public static String getStoreToMessage(ArrayList<Integer> dstores){
 		// converting the list of ports to strings
 		ArrayList<String> stringDstores = new ArrayList<String>();
@@ -122,42 +159,82 @@ public class Protocol {
 		return (Protocol.LOAD_FROM_TOKEN + Protocol.SPACE + port + Protocol.SPACE + filesize);
 	}
 
+	public static String getLoadFromMessage(int port, int filesize, int lease, ArrayList<Integer> dstores){
+		// converting the list of ports to strings
+		ArrayList<String> stringDstores = new ArrayList<String>();
+		for(int dstore : dstores){
+			stringDstores.add(Integer.toString(dstore));
+		}
+
+		// returning the message
+		return (Protocol.getLoadFromMessage(port, filesize) + Protocol.SPACE + lease + Protocol.SPACE + String.join(Protocol.SPACE, stringDstores));
+	}
+
 	public static String getRemoveCompleteMessage(){
 		return Protocol.REMOVE_COMPLETE_TOKEN;
 	}
 
-	public static String getRebalanceMessage(ArrayList<FileToSend> filesToSend, ArrayList<String> filesToRemove){
-        // files to send message
-        String filesToSendMessage = "";
-        if(filesToSend.size() == 0){
-            filesToSendMessage += filesToSend.size() + Protocol.SPACE;
-        }
-        else{
-            filesToSendMessage += filesToSend.size() + Protocol.SPACE;
-            for(FileToSend fileToSend : filesToSend){
-                filesToSendMessage += fileToSend.filename + Protocol.SPACE + fileToSend.filesize + Protocol.SPACE;
-
-                filesToSendMessage += fileToSend.dStores.size() + Protocol.SPACE;
-
-                for(int dstore : fileToSend.dStores){
-                    filesToSendMessage += dstore;
-                    filesToSendMessage += Protocol.SPACE;
-                }
-            }
-        }
+	public static String getRebalanceMessage(List<FileToSend> filesToSend, List<String> filesToRemove){
+		StringBuilder message = new StringBuilder(Protocol.REBALANCE_TOKEN);
+		Protocol.appendRebalanceInstructions(message, filesToSend, filesToRemove);
 
-        // files to remove message
-        String filesToRemoveMessage = "";
-        if(filesToRemove.size() == 0){
-            filesToRemoveMessage += filesToRemove.size();
-        }
-        else{
-            filesToRemoveMessage += filesToRemove.size() + Protocol.SPACE;
-            filesToRemoveMessage += String.join(Protocol.SPACE, filesToRemove);
-        }
+		// final message
+		return message.toString();
+	}
+
+	public static String getRebalanceMessage(List<FileToSend> filesToSend, List<String> filesToRemove, long rate){
+		return (Protocol.getRebalanceMessage(filesToSend, filesToRemove) + Protocol.SPACE + rate);
+	}
+
+	public static String getRebalanceBatchMessage(int rebalance, int batch, int batches, List<FileToSend> filesToSend, List<String> filesToRemove, long rate){
+		StringBuilder message = new StringBuilder(Protocol.REBALANCE_BATCH_TOKEN);
+		message.append(Protocol.SPACE).append(rebalance).append(Protocol.SPACE).append(batch).append(Protocol.SPACE).append(batches);
+		Protocol.appendRebalanceInstructions(message, filesToSend, filesToRemove);
+
+		// rate (if provided)
+		if(rate > 0){
+			message.append(Protocol.SPACE).append(rate);
+		}
 
 		// final message
-        return (Protocol.REBALANCE_TOKEN + Protocol.SPACE + filesToSendMessage + filesToRemoveMessage);
+		return message.toString();
+	}
+
+	/**
+	 * Appends the files to send and remove of a REBALANCE message to the provided message.
+	 * 
+	 * @param message The message being built.
+	 * @param filesToSend The files to be sent.
+	 * @param filesToRemove The files to be removed.
+	 */
+	private static void appendRebalanceInstructions(StringBuilder message, List<FileToSend> filesToSend, List<String> filesToRemove){
+		// files to send
+		message.append(Protocol.SPACE).append(filesToSend.size());
+		for(FileToSend fileToSend : filesToSend){
+			message.append(Protocol.SPACE).append(fileToSend.filename).append(Protocol.SPACE).append(fileToSend.filesize);
+			message.append(Protocol.SPACE).append(fileToSend.dStores.size());
+
+			for(int dstore : fileToSend.dStores){
+				message.append(Protocol.SPACE).append(dstore);
+			}
+		}
+
+		// files to remove
+		message.append(Protocol.SPACE).append(filesToRemove.size());
+		for(String fileToRemove : filesToRemove){
+			message.append(Protocol.SPACE).append(fileToRemove);
+		}
+	}
+
+	public static String getReplicateMessage(String filename, int filesize, ArrayList<Integer> dstores){
+		// converting the list of ports to strings
+		ArrayList<String> stringDstores = new ArrayList<String>();
+		for(int dstore : dstores){
+			stringDstores.add(Integer.toString(dstore));
+		}
+
+		// returning the message
+		return (Protocol.REPLICATE_TOKEN + Protocol.SPACE + filename + Protocol.SPACE + filesize + Protocol.SPACE + dstores.size() + Protocol.SPACE + String.join(Protocol.SPACE, stringDstores));
 	}
 
 	public static String getErrorDstorePortInUseMessage(){
@@ -184,6 +261,10 @@ public class Protocol {
 		return Protocol.ERROR_LOAD_TOKEN;
 	}
 
+	public static String getErrorWrongPartitionMessage(int controller){
+		return (Protocol.ERROR_WRONG_PARTITION_TOKEN + Protocol.SPACE + controller);
+	}
+
 	/////////////////////
 	// DSTORE MESSAGES //
 	/////////////////////
@@ -192,10 +273,13 @@ public class Protocol {
 
 	public final static String JOIN_DSTORE_TOKEN = "JOIN_DSTORE";
 	public final static String ACK_TOKEN = "ACK";
+	public final static String BLOB_EXISTS_TOKEN = "BLOB_EXISTS"; // the content of a STORE is already held, and is not sent
 	public final static String STORE_ACK_TOKEN = "STORE_ACK";
 	public final static String REMOVE_ACK_TOKEN = "REMOVE_ACK";
 	public final static String REBALANCE_STORE_TOKEN = "REBALANCE_STORE";
 	public final static String REBALANCE_COMPLETE_TOKEN = "REBALANCE_COMPLETE";
+	public final static String REPLICATE_COMPLETE_TOKEN = "REPLICATE_COMPLETE";
+	public final static String FILES_LOST_TOKEN = "FILES_LOST"; // files a Dstore no longer holds (e.g., a folder has failed)
 
 	// getter methods //
 
@@ -207,6 +291,10 @@ public class Protocol {
 		return Protocol.ACK_TOKEN;
 	}
 
+	public static String getBlobExistsMessage(){
+		return Protocol.BLOB_EXISTS_TOKEN;
+	}
+
 	public static String getStoreAckMessage(String filename){
 		return (Protocol.STORE_ACK_TOKEN + Protocol.SPACE + filename);
 	}
@@ -220,19 +308,48 @@ public class Protocol {
 		return (Protocol.REBALANCE_STORE_TOKEN + Protocol.SPACE + filename + Protocol.SPACE + filesize);
 	}
 
-	public static String getRebalanceCompleteMessage(HashMap<String, Integer> files){
-        if(files.size() == 0){
-            return (Protocol.REBALANCE_COMPLETE_TOKEN + Protocol.SPACE);
-        }
-        else{
-            String filesString = "";
-
-            // forming single string
-            for(String file : files.keySet()){
-                filesString += Protocol.SPACE + file + Protocol.SPACE + files.get(file);
-            }
-            
-            return (Protocol.REBALANCE_COMPLETE_TOKEN + filesString);
-        }
+	public static String getRebalanceStoreMessage(String filename, int filesize, long checksum){
+		return (Protocol.getRebalanceStoreMessage(filename, filesize) + Protocol.SPACE + checksum);
+	}
+
+	public static String getRebalanceStoreMessage(String filename, int filesize, long checksum, String hash){
+		return (Protocol.getRebalanceStoreMessage(filename, filesize, checksum) + Protocol.SPACE + hash);
+	}
+
+	public static String getReplicateCompleteMessage(String filename){
+		return (Protocol.REPLICATE_COMPLETE_TOKEN + Protocol.SPACE + filename);
+	}
+
+	public static String getRebalanceCompleteMessage(){
+		return Protocol.REBALANCE_COMPLETE_TOKEN;
+	}
+
+	public static String getRebalanceCompleteMessage(int rebalance){
+		return (Protocol.REBALANCE_COMPLETE_TOKEN + Protocol.SPACE + rebalance);
+	}
+
+	public static String getFilesLostMessage(ArrayList<String> filenames){
+		return (Protocol.FILES_LOST_TOKEN + Protocol.SPACE + String.join(Protocol.SPACE, filenames));
+	}
+
+	////////////////////
+	// CONTENT HASHES //
+	////////////////////
+
+	/**
+	 * Returns the hash identifying the provided content (its SHA-256, as 64 lower-case hex
+	 * digits), as sent in STORE and REBALANCE_STORE messages.
+	 * 
+	 * @param content The content of a file.
+	 * @return The hash of the content.
+	 */
+	public static String getContentHash(byte[] content){
+		try{
+			return HexFormat.of().formatHex(MessageDigest.getInstance(Protocol.HASH_ALGORITHM).digest(content));
+		}
+		catch(NoSuchAlgorithmException e){
+			// SHA-256 is provided by every Java platform
+			throw new IllegalStateException(e);
+		}
 	}
 }
\ No newline at end of file
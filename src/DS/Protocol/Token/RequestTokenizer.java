@@ -49,7 +49,7 @@ public class RequestTokenizer {
 
         // JOIN_ACK //
         else if(firstToken.equals(Protocol.JOIN_ACK_TOKEN)){
-            return new JoinAckToken(message);
+            return getJoinAckToken(message, sTokenizer);
         }
 
         // ACK //
@@ -57,6 +57,11 @@ public class RequestTokenizer {
             return new AckToken(message);
         }
 
+        // BLOB_EXISTS //
+        else if(firstToken.equals(Protocol.BLOB_EXISTS_TOKEN)){
+            return new BlobExistsToken(message);
+        }
+
         // STORE //
         else if(firstToken.equals(Protocol.STORE_TOKEN)){
             return getStoreToken(message, sTokenizer);
@@ -119,7 +124,12 @@ public class RequestTokenizer {
 
         // REBALANCE //
         else if (firstToken.equals(Protocol.REBALANCE_TOKEN)){
-            return getRebalanceToken(message, sTokenizer);
+            return getRebalanceToken(message, sTokenizer, 0, 1, 1);
+        }
+
+        // REBALANCE_BATCH //
+        else if (firstToken.equals(Protocol.REBALANCE_BATCH_TOKEN)){
+            return getRebalanceBatchToken(message, sTokenizer);
         }
 
         // REBALANCE_STORE //
@@ -129,7 +139,22 @@ public class RequestTokenizer {
 
         // REBALANCE_COMPLETE //
         else if(firstToken.equals(Protocol.REBALANCE_COMPLETE_TOKEN)){
-            return new RebalanceCompleteToken(message);
+            return getRebalanceCompleteToken(message, sTokenizer);
+        }
+
+        // REPLICATE //
+        else if(firstToken.equals(Protocol.REPLICATE_TOKEN)){
+            return getReplicateToken(message, sTokenizer);
+        }
+
+        // REPLICATE_COMPLETE //
+        else if(firstToken.equals(Protocol.REPLICATE_COMPLETE_TOKEN)){
+            return getReplicateCompleteToken(message, sTokenizer);
+        }
+
+        // FILES_LOST //
+        else if(firstToken.equals(Protocol.FILES_LOST_TOKEN)){
+            return getFilesLostToken(message, sTokenizer);
         }
 
         // ERROR_DSTORE_PORT_IN_USE //
@@ -157,6 +182,11 @@ public class RequestTokenizer {
             return new ErrorLoadToken(message);
         }
 
+        // ERROR_WRONG_PARTITION //
+        else if(firstToken.equals(Protocol.ERROR_WRONG_PARTITION_TOKEN)){
+            return getErrorWrongPartitionToken(message, sTokenizer);
+        }
+
         // Unrecognized //
         else{
             return new InvalidRequestToken(message);
@@ -199,6 +229,29 @@ public class RequestTokenizer {
         }
     }
 
+    /**
+     * Gathers a JOIN_ACK token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getJoinAckToken(String message, StringTokenizer sTokenizer) {
+        ArrayList<Integer> partitions = new ArrayList<Integer>();
+
+        try{
+            while(sTokenizer.hasMoreTokens()){
+                int port = Integer.parseInt(sTokenizer.nextToken());
+                partitions.add(port);
+            }
+
+            return new JoinAckToken(message, partitions);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
     /**
      * Gathers a STORE token from a message string.
      * 
@@ -210,6 +263,23 @@ public class RequestTokenizer {
         try{
             String filename = sTokenizer.nextToken();
             int filesize = Integer.parseInt(sTokenizer.nextToken());
+
+            // checksum of the content (if provided)
+            if(sTokenizer.hasMoreTokens()){
+                long checksum = Long.parseLong(sTokenizer.nextToken());
+
+                // hash of the content (if provided)
+                if(sTokenizer.hasMoreTokens()){
+                    String hash = sTokenizer.nextToken();
+                    if(!RequestTokenizer.isContentHash(hash)){
+                        return new InvalidRequestToken(message);
+                    }
+                    return new StoreToken(message, filename, filesize, checksum, hash);
+                }
+
+                return new StoreToken(message, filename, filesize, checksum);
+            }
+
             return new StoreToken(message, filename, filesize);
         }
         catch(Exception e){
@@ -289,6 +359,18 @@ public class RequestTokenizer {
 
             int filesize = Integer.parseInt(sTokenizer.nextToken());
 
+            // locations of the file provided with a lease
+            if(sTokenizer.hasMoreTokens()){
+                int lease = Integer.parseInt(sTokenizer.nextToken());
+
+                ArrayList<Integer> ports = new ArrayList<Integer>();
+                while(sTokenizer.hasMoreTokens()){
+                    ports.add(Integer.parseInt(sTokenizer.nextToken()));
+                }
+
+                return new LoadFromToken(message, port, filesize, lease, ports);
+            }
+
             return new LoadFromToken(message, port, filesize);
         }
         catch(Exception e){
@@ -307,6 +389,14 @@ public class RequestTokenizer {
         try{
             String filename = sTokenizer.nextToken();
 
+            // checksum asked for
+            if(sTokenizer.hasMoreTokens()){
+                if(!sTokenizer.nextToken().equals(Protocol.CHECKSUM_TOKEN)){
+                    return new InvalidRequestToken(message);
+                }
+                return new LoadDataToken(message, filename, true);
+            }
+
             return new LoadDataToken(message, filename);
         }
         catch(Exception e){
@@ -386,6 +476,24 @@ public class RequestTokenizer {
         }
     }
 
+    /**
+     * Gathers an ERROR_WRONG_PARTITION token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getErrorWrongPartitionToken(String message, StringTokenizer sTokenizer) {
+        try{
+            int controller = Integer.parseInt(sTokenizer.nextToken());
+
+            return new ErrorWrongPartitionToken(message, controller);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
     /**
      * Gathers a LIST token from a message string.
      * 
@@ -420,14 +528,37 @@ public class RequestTokenizer {
         }
     }
 
+    /**
+     * Gathers a REBALANCE_BATCH token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getRebalanceBatchToken(String message, StringTokenizer sTokenizer) {
+        try{
+            int rebalance = Integer.parseInt(sTokenizer.nextToken());
+            int batch = Integer.parseInt(sTokenizer.nextToken());
+            int batches = Integer.parseInt(sTokenizer.nextToken());
+
+            return getRebalanceToken(message, sTokenizer, rebalance, batch, batches);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
     /**
      * Gathers a REBALANC token from a message string.
      * 
      * @param message
      * @param sTokenizer
+     * @param rebalance The rebalance the instructions belong to (0 if not sent in batches).
+     * @param batch The number of the batch the instructions are in (from 1).
+     * @param batches The number of batches the instructions are sent in.
      * @return
      */
-    private static Token getRebalanceToken(String message, StringTokenizer sTokenizer) {
+    private static Token getRebalanceToken(String message, StringTokenizer sTokenizer, int rebalance, int batch, int batches) {
         try{
             
             // Files to send //
@@ -467,7 +598,14 @@ public class RequestTokenizer {
                 filesToRemove.add(filename);
             }
 
-            return new RebalanceToken(message, filesToSend, filesToRemove);
+            // Transfer rate (optional) //
+
+            long rate = 0;
+            if(sTokenizer.hasMoreTokens()){
+                rate = Long.parseLong(sTokenizer.nextToken());
+            }
+
+            return new RebalanceToken(message, filesToSend, filesToRemove, rate, rebalance, batch, batches);
         }
         catch(Exception e){
             return new InvalidRequestToken(message);
@@ -485,10 +623,130 @@ public class RequestTokenizer {
         try{
             String filename = sTokenizer.nextToken();
             int filesize = Integer.parseInt(sTokenizer.nextToken());
+
+            // checksum of the content (if provided)
+            if(sTokenizer.hasMoreTokens()){
+                long checksum = Long.parseLong(sTokenizer.nextToken());
+
+                // hash of the content (if provided)
+                if(sTokenizer.hasMoreTokens()){
+                    String hash = sTokenizer.nextToken();
+                    if(!RequestTokenizer.isContentHash(hash)){
+                        return new InvalidRequestToken(message);
+                    }
+                    return new RebalanceStoreToken(message, filename, filesize, checksum, hash);
+                }
+
+                return new RebalanceStoreToken(message, filename, filesize, checksum);
+            }
+
             return new RebalanceStoreToken(message, filename, filesize);
         }
         catch(Exception e){
             return new InvalidRequestToken(message);
         }
     }
+
+    /**
+     * Gathers a REPLICATE token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getReplicateToken(String message, StringTokenizer sTokenizer) {
+        try{
+            String filename = sTokenizer.nextToken();
+
+            int filesize = Integer.parseInt(sTokenizer.nextToken());
+
+            int numberOfDStores = Integer.parseInt(sTokenizer.nextToken());
+
+            ArrayList<Integer> ports = new ArrayList<Integer>();
+
+            for(int i = 0; i < numberOfDStores; i++){
+                int port = Integer.parseInt(sTokenizer.nextToken());
+
+                ports.add(port);
+            }
+
+            return new ReplicateToken(message, new FileToSend(filename, filesize, ports));
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers a REPLICATE_COMPLETE token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getReplicateCompleteToken(String message, StringTokenizer sTokenizer) {
+        try{
+            String filename = sTokenizer.nextToken();
+
+            return new ReplicateCompleteToken(message, filename);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers a REBALANCE_COMPLETE token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getRebalanceCompleteToken(String message, StringTokenizer sTokenizer) {
+        try{
+            // rebalance (if provided)
+            int rebalance = sTokenizer.hasMoreTokens() ? Integer.parseInt(sTokenizer.nextToken()) : 0;
+
+            return new RebalanceCompleteToken(message, rebalance);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers a FILES_LOST token from a message string.
+     * 
+     * @param message
+     * @param sTokenizer
+     * @return
+     */
+    private static Token getFilesLostToken(String message, StringTokenizer sTokenizer) {
+        ArrayList<String> filenames = new ArrayList<String>();
+        while(sTokenizer.hasMoreTokens()){
+            filenames.add(sTokenizer.nextToken());
+        }
+
+        // no files listed
+        if(filenames.isEmpty()){
+            return new InvalidRequestToken(message);
+        }
+
+        return new FilesLostToken(message, filenames);
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Determines if a string is a content hash (the SHA-256 of a file's content, as 64
+     * lower-case hex digits).
+     * 
+     * @param hash The string being checked.
+     * @return True if the string is a content hash, false if not.
+     */
+    private static boolean isContentHash(String hash){
+        return hash.matches("[0-9a-f]{64}");
+    }
 }
\ No newline at end of file
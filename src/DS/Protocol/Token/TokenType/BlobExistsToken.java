@@ -0,0 +1,15 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for ...
+ * 
+ * Syntax: 
+ */
+public class BlobExistsToken extends Token{
+    
+    public BlobExistsToken(String message){
+        this.message = message;
+    }
+}
@@ -0,0 +1,18 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for ...
+ * 
+ * Syntax: 
+ */
+public class ErrorWrongPartitionToken extends Token{
+
+    public int controller;
+
+    public ErrorWrongPartitionToken(String message, int controller){
+        this.message = message;
+        this.controller = controller;
+    }
+}
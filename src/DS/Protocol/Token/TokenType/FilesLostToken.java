@@ -0,0 +1,21 @@
+package DS.Protocol.Token.TokenType;
+
+import java.util.ArrayList;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a Dstore reporting files it no longer holds (e.g., one of its folders has
+ * failed).
+ * 
+ * Syntax: FILES_LOST <FILENAME> <FILENAME> ...
+ */
+public class FilesLostToken extends Token{
+
+    public ArrayList<String> filenames;
+
+    public FilesLostToken(String message, ArrayList<String> filenames){
+        this.message = message;
+        this.filenames = filenames;
+    }
+}
@@ -1,5 +1,7 @@
 package DS.Protocol.Token.TokenType;
 
+import java.util.ArrayList;
+
 import DS.Protocol.Token.Token;
 
 /**
@@ -8,8 +10,16 @@ import DS.Protocol.Token.Token;
  * Syntax: 
  */
 public class JoinAckToken extends Token{
+
+    public ArrayList<Integer> partitions;
     
     public JoinAckToken(String message){
         this.message = message;
+        this.partitions = new ArrayList<Integer>();
+    }
+
+    public JoinAckToken(String message, ArrayList<Integer> partitions){
+        this.message = message;
+        this.partitions = partitions;
     }
 }
@@ -10,9 +10,15 @@ import DS.Protocol.Token.Token;
 public class LoadDataToken extends Token{
     
     public String filename;
+    public boolean checksum; // whether the checksum is sent after the content
 
     public LoadDataToken(String message, String filename){
+        this(message, filename, false);
+    }
+
+    public LoadDataToken(String message, String filename, boolean checksum){
         this.message = message;
         this.filename = filename;
+        this.checksum = checksum;
     }
 }
\ No newline at end of file
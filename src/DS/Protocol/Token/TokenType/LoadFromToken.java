@@ -1,5 +1,7 @@
 package DS.Protocol.Token.TokenType;
 
+import java.util.ArrayList;
+
 import DS.Protocol.Token.Token;
 
 /**
@@ -11,10 +13,18 @@ public class LoadFromToken extends Token{
     
     public int port;
     public int filesize;
+    public int lease;
+    public ArrayList<Integer> ports;
 
     public LoadFromToken(String message, int port, int filesize){
+        this(message, port, filesize, 0, new ArrayList<Integer>());
+    }
+
+    public LoadFromToken(String message, int port, int filesize, int lease, ArrayList<Integer> ports){
         this.message = message;
         this.port = port;
         this.filesize = filesize;
+        this.lease = lease;
+        this.ports = ports;
     }
 }
\ No newline at end of file
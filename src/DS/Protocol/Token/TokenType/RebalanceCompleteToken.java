@@ -3,13 +3,16 @@ package DS.Protocol.Token.TokenType;
 import DS.Protocol.Token.Token;
 
 /**
- * Token for ...
+ * Token for a Dstore reporting that it has carried out its rebalance instructions.
  * 
- * Syntax: 
+ * Syntax: REBALANCE_COMPLETE [<REBALANCE>]
  */
 public class RebalanceCompleteToken extends Token{
 
-    public RebalanceCompleteToken(String message){
+    public int rebalance; // 0 if not given
+
+    public RebalanceCompleteToken(String message, int rebalance){
         this.message = message;
+        this.rebalance = rebalance;
     }
 }
\ No newline at end of file
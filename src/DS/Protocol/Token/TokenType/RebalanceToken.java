@@ -13,10 +13,26 @@ public class RebalanceToken extends Token{
     
     public ArrayList<FileToSend> filesToSend;
     public ArrayList<String> filesToRemove;
+    public long rate;
+    public int rebalance; // 0 if not sent in batches
+    public int batch;
+    public int batches;
 
     public RebalanceToken(String message, ArrayList<FileToSend> filesToSend, ArrayList<String> filesToRemove){
+        this(message, filesToSend, filesToRemove, 0);
+    }
+
+    public RebalanceToken(String message, ArrayList<FileToSend> filesToSend, ArrayList<String> filesToRemove, long rate){
+        this(message, filesToSend, filesToRemove, rate, 0, 1, 1);
+    }
+
+    public RebalanceToken(String message, ArrayList<FileToSend> filesToSend, ArrayList<String> filesToRemove, long rate, int rebalance, int batch, int batches){
         this.message = message;
         this.filesToSend = filesToSend;
         this.filesToRemove = filesToRemove;
+        this.rate = rate;
+        this.rebalance = rebalance;
+        this.batch = batch;
+        this.batches = batches;
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a Dstore reporting that a file has been copied onto (and stored by) every
+ * Dstore it was told to REPLICATE it to.
+ * 
+ * Syntax: REPLICATE_COMPLETE <FILENAME>
+ */
+public class ReplicateCompleteToken extends Token{
+
+    public String filename;
+
+    public ReplicateCompleteToken(String message, String filename){
+        this.message = message;
+        this.filename = filename;
+    }
+}
@@ -0,0 +1,19 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for the Controller asking a Dstore that stores a file to copy it onto the
+ * Dstores that are missing a replica of it.
+ * 
+ * Syntax: REPLICATE <FILENAME> <FILESIZE> <N> <PORT> <PORT> ...
+ */
+public class ReplicateToken extends Token{
+    
+    public FileToSend fileToSend;
+
+    public ReplicateToken(String message, FileToSend fileToSend){
+        this.message = message;
+        this.fileToSend = fileToSend;
+    }
+}
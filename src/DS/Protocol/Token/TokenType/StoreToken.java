@@ -11,10 +11,22 @@ public class StoreToken extends Token{
     
     public String filename;
     public int filesize;
+    public long checksum; // -1 if not provided
+    public String hash; // SHA-256 of the content (null if not provided)
 
     public StoreToken(String message, String filename, int filesize){
+        this(message, filename, filesize, -1);
+    }
+
+    public StoreToken(String message, String filename, int filesize, long checksum){
+        this(message, filename, filesize, checksum, null);
+    }
+
+    public StoreToken(String message, String filename, int filesize, long checksum, String hash){
         this.message = message;
         this.filename = filename;
         this.filesize = filesize;
+        this.checksum = checksum;
+        this.hash = hash;
     }
 }
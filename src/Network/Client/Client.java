@@ -1,6 +1,6 @@
 package Network.Client;
 
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import Network.Connection;
 import Network.NetworkInterface;
@@ -25,7 +25,7 @@ public abstract class Client implements NetworkProcess{
     private NetworkInterface networkInterface;
     private Connection serverConnection;
     private HeartbeatConnection serverHeartbeat;
-    private ArrayList<Connection> secondaryServerConnections;
+    private volatile CopyOnWriteArrayList<Connection> secondaryServerConnections;
 
     /**
      * Class Constructor.
@@ -39,7 +39,7 @@ public abstract class Client implements NetworkProcess{
         this.serverPort = serverPort;
         this.timeout = timeout;
         this.networkInterface = networkInterface;
-        this.secondaryServerConnections = new ArrayList<Connection>();
+        this.secondaryServerConnections = new CopyOnWriteArrayList<Connection>();
     }
 
     /**
@@ -110,7 +110,7 @@ public abstract class Client implements NetworkProcess{
         return this.serverHeartbeat;
     }
 
-    public ArrayList<Connection> getSecondaryServerConnections(){
+    public CopyOnWriteArrayList<Connection> getSecondaryServerConnections(){
         return this.secondaryServerConnections;
     }
 
@@ -3,6 +3,7 @@ package Network;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.io.BufferedReader;
 import java.io.InputStream;
@@ -10,6 +11,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.zip.Checksum;
 
 import Network.Protocol.Event.ClientConnectionEvent;
 import Network.Protocol.Exception.*;
@@ -24,6 +26,9 @@ import Network.Server.Server.ServerType;
  * of these messages to the given NetworkInterface.
  */
 public class Connection{
+
+    // constants
+    private final static int CHUNK_SIZE = 64 * 1024; // bytes written (or read) per chunk
     
     // member variables
     private NetworkInterface networkInterface;
@@ -46,6 +51,7 @@ public class Connection{
         try{
             this.networkInterface = networkInterface;
             this.socket = socket;
+            this.socket.setTcpNoDelay(true); // messages are small and sent one at a time
             this.textOut = new PrintWriter (new OutputStreamWriter(this.socket.getOutputStream())); 
             this.textIn = new BufferedReader (new InputStreamReader(this.socket.getInputStream()));
             this.dataOut = this.socket.getOutputStream();
@@ -71,6 +77,7 @@ public class Connection{
             // creating the connection
             this.networkInterface = networkInterface;
             this.socket = new Socket(InetAddress.getLocalHost(), port);
+            this.socket.setTcpNoDelay(true); // messages are small and sent one at a time
             this.textOut = new PrintWriter (new OutputStreamWriter(this.socket.getOutputStream())); 
             this.textIn = new BufferedReader (new InputStreamReader(this.socket.getInputStream()));
             this.dataOut = this.socket.getOutputStream();
@@ -232,6 +239,111 @@ public class Connection{
 
     }
 
+    /**
+     * Sends the remaining bytes of the provided buffer to the connection endpoint.
+     * 
+     * Buffers that are not backed by an array (e.g., direct buffers) are copied out 
+     * chunk-by-chunk, rather than into a single array.
+     * 
+     * @param buffer The buffer of bytes to be sent (its position is not changed).
+     * @throws MessageSendException If the bytes could not be sent.
+     */
+    public void sendBytes(ByteBuffer buffer) throws MessageSendException{
+        try{
+            ByteBuffer bytes = buffer.duplicate();
+
+            // Sending request
+            if(bytes.hasArray()){
+                this.dataOut.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            }
+            else{
+                byte[] chunk = new byte[Math.min(Connection.CHUNK_SIZE, bytes.remaining())];
+                while(bytes.hasRemaining()){
+                    int length = Math.min(chunk.length, bytes.remaining());
+                    bytes.get(chunk, 0, length);
+                    this.dataOut.write(chunk, 0, length);
+                }
+            }
+            this.dataOut.flush();
+
+            // logging
+            this.messagesSent.add("[FILE CONTENT]");
+            this.networkInterface.logMessageSent(this.socket, "[FILE CONTENT]");
+        }
+        catch(Exception e){
+            throw new MessageSendException(this.getPort(), e);
+        }
+    }
+
+    /**
+     * Sends byte data to the connection endpoint, at a rate no faster than allowed
+     * by the provided rate limiter.
+     * 
+     * The bytes are written in chunks, taking tokens from the limiter for each chunk, so 
+     * that a large transfer is spread out rather than sent in one burst.
+     * 
+     * @param bytes The array of bytes to be sent.
+     * @param rateLimiter The rate limiter the transfer is limited by.
+     * @throws MessageSendException If the bytes could not be sent.
+     */
+    public void sendBytes(byte[] bytes, RateLimiter rateLimiter) throws MessageSendException{
+        try{
+            // Sending request (chunk-by-chunk)
+            for(int offset = 0; offset < bytes.length; offset += Connection.CHUNK_SIZE){
+                int length = Math.min(Connection.CHUNK_SIZE, bytes.length - offset);
+
+                rateLimiter.acquire(length);
+                this.dataOut.write(bytes, offset, length);
+            }
+            this.dataOut.flush();
+
+            // logging
+            this.messagesSent.add("[FILE CONTENT]");
+            this.networkInterface.logMessageSent(this.socket, "[FILE CONTENT]");
+        }
+        catch(Exception e){
+            throw new MessageSendException(this.getPort(), e);
+        }
+    }
+
+    /**
+     * Sends the remaining bytes of the provided buffer to the connection endpoint, at a 
+     * rate no faster than allowed by the provided rate limiter.
+     * 
+     * @param buffer The buffer of bytes to be sent (its position is not changed).
+     * @param rateLimiter The rate limiter the transfer is limited by.
+     * @throws MessageSendException If the bytes could not be sent.
+     */
+    public void sendBytes(ByteBuffer buffer, RateLimiter rateLimiter) throws MessageSendException{
+        try{
+            ByteBuffer bytes = buffer.duplicate();
+            byte[] chunk = bytes.hasArray() ? null : new byte[Math.min(Connection.CHUNK_SIZE, bytes.remaining())];
+
+            // Sending request (chunk-by-chunk)
+            while(bytes.hasRemaining()){
+                int length = Math.min(Connection.CHUNK_SIZE, bytes.remaining());
+
+                rateLimiter.acquire(length);
+                if(bytes.hasArray()){
+                    this.dataOut.write(bytes.array(), bytes.arrayOffset() + bytes.position(), length);
+                    bytes.position(bytes.position() + length);
+                }
+                else{
+                    bytes.get(chunk, 0, length);
+                    this.dataOut.write(chunk, 0, length);
+                }
+            }
+            this.dataOut.flush();
+
+            // logging
+            this.messagesSent.add("[FILE CONTENT]");
+            this.networkInterface.logMessageSent(this.socket, "[FILE CONTENT]");
+        }
+        catch(Exception e){
+            throw new MessageSendException(this.getPort(), e);
+        }
+    }
+
     /**
      * Waits for a N bytes to arrive within the given timeout.
      * 
@@ -243,15 +355,43 @@ public class Connection{
      * be received within the timeout period.
      */
     public byte[] getNBytesWithinTimeout(int n, int timeout) throws Exception{
+        return this.getNBytesWithinTimeout(n, timeout, null);
+    }
+
+    /**
+     * Waits for a N bytes to arrive within the given timeout, updating the provided 
+     * checksum with each chunk of bytes as it arrives (so the bytes are not read again 
+     * to check them).
+     * 
+     * @param timeout The timeout to wait for the message to arrive.
+     * @param checksum The checksum updated with the bytes (null if none is kept).
+     * @return The array of bytes gathered from the connection.
+     * @throws ConnectorDisconnectedException If the connector disconnected while waiting for 
+     * the bytes to arrive.
+     * @throws MessageReceivedException If the bytes could not be receieved, or could not 
+     * be received within the timeout period.
+     */
+    public byte[] getNBytesWithinTimeout(int n, int timeout, Checksum checksum) throws Exception{
         try{
             // setting socket timeout
             this.socket.setSoTimeout(timeout);
 
-            // getting request from connnection - returns empty as soon as connection drops
-            byte[] bytes = this.dataIn.readNBytes(n);
+            // getting request from connnection chunk-by-chunk - stops as soon as connection drops
+            byte[] bytes = new byte[n];
+            int received = 0;
+            while(received < n){
+                int length = this.dataIn.readNBytes(bytes, received, Math.min(Connection.CHUNK_SIZE, n - received));
+                if(length == 0){
+                    break;
+                }
+                if(checksum != null){
+                    checksum.update(bytes, received, length);
+                }
+                received += length;
+            }
 
             // returninig the gathered bytes
-            if(bytes.length == n){
+            if(received == n){
                 this.socket.setSoTimeout(0);
 
                 // logging message
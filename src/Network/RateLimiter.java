@@ -0,0 +1,105 @@
+package Network;
+
+/**
+ * Token bucket that limits the rate at which bytes are sent.
+ *
+ * The bucket fills at the rate (bytes per second) up to a capacity of a tenth of a
+ * second's worth of bytes. Senders take tokens from the bucket before sending, and are
+ * made to wait when there are not enough tokens. Waits happen outside of the bucket's
+ * lock, so senders sharing a limiter are served in the order they ask for tokens.
+ *
+ * A rate of 0 means the rate is not limited.
+ */
+public class RateLimiter{
+
+    // constants
+    private final static long NANOS_PER_SECOND = 1000000000L;
+    private final static long BURST_DIVISOR = 10; // capacity = 1/10th of a second of tokens
+
+    // member variables
+    private long rate; // bytes per second, 0 = unlimited
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Class constructor.
+     *
+     * @param rate The maximum rate in bytes per second (0 for no limit).
+     */
+    public RateLimiter(long rate){
+        // initializing
+        this.rate = rate;
+        this.tokens = this.getCapacity();
+        this.lastRefill = System.nanoTime();
+    }
+
+    //////////////
+    // LIMITING //
+    //////////////
+
+    /**
+     * Takes the provided number of tokens from the bucket, waiting until they are available.
+     *
+     * @param bytes The number of bytes about to be sent.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void acquire(int bytes) throws InterruptedException{
+        long wait = this.reserve(bytes);
+
+        if(wait > 0){
+            Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+        }
+    }
+
+    /**
+     * Takes the provided number of tokens from the bucket, allowing the bucket to go into
+     * debt, and returns how long the caller must wait for the debt to be paid off.
+     *
+     * @param bytes The number of tokens being taken.
+     * @return The time the caller must wait before sending, in nanoseconds.
+     */
+    private synchronized long reserve(int bytes){
+        // no limit
+        if(this.rate <= 0){
+            return 0;
+        }
+
+        // refilling the bucket
+        this.refill();
+
+        // taking the tokens
+        this.tokens -= bytes;
+
+        // waiting off any debt
+        if(this.tokens >= 0){
+            return 0;
+        }
+        return (long) (-this.tokens * NANOS_PER_SECOND / this.rate);
+    }
+
+    /**
+     * Adds the tokens earned since the last refill to the bucket.
+     */
+    private void refill(){
+        long now = System.nanoTime();
+        this.tokens = Math.min(this.getCapacity(), this.tokens + ((double) (now - this.lastRefill) * this.rate / NANOS_PER_SECOND));
+        this.lastRefill = now;
+    }
+
+    /**
+     * Returns the number of tokens the bucket can hold.
+     *
+     * @return The capacity of the bucket.
+     */
+    private double getCapacity(){
+        return (double) this.rate / BURST_DIVISOR;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public synchronized long getRate(){
+        return this.rate;
+    }
+}
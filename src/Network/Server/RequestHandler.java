@@ -40,7 +40,7 @@ public abstract class RequestHandler {
 
     /**
      * Handles a give request on a new thread. Runs the handle request method on
-     * a new thread.
+     * a new thread (unless the request is followed by data on the connection).
      * 
      * @param connection The connection associated with the request.
      * @param request The request being handeled.
@@ -53,6 +53,12 @@ public abstract class RequestHandler {
             throw new RequestHandlerDisabledException();
         }
 
+        // request is followed by data on the connection - handling on the connection's thread
+        if(this.isDataRequest(request)){
+            this.handleRequestAux(connection, request);
+            return;
+        }
+
         // runnable for the request thread
         Runnable runnable = () -> {
             // handling the request
@@ -63,6 +69,20 @@ public abstract class RequestHandler {
         new Thread(runnable).start();
     }
 
+    /**
+     * Determines if the provided request is followed by raw data on its connection.
+     * 
+     * Such requests are handled on the thread that reads from the connection, so that
+     * the connection does not go back to reading messages while the data is still 
+     * being received. By default, no requests are data requests.
+     * 
+     * @param request The request being checked.
+     * @return True if the request is followed by data on the connection, false if not.
+     */
+    public boolean isDataRequest(Token request){
+        return false;
+    }
+
     /**
      * Handles a given request.
      * 